@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.amd64.test;
+
+import static com.oracle.graal.asm.amd64.AMD64Assembler.AMD64BinaryArithmetic.CMP;
+import static com.oracle.graal.asm.amd64.AMD64Assembler.OperandSize.DWORD;
+import static jdk.vm.ci.amd64.AMD64.rax;
+import static jdk.vm.ci.amd64.AMD64.rbx;
+import static jdk.vm.ci.amd64.AMD64.rcx;
+import static jdk.vm.ci.amd64.AMD64.rdx;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.oracle.graal.asm.Label;
+import com.oracle.graal.asm.amd64.AMD64Assembler.AMD64RMOp;
+import com.oracle.graal.asm.amd64.AMD64Assembler.ConditionFlag;
+import com.oracle.graal.compiler.common.LIRKind;
+import com.oracle.graal.lir.LIR;
+import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.LabelRef;
+import com.oracle.graal.lir.StandardOp.LabelOp;
+import com.oracle.graal.lir.amd64.AMD64BinaryConsumer;
+import com.oracle.graal.lir.amd64.AMD64ControlFlow.BranchOp;
+import com.oracle.graal.lir.amd64.AMD64Move.MoveFromConstOp;
+import com.oracle.graal.lir.amd64.AMD64Move.MoveFromRegOp;
+import com.oracle.graal.lir.amd64.AMD64Move.MoveToRegOp;
+import com.oracle.graal.lir.amd64.phases.AMD64PeepholeOptimizationPhase;
+import com.oracle.graal.lir.gen.LIRGenerationResult;
+import com.oracle.graal.lir.phases.PostAllocationOptimizationPhase.PostAllocationOptimizationContext;
+import com.oracle.graal.lir.test.TestBlock;
+import com.oracle.graal.lir.test.TestControlFlowGraph;
+
+import jdk.vm.ci.amd64.AMD64Kind;
+import jdk.vm.ci.code.Register;
+import jdk.vm.ci.code.RegisterValue;
+import jdk.vm.ci.code.StackSlot;
+import jdk.vm.ci.meta.JavaConstant;
+
+/**
+ * Applies the {@link AMD64PeepholeOptimizationPhase} to hand-written LIR and checks each of its
+ * rewrite patterns.
+ */
+public class AMD64PeepholeOptimizationTest {
+
+    private static final LIRKind dword = LIRKind.value(AMD64Kind.DWORD);
+    private static final LIRKind qword = LIRKind.value(AMD64Kind.QWORD);
+    private static final LIRKind byteKind = LIRKind.value(AMD64Kind.BYTE);
+
+    /** Create RegisterValue. */
+    private static RegisterValue v(Register r, LIRKind kind) {
+        return r.asValue(kind);
+    }
+
+    /** Create StackSlot. */
+    private static StackSlot s(int offset, LIRKind kind) {
+        return StackSlot.get(kind, -offset, true);
+    }
+
+    private static LabelOp label() {
+        return new LabelOp(new Label(), false);
+    }
+
+    private static LIRInstruction cmp(Register x, Register y) {
+        return new AMD64BinaryConsumer.Op(CMP.getRMOpcode(DWORD), DWORD, v(x, dword), v(y, dword));
+    }
+
+    private static LIRInstruction cmp(Register x, int y) {
+        return new AMD64BinaryConsumer.ConstOp(CMP, DWORD, v(x, dword), y);
+    }
+
+    private static LIRInstruction test(Register x) {
+        return new AMD64BinaryConsumer.Op(AMD64RMOp.TEST, DWORD, v(x, dword), v(x, dword));
+    }
+
+    private static LIRInstruction move(Register result, Register input) {
+        return new MoveToRegOp(AMD64Kind.DWORD, v(result, dword), v(input, dword));
+    }
+
+    /**
+     * Applies the phase to a single block and returns its instructions.
+     */
+    private static List<LIRInstruction> optimize(LIRInstruction... instructions) {
+        TestBlock block = new TestBlock(0);
+        LIR lir = createLIR(block);
+        ArrayList<LIRInstruction> list = new ArrayList<>(Arrays.asList(instructions));
+        lir.setLIRforBlock(block, list);
+        apply(lir);
+        return list;
+    }
+
+    private static LIR createLIR(TestBlock... blocks) {
+        return new LIR(new TestControlFlowGraph(blocks), blocks, blocks);
+    }
+
+    private static void apply(LIR lir) {
+        LIRGenerationResult lirGenRes = new LIRGenerationResult("AMD64PeepholeOptimizationTest", lir, null, null);
+        new AMD64PeepholeOptimizationPhase().apply(null, lirGenRes, new PostAllocationOptimizationContext(null), false);
+    }
+
+    private static void assertInstructions(List<LIRInstruction> actual, LIRInstruction... expected) {
+        assertEquals(actual.toString(), expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertSame(actual.toString(), expected[i], actual.get(i));
+        }
+    }
+
+    @Test
+    public void testSelfMove() {
+        LabelOp label = label();
+        LIRInstruction move = move(rbx, rax);
+        assertInstructions(optimize(label, move(rax, rax), move), label, move);
+    }
+
+    @Test
+    public void testReverseMove() {
+        LabelOp label = label();
+        LIRInstruction move = move(rbx, rax);
+        assertInstructions(optimize(label, move, move(rax, rbx)), label, move);
+    }
+
+    @Test
+    public void testReloadAfterSpill() {
+        LabelOp label = label();
+        LIRInstruction spill = new MoveFromRegOp(AMD64Kind.QWORD, s(8, qword), v(rax, qword));
+        LIRInstruction reload = new MoveToRegOp(AMD64Kind.QWORD, v(rax, qword), s(8, qword));
+        assertInstructions(optimize(label, spill, reload), label, spill);
+    }
+
+    @Test
+    public void testReloadToRegisterMove() {
+        LabelOp label = label();
+        LIRInstruction spill = new MoveFromRegOp(AMD64Kind.QWORD, s(8, qword), v(rax, qword));
+        LIRInstruction reload = new MoveToRegOp(AMD64Kind.QWORD, v(rbx, qword), s(8, qword));
+        List<LIRInstruction> result = optimize(label, spill, reload);
+        assertEquals(result.toString(), 3, result.size());
+        assertSame(spill, result.get(1));
+        assertTrue(result.get(2) instanceof MoveToRegOp);
+        MoveToRegOp move = (MoveToRegOp) result.get(2);
+        assertEquals(v(rbx, qword), move.getResult());
+        assertEquals(v(rax, qword), move.getInput());
+    }
+
+    @Test
+    public void testByteReloadKept() {
+        LabelOp label = label();
+        LIRInstruction spill = new MoveFromRegOp(AMD64Kind.BYTE, s(8, byteKind), v(rax, byteKind));
+        LIRInstruction reload = new MoveToRegOp(AMD64Kind.BYTE, v(rbx, byteKind), s(8, byteKind));
+        assertInstructions(optimize(label, spill, reload), label, spill, reload);
+    }
+
+    @Test
+    public void testDuplicateCompare() {
+        LabelOp label = label();
+        LIRInstruction compare = cmp(rax, rbx);
+        LIRInstruction move = move(rcx, rdx);
+        assertInstructions(optimize(label, compare, move, cmp(rax, rbx)), label, compare, move);
+    }
+
+    @Test
+    public void testCompareOperandOverwritten() {
+        LabelOp label = label();
+        LIRInstruction compare = cmp(rax, rbx);
+        LIRInstruction move = move(rax, rdx);
+        LIRInstruction second = cmp(rax, rbx);
+        assertInstructions(optimize(label, compare, move, second), label, compare, move, second);
+    }
+
+    @Test
+    public void testDifferentCompare() {
+        LabelOp label = label();
+        LIRInstruction compare = cmp(rax, rbx);
+        LIRInstruction second = cmp(rax, rcx);
+        assertInstructions(optimize(label, compare, second), label, compare, second);
+    }
+
+    @Test
+    public void testTestAndCompareWithZero() {
+        LabelOp label = label();
+        LIRInstruction test = test(rax);
+        LIRInstruction zero = new MoveFromConstOp(v(rcx, dword), JavaConstant.INT_0);
+        assertInstructions(optimize(label, test, zero, cmp(rax, 0)), label, test, zero);
+
+        LabelOp label2 = label();
+        LIRInstruction compare = cmp(rax, 0);
+        assertInstructions(optimize(label2, compare, test(rax)), label2, compare);
+    }
+
+    @Test
+    public void testZeroConstantOverwritesOperand() {
+        LabelOp label = label();
+        LIRInstruction test = test(rax);
+        LIRInstruction zero = new MoveFromConstOp(v(rax, dword), JavaConstant.INT_0);
+        LIRInstruction compare = cmp(rax, 0);
+        assertInstructions(optimize(label, test, zero, compare), label, test, zero, compare);
+    }
+
+    @Test
+    public void testCompareWithNonZeroConstant() {
+        LabelOp label = label();
+        LIRInstruction test = test(rax);
+        LIRInstruction compare = cmp(rax, 1);
+        assertInstructions(optimize(label, test, compare), label, test, compare);
+    }
+
+    @Test
+    public void testCompareAcrossBranch() {
+        TestBlock b0 = new TestBlock(0);
+        TestBlock b1 = new TestBlock(1);
+        TestBlock b2 = new TestBlock(2);
+        b0.addSuccessor(b1);
+        b0.addSuccessor(b2);
+        b1.addSuccessor(b2);
+        LIR lir = createLIR(b0, b1, b2);
+
+        LIRInstruction branch = new BranchOp(ConditionFlag.Equal, LabelRef.forSuccessor(lir, b0, 0), LabelRef.forSuccessor(lir, b0, 1), 0.5);
+        ArrayList<LIRInstruction> i0 = new ArrayList<>(Arrays.asList(label(), cmp(rax, rbx), move(rcx, rdx), branch));
+        LabelOp label1 = label();
+        LIRInstruction move1 = move(rdx, rcx);
+        ArrayList<LIRInstruction> i1 = new ArrayList<>(Arrays.asList(label1, cmp(rax, rbx), move1));
+        /* b2 has two predecessors, so the flags are unknown on entry. */
+        LabelOp label2 = label();
+        LIRInstruction compare2 = cmp(rax, rbx);
+        ArrayList<LIRInstruction> i2 = new ArrayList<>(Arrays.asList(label2, compare2));
+        lir.setLIRforBlock(b0, i0);
+        lir.setLIRforBlock(b1, i1);
+        lir.setLIRforBlock(b2, i2);
+        apply(lir);
+
+        assertEquals(i0.toString(), 4, i0.size());
+        assertInstructions(i1, label1, move1);
+        assertInstructions(i2, label2, compare2);
+    }
+
+    @Test
+    public void testCompareOperandOverwrittenBeforeBranch() {
+        TestBlock b0 = new TestBlock(0);
+        TestBlock b1 = new TestBlock(1);
+        b0.addSuccessor(b1);
+        LIR lir = createLIR(b0, b1);
+
+        LIRInstruction branch = new BranchOp(ConditionFlag.Equal, LabelRef.forSuccessor(lir, b0, 0), LabelRef.forSuccessor(lir, b0, 0), 0.5);
+        ArrayList<LIRInstruction> i0 = new ArrayList<>(Arrays.asList(label(), cmp(rax, rbx), move(rbx, rdx), branch));
+        LabelOp label1 = label();
+        LIRInstruction compare1 = cmp(rax, rbx);
+        ArrayList<LIRInstruction> i1 = new ArrayList<>(Arrays.asList(label1, compare1));
+        lir.setLIRforBlock(b0, i0);
+        lir.setLIRforBlock(b1, i1);
+        apply(lir);
+
+        assertInstructions(i1, label1, compare1);
+    }
+}
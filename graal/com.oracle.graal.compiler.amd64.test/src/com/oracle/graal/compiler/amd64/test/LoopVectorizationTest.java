@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.amd64.test;
+
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.lir.amd64.AMD64VectorizedArrayOp;
+import com.oracle.graal.loop.phases.LoopVectorizationPhase;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.nodes.java.VectorizedArrayOpNode;
+
+import jdk.vm.ci.amd64.AMD64;
+import jdk.vm.ci.code.InvalidInstalledCodeException;
+
+public class LoopVectorizationTest extends GraalCompilerTest {
+
+    @Before
+    public void checkAMD64() {
+        assumeTrue("skipping AMD64 specific test", getTarget().arch instanceof AMD64);
+    }
+
+    public static int[] intAddSnippet(int[] a, int[] b, int start, int limit) {
+        int[] c = new int[a.length];
+        for (int i = start; i < limit; i++) {
+            c[i] = a[i] + b[i];
+        }
+        return c;
+    }
+
+    public static long[] longXorSnippet(long[] a, long b, int start, int limit) {
+        long[] c = new long[a.length];
+        for (int i = start; i < limit; i++) {
+            c[i] = b ^ a[i];
+        }
+        return c;
+    }
+
+    public static float[] floatMulSnippet(float[] a, float[] b, int start, int limit) {
+        float[] c = new float[a.length];
+        for (int i = start; i < limit; i++) {
+            c[i] = a[i] * b[i];
+        }
+        return c;
+    }
+
+    public static double[] doubleDivSnippet(double[] a, double b, int start, int limit) {
+        double[] c = new double[a.length];
+        for (int i = start; i < limit; i++) {
+            c[i] = a[i] / b;
+        }
+        return c;
+    }
+
+    public static int[] intSubInPlaceSnippet(int[] a, int[] b) {
+        int[] c = a.clone();
+        for (int i = 0; i < c.length; i++) {
+            c[i] = c[i] - b[i];
+        }
+        return c;
+    }
+
+    public static void unusedLoadSnippet(int[] c, int[] a, int[] b, int[] z) {
+        for (int i = 0; i < c.length; i++) {
+            int unused = z[i];
+            c[i] = a[i] + b[i];
+        }
+    }
+
+    private static int[] ints(int length) {
+        int[] array = new int[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = i * 31 - 7;
+        }
+        return array;
+    }
+
+    private static long[] longs(int length) {
+        long[] array = new long[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = i * 0x123456789L;
+        }
+        return array;
+    }
+
+    private static float[] floats(int length) {
+        float[] array = new float[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = i * 1.5f - 3;
+        }
+        return array;
+    }
+
+    private static double[] doubles(int length) {
+        double[] array = new double[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = i * 0.25 + 1;
+        }
+        return array;
+    }
+
+    private void assertVectorized(String snippet) {
+        assertVectorizedCount(snippet, 1);
+    }
+
+    private void assertVectorizedCount(String snippet, int expected) {
+        StructuredGraph graph = parseEager(snippet, AllowAssumptions.NO);
+        new LoopVectorizationPhase(AMD64VectorizedArrayOp.VECTOR_SIZE, AMD64VectorizedArrayOp::isSupported).apply(graph, getDefaultHighTierContext());
+        assertDeepEquals(expected, graph.getNodes().filter(VectorizedArrayOpNode.class).count());
+    }
+
+    @Test
+    public void testIntAdd() {
+        assertVectorized("intAddSnippet");
+        test("intAddSnippet", ints(37), ints(37), 0, 37);
+        test("intAddSnippet", ints(37), ints(37), 3, 30);
+        test("intAddSnippet", ints(37), ints(20), 0, 37);
+        test("intAddSnippet", ints(37), ints(37), -1, 37);
+        test("intAddSnippet", ints(37), ints(37), 20, 10);
+        test("intAddSnippet", ints(37), null, 0, 37);
+    }
+
+    @Test
+    public void testLongXor() {
+        assertVectorized("longXorSnippet");
+        test("longXorSnippet", longs(19), 0x5555L, 0, 19);
+        test("longXorSnippet", longs(19), -1L, 1, 18);
+        test("longXorSnippet", longs(19), 7L, 0, 25);
+    }
+
+    @Test
+    public void testFloatMul() {
+        assertVectorized("floatMulSnippet");
+        test("floatMulSnippet", floats(41), floats(41), 0, 41);
+        test("floatMulSnippet", floats(41), floats(41), 5, 39);
+    }
+
+    @Test
+    public void testDoubleDiv() {
+        assertVectorized("doubleDivSnippet");
+        test("doubleDivSnippet", doubles(23), 3.0, 0, 23);
+        test("doubleDivSnippet", doubles(23), 0.0, 2, 23);
+    }
+
+    @Test
+    public void testIntSubInPlace() {
+        assertVectorized("intSubInPlaceSnippet");
+        test("intSubInPlaceSnippet", ints(33), ints(33));
+        test("intSubInPlaceSnippet", ints(33), ints(8));
+    }
+
+    @Test
+    public void testUnusedLoad() throws InvalidInstalledCodeException {
+        // the load from z must throw before any element of the result is written
+        assertVectorizedCount("unusedLoadSnippet", 0);
+        testUnusedLoad(ints(37));
+        testUnusedLoad(null);
+        testUnusedLoad(ints(5));
+    }
+
+    private void testUnusedLoad(int[] z) throws InvalidInstalledCodeException {
+        int[] expected = new int[37];
+        try {
+            unusedLoadSnippet(expected, ints(37), ints(37), z);
+        } catch (RuntimeException e) {
+            // the elements written before the exception are compared below
+        }
+        int[] actual = new int[37];
+        try {
+            getCode(getResolvedJavaMethod("unusedLoadSnippet")).executeVarargs(actual, ints(37), ints(37), z);
+        } catch (RuntimeException e) {
+            // the elements written before the exception are compared below
+        }
+        assertDeepEquals(expected, actual);
+    }
+}
@@ -41,6 +41,7 @@ import com.oracle.graal.asm.amd64.AMD64Assembler.OperandSize;
 import com.oracle.graal.asm.amd64.AMD64Assembler.SSEOp;
 import com.oracle.graal.compiler.common.LIRKind;
 import com.oracle.graal.compiler.common.calc.Condition;
+import com.oracle.graal.compiler.common.calc.VectorOperation;
 import com.oracle.graal.compiler.common.spi.ForeignCallLinkage;
 import com.oracle.graal.compiler.common.spi.LIRKindTool;
 import com.oracle.graal.debug.GraalError;
@@ -71,6 +72,7 @@ import com.oracle.graal.lir.amd64.AMD64Move.CompareAndSwapOp;
 import com.oracle.graal.lir.amd64.AMD64Move.MembarOp;
 import com.oracle.graal.lir.amd64.AMD64Move.StackLeaOp;
 import com.oracle.graal.lir.amd64.AMD64PauseOp;
+import com.oracle.graal.lir.amd64.AMD64VectorizedArrayOp;
 import com.oracle.graal.lir.amd64.AMD64ZapRegistersOp;
 import com.oracle.graal.lir.amd64.AMD64ZapStackOp;
 import com.oracle.graal.lir.gen.LIRGenerationResult;
@@ -419,6 +421,11 @@ public abstract class AMD64LIRGenerator extends LIRGenerator {
         return result;
     }
 
+    @Override
+    public void emitVectorizedArrayOp(VectorOperation op, JavaKind kind, Value result, Value x, Value y, boolean yIsArray, Value start, Value count) {
+        append(new AMD64VectorizedArrayOp(this, op, kind, asAllocatable(result), asAllocatable(x), asAllocatable(y), yIsArray, asAllocatable(start), asAllocatable(count)));
+    }
+
     @Override
     public void emitReturn(JavaKind kind, Value input) {
         AllocatableValue operand = Value.ILLEGAL;
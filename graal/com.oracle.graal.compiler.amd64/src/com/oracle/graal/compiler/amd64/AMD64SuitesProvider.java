@@ -22,11 +22,22 @@
  */
 package com.oracle.graal.compiler.amd64;
 
+import static com.oracle.graal.compiler.common.GraalOptions.OptLoopTransform;
+
+import java.util.ListIterator;
+
 import com.oracle.graal.java.DefaultSuitesProvider;
+import com.oracle.graal.lir.amd64.AMD64VectorizedArrayOp;
+import com.oracle.graal.lir.amd64.phases.AMD64PeepholeOptimizationPhase;
 import com.oracle.graal.lir.amd64.phases.StackMoveOptimizationPhase;
 import com.oracle.graal.lir.phases.LIRSuites;
+import com.oracle.graal.loop.phases.LoopVectorizationPhase;
 import com.oracle.graal.nodes.graphbuilderconf.GraphBuilderConfiguration.Plugins;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.common.LoweringPhase;
 import com.oracle.graal.phases.tiers.CompilerConfiguration;
+import com.oracle.graal.phases.tiers.HighTierContext;
+import com.oracle.graal.phases.tiers.Suites;
 
 public class AMD64SuitesProvider extends DefaultSuitesProvider {
 
@@ -34,6 +45,20 @@ public class AMD64SuitesProvider extends DefaultSuitesProvider {
         super(compilerConfiguration, plugins);
     }
 
+    @Override
+    public Suites createSuites() {
+        Suites suites = super.createSuites();
+        if (OptLoopTransform.getValue() && LoopVectorizationPhase.Options.LoopVectorization.getValue()) {
+            ListIterator<BasePhase<? super HighTierContext>> position = suites.getHighTier().findPhase(LoweringPhase.class);
+            if (position != null) {
+                // vectorize before the array accesses are lowered
+                position.previous();
+                position.add(new LoopVectorizationPhase(AMD64VectorizedArrayOp.VECTOR_SIZE, AMD64VectorizedArrayOp::isSupported));
+            }
+        }
+        return suites;
+    }
+
     @Override
     public LIRSuites createLIRSuites() {
         LIRSuites lirSuites = super.createLIRSuites();
@@ -41,6 +66,9 @@ public class AMD64SuitesProvider extends DefaultSuitesProvider {
             /* Note: this phase must be inserted <b>after</b> RedundantMoveElimination */
             lirSuites.getPostAllocationOptimizationStage().appendPhase(new StackMoveOptimizationPhase());
         }
+        if (AMD64PeepholeOptimizationPhase.Options.LIROptAMD64Peephole.getValue()) {
+            lirSuites.getPostAllocationOptimizationStage().appendPhase(new AMD64PeepholeOptimizationPhase());
+        }
         return lirSuites;
     }
 }
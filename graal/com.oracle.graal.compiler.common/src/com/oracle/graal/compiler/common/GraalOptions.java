@@ -106,6 +106,24 @@ public final class GraalOptions {
     @Option(help = "", type = OptionType.Debug)
     public static final OptionValue<Boolean> LoopUnswitch = new OptionValue<>(true);
 
+    @Option(help = "Unroll hot counted loops whose trip count is not a small constant.", type = OptionType.Debug)
+    public static final OptionValue<Boolean> PartialUnroll = new OptionValue<>(true);
+
+    @Option(help = "Number of copies of the loop body in a partially unrolled loop. Rounded down to a power of two.", type = OptionType.Expert)
+    public static final OptionValue<Integer> PartialUnrollFactor = new OptionValue<>(4);
+
+    @Option(help = "Replace null checks and range checks in counted loops by predicates that are checked before the loop.", type = OptionType.Debug)
+    public static final OptionValue<Boolean> LoopPredication = new OptionValue<>(true);
+
+    @Option(help = "Move invariant null checks and type checks out of loops so that the values they guard can be scheduled outside of the loop.", type = OptionType.Debug)
+    public static final OptionValue<Boolean> LoopInvariantCodeMotion = new OptionValue<>(true);
+
+    @Option(help = "Split long running counted loops into strips without safepoint polls instead of removing the polls altogether.", type = OptionType.Debug)
+    public static final OptionValue<Boolean> LoopStripMining = new OptionValue<>(true);
+
+    @Option(help = "Maximum number of iterations of a strip mined loop between two safepoint polls.", type = OptionType.Expert)
+    public static final OptionValue<Integer> LoopStripMiningIterations = new OptionValue<>(1000);
+
     @Option(help = "", type = OptionType.Expert)
     public static final OptionValue<Float> MinimumPeelProbability = new OptionValue<>(0.35f);
 
@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.common.alloc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+
+/**
+ * Computes a code emission order by merging chains of blocks along the most frequent control flow
+ * edges (bottom-up positioning as described by Pettis and Hansen).
+ *
+ * Initially, every block forms a chain on its own. Edges are visited in the order of decreasing
+ * frequency and two chains are concatenated if the edge connects the tail of one chain with the
+ * head of another one, turning the edge into a fall-through. Afterwards, the chains are laid out
+ * starting with the chain of the start block, always continuing with the chain that receives the
+ * most frequent control flow from the chains placed so far. Chains of cold blocks (exception
+ * handlers and rarely executed code such as deoptimization paths) are never merged with hot chains
+ * and are placed at the end of the method.
+ *
+ * The frequency of an edge is derived from the block probabilities. This is exact since the Graal
+ * control flow graph has no critical edges: either the source block has a single successor or the
+ * target block has a single predecessor.
+ */
+final class ChainMergingBlockOrder<T extends AbstractBlockBase<T>> {
+
+    /**
+     * Blocks executed less often than this fraction of the method invocations are considered cold.
+     */
+    private static final double COLD_PROBABILITY = 1.0E-3;
+
+    private static final class Chain<T> {
+        private final ArrayList<T> blocks = new ArrayList<>(4);
+        private final boolean cold;
+        /**
+         * Frequency of the edges from already placed chains into this chain.
+         */
+        private double incomingFrequency;
+        private boolean placed;
+
+        Chain(T block, boolean cold) {
+            this.blocks.add(block);
+            this.cold = cold;
+        }
+
+        T head() {
+            return blocks.get(0);
+        }
+
+        T tail() {
+            return blocks.get(blocks.size() - 1);
+        }
+    }
+
+    private static final class Edge<T extends AbstractBlockBase<T>> {
+        private final T source;
+        private final T target;
+        private final double frequency;
+
+        Edge(T source, T target, double frequency) {
+            this.source = source;
+            this.target = target;
+            this.frequency = frequency;
+        }
+    }
+
+    /**
+     * Queue entry for placing chains. Entries become stale if the incoming frequency of the chain
+     * increased after they have been added.
+     */
+    private static final class Candidate<T> {
+        private final Chain<T> chain;
+        private final double frequency;
+
+        Candidate(Chain<T> chain) {
+            this.chain = chain;
+            this.frequency = chain.incomingFrequency;
+        }
+    }
+
+    private final T startBlock;
+    private final List<T> blocks;
+    private final ArrayList<Chain<T>> chains;
+    private final double coldThreshold;
+
+    ChainMergingBlockOrder(int blockCount, T startBlock) {
+        this.startBlock = startBlock;
+        this.blocks = collectBlocks(blockCount, startBlock);
+        this.chains = new ArrayList<>(blockCount);
+        this.coldThreshold = startBlock.probability() * COLD_PROBABILITY;
+        for (int i = 0; i < blockCount; i++) {
+            chains.add(null);
+        }
+        for (T block : blocks) {
+            chains.set(block.getId(), new Chain<>(block, isCold(block)));
+        }
+    }
+
+    private static <T extends AbstractBlockBase<T>> List<T> collectBlocks(int blockCount, T startBlock) {
+        List<T> result = new ArrayList<>(blockCount);
+        boolean[] visited = new boolean[blockCount];
+        ArrayDeque<T> worklist = new ArrayDeque<>();
+        worklist.add(startBlock);
+        visited[startBlock.getId()] = true;
+        while (!worklist.isEmpty()) {
+            T block = worklist.poll();
+            result.add(block);
+            for (T successor : block.getSuccessors()) {
+                if (!visited[successor.getId()]) {
+                    visited[successor.getId()] = true;
+                    worklist.add(successor);
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isCold(T block) {
+        return block != startBlock && (block.isExceptionEntry() || block.probability() < coldThreshold);
+    }
+
+    /**
+     * Returns the execution frequency of the control flow edge from {@code source} to
+     * {@code target}, relative to the method invocations.
+     */
+    static <T extends AbstractBlockBase<T>> double edgeFrequency(T source, T target) {
+        if (source.getSuccessorCount() == 1) {
+            return source.probability();
+        }
+        if (target.getPredecessorCount() == 1) {
+            return target.probability();
+        }
+        return Math.min(source.probability(), target.probability());
+    }
+
+    List<T> computeOrder() {
+        mergeChains();
+        List<T> order = layoutChains();
+        alignBackwardBranchTargets(order);
+        return order;
+    }
+
+    private void mergeChains() {
+        List<Edge<T>> edges = new ArrayList<>();
+        for (T block : blocks) {
+            for (T successor : block.getSuccessors()) {
+                if (successor != startBlock && successor != block) {
+                    edges.add(new Edge<>(block, successor, edgeFrequency(block, successor)));
+                }
+            }
+        }
+        edges.sort(ChainMergingBlockOrder::compareEdges);
+        for (Edge<T> edge : edges) {
+            Chain<T> sourceChain = chains.get(edge.source.getId());
+            Chain<T> targetChain = chains.get(edge.target.getId());
+            if (sourceChain != targetChain && sourceChain.tail() == edge.source && targetChain.head() == edge.target && sourceChain.cold == targetChain.cold) {
+                for (T block : targetChain.blocks) {
+                    sourceChain.blocks.add(block);
+                    chains.set(block.getId(), sourceChain);
+                }
+            }
+        }
+    }
+
+    /**
+     * Orders edges by decreasing frequency. Among edges of the same frequency, loop back edges come
+     * first so that a loop whose body falls through into the header is rotated, which makes the
+     * backward jump a conditional jump. The remaining ties are broken by block ids to keep the
+     * order deterministic.
+     */
+    private static <T extends AbstractBlockBase<T>> int compareEdges(Edge<T> a, Edge<T> b) {
+        int result = Double.compare(b.frequency, a.frequency);
+        if (result != 0) {
+            return result;
+        }
+        result = Boolean.compare(isBackEdge(b), isBackEdge(a));
+        if (result != 0) {
+            return result;
+        }
+        result = Integer.compare(a.source.getId(), b.source.getId());
+        if (result != 0) {
+            return result;
+        }
+        return Integer.compare(a.target.getId(), b.target.getId());
+    }
+
+    private static <T extends AbstractBlockBase<T>> boolean isBackEdge(Edge<T> edge) {
+        return edge.target.isLoopHeader() && edge.source.isLoopEnd() && edge.source.getLoop() != null && edge.source.getLoop().getHeader() == edge.target;
+    }
+
+    private List<T> layoutChains() {
+        List<T> order = new ArrayList<>(blocks.size());
+        Comparator<Candidate<T>> candidateOrder = (a, b) -> {
+            int result = Double.compare(b.frequency, a.frequency);
+            return result != 0 ? result : Integer.compare(a.chain.head().getId(), b.chain.head().getId());
+        };
+        PriorityQueue<Candidate<T>> hot = new PriorityQueue<>(candidateOrder);
+        PriorityQueue<Candidate<T>> cold = new PriorityQueue<>(candidateOrder);
+        hot.add(new Candidate<>(chains.get(startBlock.getId())));
+        while (!hot.isEmpty() || !cold.isEmpty()) {
+            Candidate<T> next = hot.isEmpty() ? cold.poll() : hot.poll();
+            Chain<T> chain = next.chain;
+            if (chain.placed || next.frequency != chain.incomingFrequency) {
+                continue;
+            }
+            chain.placed = true;
+            order.addAll(chain.blocks);
+            for (T block : chain.blocks) {
+                for (T successor : block.getSuccessors()) {
+                    Chain<T> successorChain = chains.get(successor.getId());
+                    if (!successorChain.placed) {
+                        successorChain.incomingFrequency += edgeFrequency(block, successor);
+                        (successorChain.cold ? cold : hot).add(new Candidate<>(successorChain));
+                    }
+                }
+            }
+        }
+        assert order.size() == blocks.size() : "not all blocks placed";
+        assert order.get(0) == startBlock : "start block must come first";
+        return order;
+    }
+
+    /**
+     * Marks the targets of loop back edges as aligned. If the loop header directly follows one of
+     * its loop ends, this back edge is a fall-through and the backward jump is the conditional jump
+     * from the header to its in-loop successor instead.
+     */
+    private void alignBackwardBranchTargets(List<T> order) {
+        int[] position = new int[chains.size()];
+        for (int i = 0; i < order.size(); i++) {
+            position[order.get(i).getId()] = i;
+        }
+        for (int i = 0; i < order.size(); i++) {
+            T header = order.get(i);
+            if (!header.isLoopHeader()) {
+                continue;
+            }
+            T previous = i > 0 ? order.get(i - 1) : null;
+            if (previous != null && previous.isLoopEnd() && previous.getLoop() == header.getLoop() && previous != header) {
+                for (T successor : header.getSuccessors()) {
+                    if (position[successor.getId()] < i && successor.getLoopDepth() >= header.getLoopDepth()) {
+                        successor.setAlign(true);
+                    }
+                }
+            } else {
+                header.setAlign(true);
+            }
+        }
+    }
+
+    /**
+     * Returns the frequency of control flow edges that are not fall-throughs in {@code order},
+     * i.e., the expected number of taken jumps per method invocation.
+     */
+    static <T extends AbstractBlockBase<T>> double takenJumpFrequency(List<T> order) {
+        double result = 0;
+        for (int i = 0; i < order.size(); i++) {
+            T next = i + 1 < order.size() ? order.get(i + 1) : null;
+            for (T successor : order.get(i).getSuccessors()) {
+                if (successor != next) {
+                    result += edgeFrequency(order.get(i), successor);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of control flow edges executed at least as often as the method is invoked
+     * that are not fall-throughs in {@code order}.
+     */
+    static <T extends AbstractBlockBase<T>> int hotTakenJumps(List<T> order) {
+        int result = 0;
+        double hotFrequency = order.get(0).probability();
+        for (int i = 0; i < order.size(); i++) {
+            T next = i + 1 < order.size() ? order.get(i + 1) : null;
+            for (T successor : order.get(i).getSuccessors()) {
+                if (successor != next && edgeFrequency(order.get(i), successor) >= hotFrequency) {
+                    result++;
+                }
+            }
+        }
+        return result;
+    }
+}
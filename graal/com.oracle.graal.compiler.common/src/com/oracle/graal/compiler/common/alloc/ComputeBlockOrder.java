@@ -31,6 +31,11 @@ import java.util.PriorityQueue;
 
 import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
 import com.oracle.graal.compiler.common.cfg.Loop;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugCounter;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
 
 /**
  * Computes an ordering of the block that can be used by the linear scan register allocator and the
@@ -51,9 +56,23 @@ import com.oracle.graal.compiler.common.cfg.Loop;
  * together in the schedule thus decreasing the probability for inserted phi moves. Also, the
  * algorithm sets the linear scan order number of the block that corresponds to its index in the
  * linear scan order.
+ *
+ * Unless disabled with {@link Options#ChainMergingBlockOrder}, the code emission order is computed
+ * by {@link ChainMergingBlockOrder} instead, which considers all edges ordered by frequency rather
+ * than following one path at a time.
  */
 public final class ComputeBlockOrder {
 
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Compute the code emission order by merging chains of blocks along the most frequent control flow edges.", type = OptionType.Debug)
+        public static final OptionValue<Boolean> ChainMergingBlockOrder = new OptionValue<>(true);
+        // @formatter:on
+    }
+
+    private static final DebugCounter hotTakenJumpsSaved = Debug.counter("ChainMergingBlockOrder[hotTakenJumpsSaved]");
+    private static final DebugCounter hotTakenJumpsAdded = Debug.counter("ChainMergingBlockOrder[hotTakenJumpsAdded]");
+
     /**
      * The initial capacities of the worklists used for iteratively finding the block order.
      */
@@ -86,12 +105,46 @@ public final class ComputeBlockOrder {
      * @return sorted list of blocks
      */
     public static <T extends AbstractBlockBase<T>> AbstractBlockBase<?>[] computeCodeEmittingOrder(int blockCount, T startBlock) {
+        List<T> order;
+        if (Options.ChainMergingBlockOrder.getValue()) {
+            order = computeChainMergingCodeEmittingOrder(blockCount, startBlock);
+        } else {
+            order = computeGreedyCodeEmittingOrder(blockCount, startBlock);
+        }
+        assert checkOrder(order, blockCount);
+        return order.toArray(new AbstractBlockBase<?>[0]);
+    }
+
+    private static <T extends AbstractBlockBase<T>> List<T> computeGreedyCodeEmittingOrder(int blockCount, T startBlock) {
         List<T> order = new ArrayList<>();
         BitSet visitedBlocks = new BitSet(blockCount);
         PriorityQueue<T> worklist = initializeWorklist(startBlock, visitedBlocks);
         computeCodeEmittingOrder(order, worklist, visitedBlocks);
-        assert checkOrder(order, blockCount);
-        return order.toArray(new AbstractBlockBase<?>[0]);
+        return order;
+    }
+
+    private static <T extends AbstractBlockBase<T>> List<T> computeChainMergingCodeEmittingOrder(int blockCount, T startBlock) {
+        List<T> greedyOrder = null;
+        if (hotTakenJumpsSaved.isEnabled() || Debug.isLogEnabled()) {
+            // The greedy order is only computed for comparison, so drop the alignment it requested.
+            greedyOrder = computeGreedyCodeEmittingOrder(blockCount, startBlock);
+            for (T block : greedyOrder) {
+                block.setAlign(false);
+            }
+        }
+        List<T> order = new ChainMergingBlockOrder<>(blockCount, startBlock).computeOrder();
+        if (greedyOrder != null) {
+            int greedyHotTakenJumps = ChainMergingBlockOrder.hotTakenJumps(greedyOrder);
+            int hotTakenJumps = ChainMergingBlockOrder.hotTakenJumps(order);
+            if (hotTakenJumps < greedyHotTakenJumps) {
+                hotTakenJumpsSaved.add(greedyHotTakenJumps - hotTakenJumps);
+            } else {
+                hotTakenJumpsAdded.add(hotTakenJumps - greedyHotTakenJumps);
+            }
+            Debug.log("Chain merging block order: %d hot taken jumps (greedy: %d), taken jump frequency %f (greedy: %f)", hotTakenJumps, greedyHotTakenJumps,
+                            ChainMergingBlockOrder.takenJumpFrequency(order), ChainMergingBlockOrder.takenJumpFrequency(greedyOrder));
+        }
+        return order;
     }
 
     /**
@@ -24,8 +24,8 @@ package com.oracle.graal.compiler.common.alloc;
 
 import static com.oracle.graal.compiler.common.GraalOptions.RegisterPressure;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import jdk.vm.ci.code.Register;
 import jdk.vm.ci.code.RegisterArray;
@@ -95,7 +95,7 @@ public class RegisterAllocationConfig {
     }
 
     protected final RegisterConfig registerConfig;
-    private final Map<PlatformKind.Key, AllocatableRegisters> categorized = new HashMap<>();
+    private final Map<PlatformKind.Key, AllocatableRegisters> categorized = new ConcurrentHashMap<>();
     private RegisterArray cachedRegisters;
 
     public RegisterAllocationConfig(RegisterConfig registerConfig) {
@@ -109,13 +109,13 @@ public class RegisterAllocationConfig {
      */
     public AllocatableRegisters getAllocatableRegisters(PlatformKind kind) {
         PlatformKind.Key key = kind.getKey();
-        if (categorized.containsKey(key)) {
-            AllocatableRegisters val = categorized.get(key);
+        AllocatableRegisters val = categorized.get(key);
+        if (val != null) {
             return val;
         }
         AllocatableRegisters ret = createAllocatableRegisters(registerConfig.filterAllocatableRegisters(kind, getAllocatableRegisters()));
-        categorized.put(key, ret);
-        return ret;
+        val = categorized.putIfAbsent(key, ret);
+        return val != null ? val : ret;
     }
 
     protected AllocatableRegisters createAllocatableRegisters(RegisterArray registers) {
@@ -44,6 +44,7 @@ import com.oracle.graal.asm.sparc.SPARCAssembler.Op3s;
 import com.oracle.graal.asm.sparc.SPARCAssembler.Opfs;
 import com.oracle.graal.compiler.common.LIRKind;
 import com.oracle.graal.compiler.common.calc.Condition;
+import com.oracle.graal.compiler.common.calc.VectorOperation;
 import com.oracle.graal.compiler.common.spi.ForeignCallLinkage;
 import com.oracle.graal.compiler.common.spi.LIRKindTool;
 import com.oracle.graal.debug.GraalError;
@@ -407,6 +408,11 @@ public abstract class SPARCLIRGenerator extends LIRGenerator {
         return result;
     }
 
+    @Override
+    public void emitVectorizedArrayOp(VectorOperation op, JavaKind kind, Value result, Value x, Value y, boolean yIsArray, Value start, Value count) {
+        throw GraalError.unimplemented("vectorized array operations are not supported on SPARC");
+    }
+
     @Override
     public void emitMembar(int barriers) {
         int necessaryBarriers = target().arch.requiredBarriers(barriers);
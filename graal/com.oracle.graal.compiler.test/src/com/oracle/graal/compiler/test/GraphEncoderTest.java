@@ -30,9 +30,14 @@ import java.util.Map;
 
 import jdk.vm.ci.meta.ResolvedJavaMethod;
 
+import org.junit.Assert;
 import org.junit.Test;
 
+import com.oracle.graal.compiler.common.util.TypeReader;
+import com.oracle.graal.compiler.common.util.UnsafeArrayTypeReader;
+import com.oracle.graal.debug.GraalError;
 import com.oracle.graal.nodes.EncodedGraph;
+import com.oracle.graal.nodes.GraphDecoder;
 import com.oracle.graal.nodes.GraphEncoder;
 import com.oracle.graal.nodes.StructuredGraph;
 import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
@@ -82,4 +87,67 @@ public class GraphEncoderTest extends GraalCompilerTest {
             GraphEncoder.verifyEncoding(originalGraph, encodedGraph, getTarget().arch);
         }
     }
+
+    public static int addSnippet(int a, int b) {
+        return a + b;
+    }
+
+    /**
+     * Reads the entry size from the header of the table of contents of an encoded graph.
+     */
+    private int entrySize(EncodedGraph encodedGraph, StructuredGraph originalGraph) {
+        TypeReader reader = UnsafeArrayTypeReader.create(encodedGraph.getEncoding(), encodedGraph.getStartOffset(), getTarget().arch.supportsUnalignedMemoryAccess());
+        Assert.assertEquals(GraphEncoder.FORMAT_VERSION, reader.getUVInt());
+        Assert.assertEquals(originalGraph.getNodeCount() + 1, reader.getUVInt());
+        return reader.getU1();
+    }
+
+    /**
+     * Encodes a small graph repeatedly with one encoder until the encoding is larger than 64K, so
+     * that the table of contents of the later copies needs 2 and then 4 byte entries.
+     */
+    @Test
+    public void testEntrySizes() {
+        StructuredGraph graph = parseEager("addSnippet", AllowAssumptions.YES);
+        GraphEncoder encoder = new GraphEncoder(getTarget().arch);
+        encoder.prepare(graph);
+        encoder.finishPrepare();
+        List<Long> startOffsets = new ArrayList<>();
+        do {
+            startOffsets.add(encoder.encode(graph));
+        } while (startOffsets.get(startOffsets.size() - 1) <= 0xFFFF);
+
+        boolean[] decoded = new boolean[Integer.BYTES + 1];
+        for (long startOffset : startOffsets) {
+            EncodedGraph encodedGraph = new EncodedGraph(encoder.getEncoding(), startOffset, encoder.getObjects(), encoder.getNodeClasses(), graph.getAssumptions(), graph.getMethods());
+            int expectedSize = startOffset <= 0xFF ? Byte.BYTES : startOffset <= 0xFFFF ? Short.BYTES : Integer.BYTES;
+            int size = entrySize(encodedGraph, graph);
+            Assert.assertEquals("entry size at offset " + startOffset, expectedSize, size);
+            if (!decoded[size]) {
+                GraphEncoder.verifyEncoding(graph, encodedGraph, getTarget().arch);
+                decoded[size] = true;
+            }
+        }
+        Assert.assertTrue(decoded[Byte.BYTES] && decoded[Short.BYTES] && decoded[Integer.BYTES]);
+    }
+
+    @Test
+    public void testFormatVersion() {
+        StructuredGraph graph = parseEager("addSnippet", AllowAssumptions.YES);
+        EncodedGraph encodedGraph = GraphEncoder.encodeSingleGraph(graph, getTarget().arch);
+        GraphEncoder.verifyEncoding(graph, encodedGraph, getTarget().arch);
+
+        // the version is the first value of the table of contents and fits into a single byte
+        byte[] encoding = encodedGraph.getEncoding().clone();
+        Assert.assertEquals(GraphEncoder.FORMAT_VERSION, encoding[(int) encodedGraph.getStartOffset()]);
+        encoding[(int) encodedGraph.getStartOffset()] = GraphEncoder.FORMAT_VERSION + 1;
+        EncodedGraph wrongVersion = new EncodedGraph(encoding, encodedGraph.getStartOffset(), encodedGraph.getObjects(), encodedGraph.getNodeClasses(), encodedGraph.getAssumptions(),
+                        encodedGraph.getInlinedMethods());
+        try {
+            new GraphDecoder(getTarget().arch).decode(new StructuredGraph(graph.method(), AllowAssumptions.YES), wrongVersion);
+            Assert.fail("expected the decoder to reject format version " + (GraphEncoder.FORMAT_VERSION + 1));
+        } catch (GraalError e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("format version"));
+        }
+    }
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import java.util.ListIterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.loop.phases.LoopInvariantCodeMotionPhase;
+import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.GuardNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.nodes.calc.IsNullNode;
+import com.oracle.graal.nodes.cfg.Block;
+import com.oracle.graal.nodes.cfg.ControlFlowGraph;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.OptimisticOptimizations;
+import com.oracle.graal.phases.PhaseSuite;
+import com.oracle.graal.phases.tiers.MidTierContext;
+import com.oracle.graal.phases.tiers.Suites;
+
+public class LoopInvariantCodeMotionTest extends GraalCompilerTest {
+
+    static class Holder {
+        int value;
+        Object object;
+
+        Holder(int value, Object object) {
+            this.value = value;
+            this.object = object;
+        }
+    }
+
+    public static int fieldSnippet(Holder holder, int n) {
+        int sum = 0;
+        int i = 0;
+        while (sum < n) {
+            sum += holder.value + i++;
+        }
+        return sum;
+    }
+
+    public static int arrayLengthSnippet(int[] a, int[] b) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b.length;
+        }
+        return sum;
+    }
+
+    public static int typeCheckSnippet(Holder holder, int n) {
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += ((String) holder.object).length() + i;
+        }
+        return sum;
+    }
+
+    public static int nestedSnippet(Holder holder, int n, int m) {
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            int j = 0;
+            while (j < m) {
+                sum += holder.value;
+                j += 1 + (sum & 1);
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    public void testField() {
+        test("fieldSnippet", new Holder(3, null), 100);
+        test("fieldSnippet", new Holder(3, null), 0);
+        test("fieldSnippet", null, 0);
+        test("fieldSnippet", null, 10);
+    }
+
+    /**
+     * Same as {@link #fieldSnippet} but never executed with a {@code null} holder, so that the
+     * profile does not prevent the speculative hoisting of the null check.
+     */
+    public static int hoistedFieldSnippet(Holder holder, int n) {
+        int sum = 0;
+        int i = 0;
+        while (sum < n) {
+            sum += holder.value + i++;
+        }
+        return sum;
+    }
+
+    @Test
+    public void testFieldGuardHoisted() {
+        assertNullCheckHoisted("hoistedFieldSnippet");
+        test("hoistedFieldSnippet", new Holder(3, null), 100);
+    }
+
+    /**
+     * Runs the mid tier up to and including {@link LoopInvariantCodeMotionPhase} and checks that
+     * the null check of the {@code holder} parameter is no longer anchored inside a loop.
+     */
+    private void assertNullCheckHoisted(String snippet) {
+        StructuredGraph graph = parseEager(snippet, AllowAssumptions.YES);
+        Suites suites = createSuites();
+        suites.getHighTier().apply(graph, getDefaultHighTierContext());
+
+        PhaseSuite<MidTierContext> midTier = suites.getMidTier();
+        ListIterator<BasePhase<? super MidTierContext>> position = midTier.findPhase(LoopInvariantCodeMotionPhase.class);
+        Assert.assertTrue(position != null);
+        while (position.hasNext()) {
+            position.next();
+            position.remove();
+        }
+        midTier.apply(graph, new MidTierContext(getProviders(), getTargetProvider(), OptimisticOptimizations.ALL, graph.getProfilingInfo()));
+
+        ControlFlowGraph cfg = ControlFlowGraph.compute(graph, true, true, true, false);
+        int nullChecks = 0;
+        for (GuardNode guard : graph.getNodes().filter(GuardNode.class)) {
+            if (guard.getCondition() instanceof IsNullNode && ((IsNullNode) guard.getCondition()).getValue() == graph.getParameter(0)) {
+                Assert.assertTrue(guard.getAnchor().asNode() instanceof FixedNode);
+                Block anchorBlock = cfg.blockFor(guard.getAnchor().asNode());
+                Assert.assertTrue(guard + " is still anchored in " + anchorBlock.getLoop(), anchorBlock.getLoop() == null);
+                nullChecks++;
+            }
+        }
+        Assert.assertTrue(nullChecks > 0);
+    }
+
+    @Test
+    public void testArrayLength() {
+        test("arrayLengthSnippet", new int[]{1, 2, 3}, new int[5]);
+        test("arrayLengthSnippet", new int[0], null);
+        test("arrayLengthSnippet", new int[]{1, 2, 3}, null);
+    }
+
+    @Test
+    public void testTypeCheck() {
+        test("typeCheckSnippet", new Holder(0, "abc"), 10);
+        test("typeCheckSnippet", new Holder(0, 42), 0);
+        test("typeCheckSnippet", new Holder(0, 42), 10);
+        test("typeCheckSnippet", new Holder(0, null), 10);
+    }
+
+    public static int hoistedNestedSnippet(Holder holder, int n, int m) {
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            int j = 0;
+            while (j < m) {
+                sum += holder.value;
+                j += 1 + (sum & 1);
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    public void testNestedGuardHoisted() {
+        assertNullCheckHoisted("hoistedNestedSnippet");
+        test("hoistedNestedSnippet", new Holder(1, null), 10, 10);
+    }
+
+    @Test
+    public void testNested() {
+        test("nestedSnippet", new Holder(1, null), 10, 10);
+        test("nestedSnippet", new Holder(2, null), 10, 0);
+        test("nestedSnippet", null, 0, 10);
+        test("nestedSnippet", null, 10, 0);
+        test("nestedSnippet", null, 10, 10);
+    }
+}
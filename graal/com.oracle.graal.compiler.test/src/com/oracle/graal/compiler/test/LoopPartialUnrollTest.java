@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import org.junit.Test;
+
+import com.oracle.graal.loop.DefaultLoopPolicies;
+import com.oracle.graal.loop.LoopsData;
+import com.oracle.graal.loop.phases.LoopPartialUnrollPhase;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+import com.oracle.graal.phases.common.CanonicalizerPhase;
+import com.oracle.graal.phases.common.RemoveValueProxyPhase;
+import com.oracle.graal.phases.tiers.PhaseContext;
+
+public class LoopPartialUnrollTest extends GraalCompilerTest {
+
+    public static int sumUpSnippet(int start, int limit) {
+        int sum = 0;
+        for (int i = start; i < limit; i++) {
+            sum += i * 3 + 1;
+        }
+        return sum;
+    }
+
+    public static int sumInclusiveSnippet(int start, int limit) {
+        int sum = 0;
+        // bound the limit so that unrolling does not need to clamp it
+        int max = limit & 0xffff;
+        for (int i = start; i <= max; i += 2) {
+            sum = sum * 31 + i;
+        }
+        return sum;
+    }
+
+    public static long sumDownSnippet(int start, int limit) {
+        long sum = 0;
+        for (int i = start; i > limit; i--) {
+            sum += (long) i * i;
+        }
+        return sum;
+    }
+
+    public static int arraySnippet(int[] a) {
+        int result = 0;
+        for (int i = 0; i < a.length; i++) {
+            result ^= a[i] + i;
+        }
+        return result;
+    }
+
+    @SuppressWarnings("try")
+    private void testPartialUnroll(String snippet, Object... args) {
+        StructuredGraph graph = parseEager(snippet, AllowAssumptions.NO);
+        new RemoveValueProxyPhase().apply(graph);
+        int loops = new LoopsData(graph).loops().size();
+        try (OverrideScope s = OptionValue.override(DefaultLoopPolicies.PartialUnrollMinFrequency, 0.0)) {
+            new LoopPartialUnrollPhase(new CanonicalizerPhase(), new DefaultLoopPolicies()).apply(graph, new PhaseContext(getProviders()));
+            assertDeepEquals(2 * loops, new LoopsData(graph).loops().size());
+            test(snippet, args);
+        }
+    }
+
+    @Test
+    public void testSumUp() {
+        testPartialUnroll("sumUpSnippet", 0, 100);
+        test("sumUpSnippet", 5, 7);
+        test("sumUpSnippet", 10, 0);
+        test("sumUpSnippet", Integer.MAX_VALUE - 5, Integer.MAX_VALUE);
+        test("sumUpSnippet", Integer.MIN_VALUE, Integer.MIN_VALUE + 3);
+    }
+
+    @Test
+    public void testSumInclusive() {
+        testPartialUnroll("sumInclusiveSnippet", 0, 100);
+        test("sumInclusiveSnippet", 1, 6);
+        test("sumInclusiveSnippet", 3, 3);
+        test("sumInclusiveSnippet", -20, 0xffff);
+    }
+
+    @Test
+    public void testSumDown() {
+        testPartialUnroll("sumDownSnippet", 100, 0);
+        test("sumDownSnippet", 3, 0);
+        test("sumDownSnippet", 0, 3);
+        test("sumDownSnippet", Integer.MIN_VALUE + 5, Integer.MIN_VALUE);
+    }
+
+    @Test
+    public void testArray() {
+        int[] a = new int[37];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = i * 17 - 5;
+        }
+        testPartialUnroll("arraySnippet", a);
+        test("arraySnippet", new int[3]);
+        test("arraySnippet", new int[0]);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import java.util.ListIterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.loop.phases.LoopPredicationPhase;
+import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.GuardNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.nodes.cfg.Block;
+import com.oracle.graal.nodes.cfg.ControlFlowGraph;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.OptimisticOptimizations;
+import com.oracle.graal.phases.PhaseSuite;
+import com.oracle.graal.phases.tiers.MidTierContext;
+import com.oracle.graal.phases.tiers.Suites;
+
+import jdk.vm.ci.meta.DeoptimizationReason;
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+public class LoopPredicationTest extends GraalCompilerTest {
+
+    static class Holder {
+        int value;
+
+        Holder(int value) {
+            this.value = value;
+        }
+    }
+
+    public static int invariantReadSnippet(Holder h, int n) {
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += h.value;
+        }
+        return sum;
+    }
+
+    public static int sumSnippet(int[] a, int start, int limit) {
+        int sum = 0;
+        for (int i = start; i < limit; i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    public static int sumInclusiveSnippet(int[] a, int start, int limit) {
+        int sum = 0;
+        for (int i = start; i <= limit; i += 3) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    public static int sumDownSnippet(int[] a, int start, int limit) {
+        int sum = 0;
+        for (int i = start; i > limit; i--) {
+            sum += a[i - 1];
+        }
+        return sum;
+    }
+
+    public static int copySnippet(int[] a, int[] b, int offset) {
+        int n = 0;
+        for (int i = 0; i < a.length; i++) {
+            b[i + offset] = a[i];
+            n++;
+        }
+        return n;
+    }
+
+    public static int reverseIndexSnippet(int[] a, int limit) {
+        int sum = 0;
+        for (int i = 0; i < limit; i++) {
+            sum = sum * 31 + a[10 - i];
+        }
+        return sum;
+    }
+
+    private static int[] ints(int length) {
+        int[] array = new int[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = i * 7 - 3;
+        }
+        return array;
+    }
+
+    /**
+     * Runs the mid tier up to and including {@link LoopPredicationPhase} and checks that no null
+     * check or bounds check guard is anchored inside a loop anymore and that the range checks were
+     * replaced by predicates.
+     */
+    private void assertPredicated(String snippet) {
+        ResolvedJavaMethod method = getResolvedJavaMethod(snippet);
+        // the other tests run the snippets with arguments that throw exceptions
+        method.reprofile();
+        StructuredGraph graph = parseEager(method, AllowAssumptions.YES);
+        Suites suites = createSuites();
+        suites.getHighTier().apply(graph, getDefaultHighTierContext());
+
+        PhaseSuite<MidTierContext> midTier = suites.getMidTier();
+        ListIterator<BasePhase<? super MidTierContext>> position = midTier.findPhase(LoopPredicationPhase.class);
+        Assert.assertTrue(position != null);
+        while (position.hasNext()) {
+            position.next();
+            position.remove();
+        }
+        midTier.apply(graph, new MidTierContext(getProviders(), getTargetProvider(), OptimisticOptimizations.ALL, graph.getProfilingInfo()));
+
+        ControlFlowGraph cfg = ControlFlowGraph.compute(graph, true, true, true, false);
+        int predicates = 0;
+        for (GuardNode guard : graph.getNodes().filter(GuardNode.class)) {
+            DeoptimizationReason reason = guard.getReason();
+            if (reason == DeoptimizationReason.NullCheckException || reason == DeoptimizationReason.BoundsCheckException) {
+                Assert.assertTrue(guard.getAnchor().asNode() instanceof FixedNode);
+                Block anchorBlock = cfg.blockFor(guard.getAnchor().asNode());
+                Assert.assertTrue(guard + " is still anchored in " + anchorBlock.getLoop(), anchorBlock.getLoop() == null);
+            } else if (reason == DeoptimizationReason.LoopLimitCheck) {
+                predicates++;
+            }
+        }
+        Assert.assertTrue("no range check was replaced by a predicate", predicates > 0);
+    }
+
+    @Test
+    public void testSumPredicated() {
+        assertPredicated("sumSnippet");
+    }
+
+    @Test
+    public void testSumDownPredicated() {
+        assertPredicated("sumDownSnippet");
+    }
+
+    @Test
+    public void testCopyPredicated() {
+        assertPredicated("copySnippet");
+    }
+
+    @Test
+    public void testInvariantRead() {
+        test("invariantReadSnippet", null, 0);
+        test("invariantReadSnippet", null, -5);
+        test("invariantReadSnippet", new Holder(3), 10);
+        test("invariantReadSnippet", null, 10);
+    }
+
+    @Test
+    public void testSum() {
+        test("sumSnippet", ints(20), 0, 20);
+        test("sumSnippet", ints(20), 5, 10);
+        test("sumSnippet", ints(20), 0, 21);
+        test("sumSnippet", ints(20), -1, 20);
+        test("sumSnippet", ints(20), 10, 5);
+        test("sumSnippet", null, 0, 0);
+        test("sumSnippet", null, 0, 1);
+        test("sumSnippet", ints(20), Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testSumInclusive() {
+        test("sumInclusiveSnippet", ints(20), 0, 19);
+        test("sumInclusiveSnippet", ints(20), 1, 20);
+        test("sumInclusiveSnippet", ints(20), 2, 20);
+        test("sumInclusiveSnippet", ints(20), 4, 2);
+        test("sumInclusiveSnippet", ints(20), 0, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testSumDown() {
+        test("sumDownSnippet", ints(20), 20, 0);
+        test("sumDownSnippet", ints(20), 21, 0);
+        test("sumDownSnippet", ints(20), 20, -1);
+        test("sumDownSnippet", ints(20), 0, 20);
+    }
+
+    @Test
+    public void testCopy() {
+        test("copySnippet", ints(10), new int[12], 2);
+        test("copySnippet", ints(10), new int[12], 3);
+        test("copySnippet", ints(10), new int[12], -1);
+        test("copySnippet", ints(0), null, 0);
+        test("copySnippet", ints(10), new int[12], Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testReverseIndex() {
+        test("reverseIndexSnippet", ints(11), 11);
+        test("reverseIndexSnippet", ints(11), 12);
+        test("reverseIndexSnippet", ints(5), 3);
+    }
+}
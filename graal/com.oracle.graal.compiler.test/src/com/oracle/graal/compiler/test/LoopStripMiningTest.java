@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import static com.oracle.graal.compiler.common.GraalOptions.LoopStripMiningIterations;
+
+import java.util.ListIterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.compiler.common.cfg.Loop;
+import com.oracle.graal.loop.phases.LoopSafepointEliminationPhase;
+import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.LoopEndNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.nodes.cfg.Block;
+import com.oracle.graal.nodes.cfg.ControlFlowGraph;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.OptimisticOptimizations;
+import com.oracle.graal.phases.PhaseSuite;
+import com.oracle.graal.phases.tiers.MidTierContext;
+import com.oracle.graal.phases.tiers.Suites;
+
+public class LoopStripMiningTest extends GraalCompilerTest {
+
+    public static long sumSnippet(int start, int limit) {
+        long sum = 0;
+        for (int i = start; i < limit; i++) {
+            sum += i;
+        }
+        return sum;
+    }
+
+    public static long sumInclusiveStrideSnippet(int start, int limit) {
+        long sum = 0;
+        for (int i = start; i <= limit; i += 3) {
+            sum = sum * 31 + i;
+        }
+        return sum;
+    }
+
+    public static long sumDownSnippet(int start, int limit) {
+        long sum = 0;
+        for (int i = start; i > limit; i -= 2) {
+            sum += i ^ sum;
+        }
+        return sum;
+    }
+
+    public static int arraySnippet(int[] a) {
+        int result = 0;
+        for (int i = 0; i < a.length; i++) {
+            a[i] += result;
+            result = a[i];
+        }
+        return result;
+    }
+
+    static class Holder {
+        int value = 42;
+    }
+
+    /**
+     * The null check of {@code holder} is anchored at the exit of the loop. It must only be
+     * executed after the last strip, otherwise a deoptimization skips the remaining iterations.
+     */
+    public static int[] nullAfterLoopSnippet(int[] a, Holder holder) {
+        try {
+            for (int i = 0; i < a.length; i++) {
+                a[i] = i * 3 + 1;
+            }
+            a[0] = holder.value;
+        } catch (NullPointerException e) {
+            a[0] = -1;
+        }
+        return a;
+    }
+
+    /**
+     * Same as {@link #sumSnippet}, compiled before it is executed so that its profile does not
+     * influence the loop transformations.
+     */
+    public static long stripMinedSnippet(int start, int limit) {
+        long sum = 0;
+        for (int i = start; i < limit; i++) {
+            sum += i;
+        }
+        return sum;
+    }
+
+    @SuppressWarnings("try")
+    private void testStripMining(String snippet, Object... args) {
+        try (OverrideScope s = OptionValue.override(LoopStripMiningIterations, 7)) {
+            test(snippet, args);
+        }
+    }
+
+    /**
+     * Runs the mid tier up to and including {@link LoopSafepointEliminationPhase} and checks that
+     * the loop of {@code snippet} was split into two nested loops where only the outer one polls.
+     */
+    @SuppressWarnings("try")
+    private void assertStripMined(String snippet) {
+        try (OverrideScope s = OptionValue.override(LoopStripMiningIterations, 7)) {
+            StructuredGraph graph = parseEager(snippet, AllowAssumptions.YES);
+            Suites suites = createSuites();
+            suites.getHighTier().apply(graph, getDefaultHighTierContext());
+
+            PhaseSuite<MidTierContext> midTier = suites.getMidTier();
+            ListIterator<BasePhase<? super MidTierContext>> position = midTier.findPhase(LoopSafepointEliminationPhase.class, true);
+            Assert.assertTrue(position != null);
+            while (position.hasNext()) {
+                position.next();
+                position.remove();
+            }
+            midTier.apply(graph, new MidTierContext(getProviders(), getTargetProvider(), OptimisticOptimizations.ALL, graph.getProfilingInfo()));
+
+            ControlFlowGraph cfg = ControlFlowGraph.compute(graph, true, true, false, false);
+            Assert.assertEquals(2, cfg.getLoops().size());
+            for (Loop<Block> loop : cfg.getLoops()) {
+                boolean inner = loop.getParent() != null;
+                Assert.assertTrue(!inner || loop.getParent().getParent() == null);
+                for (LoopEndNode loopEnd : ((LoopBeginNode) loop.getHeader().getBeginNode()).loopEnds()) {
+                    Assert.assertEquals(loopEnd.toString(), !inner, loopEnd.canSafepoint());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStripMined() {
+        assertStripMined("stripMinedSnippet");
+        testStripMining("stripMinedSnippet", 0, 100);
+    }
+
+    @Test
+    public void testSum() {
+        testStripMining("sumSnippet", 0, 100);
+        testStripMining("sumSnippet", 0, 7);
+        testStripMining("sumSnippet", 3, 10);
+        testStripMining("sumSnippet", 100, 0);
+        testStripMining("sumSnippet", Integer.MAX_VALUE - 20, Integer.MAX_VALUE);
+        testStripMining("sumSnippet", Integer.MIN_VALUE, Integer.MIN_VALUE + 20);
+    }
+
+    @Test
+    public void testSumInclusiveStride() {
+        testStripMining("sumInclusiveStrideSnippet", 0, 100);
+        testStripMining("sumInclusiveStrideSnippet", 0, 21);
+        testStripMining("sumInclusiveStrideSnippet", 5, 5);
+        testStripMining("sumInclusiveStrideSnippet", 6, 5);
+        testStripMining("sumInclusiveStrideSnippet", -50, 50);
+    }
+
+    @Test
+    public void testSumDown() {
+        testStripMining("sumDownSnippet", 100, 0);
+        testStripMining("sumDownSnippet", 14, 0);
+        testStripMining("sumDownSnippet", 0, 100);
+        testStripMining("sumDownSnippet", Integer.MIN_VALUE + 30, Integer.MIN_VALUE);
+    }
+
+    @Test
+    public void testNullAfterLoop() {
+        // the first call compiles the snippet without an exception profile
+        testStripMining("nullAfterLoopSnippet", supply(() -> new int[20]), new Holder());
+        testStripMining("nullAfterLoopSnippet", supply(() -> new int[20]), null);
+        testStripMining("nullAfterLoopSnippet", supply(() -> new int[3]), null);
+    }
+
+    @Test
+    public void testArray() {
+        testStripMining("arraySnippet", supply(() -> new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17}));
+        testStripMining("arraySnippet", supply(() -> new int[]{4, 5, 6}));
+        testStripMining("arraySnippet", new int[0]);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.backend;
+
+import static com.oracle.graal.compiler.common.GraalOptions.TraceRA;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oracle.graal.compiler.phases.HighTier;
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.lir.alloc.lsra.GraphColoringPhase;
+import com.oracle.graal.lir.phases.LIRSuites;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.graphbuilderconf.GraphBuilderConfiguration;
+import com.oracle.graal.nodes.graphbuilderconf.GraphBuilderContext;
+import com.oracle.graal.nodes.graphbuilderconf.InlineInvokePlugin;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+import com.oracle.graal.phases.tiers.Suites;
+
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+/**
+ * Compiles every snippet with the graph coloring register allocator. Except for
+ * {@link #pressureSnippet}, which may fall back to linear scan, the compilation fails if the
+ * intervals cannot be colored. Calls are not inlined so that values live across calls are split.
+ */
+public class GraphColoringAllocatorTest extends GraalCompilerTest {
+
+    @Before
+    public void checkNoTraceRA() {
+        assumeTrue("TraceRA is set -> skip", !TraceRA.getValue());
+    }
+
+    @Override
+    @SuppressWarnings("try")
+    protected LIRSuites createLIRSuites() {
+        try (OverrideScope s = OptionValue.override(GraphColoringPhase.Options.LIRGraphColoringRA, true, GraphColoringPhase.Options.LIRGraphColoringMinFrequency, 0D)) {
+            return super.createLIRSuites();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("try")
+    protected Suites createSuites() {
+        try (OverrideScope s = OptionValue.override(HighTier.Options.Inline, false)) {
+            return super.createSuites();
+        }
+    }
+
+    @Override
+    protected GraphBuilderConfiguration editGraphBuilderConfiguration(GraphBuilderConfiguration conf) {
+        GraphBuilderConfiguration ret = super.editGraphBuilderConfiguration(conf);
+        ret.getPlugins().prependInlineInvokePlugin(new InlineInvokePlugin() {
+            @Override
+            public InlineInfo shouldInlineInvoke(GraphBuilderContext b, ResolvedJavaMethod method, ValueNode[] args) {
+                return InlineInfo.DO_NOT_INLINE_NO_EXCEPTION;
+            }
+        });
+        return ret;
+    }
+
+    @SuppressWarnings("try")
+    private void testColored(String name, Object... args) {
+        try (OverrideScope s = OptionValue.override(GraphColoringPhase.Options.LIRGraphColoringFailureIsFatal, true)) {
+            test(name, args);
+        }
+    }
+
+    public static long sumSnippet(long[] values) {
+        long sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    @Test
+    public void testSum() {
+        testColored("sumSnippet", new long[]{1, 2, 3, 4, 5});
+    }
+
+    public static int pressureSnippet(int[] a) {
+        int s0 = 0;
+        int s1 = 1;
+        int s2 = 2;
+        int s3 = 3;
+        int s4 = 4;
+        int s5 = 5;
+        int s6 = 6;
+        int s7 = 7;
+        int s8 = 8;
+        int s9 = 9;
+        int s10 = 10;
+        int s11 = 11;
+        int s12 = 12;
+        int s13 = 13;
+        int s14 = 14;
+        int s15 = 15;
+        int s16 = 16;
+        for (int i = 0; i < a.length; i++) {
+            int v = a[i];
+            s0 += v;
+            s1 ^= v;
+            s2 *= v;
+            s3 -= v;
+            s4 += v << 1;
+            s5 ^= v << 2;
+            s6 += v >> 1;
+            s7 ^= v >> 2;
+            s8 += s0;
+            s9 ^= s1;
+            s10 += s2;
+            s11 ^= s3;
+            s12 += s4;
+            s13 ^= s5;
+            s14 += s6;
+            s15 ^= s7;
+            s16 += i;
+        }
+        return s0 + s1 + s2 + s3 + s4 + s5 + s6 + s7 + s8 + s9 + s10 + s11 + s12 + s13 + s14 + s15 + s16;
+    }
+
+    @Test
+    public void testPressure() {
+        test("pressureSnippet", new int[]{3, 1, 4, 1, 5, 9, 2, 6});
+    }
+
+    static double callee(double x) {
+        return x * 0.5;
+    }
+
+    public static double callSnippet(double[] values, double scale) {
+        double result = 0;
+        for (double value : values) {
+            result += callee(value) * scale;
+        }
+        return result + scale;
+    }
+
+    @Test
+    public void testCall() {
+        testColored("callSnippet", new double[]{1.5, 2.5, -3.0}, 3.0);
+    }
+
+    public static int stackParameterSnippet(int a, int b, int c, int d, int e, int f, int g, int h) {
+        return (g - a) * (h - b) + c * d + e * f + g;
+    }
+
+    @Test
+    public void testStackParameter() {
+        testColored("stackParameterSnippet", 1, 2, 3, 4, 5, 6, 7, 8);
+    }
+
+    public static Object phiSnippet(Object a, Object b, int n) {
+        Object x = a;
+        Object y = b;
+        for (int i = 0; i < n; i++) {
+            Object t = x;
+            x = y;
+            y = t;
+        }
+        return x;
+    }
+
+    @Test
+    public void testPhi() {
+        testColored("phiSnippet", "a", "b", 5);
+        testColored("phiSnippet", "a", "b", 4);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.backend;
+
+import static com.oracle.graal.compiler.common.GraalOptions.TraceRA;
+import static com.oracle.graal.lir.alloc.trace.TraceRegisterAllocationPhase.Options.TraceRAParallel;
+import static com.oracle.graal.lir.alloc.trace.TraceRegisterAllocationPhase.Options.TraceRAParallelMinTraces;
+import static com.oracle.graal.lir.alloc.trace.TraceRegisterAllocationPhase.Options.TraceRAParallelThreads;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oracle.graal.code.CompilationResult;
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+/**
+ * Allocates the traces of each snippet on multiple threads and checks that the result is the same
+ * as allocating them sequentially.
+ */
+public class TraceRAParallelTest extends GraalCompilerTest {
+
+    @Before
+    public void checkNoDumpOrLog() {
+        assumeFalse("dumping or logging disables parallel allocation -> skip", Debug.isDumpEnabledForMethod() || Debug.isLogEnabledForMethod());
+    }
+
+    @SuppressWarnings("try")
+    private void testParallel(String name, Object... args) {
+        ResolvedJavaMethod method = getResolvedJavaMethod(name);
+        CompilationResult sequential;
+        try (OverrideScope s = OptionValue.override(TraceRA, true, TraceRAParallel, false)) {
+            sequential = compile(method, null);
+        }
+        try (OverrideScope s = OptionValue.override(TraceRA, true, TraceRAParallel, true, TraceRAParallelThreads, 4, TraceRAParallelMinTraces, 2)) {
+            CompilationResult parallel = compile(method, null);
+            assertTrue("no trace allocation worker was started", hasWorkerThread());
+            assertArrayEquals(Arrays.copyOf(sequential.getTargetCode(), sequential.getTargetCodeSize()), Arrays.copyOf(parallel.getTargetCode(), parallel.getTargetCodeSize()));
+            test(name, args);
+        }
+    }
+
+    private static boolean hasWorkerThread() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("TraceRA-Worker")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static int branchSnippet(int[] a) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            int v = a[i];
+            if (v < 0) {
+                sum -= v;
+            } else if (v == 0) {
+                sum += i;
+            } else if ((v & 1) == 0) {
+                sum ^= v << 1;
+            } else {
+                sum += v * 3;
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    public void testBranch() {
+        testParallel("branchSnippet", new int[]{3, -1, 0, 4, 7, -8, 0, 2});
+    }
+
+    static double callee(double x) {
+        return x * 0.5;
+    }
+
+    public static double callSnippet(double[] values, double scale, int mode) {
+        double result = 0;
+        for (double value : values) {
+            switch (mode) {
+                case 0:
+                    result += callee(value) * scale;
+                    break;
+                case 1:
+                    result -= value;
+                    break;
+                case 2:
+                    result *= callee(scale);
+                    break;
+                default:
+                    result = Math.max(result, value);
+            }
+        }
+        return result + scale;
+    }
+
+    @Test
+    public void testCall() {
+        testParallel("callSnippet", new double[]{1.5, 2.5, -3.0}, 3.0, 0);
+    }
+
+    public static Object objectSnippet(Object a, Object b, int n) {
+        Object x = a;
+        Object y = b;
+        for (int i = 0; i < n; i++) {
+            if (x instanceof String) {
+                Object t = x;
+                x = y;
+                y = t;
+            } else if (i % 3 == 0) {
+                x = y.toString();
+            } else {
+                y = x;
+            }
+        }
+        return x;
+    }
+
+    @Test
+    public void testObject() {
+        testParallel("objectSnippet", "a", 42, 7);
+    }
+}
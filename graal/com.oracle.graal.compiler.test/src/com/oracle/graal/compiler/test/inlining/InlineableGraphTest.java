@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.inlining;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.api.replacements.SnippetTemplateCache;
+import com.oracle.graal.bytecode.BytecodeProvider;
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.nodes.Invoke;
+import com.oracle.graal.nodes.ParameterNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.nodes.spi.Replacements;
+import com.oracle.graal.phases.OptimisticOptimizations;
+import com.oracle.graal.phases.common.CanonicalizerPhase;
+import com.oracle.graal.phases.common.inlining.InliningUtil;
+import com.oracle.graal.phases.common.inlining.info.elem.InlineableGraph;
+import com.oracle.graal.phases.tiers.HighTierContext;
+
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+/**
+ * Checks that a cached inlinee graph, such as a method substitution, is shared by all
+ * {@link InlineableGraph}s for it and only copied if it has to be modified.
+ */
+public class InlineableGraphTest extends GraalCompilerTest {
+
+    /**
+     * Returns a fixed graph as the substitution of a single method.
+     */
+    private static final class TestReplacements implements Replacements {
+
+        private final Replacements delegate;
+        private final ResolvedJavaMethod substitutedMethod;
+        private final StructuredGraph substitution;
+
+        TestReplacements(Replacements delegate, ResolvedJavaMethod substitutedMethod, StructuredGraph substitution) {
+            this.delegate = delegate;
+            this.substitutedMethod = substitutedMethod;
+            this.substitution = substitution;
+        }
+
+        @Override
+        public StructuredGraph getSnippet(ResolvedJavaMethod method, Object[] args) {
+            return delegate.getSnippet(method, args);
+        }
+
+        @Override
+        public StructuredGraph getSnippet(ResolvedJavaMethod method, ResolvedJavaMethod recursiveEntry, Object[] args) {
+            return delegate.getSnippet(method, recursiveEntry, args);
+        }
+
+        @Override
+        public void registerSnippet(ResolvedJavaMethod method) {
+            delegate.registerSnippet(method);
+        }
+
+        @Override
+        public StructuredGraph getSubstitution(ResolvedJavaMethod method, int invokeBci) {
+            return method.equals(substitutedMethod) ? substitution : delegate.getSubstitution(method, invokeBci);
+        }
+
+        @Override
+        public ResolvedJavaMethod getSubstitutionMethod(ResolvedJavaMethod method) {
+            return delegate.getSubstitutionMethod(method);
+        }
+
+        @Override
+        public boolean hasSubstitution(ResolvedJavaMethod method, int invokeBci) {
+            return method.equals(substitutedMethod) || delegate.hasSubstitution(method, invokeBci);
+        }
+
+        @Override
+        public BytecodeProvider getReplacementBytecodeProvider() {
+            return delegate.getReplacementBytecodeProvider();
+        }
+
+        @Override
+        public void registerSnippetTemplateCache(SnippetTemplateCache snippetTemplates) {
+            delegate.registerSnippetTemplateCache(snippetTemplates);
+        }
+
+        @Override
+        public <T extends SnippetTemplateCache> T getSnippetTemplateCache(Class<T> templatesClass) {
+            return delegate.getSnippetTemplateCache(templatesClass);
+        }
+    }
+
+    public static int leaf(int value) {
+        return value * 3 + 1;
+    }
+
+    public static int twoCallsSnippet(int a, int b) {
+        return leaf(a) + leaf(b);
+    }
+
+    public static int constantCallSnippet() {
+        return leaf(7);
+    }
+
+    private StructuredGraph cached;
+    private List<Node> cachedNodes;
+
+    private HighTierContext createContext() {
+        ResolvedJavaMethod leaf = getResolvedJavaMethod("leaf");
+        cached = parseEager(leaf, AllowAssumptions.YES);
+        cachedNodes = cached.getNodes().snapshot();
+        TestReplacements replacements = new TestReplacements(getProviders().getReplacements(), leaf, cached);
+        return new HighTierContext(getProviders().copyWith(replacements), getDefaultGraphBuilderSuite(), OptimisticOptimizations.ALL);
+    }
+
+    private void assertCachedGraphUnchanged() {
+        Assert.assertEquals(cachedNodes, cached.getNodes().snapshot());
+        for (Node node : cachedNodes) {
+            Assert.assertFalse(node.toString(), node.isDeleted());
+        }
+        Assert.assertEquals(1, cached.getNodes(ParameterNode.TYPE).count());
+        Assert.assertTrue(cached.getNodes(ParameterNode.TYPE).first().usages().isNotEmpty());
+        cached.verify();
+    }
+
+    @Test
+    public void testSharedGraphReused() {
+        HighTierContext context = createContext();
+        ResolvedJavaMethod leaf = getResolvedJavaMethod("leaf");
+        StructuredGraph graph = parseEager("twoCallsSnippet", AllowAssumptions.YES);
+        List<Invoke> invokes = new ArrayList<>();
+        for (Invoke invoke : graph.getInvokes()) {
+            invokes.add(invoke);
+        }
+        Assert.assertEquals(2, invokes.size());
+        for (Invoke invoke : invokes) {
+            InlineableGraph inlineable = new InlineableGraph(leaf, invoke, context, new CanonicalizerPhase());
+            // the arguments are not more precise than the parameters, so no copy is needed
+            Assert.assertSame(cached, inlineable.getGraph());
+            InliningUtil.inline(invoke, inlineable.getGraph(), true, null, leaf);
+            assertCachedGraphUnchanged();
+        }
+        Assert.assertFalse(graph.getInvokes().iterator().hasNext());
+    }
+
+    @Test
+    public void testSpecializedGraphCopied() {
+        HighTierContext context = createContext();
+        ResolvedJavaMethod leaf = getResolvedJavaMethod("leaf");
+        StructuredGraph graph = parseEager("constantCallSnippet", AllowAssumptions.YES);
+        Invoke invoke = graph.getInvokes().iterator().next();
+        InlineableGraph inlineable = new InlineableGraph(leaf, invoke, context, new CanonicalizerPhase());
+        // the constant argument is propagated into a private copy of the cached graph
+        Assert.assertNotSame(cached, inlineable.getGraph());
+        Assert.assertTrue(inlineable.getGraph().getNodes(ParameterNode.TYPE).isEmpty());
+        assertCachedGraphUnchanged();
+    }
+}
@@ -44,6 +44,7 @@ import com.oracle.graal.options.OptionType;
 import com.oracle.graal.options.OptionValue;
 import com.oracle.graal.phases.PhaseSuite;
 import com.oracle.graal.phases.common.CanonicalizerPhase;
+import com.oracle.graal.phases.common.CompressGraphPhase;
 import com.oracle.graal.phases.common.ConvertDeoptimizeToGuardPhase;
 import com.oracle.graal.phases.common.DeadCodeEliminationPhase;
 import com.oracle.graal.phases.common.IncrementalCanonicalizerPhase;
@@ -62,6 +63,9 @@ public class HighTier extends PhaseSuite<HighTierContext> {
         // @formatter:off
         @Option(help = "Enable inlining", type = OptionType.Expert)
         public static final OptionValue<Boolean> Inline = new OptionValue<>(true);
+
+        @Option(help = "Compress the graph before partial escape analysis if enough nodes have been deleted", type = OptionType.Debug)
+        public static final OptionValue<Boolean> CompressGraphBeforeEscapeAnalysis = new OptionValue<>(true);
         // @formatter:on
     }
 
@@ -104,6 +108,9 @@ public class HighTier extends PhaseSuite<HighTierContext> {
         appendPhase(canonicalizer);
 
         if (PartialEscapeAnalysis.getValue()) {
+            if (Options.CompressGraphBeforeEscapeAnalysis.getValue()) {
+                appendPhase(new CompressGraphPhase());
+            }
             appendPhase(new PartialEscapePhase(true, canonicalizer));
         }
         appendPhase(new RemoveValueProxyPhase());
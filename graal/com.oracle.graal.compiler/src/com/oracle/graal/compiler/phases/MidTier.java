@@ -24,15 +24,24 @@ package com.oracle.graal.compiler.phases;
 
 import static com.oracle.graal.compiler.common.GraalOptions.ConditionalElimination;
 import static com.oracle.graal.compiler.common.GraalOptions.ImmutableCode;
+import static com.oracle.graal.compiler.common.GraalOptions.LoopInvariantCodeMotion;
+import static com.oracle.graal.compiler.common.GraalOptions.LoopPredication;
 import static com.oracle.graal.compiler.common.GraalOptions.OptDeoptimizationGrouping;
 import static com.oracle.graal.compiler.common.GraalOptions.OptEliminatePartiallyRedundantGuards;
 import static com.oracle.graal.compiler.common.GraalOptions.OptFloatingReads;
+import static com.oracle.graal.compiler.common.GraalOptions.OptLoopTransform;
 import static com.oracle.graal.compiler.common.GraalOptions.OptPushThroughPi;
 import static com.oracle.graal.compiler.common.GraalOptions.OptReadElimination;
+import static com.oracle.graal.compiler.common.GraalOptions.PartialUnroll;
 import static com.oracle.graal.compiler.common.GraalOptions.ReassociateInvariants;
 import static com.oracle.graal.compiler.common.GraalOptions.UseGraalInstrumentation;
 import static com.oracle.graal.compiler.common.GraalOptions.VerifyHeapAtReturn;
 
+import com.oracle.graal.loop.DefaultLoopPolicies;
+import com.oracle.graal.loop.LoopPolicies;
+import com.oracle.graal.loop.phases.LoopInvariantCodeMotionPhase;
+import com.oracle.graal.loop.phases.LoopPartialUnrollPhase;
+import com.oracle.graal.loop.phases.LoopPredicationPhase;
 import com.oracle.graal.loop.phases.LoopSafepointEliminationPhase;
 import com.oracle.graal.loop.phases.ReassociateInvariantPhase;
 import com.oracle.graal.nodes.spi.LoweringTool;
@@ -77,6 +86,11 @@ public class MidTier extends PhaseSuite<MidTierContext> {
             appendPhase(new EarlyReadEliminationPhase(canonicalizer));
         }
 
+        if (OptLoopTransform.getValue() && PartialUnroll.getValue()) {
+            // needs to run before floating reads introduce memory phis
+            appendPhase(new LoopPartialUnrollPhase(canonicalizer, createLoopPolicies()));
+        }
+
         if (OptFloatingReads.getValue()) {
             appendPhase(new IncrementalCanonicalizerPhase<>(canonicalizer, new FloatingReadPhase()));
         }
@@ -84,6 +98,15 @@ public class MidTier extends PhaseSuite<MidTierContext> {
 
         appendPhase(canonicalizer);
 
+        if (OptLoopTransform.getValue() && LoopPredication.getValue()) {
+            // runs after floating reads so that array length reads are loop invariant
+            appendPhase(new LoopPredicationPhase());
+        }
+
+        if (OptLoopTransform.getValue() && LoopInvariantCodeMotion.getValue()) {
+            appendPhase(new LoopInvariantCodeMotionPhase());
+        }
+
         if (OptEliminatePartiallyRedundantGuards.getValue()) {
             appendPhase(new OptimizeGuardAnchorsPhase());
         }
@@ -125,4 +148,8 @@ public class MidTier extends PhaseSuite<MidTierContext> {
 
         appendPhase(canonicalizer);
     }
+
+    public LoopPolicies createLoopPolicies() {
+        return new DefaultLoopPolicies();
+    }
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.graph.test;
+
+import static com.oracle.graal.nodeinfo.NodeCycles.CYCLES_IGNORED;
+import static com.oracle.graal.nodeinfo.NodeSize.SIZE_IGNORED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.oracle.graal.graph.CompactGraph;
+import com.oracle.graal.graph.Graph;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeBitMap;
+import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.graph.NodeInputList;
+import com.oracle.graal.graph.NodeMap;
+import com.oracle.graal.nodeinfo.NodeInfo;
+
+public class CompactGraphTest {
+
+    @NodeInfo(cycles = CYCLES_IGNORED, size = SIZE_IGNORED)
+    static final class Def extends Node {
+        public static final NodeClass<Def> TYPE = NodeClass.create(Def.class);
+
+        protected Def() {
+            super(TYPE);
+        }
+    }
+
+    @NodeInfo(cycles = CYCLES_IGNORED, size = SIZE_IGNORED)
+    static final class Use extends Node {
+        public static final NodeClass<Use> TYPE = NodeClass.create(Use.class);
+        @OptionalInput Node in0;
+        @Input NodeInputList<Node> list;
+        @Successor Node next;
+
+        protected Use(Node in0, Node... list) {
+            super(TYPE);
+            this.in0 = in0;
+            this.list = new NodeInputList<>(this, list);
+        }
+    }
+
+    @Test
+    public void testEdges() {
+        Graph graph = new Graph();
+        Def def0 = graph.add(new Def());
+        Def def1 = graph.add(new Def());
+        Use use0 = graph.add(new Use(def0, def1, def0));
+        Use use1 = graph.add(new Use(null, use0));
+        Use use2 = graph.add(new Use(def1));
+        use2.replaceFirstSuccessor(null, use0);
+
+        CompactGraph compact = graph.createCompactGraph();
+        assertTrue(compact.isCurrent());
+        assertEquals(graph.getNodeCount(), compact.getNodeCount());
+
+        int use0Id = compact.getId(use0);
+        assertEquals(3, compact.getInputCount(use0Id));
+        assertEquals(compact.getId(def0), compact.getInput(use0Id, 0));
+        assertEquals(compact.getId(def1), compact.getInput(use0Id, 1));
+        assertEquals(compact.getId(def0), compact.getInput(use0Id, 2));
+
+        int def0Id = compact.getId(def0);
+        assertEquals(def0.getUsageCount(), compact.getUsageCount(def0Id));
+        for (int i = 0; i < def0.getUsageCount(); i++) {
+            assertEquals(compact.getId(def0.getUsageAt(i)), compact.getUsage(def0Id, i));
+        }
+
+        int use2Id = compact.getId(use2);
+        assertEquals(1, compact.getSuccessorCount(use2Id));
+        assertEquals(use0Id, compact.getSuccessor(use2Id, 0));
+        assertEquals(use2Id, compact.getPredecessor(use0Id));
+        assertEquals(CompactGraph.NO_NODE, compact.getPredecessor(use2Id));
+        assertEquals(1, compact.getInputCount(compact.getId(use1)));
+    }
+
+    @Test
+    public void testDeletedNodes() {
+        Graph graph = new Graph();
+        Def def0 = graph.add(new Def());
+        Def def1 = graph.add(new Def());
+        Def def2 = graph.add(new Def());
+        def1.safeDelete();
+
+        CompactGraph compact = graph.createCompactGraph();
+        assertEquals(2, compact.getNodeCount());
+        int count = 0;
+        for (int id = compact.nextLiveId(0); id < compact.getNodeIdCount(); id = compact.nextLiveId(id + 1)) {
+            assertTrue(compact.getNode(id) == def0 || compact.getNode(id) == def2);
+            count++;
+        }
+        assertEquals(2, count);
+
+        graph.add(new Def());
+        assertFalse(compact.isCurrent());
+    }
+
+    @Test
+    public void testNodeMaps() {
+        Graph graph = new Graph();
+        Def def0 = graph.add(new Def());
+        Def def1 = graph.add(new Def());
+        Use use0 = graph.add(new Use(def0));
+        Use use1 = graph.add(new Use(use0));
+        graph.add(new Use(def1));
+
+        CompactGraph compact = graph.createCompactGraph();
+        NodeBitMap marked = graph.createNodeBitMap();
+        marked.mark(use1);
+        compact.markInputClosure(marked);
+        assertEquals(3, marked.count());
+        assertTrue(marked.isMarked(def0));
+        assertTrue(marked.isMarked(use0));
+        assertFalse(marked.isMarked(def1));
+
+        NodeMap<Integer> map = graph.createNodeMap();
+        for (int id = compact.nextLiveId(0); id < compact.getNodeIdCount(); id = compact.nextLiveId(id + 1)) {
+            map.set(id, compact.getUsageCount(id));
+        }
+        assertEquals((Integer) 1, map.get(def0));
+        assertEquals((Integer) 0, map.get(use1));
+    }
+}
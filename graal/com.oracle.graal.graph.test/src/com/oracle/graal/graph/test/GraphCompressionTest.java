@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.graph.test;
+
+import static com.oracle.graal.nodeinfo.NodeCycles.CYCLES_IGNORED;
+import static com.oracle.graal.nodeinfo.NodeSize.SIZE_IGNORED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.oracle.graal.graph.Graph;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.graph.NodeMap;
+import com.oracle.graal.nodeinfo.NodeInfo;
+
+public class GraphCompressionTest {
+
+    @NodeInfo(cycles = CYCLES_IGNORED, size = SIZE_IGNORED)
+    static final class Def extends Node {
+        public static final NodeClass<Def> TYPE = NodeClass.create(Def.class);
+
+        protected Def() {
+            super(TYPE);
+        }
+    }
+
+    @NodeInfo(cycles = CYCLES_IGNORED, size = SIZE_IGNORED)
+    static final class Use extends Node {
+        public static final NodeClass<Use> TYPE = NodeClass.create(Use.class);
+        @Input Node value;
+
+        protected Use(Node value) {
+            super(TYPE);
+            this.value = value;
+        }
+    }
+
+    @Test
+    public void testCompress() {
+        Graph graph = new Graph();
+        List<Node> live = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Def def = graph.add(new Def());
+            if (i % 10 == 0) {
+                live.add(def);
+                live.add(graph.add(new Use(def)));
+            } else {
+                def.safeDelete();
+            }
+        }
+        assertEquals(live.size(), graph.getNodeCount());
+        assertTrue(graph.createNodeMap().size() > live.size());
+
+        int compressions = graph.getCompressions();
+        assertTrue(graph.compress());
+        assertEquals(compressions + 1, graph.getCompressions());
+        assertEquals(live.size(), graph.getNodeCount());
+
+        NodeMap<Node> map = graph.createNodeMap();
+        assertEquals(live.size(), map.size());
+        int index = 0;
+        for (Node node : graph.getNodes()) {
+            assertTrue(live.get(index) == node);
+            map.set(node, node);
+            index++;
+        }
+        assertEquals(live.size(), index);
+        for (Node node : live) {
+            assertTrue(map.get(node) == node);
+            if (node instanceof Use) {
+                assertTrue(((Use) node).value.usages().first() == node);
+            }
+        }
+
+        // nothing left to compress
+        assertFalse(graph.compress());
+        assertEquals(compressions + 1, graph.getCompressions());
+
+        // the graph keeps growing after the node list has been trimmed
+        for (int i = 0; i < 100; i++) {
+            graph.add(new Def());
+        }
+        assertEquals(live.size() + 100, graph.getNodeCount());
+        assertEquals(live.size() + 100, graph.createNodeMap().size());
+    }
+}
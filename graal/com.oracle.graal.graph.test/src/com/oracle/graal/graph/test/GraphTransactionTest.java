@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.graph.test;
+
+import static com.oracle.graal.nodeinfo.NodeCycles.CYCLES_IGNORED;
+import static com.oracle.graal.nodeinfo.NodeSize.SIZE_IGNORED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.oracle.graal.graph.Graph;
+import com.oracle.graal.graph.GraphTransaction;
+import com.oracle.graal.graph.IterableNodeType;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.graph.NodeInputList;
+import com.oracle.graal.graph.NodeSuccessorList;
+import com.oracle.graal.nodeinfo.NodeInfo;
+
+public class GraphTransactionTest {
+
+    @NodeInfo(cycles = CYCLES_IGNORED, size = SIZE_IGNORED)
+    static final class Def extends Node implements IterableNodeType {
+        public static final NodeClass<Def> TYPE = NodeClass.create(Def.class);
+
+        protected Def() {
+            super(TYPE);
+        }
+    }
+
+    @NodeInfo(cycles = CYCLES_IGNORED, size = SIZE_IGNORED)
+    static final class Use extends Node {
+        public static final NodeClass<Use> TYPE = NodeClass.create(Use.class);
+        @Input Node value;
+        @Input NodeInputList<Node> values;
+        @Successor Node next;
+        @Successor NodeSuccessorList<Node> targets;
+
+        protected Use(Node value, Node... values) {
+            super(TYPE);
+            this.value = value;
+            this.values = new NodeInputList<>(this, values);
+            this.targets = new NodeSuccessorList<>(this, 0);
+        }
+
+        void setNext(Node x) {
+            updatePredecessor(next, x);
+            next = x;
+        }
+    }
+
+    /**
+     * Captures the edges, usages and predecessors of all nodes in a graph.
+     */
+    private static List<Object> state(Graph graph) {
+        List<Object> state = new ArrayList<>();
+        for (Node node : graph.getNodes()) {
+            state.add(node);
+            state.add(node.inputs().snapshot());
+            state.add(node.successors().snapshot());
+            state.add(node.usages().snapshot());
+            state.add(node.predecessor());
+        }
+        state.add(graph.getNodes(Def.TYPE).snapshot());
+        return state;
+    }
+
+    private static Graph createGraph(int size) {
+        Graph graph = new Graph();
+        Def previous = graph.add(new Def());
+        Use last = null;
+        for (int i = 0; i < size; i++) {
+            Def def = graph.add(new Def());
+            Use use = graph.add(new Use(def, previous, def, previous));
+            if (last != null) {
+                last.setNext(use);
+            }
+            use.targets.add(graph.add(new Def()));
+            last = use;
+            previous = def;
+        }
+        return graph;
+    }
+
+    @Test
+    public void testRollback() {
+        Graph graph = createGraph(100);
+        List<Def> defs = graph.getNodes(Def.TYPE).snapshot();
+        Def first = defs.get(1);
+        Def second = defs.get(2);
+        Def replacement = graph.add(new Def());
+        List<Object> before = state(graph);
+        int nodeCount = graph.getNodeCount();
+
+        Use user = (Use) first.usages().first();
+        Use added;
+        try (GraphTransaction transaction = graph.beginTransaction()) {
+            first.replaceAtUsages(replacement);
+            added = graph.add(new Use(replacement, second));
+            user.values.add(added);
+            user.values.set(0, second);
+            user.targets.get(0).replaceAtPredecessor(graph.add(new Def()));
+            first.safeDelete();
+            user.setNext(null);
+            assertFalse(graph.compress());
+            assertTrue(transaction.isActive());
+            assertTrue(transaction.getRecordedNodeCount() < nodeCount / 10);
+
+            transaction.rollback();
+            assertFalse(transaction.isActive());
+        }
+        assertTrue(first.isAlive());
+        assertFalse(added.isAlive());
+        assertEquals(nodeCount, graph.getNodeCount());
+        assertEquals(before, state(graph));
+        graph.verify();
+
+        // the graph can be modified normally after a rollback
+        Def def = graph.add(new Def());
+        Use use = graph.add(new Use(def));
+        assertEquals(nodeCount + 2, graph.getNodeCount());
+        assertTrue(def.usages().first() == use);
+    }
+
+    @Test
+    public void testClose() {
+        Graph graph = createGraph(10);
+        Def def = graph.getNodes(Def.TYPE).first();
+        Def replacement;
+        try (GraphTransaction transaction = graph.beginTransaction()) {
+            replacement = graph.add(new Def());
+            def.replaceAtUsages(replacement);
+        }
+        assertTrue(replacement.isAlive());
+        assertTrue(def.hasNoUsages());
+        assertTrue(replacement.hasUsages());
+
+        // a new transaction can be started once the previous one is closed
+        try (GraphTransaction transaction = graph.beginTransaction()) {
+            def.safeDelete();
+            transaction.rollback();
+        }
+        assertTrue(def.isAlive());
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.graph.test;
+
+import static com.oracle.graal.nodeinfo.NodeCycles.CYCLES_IGNORED;
+import static com.oracle.graal.nodeinfo.NodeSize.SIZE_IGNORED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oracle.graal.graph.Graph;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeBitMap;
+import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.graph.NodeFlood;
+import com.oracle.graal.nodeinfo.NodeInfo;
+
+public class NodeBitMapTest {
+
+    @NodeInfo(cycles = CYCLES_IGNORED, size = SIZE_IGNORED)
+    static final class TestNode extends Node {
+        public static final NodeClass<TestNode> TYPE = NodeClass.create(TestNode.class);
+
+        protected TestNode() {
+            super(TYPE);
+        }
+    }
+
+    private Graph graph;
+    private TestNode[] nodes = new TestNode[300];
+
+    @Before
+    public void before() {
+        graph = new Graph();
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = graph.add(new TestNode());
+        }
+    }
+
+    private NodeBitMap markEvery(int step) {
+        NodeBitMap map = graph.createNodeBitMap();
+        for (int i = 0; i < nodes.length; i += step) {
+            map.mark(nodes[i]);
+        }
+        return map;
+    }
+
+    @Test
+    public void testNextMarked() {
+        NodeBitMap map = graph.createNodeBitMap();
+        assertEquals(-1, map.nextMarkedNodeId(0));
+        map.mark(nodes[3]);
+        map.mark(nodes[64]);
+        map.mark(nodes[299]);
+        assertEquals(nodes[3].getId(), map.nextMarkedNodeId(0));
+        assertEquals(nodes[3].getId(), map.nextMarkedNodeId(nodes[3].getId()));
+        assertEquals(nodes[64].getId(), map.nextMarkedNodeId(nodes[3].getId() + 1));
+        assertEquals(nodes[299].getId(), map.nextMarkedNodeId(nodes[64].getId() + 1));
+        assertEquals(-1, map.nextMarkedNodeId(nodes[299].getId() + 1));
+    }
+
+    @Test
+    public void testNextUnmarked() {
+        NodeBitMap map = graph.createNodeBitMap();
+        for (TestNode node : nodes) {
+            map.mark(node);
+        }
+        assertEquals(-1, map.nextUnmarkedNodeId(0));
+        map.clear(nodes[130]);
+        assertEquals(nodes[130].getId(), map.nextUnmarkedNodeId(0));
+        assertEquals(-1, map.nextUnmarkedNodeId(nodes[130].getId() + 1));
+
+        // nodes added after the bitmap was created are unmarked
+        TestNode added = graph.add(new TestNode());
+        assertEquals(added.getId(), map.nextUnmarkedNodeId(nodes[130].getId() + 1));
+    }
+
+    @Test
+    public void testIterationAndCount() {
+        NodeBitMap map = markEvery(7);
+        nodes[14].safeDelete();
+        List<Node> expected = new ArrayList<>();
+        for (int i = 0; i < nodes.length; i += 7) {
+            if (i != 14) {
+                expected.add(nodes[i]);
+            }
+        }
+        assertEquals(expected, map.snapshot());
+        // the count includes the mark of the deleted node
+        assertEquals(expected.size() + 1, map.count());
+    }
+
+    @Test
+    public void testSetOperations() {
+        NodeBitMap twos = markEvery(2);
+        NodeBitMap threes = markEvery(3);
+
+        NodeBitMap union = twos.copy();
+        union.union(threes);
+        NodeBitMap intersection = twos.copy();
+        intersection.intersect(threes);
+        NodeBitMap difference = twos.copy();
+        difference.subtract(threes);
+
+        for (int i = 0; i < nodes.length; i++) {
+            boolean two = i % 2 == 0;
+            boolean three = i % 3 == 0;
+            assertEquals(two || three, union.isMarked(nodes[i]));
+            assertEquals(two && three, intersection.isMarked(nodes[i]));
+            assertEquals(two && !three, difference.isMarked(nodes[i]));
+        }
+        assertEquals(union.count(), twos.count() + threes.count() - intersection.count());
+    }
+
+    @Test
+    public void testUnionWithSmallerMap() {
+        NodeBitMap small = markEvery(5);
+        for (int i = 0; i < 200; i++) {
+            graph.add(new TestNode());
+        }
+        NodeBitMap large = graph.createNodeBitMap();
+        large.union(small);
+        assertEquals(small.count(), large.count());
+    }
+
+    @Test
+    public void testUnmarkedNodes() {
+        NodeFlood flood = graph.createNodeFlood();
+        for (int i = 0; i < nodes.length; i += 2) {
+            flood.add(nodes[i]);
+        }
+        int count = 0;
+        for (Node node : flood.unmarkedNodes()) {
+            assertTrue(!flood.isMarked(node));
+            count++;
+        }
+        assertEquals(nodes.length / 2, count);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.graph.test;
+
+import static com.oracle.graal.nodeinfo.NodeCycles.CYCLES_IGNORED;
+import static com.oracle.graal.nodeinfo.NodeSize.SIZE_IGNORED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.nodeinfo.NodeInfo;
+
+public class NodeDataEqualsTest {
+
+    @NodeInfo(cycles = CYCLES_IGNORED, size = SIZE_IGNORED)
+    static final class DataNode extends Node implements Node.ValueNumberable {
+        public static final NodeClass<DataNode> TYPE = NodeClass.create(DataNode.class);
+
+        protected boolean b;
+        protected byte by;
+        protected char c;
+        protected short s;
+        protected int i;
+        protected float f;
+        protected long l;
+        protected double d;
+        protected Object o;
+        protected int[] a;
+
+        protected DataNode() {
+            super(TYPE);
+        }
+    }
+
+    private static DataNode create() {
+        DataNode node = new DataNode();
+        node.b = true;
+        node.by = 1;
+        node.c = 'c';
+        node.s = 2;
+        node.i = 3;
+        node.f = 4.0f;
+        node.l = 5L;
+        node.d = 6.0;
+        node.o = "o";
+        node.a = new int[]{7};
+        return node;
+    }
+
+    private static void assertDataEquals(DataNode x, DataNode y) {
+        assertTrue(x.valueEquals(y));
+        assertTrue(y.valueEquals(x));
+        assertEquals(DataNode.TYPE.valueNumber(x), DataNode.TYPE.valueNumber(y));
+    }
+
+    @Test
+    public void testEquals() {
+        DataNode x = create();
+        DataNode y = create();
+        assertDataEquals(x, y);
+        y.o = new String("o");
+        y.a = new int[]{7};
+        assertDataEquals(x, y);
+        x.d = Double.NaN;
+        y.d = Double.NaN;
+        assertDataEquals(x, y);
+    }
+
+    @Test
+    public void testNotEquals() {
+        DataNode x = create();
+        DataNode y;
+
+        y = create();
+        y.b = false;
+        assertFalse(x.valueEquals(y));
+
+        y = create();
+        y.by = 0;
+        assertFalse(x.valueEquals(y));
+
+        y = create();
+        y.c = 'd';
+        assertFalse(x.valueEquals(y));
+
+        y = create();
+        y.s = 0;
+        assertFalse(x.valueEquals(y));
+
+        y = create();
+        y.i = 0;
+        assertFalse(x.valueEquals(y));
+
+        y = create();
+        y.f = 0.0f;
+        assertFalse(x.valueEquals(y));
+
+        y = create();
+        y.l = 0L;
+        assertFalse(x.valueEquals(y));
+
+        y = create();
+        y.d = 0.0;
+        assertFalse(x.valueEquals(y));
+
+        y = create();
+        y.o = null;
+        assertFalse(x.valueEquals(y));
+        assertFalse(y.valueEquals(x));
+
+        y = create();
+        y.a = new int[]{8};
+        assertFalse(x.valueEquals(y));
+    }
+
+    @Test
+    public void testSignedZero() {
+        DataNode x = create();
+        DataNode y = create();
+        x.d = 0.0;
+        y.d = -0.0;
+        assertFalse(x.valueEquals(y));
+    }
+}
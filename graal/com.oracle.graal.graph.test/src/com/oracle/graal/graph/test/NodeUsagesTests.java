@@ -35,6 +35,7 @@ import org.junit.Test;
 import com.oracle.graal.graph.Graph;
 import com.oracle.graal.graph.Node;
 import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.nodeinfo.InputType;
 import com.oracle.graal.nodeinfo.NodeInfo;
 
 public class NodeUsagesTests {
@@ -64,6 +65,19 @@ public class NodeUsagesTests {
 
     }
 
+    @NodeInfo(cycles = CYCLES_IGNORED, size = SIZE_IGNORED)
+    static final class GuardedUse extends Node {
+        public static final NodeClass<GuardedUse> TYPE = NodeClass.create(GuardedUse.class);
+        @Input Def value;
+        @Input(InputType.Guard) Def guard;
+
+        protected GuardedUse(Def value, Def guard) {
+            super(TYPE);
+            this.value = value;
+            this.guard = guard;
+        }
+    }
+
     @Test
     public void testReplaceAtUsages() {
         Graph graph = new Graph();
@@ -438,4 +452,31 @@ public class NodeUsagesTests {
 
         assertThat(def1.usages(), isNotEmpty());
     }
+
+    @Test
+    public void testReplaceAtUsagesWithInputType() {
+        Graph graph = new Graph();
+        Def def0 = graph.add(new Def());
+        Def def1 = graph.add(new Def());
+        GuardedUse use0 = graph.add(new GuardedUse(def0, def0));
+        GuardedUse use1 = graph.add(new GuardedUse(def0, null));
+        GuardedUse use2 = graph.add(new GuardedUse(null, def0));
+
+        assertEquals(4, def0.getUsageCount());
+
+        def0.replaceAtUsages(InputType.Guard, def1);
+
+        assertEquals(2, def0.getUsageCount());
+        assertThat(def0.usages(), contains(use0));
+        assertThat(def0.usages(), contains(use1));
+
+        assertEquals(2, def1.getUsageCount());
+        assertThat(def1.usages(), contains(use0));
+        assertThat(def1.usages(), contains(use2));
+
+        assertEquals(def0, use0.value);
+        assertEquals(def1, use0.guard);
+        assertEquals(def0, use1.value);
+        assertEquals(def1, use2.guard);
+    }
 }
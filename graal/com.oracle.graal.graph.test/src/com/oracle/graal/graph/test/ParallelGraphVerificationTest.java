@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.graph.test;
+
+import static com.oracle.graal.nodeinfo.NodeCycles.CYCLES_IGNORED;
+import static com.oracle.graal.nodeinfo.NodeSize.SIZE_IGNORED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.oracle.graal.graph.GraalGraphError;
+import com.oracle.graal.graph.Graph;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.nodeinfo.InputType;
+import com.oracle.graal.nodeinfo.NodeInfo;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+public class ParallelGraphVerificationTest {
+
+    @NodeInfo(allowedUsageTypes = {InputType.Value}, cycles = CYCLES_IGNORED, size = SIZE_IGNORED)
+    static final class TestNode extends Node {
+        public static final NodeClass<TestNode> TYPE = NodeClass.create(TestNode.class);
+
+        @OptionalInput TestNode input;
+
+        protected TestNode(TestNode input) {
+            super(TYPE);
+            this.input = input;
+        }
+
+        /**
+         * Sets the input without updating the usages, which makes the edges of this node invalid.
+         */
+        void corruptInput(TestNode newInput) {
+            this.input = newInput;
+        }
+    }
+
+    private static final int NODE_COUNT = 20000;
+
+    private static TestNode[] createNodes(Graph graph) {
+        TestNode[] nodes = new TestNode[NODE_COUNT];
+        TestNode previous = null;
+        for (int i = 0; i < NODE_COUNT; i++) {
+            nodes[i] = graph.add(new TestNode(previous));
+            previous = nodes[i];
+        }
+        return nodes;
+    }
+
+    @SuppressWarnings("try")
+    private static GraalGraphError verify(Graph graph, int threshold) {
+        try (OverrideScope s = OptionValue.override(Graph.Options.VerifyGraalGraphEdges, true, Graph.Options.ParallelGraphEdgeVerificationThreshold, threshold)) {
+            graph.verify();
+            return null;
+        } catch (GraalGraphError e) {
+            return e;
+        }
+    }
+
+    @Test
+    public void testValidGraph() {
+        Graph graph = new Graph();
+        createNodes(graph);
+        assertEquals(null, verify(graph, 1));
+    }
+
+    @Test
+    public void testSameError() {
+        Graph graph = new Graph();
+        TestNode[] nodes = createNodes(graph);
+        nodes[15000].corruptInput(nodes[3]);
+        nodes[7000].corruptInput(nodes[12]);
+
+        GraalGraphError sequential = verify(graph, 0);
+        GraalGraphError parallel = verify(graph, 1);
+        if (sequential == null || parallel == null) {
+            fail("verification should fail");
+        }
+        // the old input of the first corrupted node still lists it as a usage
+        assertTrue(sequential.node() == nodes[6999]);
+        assertTrue(parallel.node() == sequential.node());
+        assertEquals(sequential.getMessage(), parallel.getMessage());
+    }
+}
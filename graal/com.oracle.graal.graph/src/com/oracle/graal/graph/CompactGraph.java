@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.graph;
+
+import static com.oracle.graal.graph.NodeClass.LIST_MASK;
+import static com.oracle.graal.graph.NodeClass.NEXT_EDGE;
+import static com.oracle.graal.graph.NodeClass.OFFSET_MASK;
+
+import java.util.Arrays;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugCloseable;
+import com.oracle.graal.debug.DebugCounter;
+import com.oracle.graal.debug.DebugTimer;
+
+/**
+ * A compact, struct-of-arrays snapshot of the nodes and edges of a {@link Graph}. The inputs,
+ * successors, usages and predecessor of every node are stored as node identifiers in flat
+ * {@code int} arrays indexed by node identifier. Walking the edges of a snapshot therefore does not
+ * go through the reflective {@link Edges} offsets of a {@link NodeClass} and does not allocate
+ * iterators, which gives much better locality for phases that repeatedly traverse a large graph
+ * without modifying it.
+ * <p>
+ * A snapshot uses the node identifiers of the graph it was created from. As such, it can be used
+ * directly with the id based accessors of {@link NodeBitMap} and {@link NodeMap} instances created
+ * for the same graph. The snapshot does not observe changes to the graph made after its creation
+ * and must be recreated once the graph has been modified (see {@link #isCurrent()}).
+ */
+public final class CompactGraph extends NodeIdAccessor {
+
+    private static final DebugCounter CompactGraphs = Debug.counter("CompactGraphs");
+    private static final DebugCounter CompactGraphEdges = Debug.counter("CompactGraphEdges");
+    private static final DebugTimer CompactGraphCreation = Debug.timer("CompactGraphCreation");
+
+    /**
+     * Denotes the absence of a node in {@link #getPredecessor(int)}.
+     */
+    public static final int NO_NODE = -1;
+
+    private final Node[] nodes;
+    private final int liveNodeCount;
+    private final int deletedNodeCount;
+
+    /**
+     * The inputs of the node with id {@code i} are {@code inputIds[inputStart[i]]} up to but
+     * excluding {@code inputIds[inputStart[i + 1]]}. The same encoding is used for successors and
+     * usages.
+     */
+    private final int[] inputStart;
+    private final int[] inputIds;
+    private final int[] successorStart;
+    private final int[] successorIds;
+    private final int[] usageStart;
+    private final int[] usageIds;
+    private final int[] predecessorIds;
+
+    @SuppressWarnings("try")
+    CompactGraph(Graph graph) {
+        super(graph);
+        try (DebugCloseable t = CompactGraphCreation.start()) {
+            int nodeIdCount = graph.nodeIdCount();
+            this.nodes = Arrays.copyOf(graph.nodes, nodeIdCount);
+            this.liveNodeCount = graph.getNodeCount();
+            this.deletedNodeCount = graph.getNodesDeletedSinceLastCompression();
+            this.inputStart = new int[nodeIdCount + 1];
+            this.successorStart = new int[nodeIdCount + 1];
+            this.usageStart = new int[nodeIdCount + 1];
+            this.predecessorIds = new int[nodeIdCount];
+
+            IdBuffer inputs = new IdBuffer(nodeIdCount * 2);
+            IdBuffer successors = new IdBuffer(nodeIdCount);
+            IdBuffer usages = new IdBuffer(nodeIdCount * 2);
+            for (int id = 0; id < nodeIdCount; id++) {
+                inputStart[id] = inputs.size;
+                successorStart[id] = successors.size;
+                usageStart[id] = usages.size;
+                Node node = nodes[id];
+                if (node == null) {
+                    predecessorIds[id] = NO_NODE;
+                    continue;
+                }
+                NodeClass<?> nodeClass = node.getNodeClass();
+                appendEdges(node, nodeClass.inputsIteration(), inputs);
+                appendEdges(node, nodeClass.successorIteration(), successors);
+                int usageCount = node.getUsageCount();
+                for (int i = 0; i < usageCount; i++) {
+                    usages.add(node.getUsageAt(i).id);
+                }
+                Node predecessor = node.predecessor();
+                predecessorIds[id] = predecessor == null ? NO_NODE : predecessor.id;
+            }
+            inputStart[nodeIdCount] = inputs.size;
+            successorStart[nodeIdCount] = successors.size;
+            usageStart[nodeIdCount] = usages.size;
+            this.inputIds = inputs.toArray();
+            this.successorIds = successors.toArray();
+            this.usageIds = usages.toArray();
+        }
+        CompactGraphs.increment();
+        CompactGraphEdges.add(inputIds.length + successorIds.length);
+    }
+
+    /**
+     * Appends the identifiers of the non-null edges of {@code node} described by the
+     * {@linkplain NodeClass#inputsIteration() iteration mask} {@code mask} to {@code buffer}.
+     */
+    private static void appendEdges(Node node, long mask, IdBuffer buffer) {
+        long myMask = mask;
+        while (myMask != 0) {
+            long offset = myMask & OFFSET_MASK;
+            if ((myMask & LIST_MASK) == 0) {
+                Node curNode = Edges.getNodeUnsafe(node, offset);
+                if (curNode != null) {
+                    buffer.add(curNode.id);
+                }
+            } else {
+                NodeList<Node> list = Edges.getNodeListUnsafe(node, offset);
+                if (list != null) {
+                    Node[] listNodes = list.nodes;
+                    for (int i = 0; i < list.size(); ++i) {
+                        Node curNode = listNodes[i];
+                        if (curNode != null) {
+                            buffer.add(curNode.id);
+                        }
+                    }
+                }
+            }
+            myMask >>>= NEXT_EDGE;
+        }
+    }
+
+    /**
+     * A growable list of node identifiers.
+     */
+    private static final class IdBuffer {
+        private int[] ids;
+        private int size;
+
+        IdBuffer(int initialCapacity) {
+            ids = new int[Math.max(initialCapacity, 4)];
+        }
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+
+    public Graph graph() {
+        return graph;
+    }
+
+    /**
+     * Determines if the graph has not been modified in a way that is detectable by this snapshot.
+     * Node additions, deletions and {@linkplain Graph#compress() compressions} are detected
+     * but changes to the edges of existing nodes are not.
+     */
+    public boolean isCurrent() {
+        return graph.compressions == epoch && graph.nodeIdCount() == nodes.length && graph.getNodesDeletedSinceLastCompression() == deletedNodeCount;
+    }
+
+    /**
+     * Gets the number of node identifiers covered by this snapshot. All valid node identifiers are
+     * in the range {@code [0 .. getNodeIdCount())}.
+     */
+    public int getNodeIdCount() {
+        return nodes.length;
+    }
+
+    /**
+     * Gets the number of live nodes in this snapshot.
+     */
+    public int getNodeCount() {
+        return liveNodeCount;
+    }
+
+    /**
+     * Gets the identifier of {@code node} which must be a node in this snapshot.
+     */
+    public int getId(Node node) {
+        assert node.graph() == graph : node + " is not part of " + graph;
+        int id = getNodeId(node);
+        assert id < nodes.length && nodes[id] == node : node + " was added after creating the snapshot";
+        return id;
+    }
+
+    /**
+     * Gets the node for a given identifier or {@code null} if there was no live node with this
+     * identifier when the snapshot was created.
+     */
+    public Node getNode(int id) {
+        return nodes[id];
+    }
+
+    public boolean isAlive(int id) {
+        return nodes[id] != null;
+    }
+
+    /**
+     * Gets the identifier of the first live node whose identifier is equal to or greater than
+     * {@code id}.
+     *
+     * @return the identifier of the next live node or {@link #getNodeIdCount()} if there is no such
+     *         node
+     */
+    public int nextLiveId(int id) {
+        int i = id;
+        while (i < nodes.length && nodes[i] == null) {
+            i++;
+        }
+        return i;
+    }
+
+    public int getInputCount(int id) {
+        return inputStart[id + 1] - inputStart[id];
+    }
+
+    /**
+     * Gets the identifier of the input at {@code index} of the node with identifier {@code id}.
+     * Inputs are ordered as in {@link Node#inputs()}.
+     */
+    public int getInput(int id, int index) {
+        assert index < getInputCount(id);
+        return inputIds[inputStart[id] + index];
+    }
+
+    public int getSuccessorCount(int id) {
+        return successorStart[id + 1] - successorStart[id];
+    }
+
+    /**
+     * Gets the identifier of the successor at {@code index} of the node with identifier {@code id}.
+     * Successors are ordered as in {@link Node#successors()}.
+     */
+    public int getSuccessor(int id, int index) {
+        assert index < getSuccessorCount(id);
+        return successorIds[successorStart[id] + index];
+    }
+
+    public int getUsageCount(int id) {
+        return usageStart[id + 1] - usageStart[id];
+    }
+
+    /**
+     * Gets the identifier of the usage at {@code index} of the node with identifier {@code id}.
+     * Usages are ordered as in {@link Node#usages()}.
+     */
+    public int getUsage(int id, int index) {
+        assert index < getUsageCount(id);
+        return usageIds[usageStart[id] + index];
+    }
+
+    /**
+     * Gets the identifier of the predecessor of the node with identifier {@code id} or
+     * {@link #NO_NODE} if it has no predecessor.
+     */
+    public int getPredecessor(int id) {
+        return predecessorIds[id];
+    }
+
+    /**
+     * Marks all nodes in {@code map} that are transitively reachable from the nodes already marked
+     * in {@code map} by following input edges.
+     */
+    public void markInputClosure(NodeBitMap map) {
+        markClosure(map, inputStart, inputIds);
+    }
+
+    /**
+     * Marks all nodes in {@code map} that are transitively reachable from the nodes already marked
+     * in {@code map} by following usage edges.
+     */
+    public void markUsageClosure(NodeBitMap map) {
+        markClosure(map, usageStart, usageIds);
+    }
+
+    private void markClosure(NodeBitMap map, int[] start, int[] ids) {
+        assert map.graph() == graph;
+        map.grow();
+        int[] worklist = new int[nodes.length];
+        int top = 0;
+        for (int id = 0; id < nodes.length; id++) {
+            if (nodes[id] != null && map.isMarked(id)) {
+                worklist[top++] = id;
+            }
+        }
+        while (top > 0) {
+            int id = worklist[--top];
+            for (int i = start[id]; i < start[id + 1]; i++) {
+                int other = ids[i];
+                if (!map.isMarked(other)) {
+                    map.mark(other);
+                    worklist[top++] = other;
+                }
+            }
+        }
+    }
+}
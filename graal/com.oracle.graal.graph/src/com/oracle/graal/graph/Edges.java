@@ -233,6 +233,7 @@ public abstract class Edges extends Fields {
     public void setNode(Node node, int index, Node value) {
         assert index < directCount;
         Node old = getNodeUnsafe(node, offsets[index]);
+        node.recordForRollback();
         initializeNode(node, index, value);
         update(node, old, value);
     }
@@ -27,6 +27,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.Consumer;
 
 import com.oracle.graal.compiler.common.CollectionsFactory;
@@ -41,6 +43,9 @@ import com.oracle.graal.graph.iterators.NodeIterable;
 import com.oracle.graal.options.Option;
 import com.oracle.graal.options.OptionType;
 import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+import sun.misc.Unsafe;
 
 /**
  * This class is a graph container, it contains the set of nodes that belong to this graph.
@@ -52,6 +57,8 @@ public class Graph {
         public static final OptionValue<Boolean> VerifyGraalGraphs = new OptionValue<>(true);
         @Option(help = "Perform expensive verification of graph inputs, usages, successors and predecessors", type = OptionType.Debug)//
         public static final OptionValue<Boolean> VerifyGraalGraphEdges = new OptionValue<>(false);
+        @Option(help = "Minimum number of nodes in a graph for its edges to be verified in parallel (0 disables parallel verification)", type = OptionType.Debug)//
+        public static final OptionValue<Integer> ParallelGraphEdgeVerificationThreshold = new OptionValue<>(4096);
         @Option(help = "Graal graph compression is performed when percent of live nodes falls below this value", type = OptionType.Debug)//
         public static final OptionValue<Integer> GraphCompressionThreshold = new OptionValue<>(70);
         @Option(help = "Use Unsafe to clone graph nodes thus avoiding copying fields that will be re-initialized anyway", type = OptionType.Debug)//
@@ -105,6 +112,11 @@ public class Graph {
 
     NodeEventListener nodeEventListener;
 
+    /**
+     * The active transaction recording changes to this graph, if any.
+     */
+    GraphTransaction transaction;
+
     /**
      * Used to global value number {@link ValueNumberable} {@linkplain NodeClass#isLeafNode() leaf}
      * nodes.
@@ -655,7 +667,8 @@ public class Graph {
                 }
             }
             if (minCountNode != null) {
-                for (Node usage : minCountNode.usages()) {
+                for (int i = 0; i < minCountNode.getUsageCount(); i++) {
+                    Node usage = minCountNode.getUsageAt(i);
                     if (usage != node && nodeClass == usage.getNodeClass() && node.valueEquals(usage) && nodeClass.equalInputs(node, usage) &&
                                     nodeClass.equalSuccessors(node, usage)) {
                         return (T) usage;
@@ -727,6 +740,34 @@ public class Graph {
         return new Mark(this);
     }
 
+    /**
+     * Starts recording the structural changes made to this graph so that they can be
+     * {@linkplain GraphTransaction#rollback() rolled back}. Transactions cannot be nested.
+     */
+    public GraphTransaction beginTransaction() {
+        assert !isFrozen();
+        GraalError.guarantee(transaction == null, "graph %s already has an active transaction", this);
+        transaction = new GraphTransaction(this);
+        return transaction;
+    }
+
+    /**
+     * Updates the bookkeeping of this graph after a {@linkplain GraphTransaction#rollback()
+     * rollback} has restored the nodes deleted during the transaction.
+     */
+    void afterRollback(int deletedBefore, boolean rebuildIterableNodeLists) {
+        nodesDeletedSinceLastCompression = deletedBefore;
+        if (rebuildIterableNodeLists) {
+            for (int i = 0; i < nodesSize; i++) {
+                Node node = nodes[i];
+                if (node != null) {
+                    node.typeCacheNext = null;
+                }
+            }
+            recomputeIterableNodeLists();
+        }
+    }
+
     /**
      * Returns an {@link Iterable} providing all nodes added since the last {@link Graph#getMark()
      * mark}.
@@ -779,14 +820,16 @@ public class Graph {
     public static final int COMPRESSION_THRESHOLD = Options.GraphCompressionThreshold.getValue();
 
     private static final DebugCounter GraphCompressions = Debug.counter("GraphCompressions");
+    private static final DebugCounter GraphCompressionReclaimedIds = Debug.counter("GraphCompressionReclaimedIds");
+    private static final DebugCounter GraphCompressionReclaimedBytes = Debug.counter("GraphCompressionReclaimedBytes");
+    private static final DebugTimer ParallelEdgeVerification = Debug.timer("ParallelEdgeVerification");
 
     /**
      * If the {@linkplain #COMPRESSION_THRESHOLD compression threshold} is met, the list of nodes is
-     * compressed such that all non-null entries precede all null entries while preserving the
-     * ordering between the nodes within the list.
+     * {@linkplain #compress() compressed}.
      */
     public boolean maybeCompress() {
-        if (Debug.isDumpEnabledForMethod() || Debug.isLogEnabledForMethod()) {
+        if (nodesSize == 0) {
             return false;
         }
         int liveNodeCount = getNodeCount();
@@ -794,7 +837,35 @@ public class Graph {
         if (COMPRESSION_THRESHOLD == 0 || liveNodePercent >= COMPRESSION_THRESHOLD) {
             return false;
         }
+        return compress();
+    }
+
+    /**
+     * Compresses the list of nodes such that all non-null entries precede all null entries while
+     * preserving the ordering between the nodes within the list. Live nodes are renumbered densely,
+     * so that {@link NodeMap}s, {@link NodeBitMap}s and other structures indexed by node id created
+     * after the compression are sized to the number of live nodes instead of the highest node id
+     * ever allocated. The backing array of the node list is trimmed if it has become much larger
+     * than required.
+     * <p>
+     * Node identifiers are not stable across a compression, see {@link #getCompressions()}.
+     *
+     * @return true if the graph was compressed, false if it has no deleted nodes or compressions
+     *         are currently disabled because node identifiers may be observed by dumping or logging
+     *         or are used by an active {@link GraphTransaction}
+     */
+    public boolean compress() {
+        if (Debug.isDumpEnabledForMethod() || Debug.isLogEnabledForMethod()) {
+            return false;
+        }
+        if (transaction != null) {
+            return false;
+        }
+        if (nodesDeletedSinceLastCompression == 0) {
+            return false;
+        }
         GraphCompressions.increment();
+        int liveNodeCount = getNodeCount();
         int nextId = 0;
         for (int i = 0; nextId < liveNodeCount; i++) {
             Node n = nodes[i];
@@ -809,10 +880,22 @@ public class Graph {
                 nextId++;
             }
         }
+        int reclaimedIds = nodesSize - nextId;
+        GraphCompressionReclaimedIds.add(reclaimedIds);
+        /*
+         * Structures indexed by node id typically use one reference or object per node id (e.g.,
+         * NodeMap). Report the footprint saved per such structure.
+         */
+        GraphCompressionReclaimedBytes.add((long) reclaimedIds * Unsafe.ARRAY_OBJECT_INDEX_SCALE);
+        int trimmedLength = Math.max(INITIAL_NODES_SIZE, nextId + (nextId >> 2));
+        if (nodes.length > 2 * trimmedLength) {
+            GraphCompressionReclaimedBytes.add((long) (nodes.length - trimmedLength) * Unsafe.ARRAY_OBJECT_INDEX_SCALE);
+            nodes = Arrays.copyOf(nodes, trimmedLength);
+        }
         if (isModificationCountsEnabled()) {
             // This will cause any current iteration to fail with an assertion
-            Arrays.fill(nodeModCounts, 0);
-            Arrays.fill(nodeUsageModCounts, 0);
+            nodeModCounts = new int[nodes.length];
+            nodeUsageModCounts = new int[nodes.length];
         }
         nodesSize = nextId;
         compressions++;
@@ -921,6 +1004,13 @@ public class Graph {
         return new NodeMap<>(this);
     }
 
+    /**
+     * Creates a {@link CompactGraph} snapshot of the current nodes and edges of this graph.
+     */
+    public CompactGraph createCompactGraph() {
+        return new CompactGraph(this);
+    }
+
     public NodeFlood createNodeFlood() {
         return new NodeFlood(this);
     }
@@ -1004,31 +1094,119 @@ public class Graph {
     void unregister(Node node) {
         assert !isFrozen();
         assert !node.isDeleted() : "cannot delete a node twice! node=" + node;
+        if (transaction != null) {
+            transaction.recordDeletion(node);
+        }
         nodes[node.id] = null;
         nodesDeletedSinceLastCompression++;
 
         // nodes aren't removed from the type cache here - they will be removed during iteration
     }
 
+    @SuppressWarnings("try")
     public boolean verify() {
         if (Options.VerifyGraalGraphs.getValue()) {
-            for (Node node : getNodes()) {
-                try {
-                    try {
-                        assert node.verify();
-                    } catch (AssertionError t) {
-                        throw new GraalError(t);
-                    } catch (RuntimeException t) {
-                        throw new GraalError(t);
+            int threshold = Options.ParallelGraphEdgeVerificationThreshold.getValue();
+            if (threshold > 0 && getNodeCount() >= threshold && Options.VerifyGraalGraphEdges.getValue() && assertionsEnabled()) {
+                /*
+                 * The edges of all nodes are checked in parallel first. The nodes before the first
+                 * node with invalid edges are then verified sequentially without edge checks and
+                 * the remaining nodes are verified completely, so the error reported is the same
+                 * as for a sequential verification.
+                 */
+                int firstInvalid;
+                try (DebugCloseable t = ParallelEdgeVerification.start()) {
+                    firstInvalid = ForkJoinPool.commonPool().invoke(new EdgeVerificationTask(nodes, 0, nodesSize));
+                }
+                try (OverrideScope s = OptionValue.override(Options.VerifyGraalGraphEdges, false)) {
+                    for (int i = 0; i < firstInvalid && i < nodesSize; i++) {
+                        if (nodes[i] != null) {
+                            verifyNode(nodes[i]);
+                        }
                     }
-                } catch (GraalError e) {
-                    throw GraalGraphError.transformAndAddContext(e, node).addContext(this);
+                }
+                for (int i = firstInvalid; i < nodesSize; i++) {
+                    if (nodes[i] != null) {
+                        verifyNode(nodes[i]);
+                    }
+                }
+            } else {
+                for (Node node : getNodes()) {
+                    verifyNode(node);
                 }
             }
         }
         return true;
     }
 
+    private void verifyNode(Node node) {
+        try {
+            try {
+                assert node.verify();
+            } catch (AssertionError t) {
+                throw new GraalError(t);
+            } catch (RuntimeException t) {
+                throw new GraalError(t);
+            }
+        } catch (GraalError e) {
+            throw GraalGraphError.transformAndAddContext(e, node).addContext(this);
+        }
+    }
+
+    @SuppressWarnings("all")
+    private static boolean assertionsEnabled() {
+        boolean enabled = false;
+        assert enabled = true;
+        return enabled;
+    }
+
+    /**
+     * Checks the {@linkplain Node#verifyEdges() edges} of the nodes in a range of node ids,
+     * splitting the range into subtasks while it is larger than {@link #CHUNK_SIZE}.
+     */
+    private static final class EdgeVerificationTask extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 6617395862347416713L;
+
+        private static final int CHUNK_SIZE = 512;
+
+        private final Node[] nodes;
+        private final int start;
+        private final int end;
+
+        EdgeVerificationTask(Node[] nodes, int start, int end) {
+            this.nodes = nodes;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * @return the id of the first node in the range whose edges are invalid or
+         *         {@link Integer#MAX_VALUE} if all edges in the range are valid
+         */
+        @Override
+        protected Integer compute() {
+            if (end - start <= CHUNK_SIZE) {
+                for (int i = start; i < end; i++) {
+                    Node node = nodes[i];
+                    if (node != null) {
+                        try {
+                            node.verifyEdges();
+                        } catch (AssertionError | RuntimeException | GraalError e) {
+                            return i;
+                        }
+                    }
+                }
+                return Integer.MAX_VALUE;
+            }
+            int middle = (start + end) >>> 1;
+            EdgeVerificationTask low = new EdgeVerificationTask(nodes, start, middle);
+            low.fork();
+            int high = new EdgeVerificationTask(nodes, middle, end).compute();
+            return Math.min(low.join(), high);
+        }
+    }
+
     public Node getNode(int id) {
         return nodes[id];
     }
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.graph;
+
+import static com.oracle.graal.graph.Node.NOT_ITERABLE;
+
+import java.util.Arrays;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugCounter;
+
+import sun.misc.Unsafe;
+
+/**
+ * Records the structural changes made to a {@link Graph} so that they can be undone without
+ * copying the graph. A transaction is started with {@link Graph#beginTransaction()} and ends with
+ * either {@link #rollback()} or {@link #close()}:
+ *
+ * <pre>
+ * try (GraphTransaction transaction = graph.beginTransaction()) {
+ *     ...
+ *     if (!profitable) {
+ *         transaction.rollback();
+ *     }
+ * }
+ * </pre>
+ *
+ * Nodes added during the transaction are identified by their id, so the graph is not
+ * {@linkplain Graph#compress() compressed} while a transaction is active. The first time a node that
+ * existed when the transaction started is about to have its inputs, successors, usages or
+ * predecessor changed, its complete edge state is appended to a flat log. Nodes that are not
+ * touched cost nothing. Rolling back restores the logged states, removes the nodes added since the
+ * start of the transaction and re-registers the nodes that were deleted.
+ *
+ * Only the graph structure is restored. Changes to the data fields of existing nodes (e.g., stamps)
+ * are not undone and no {@link Graph.NodeEventListener} is notified during the rollback. Nodes that
+ * update their own edge fields must call {@link Node#updateUsages(Node, Node)} or
+ * {@link Node#updatePredecessor(Node, Node)} before writing the field, as required anyway.
+ */
+public final class GraphTransaction extends NodeIdAccessor implements AutoCloseable {
+
+    private static final DebugCounter GraphTransactions = Debug.counter("GraphTransactions");
+    private static final DebugCounter GraphTransactionRollbacks = Debug.counter("GraphTransactionRollbacks");
+    private static final DebugCounter GraphTransactionRecordedNodes = Debug.counter("GraphTransactionRecordedNodes");
+    private static final DebugCounter GraphTransactionRecordedBytes = Debug.counter("GraphTransactionRecordedBytes");
+    private static final DebugCounter GraphTransactionUncopiedNodes = Debug.counter("GraphTransactionUncopiedNodes");
+
+    private final Graph.Mark mark;
+    private final int markedSize;
+    private final int deletedBefore;
+
+    /**
+     * Bit set over the ids below {@link #markedSize} of the nodes whose state has been recorded.
+     */
+    private final long[] recordedIds;
+
+    private Node[] recordedNodes = new Node[8];
+    private int[] recordStarts = new int[8 * 3];
+    private int recordedCount;
+
+    /**
+     * The predecessor, usages, direct edges and list contents of each recorded node.
+     */
+    private Node[] values = new Node[32];
+    private int valuesSize;
+
+    /**
+     * The usage count and the size of each edge list of each recorded node (-1 for a null list).
+     */
+    private int[] sizes = new int[16];
+    private int sizesSize;
+
+    /**
+     * The edge list objects of each recorded node.
+     */
+    private NodeList<?>[] lists = new NodeList<?>[8];
+    private int listsSize;
+
+    private Node[] deletedNodes = new Node[4];
+    private int[] deletedIds = new int[4];
+    private int deletedCount;
+
+    GraphTransaction(Graph graph) {
+        super(graph);
+        this.mark = graph.getMark();
+        this.markedSize = graph.nodeIdCount();
+        this.deletedBefore = graph.getNodesDeletedSinceLastCompression();
+        this.recordedIds = new long[(markedSize >> 6) + 1];
+        GraphTransactions.increment();
+        GraphTransactionUncopiedNodes.add(graph.getNodeCount());
+    }
+
+    /**
+     * Gets a mark denoting the state of the graph when this transaction started. The nodes added
+     * during the transaction are {@link Graph#getNewNodes(Graph.Mark)}.
+     */
+    public Graph.Mark getMark() {
+        return mark;
+    }
+
+    /**
+     * Determines if changes to the graph are still being recorded by this transaction.
+     */
+    public boolean isActive() {
+        return graph.transaction == this;
+    }
+
+    /**
+     * Gets the number of existing nodes whose state has been recorded so far.
+     */
+    public int getRecordedNodeCount() {
+        return recordedCount;
+    }
+
+    /**
+     * Gets an estimate of the number of bytes used by this transaction's log.
+     */
+    public long getRecordedBytes() {
+        long references = recordedNodes.length + values.length + lists.length + deletedNodes.length;
+        long ints = recordStarts.length + sizes.length + deletedIds.length + recordedIds.length * 2L;
+        return references * Unsafe.ARRAY_OBJECT_INDEX_SCALE + ints * Unsafe.ARRAY_INT_INDEX_SCALE;
+    }
+
+    /**
+     * Records the state of {@code node} if it existed when this transaction started and this is
+     * the first change to it.
+     */
+    void record(Node node) {
+        int id = node.id;
+        if (id < 0 || id >= markedSize) {
+            return;
+        }
+        int word = id >> 6;
+        long bit = 1L << id;
+        if ((recordedIds[word] & bit) != 0) {
+            return;
+        }
+        recordedIds[word] |= bit;
+        save(node);
+    }
+
+    /**
+     * Records that {@code node} is about to be removed from the graph.
+     */
+    void recordDeletion(Node node) {
+        int id = node.id;
+        if (id >= markedSize) {
+            return;
+        }
+        record(node);
+        if (deletedCount == deletedNodes.length) {
+            deletedNodes = Arrays.copyOf(deletedNodes, deletedCount * 2);
+            deletedIds = Arrays.copyOf(deletedIds, deletedCount * 2);
+        }
+        deletedNodes[deletedCount] = node;
+        deletedIds[deletedCount] = id;
+        deletedCount++;
+    }
+
+    private void save(Node node) {
+        if (recordedCount == recordedNodes.length) {
+            recordedNodes = Arrays.copyOf(recordedNodes, recordedCount * 2);
+            recordStarts = Arrays.copyOf(recordStarts, recordedCount * 2 * 3);
+        }
+        recordedNodes[recordedCount] = node;
+        recordStarts[recordedCount * 3] = valuesSize;
+        recordStarts[recordedCount * 3 + 1] = sizesSize;
+        recordStarts[recordedCount * 3 + 2] = listsSize;
+        recordedCount++;
+
+        int usageCount = node.getUsageCount();
+        pushSize(usageCount);
+        pushValue(node.predecessor());
+        for (int i = 0; i < usageCount; i++) {
+            pushValue(node.getUsageAt(i));
+        }
+        NodeClass<?> nodeClass = node.getNodeClass();
+        saveEdges(node, nodeClass.getInputEdges());
+        saveEdges(node, nodeClass.getSuccessorEdges());
+    }
+
+    private void saveEdges(Node node, Edges edges) {
+        long[] offsets = edges.getOffsets();
+        int directCount = edges.getDirectCount();
+        for (int i = 0; i < directCount; i++) {
+            pushValue(Edges.getNode(node, offsets, i));
+        }
+        for (int i = directCount; i < edges.getCount(); i++) {
+            NodeList<Node> list = Edges.getNodeList(node, offsets, i);
+            pushList(list);
+            if (list == null) {
+                pushSize(-1);
+            } else {
+                int size = list.size();
+                pushSize(size);
+                for (int j = 0; j < size; j++) {
+                    pushValue(list.get(j));
+                }
+            }
+        }
+    }
+
+    private void pushValue(Node value) {
+        if (valuesSize == values.length) {
+            values = Arrays.copyOf(values, valuesSize * 2);
+        }
+        values[valuesSize++] = value;
+    }
+
+    private void pushSize(int size) {
+        if (sizesSize == sizes.length) {
+            sizes = Arrays.copyOf(sizes, sizesSize * 2);
+        }
+        sizes[sizesSize++] = size;
+    }
+
+    private void pushList(NodeList<?> list) {
+        if (listsSize == lists.length) {
+            lists = Arrays.copyOf(lists, listsSize * 2);
+        }
+        lists[listsSize++] = list;
+    }
+
+    /**
+     * Undoes all structural changes made to the graph since this transaction started and ends the
+     * transaction.
+     */
+    public void rollback() {
+        assert isActive() : "transaction is not active";
+        assert verifyIdsAreStable();
+        end();
+        GraphTransactionRollbacks.increment();
+
+        for (int i = 0; i < recordedCount; i++) {
+            restore(i);
+        }
+
+        Node[] nodes = graph.nodes;
+        for (int id = markedSize; id < graph.nodesSize; id++) {
+            Node node = nodes[id];
+            if (node != null) {
+                node.id = Node.DELETED_ID_START - id;
+                nodes[id] = null;
+            }
+        }
+        graph.nodesSize = markedSize;
+
+        boolean rebuildIterableNodeLists = false;
+        for (int i = deletedCount - 1; i >= 0; i--) {
+            Node node = deletedNodes[i];
+            int id = deletedIds[i];
+            node.id = id;
+            nodes[id] = node;
+            NodeClass<?> nodeClass = node.getNodeClass();
+            if (nodeClass.iterableId() != NOT_ITERABLE) {
+                rebuildIterableNodeLists = true;
+            }
+            if (nodeClass.valueNumberable() && nodeClass.isLeafNode() && graph.findNodeInCache(node) == null) {
+                graph.putNodeIntoCache(node);
+            }
+        }
+        graph.afterRollback(deletedBefore, rebuildIterableNodeLists);
+    }
+
+    private void restore(int index) {
+        Node node = recordedNodes[index];
+        int valueIndex = recordStarts[index * 3];
+        int sizeIndex = recordStarts[index * 3 + 1];
+        int listIndex = recordStarts[index * 3 + 2];
+
+        int usageCount = sizes[sizeIndex++];
+        Node predecessor = values[valueIndex++];
+        node.restoreUsagesAndPredecessor(values, valueIndex, usageCount, predecessor);
+        valueIndex += usageCount;
+
+        NodeClass<?> nodeClass = node.getNodeClass();
+        for (Edges edges : new Edges[]{nodeClass.getInputEdges(), nodeClass.getSuccessorEdges()}) {
+            int directCount = edges.getDirectCount();
+            for (int i = 0; i < directCount; i++) {
+                edges.initializeNode(node, i, values[valueIndex++]);
+            }
+            for (int i = directCount; i < edges.getCount(); i++) {
+                @SuppressWarnings("unchecked")
+                NodeList<Node> list = (NodeList<Node>) lists[listIndex++];
+                int size = sizes[sizeIndex++];
+                edges.initializeList(node, i, list);
+                if (list != null) {
+                    list.restore(values, valueIndex, size);
+                    valueIndex += size;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops recording changes. The changes made during the transaction are kept.
+     */
+    @Override
+    public void close() {
+        if (isActive()) {
+            end();
+        }
+    }
+
+    private void end() {
+        graph.transaction = null;
+        GraphTransactionRecordedNodes.add(recordedCount);
+        GraphTransactionRecordedBytes.add(getRecordedBytes());
+    }
+}
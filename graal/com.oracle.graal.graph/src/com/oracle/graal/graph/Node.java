@@ -29,6 +29,7 @@ import static com.oracle.graal.graph.UnsafeAccess.UNSAFE;
 
 import java.lang.annotation.ElementType;
 import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -380,7 +381,17 @@ public abstract class Node implements Cloneable, Formattable, NodeInterface {
     }
 
     /**
-     * Gets the maximum number of usages this node has had at any point in time.
+     * Gets the number of usages of this node. Together with {@link #getUsageAt(int)}, this can be
+     * used to traverse the usages of this node without allocating an iterator:
+     *
+     * <pre>
+     * for (int i = 0; i &lt; node.getUsageCount(); i++) {
+     *     Node usage = node.getUsageAt(i);
+     *     ...
+     * }
+     * </pre>
+     *
+     * The usage list must not be modified during such a traversal.
      */
     public int getUsageCount() {
         if (usage0 == null) {
@@ -449,6 +460,7 @@ public abstract class Node implements Cloneable, Formattable, NodeInterface {
     }
 
     private void movUsageFromEndTo(int destIndex) {
+        recordForRollback();
         int lastIndex = this.getUsageCount() - 1;
         if (destIndex == 0) {
             if (lastIndex == 0) {
@@ -518,6 +530,7 @@ public abstract class Node implements Cloneable, Formattable, NodeInterface {
         if (isModificationCountsEnabled() && graph != null) {
             graph.incModCount(this);
         }
+        recordForRollback();
     }
 
     final int usageModCount() {
@@ -531,6 +544,34 @@ public abstract class Node implements Cloneable, Formattable, NodeInterface {
         if (isModificationCountsEnabled() && graph != null) {
             graph.incUsageModCount(this);
         }
+        recordForRollback();
+    }
+
+    /**
+     * Records the state of this node in the {@linkplain Graph#beginTransaction() active
+     * transaction} of its graph before the edges, usages or predecessor of this node are modified.
+     */
+    final void recordForRollback() {
+        if (graph != null && graph.transaction != null) {
+            graph.transaction.record(this);
+        }
+    }
+
+    /**
+     * Overwrites the usages and predecessor of this node with state previously recorded by a
+     * {@link GraphTransaction}.
+     */
+    void restoreUsagesAndPredecessor(Node[] values, int offset, int count, Node newPredecessor) {
+        usage0 = count > 0 ? values[offset] : null;
+        usage1 = count > 1 ? values[offset + 1] : null;
+        if (count > INLINE_USAGE_COUNT) {
+            extraUsagesCount = count - INLINE_USAGE_COUNT;
+            extraUsages = Arrays.copyOfRange(values, offset + INLINE_USAGE_COUNT, offset + count);
+        } else {
+            extraUsagesCount = 0;
+            extraUsages = NO_NODES;
+        }
+        predecessor = newPredecessor;
     }
 
     public boolean isDeleted() {
@@ -549,6 +590,7 @@ public abstract class Node implements Cloneable, Formattable, NodeInterface {
     protected void updateUsages(Node oldInput, Node newInput) {
         assert isAlive() && (newInput == null || newInput.isAlive()) : "adding " + newInput + " to " + this + " instead of " + oldInput;
         if (oldInput != newInput) {
+            recordForRollback();
             if (oldInput != null) {
                 boolean result = removeThisFromUsages(oldInput);
                 assert assertTrue(result, "not found in usages, old input: %s", oldInput);
@@ -576,11 +618,14 @@ public abstract class Node implements Cloneable, Formattable, NodeInterface {
         assert isAlive() && (newSuccessor == null || newSuccessor.isAlive()) || newSuccessor == null && !isAlive() : "adding " + newSuccessor + " to " + this + " instead of " + oldSuccessor;
         assert graph == null || !graph.isFrozen();
         if (oldSuccessor != newSuccessor) {
+            recordForRollback();
             if (oldSuccessor != null) {
+                oldSuccessor.recordForRollback();
                 assert assertTrue(newSuccessor == null || oldSuccessor.predecessor == this, "wrong predecessor in old successor (%s): %s, should be %s", oldSuccessor, oldSuccessor.predecessor, this);
                 oldSuccessor.predecessor = null;
             }
             if (newSuccessor != null) {
+                newSuccessor.recordForRollback();
                 assert assertTrue(newSuccessor.predecessor == null, "unexpected non-null predecessor in new successor (%s): %s, this=%s", newSuccessor, newSuccessor.predecessor, this);
                 newSuccessor.predecessor = this;
             }
@@ -680,6 +725,11 @@ public abstract class Node implements Cloneable, Formattable, NodeInterface {
         }
     }
 
+    /**
+     * Gets the usage at position {@code index} in this node's usage list.
+     *
+     * @param index a value between 0 (inclusive) and {@link #getUsageCount()} (exclusive)
+     */
     public Node getUsageAt(int index) {
         if (index == 0) {
             return this.usage0;
@@ -709,15 +759,33 @@ public abstract class Node implements Cloneable, Formattable, NodeInterface {
         }
     }
 
+    /**
+     * Replaces this node with {@code other} in all input edges of type {@code type} of this node's
+     * usages. Like the other {@code replaceAtUsages} variants, this operates directly on the usage
+     * list of this node and does not allocate.
+     */
     public void replaceAtUsages(InputType type, Node other) {
         assert checkReplaceWith(other);
-        for (Node usage : usages().snapshot()) {
-            for (Position pos : usage.inputPositions()) {
-                if (pos.getInputType() == type && pos.get(usage) == this) {
-                    pos.set(usage, other);
+        int index = 0;
+        while (index < this.getUsageCount()) {
+            /*
+             * There is one entry in the usage list per input edge of the usage that refers to this
+             * node, so each entry accounts for at most one replaced edge.
+             */
+            Node usage = getUsageAt(index);
+            if (usage.getNodeClass().replaceFirstInput(usage, this, other, type)) {
+                maybeNotifyInputChanged(usage);
+                if (other != null) {
+                    other.addUsage(usage);
                 }
+                this.movUsageFromEndTo(index);
+            } else {
+                index++;
             }
         }
+        if (hasNoUsages()) {
+            maybeNotifyZeroUsages(this);
+        }
     }
 
     private void maybeNotifyInputChanged(Node node) {
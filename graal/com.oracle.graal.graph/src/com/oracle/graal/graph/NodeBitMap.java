@@ -95,6 +95,14 @@ public final class NodeBitMap implements NodeIterable<Node> {
         bits[id >> SHIFT] |= (1L << id);
     }
 
+    /**
+     * Marks the node with identifier {@code id}. This is useful in conjunction with a
+     * {@link CompactGraph} which exposes nodes by their identifiers.
+     */
+    public void mark(int id) {
+        bits[id >> SHIFT] |= (1L << id);
+    }
+
     public void markAndGrow(Node node) {
         assert check(node, true);
         int id = node.id();
@@ -108,6 +116,10 @@ public final class NodeBitMap implements NodeIterable<Node> {
         bits[id >> SHIFT] &= ~(1L << id);
     }
 
+    public void clear(int id) {
+        bits[id >> SHIFT] &= ~(1L << id);
+    }
+
     public void clearAndGrow(Node node) {
         assert check(node, true);
         int id = node.id();
@@ -154,11 +166,66 @@ public final class NodeBitMap implements NodeIterable<Node> {
         if (bits.length < other.bits.length) {
             bits = Arrays.copyOf(bits, other.bits.length);
         }
-        for (int i = 0; i < bits.length; i++) {
+        for (int i = 0; i < other.bits.length; i++) {
             bits[i] |= other.bits[i];
         }
     }
 
+    /**
+     * Gets the identifier of the first marked node whose identifier is equal to or greater than
+     * {@code fromNodeId}. Unmarked regions are skipped a word at a time.
+     *
+     * @return the identifier of the next marked node or -1 if there is none
+     */
+    public int nextMarkedNodeId(int fromNodeId) {
+        int wordIndex = fromNodeId >> SHIFT;
+        if (wordIndex >= bits.length) {
+            return -1;
+        }
+        long word = bits[wordIndex] & (-1L << fromNodeId);
+        while (true) {
+            if (word != 0) {
+                int id = (wordIndex << SHIFT) + Long.numberOfTrailingZeros(word);
+                return id < nodeCount ? id : -1;
+            }
+            if (++wordIndex == bits.length) {
+                return -1;
+            }
+            word = bits[wordIndex];
+        }
+    }
+
+    /**
+     * Gets the identifier of the first unmarked node identifier that is equal to or greater than
+     * {@code fromNodeId} and smaller than the {@linkplain Graph#nodeIdCount() current number} of
+     * node identifiers in the graph. Marked regions are skipped a word at a time. The returned
+     * identifier may denote a deleted node.
+     *
+     * @return the next unmarked node identifier or -1 if there is none
+     */
+    public int nextUnmarkedNodeId(int fromNodeId) {
+        int limit = graph.nodeIdCount();
+        if (fromNodeId >= limit) {
+            return -1;
+        }
+        int wordIndex = fromNodeId >> SHIFT;
+        if (wordIndex >= bits.length) {
+            return fromNodeId;
+        }
+        long word = ~bits[wordIndex] & (-1L << fromNodeId);
+        while (true) {
+            if (word != 0) {
+                int id = (wordIndex << SHIFT) + Long.numberOfTrailingZeros(word);
+                return id < limit ? id : -1;
+            }
+            if (++wordIndex == bits.length) {
+                int id = wordIndex << SHIFT;
+                return id < limit ? id : -1;
+            }
+            word = ~bits[wordIndex];
+        }
+    }
+
     public void grow() {
         nodeCount = Math.max(nodeCount, graph().nodeIdCount());
         int newLength = sizeForNodeCount(nodeCount);
@@ -184,27 +251,24 @@ public final class NodeBitMap implements NodeIterable<Node> {
     private static class MarkedNodeIterator implements Iterator<Node> {
 
         private final NodeBitMap visited;
-        private Iterator<Node> nodes;
+        private int nextId;
         private Node nextNode;
 
-        MarkedNodeIterator(NodeBitMap visited, Iterator<Node> nodes) {
+        MarkedNodeIterator(NodeBitMap visited) {
             this.visited = visited;
-            this.nodes = nodes;
             forward();
         }
 
         private void forward() {
+            Graph graph = visited.graph();
             do {
-                if (!nodes.hasNext()) {
-                    nextNode = null;
-                    return;
-                }
-                nextNode = nodes.next();
-                if (visited.isNew(nextNode)) {
+                nextId = visited.nextMarkedNodeId(nextId);
+                if (nextId < 0) {
                     nextNode = null;
                     return;
                 }
-            } while (!visited.isMarked(nextNode));
+                nextNode = graph.getNode(nextId++);
+            } while (nextNode == null);
         }
 
         @Override
@@ -230,7 +294,7 @@ public final class NodeBitMap implements NodeIterable<Node> {
 
     @Override
     public Iterator<Node> iterator() {
-        return new MarkedNodeIterator(NodeBitMap.this, graph().getNodes().iterator());
+        return new MarkedNodeIterator(NodeBitMap.this);
     }
 
     public NodeBitMap copy() {
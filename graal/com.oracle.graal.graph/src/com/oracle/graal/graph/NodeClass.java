@@ -173,6 +173,17 @@ public final class NodeClass<T> extends FieldIntrospection<T> {
     private final boolean isSimplifiable;
     private final boolean isLeafNode;
 
+    /*
+     * Offsets of the data fields grouped by their size in bytes, and offsets of the object data
+     * fields. This allows dataEquals and valueNumber to compare and hash the data fields without
+     * dispatching on the type of every field.
+     */
+    private final long[] dataOffsets8;
+    private final long[] dataOffsets4;
+    private final long[] dataOffsets2;
+    private final long[] dataOffsets1;
+    private final long[] dataObjectOffsets;
+
     public NodeClass(Class<T> clazz, NodeClass<? super T> superNodeClass) {
         this(clazz, superNodeClass, new FieldsScanner.DefaultCalcOffset(), null, 0);
     }
@@ -205,6 +216,11 @@ public final class NodeClass<T> extends FieldIntrospection<T> {
         try (DebugCloseable t1 = Init_Data.start()) {
             data = new Fields(fs.data);
         }
+        dataOffsets8 = dataOffsets(data, long.class, double.class);
+        dataOffsets4 = dataOffsets(data, int.class, float.class);
+        dataOffsets2 = dataOffsets(data, short.class, char.class);
+        dataOffsets1 = dataOffsets(data, byte.class, boolean.class);
+        dataObjectOffsets = dataOffsets(data, null, null);
 
         isLeafNode = inputs.getCount() + successors.getCount() == 0;
 
@@ -273,6 +289,22 @@ public final class NodeClass<T> extends FieldIntrospection<T> {
 
     }
 
+    /**
+     * Gets the offsets of the fields in {@code fields} whose type is {@code type1} or {@code type2},
+     * or the offsets of all non-primitive fields if both types are {@code null}.
+     */
+    private static long[] dataOffsets(Fields fields, Class<?> type1, Class<?> type2) {
+        int count = 0;
+        long[] offsets = new long[fields.getCount()];
+        for (int i = 0; i < fields.getCount(); i++) {
+            Class<?> type = fields.getType(i);
+            if (type1 == null ? !type.isPrimitive() : (type == type1 || type == type2)) {
+                offsets[count++] = fields.getOffsets()[i];
+            }
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
     private final NodeCycles cycles;
     private final NodeSize size;
 
@@ -561,44 +593,21 @@ public final class NodeClass<T> extends FieldIntrospection<T> {
         int number = 0;
         if (canGVN) {
             number = startGVNNumber;
-            for (int i = 0; i < data.getCount(); ++i) {
-                Class<?> type = data.getType(i);
-                if (type.isPrimitive()) {
-                    if (type == Integer.TYPE) {
-                        int intValue = data.getInt(n, i);
-                        number += intValue;
-                    } else if (type == Long.TYPE) {
-                        long longValue = data.getLong(n, i);
-                        number += longValue ^ (longValue >>> 32);
-                    } else if (type == Boolean.TYPE) {
-                        boolean booleanValue = data.getBoolean(n, i);
-                        if (booleanValue) {
-                            number += 7;
-                        }
-                    } else if (type == Float.TYPE) {
-                        float floatValue = data.getFloat(n, i);
-                        number += Float.floatToRawIntBits(floatValue);
-                    } else if (type == Double.TYPE) {
-                        double doubleValue = data.getDouble(n, i);
-                        long longValue = Double.doubleToRawLongBits(doubleValue);
-                        number += longValue ^ (longValue >>> 32);
-                    } else if (type == Short.TYPE) {
-                        short shortValue = data.getShort(n, i);
-                        number += shortValue;
-                    } else if (type == Character.TYPE) {
-                        char charValue = data.getChar(n, i);
-                        number += charValue;
-                    } else if (type == Byte.TYPE) {
-                        byte byteValue = data.getByte(n, i);
-                        number += byteValue;
-                    } else {
-                        assert false : "unhandled property type: " + type;
-                    }
-                } else {
-                    Object o = data.getObject(n, i);
-                    number += deepHashCode0(o);
-                }
-                number *= 13;
+            for (long offset : dataOffsets8) {
+                long longValue = UNSAFE.getLong(n, offset);
+                number = (number + (int) (longValue ^ (longValue >>> 32))) * 13;
+            }
+            for (long offset : dataOffsets4) {
+                number = (number + UNSAFE.getInt(n, offset)) * 13;
+            }
+            for (long offset : dataOffsets2) {
+                number = (number + UNSAFE.getShort(n, offset)) * 13;
+            }
+            for (long offset : dataOffsets1) {
+                number = (number + UNSAFE.getByte(n, offset)) * 13;
+            }
+            for (long offset : dataObjectOffsets) {
+                number = (number + deepHashCode0(UNSAFE.getObject(n, offset))) * 13;
             }
         }
         return number;
@@ -631,73 +640,43 @@ public final class NodeClass<T> extends FieldIntrospection<T> {
         return eq;
     }
 
+    /**
+     * Determines if the {@linkplain #getData() data} fields of two nodes of this class are equal.
+     * Primitive fields are compared by their raw bits, so floating point fields holding
+     * {@code 0.0} and {@code -0.0} are not equal whereas fields holding the same NaN are.
+     */
     public boolean dataEquals(Node a, Node b) {
         assert a.getClass() == b.getClass();
-        for (int i = 0; i < data.getCount(); ++i) {
-            Class<?> type = data.getType(i);
-            if (type.isPrimitive()) {
-                if (type == Integer.TYPE) {
-                    int aInt = data.getInt(a, i);
-                    int bInt = data.getInt(b, i);
-                    if (aInt != bInt) {
-                        return false;
-                    }
-                } else if (type == Boolean.TYPE) {
-                    boolean aBoolean = data.getBoolean(a, i);
-                    boolean bBoolean = data.getBoolean(b, i);
-                    if (aBoolean != bBoolean) {
-                        return false;
-                    }
-                } else if (type == Long.TYPE) {
-                    long aLong = data.getLong(a, i);
-                    long bLong = data.getLong(b, i);
-                    if (aLong != bLong) {
-                        return false;
-                    }
-                } else if (type == Float.TYPE) {
-                    float aFloat = data.getFloat(a, i);
-                    float bFloat = data.getFloat(b, i);
-                    if (aFloat != bFloat) {
-                        return false;
-                    }
-                } else if (type == Double.TYPE) {
-                    double aDouble = data.getDouble(a, i);
-                    double bDouble = data.getDouble(b, i);
-                    if (aDouble != bDouble) {
-                        return false;
-                    }
-                } else if (type == Short.TYPE) {
-                    short aShort = data.getShort(a, i);
-                    short bShort = data.getShort(b, i);
-                    if (aShort != bShort) {
-                        return false;
-                    }
-                } else if (type == Character.TYPE) {
-                    char aChar = data.getChar(a, i);
-                    char bChar = data.getChar(b, i);
-                    if (aChar != bChar) {
-                        return false;
-                    }
-                } else if (type == Byte.TYPE) {
-                    byte aByte = data.getByte(a, i);
-                    byte bByte = data.getByte(b, i);
-                    if (aByte != bByte) {
+        for (long offset : dataOffsets8) {
+            if (UNSAFE.getLong(a, offset) != UNSAFE.getLong(b, offset)) {
+                return false;
+            }
+        }
+        for (long offset : dataOffsets4) {
+            if (UNSAFE.getInt(a, offset) != UNSAFE.getInt(b, offset)) {
+                return false;
+            }
+        }
+        for (long offset : dataOffsets2) {
+            if (UNSAFE.getShort(a, offset) != UNSAFE.getShort(b, offset)) {
+                return false;
+            }
+        }
+        for (long offset : dataOffsets1) {
+            if (UNSAFE.getByte(a, offset) != UNSAFE.getByte(b, offset)) {
+                return false;
+            }
+        }
+        for (long offset : dataObjectOffsets) {
+            Object objectA = UNSAFE.getObject(a, offset);
+            Object objectB = UNSAFE.getObject(b, offset);
+            if (objectA != objectB) {
+                if (objectA != null && objectB != null) {
+                    if (!deepEquals0(objectA, objectB)) {
                         return false;
                     }
                 } else {
-                    assert false : "unhandled type: " + type;
-                }
-            } else {
-                Object objectA = data.getObject(a, i);
-                Object objectB = data.getObject(b, i);
-                if (objectA != objectB) {
-                    if (objectA != null && objectB != null) {
-                        if (!deepEquals0(objectA, objectB)) {
-                            return false;
-                        }
-                    } else {
-                        return false;
-                    }
+                    return false;
                 }
             }
         }
@@ -930,6 +909,10 @@ public final class NodeClass<T> extends FieldIntrospection<T> {
         return inputsIteration;
     }
 
+    public long successorIteration() {
+        return successorIteration;
+    }
+
     /**
      * An iterator that will iterate over edges.
      *
@@ -1204,6 +1187,7 @@ public final class NodeClass<T> extends FieldIntrospection<T> {
     }
 
     public void unregisterAtSuccessorsAsPredecessor(Node node) {
+        node.recordForRollback();
         long myMask = this.successorIteration;
         while (myMask != 0) {
             long offset = (myMask & OFFSET_MASK);
@@ -1271,6 +1255,34 @@ public final class NodeClass<T> extends FieldIntrospection<T> {
         return replaceFirstEdge(node, key, replacement, this.successorIteration);
     }
 
+    /**
+     * Replaces the first input of {@code node} that is of type {@code type} and refers to
+     * {@code key} with {@code replacement}. The usage lists of {@code key} and {@code replacement}
+     * are not updated.
+     *
+     * @return true if an input was replaced
+     */
+    public boolean replaceFirstInput(Node node, Node key, Node replacement, InputType type) {
+        final long[] curOffsets = inputs.getOffsets();
+        int directCount = inputs.getDirectCount();
+        for (int i = 0; i < directCount; i++) {
+            if (inputs.getInputType(i) == type && Edges.getNode(node, curOffsets, i) == key) {
+                node.recordForRollback();
+                inputs.initializeNode(node, i, replacement);
+                return true;
+            }
+        }
+        for (int i = directCount; i < inputs.getCount(); i++) {
+            if (inputs.getInputType(i) == type) {
+                NodeList<Node> list = Edges.getNodeList(node, curOffsets, i);
+                if (list != null && list.replaceFirst(key, replacement)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     public static boolean replaceFirstEdge(Node node, Node key, Node replacement, long mask) {
         long myMask = mask;
         while (myMask != 0) {
@@ -1278,6 +1290,7 @@ public final class NodeClass<T> extends FieldIntrospection<T> {
             if ((myMask & LIST_MASK) == 0) {
                 Object curNode = UNSAFE.getObject(node, offset);
                 if (curNode == key) {
+                    node.recordForRollback();
                     UNSAFE.putObject(node, offset, replacement);
                     return true;
                 }
@@ -1323,6 +1336,7 @@ public final class NodeClass<T> extends FieldIntrospection<T> {
     }
 
     public void unregisterAtInputsAsUsage(Node node) {
+        node.recordForRollback();
         long myMask = this.inputsIteration;
         while (myMask != 0) {
             long offset = (myMask & OFFSET_MASK);
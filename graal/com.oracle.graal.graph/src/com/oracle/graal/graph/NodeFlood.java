@@ -99,23 +99,24 @@ public final class NodeFlood implements Iterable<Node> {
     private static class UnmarkedNodeIterator implements Iterator<Node> {
 
         private final NodeBitMap visited;
-        private Iterator<Node> nodes;
+        private int nextId;
         private Node nextNode;
 
-        UnmarkedNodeIterator(NodeBitMap visited, Iterator<Node> nodes) {
+        UnmarkedNodeIterator(NodeBitMap visited) {
             this.visited = visited;
-            this.nodes = nodes;
             forward();
         }
 
         private void forward() {
+            Graph graph = visited.graph();
             do {
-                if (!nodes.hasNext()) {
+                nextId = visited.nextUnmarkedNodeId(nextId);
+                if (nextId < 0) {
                     nextNode = null;
                     return;
                 }
-                nextNode = nodes.next();
-            } while (visited.isMarked(nextNode));
+                nextNode = graph.getNode(nextId++);
+            } while (nextNode == null);
         }
 
         @Override
@@ -143,7 +144,7 @@ public final class NodeFlood implements Iterable<Node> {
 
             @Override
             public Iterator<Node> iterator() {
-                return new UnmarkedNodeIterator(visited, visited.graph().getNodes().iterator());
+                return new UnmarkedNodeIterator(visited);
             }
         };
     }
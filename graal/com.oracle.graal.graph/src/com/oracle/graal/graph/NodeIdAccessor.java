@@ -23,7 +23,7 @@
 package com.oracle.graal.graph;
 
 /**
- * An entity that depends upon {@linkplain Graph#maybeCompress() stable} node identifiers.
+ * An entity that depends upon {@linkplain Graph#compress() stable} node identifiers.
  */
 class NodeIdAccessor {
     final Graph graph;
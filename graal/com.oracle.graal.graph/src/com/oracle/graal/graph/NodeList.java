@@ -185,6 +185,7 @@ public abstract class NodeList<T extends Node> extends AbstractList<T> implement
     }
 
     public void initialize(int index, Node node) {
+        self.recordForRollback();
         incModCount();
         assert index < size();
         nodes[index] = node;
@@ -222,6 +223,16 @@ public abstract class NodeList<T extends Node> extends AbstractList<T> implement
         clearWithoutUpdate();
     }
 
+    /**
+     * Overwrites the contents of this list with state previously recorded by a
+     * {@link GraphTransaction}.
+     */
+    void restore(Node[] values, int offset, int length) {
+        incModCount();
+        nodes = length == 0 ? EMPTY_NODE_ARRAY : Arrays.copyOfRange(values, offset, offset + length);
+        size = length;
+    }
+
     void clearWithoutUpdate() {
         nodes = EMPTY_NODE_ARRAY;
         size = 0;
@@ -270,6 +281,7 @@ public abstract class NodeList<T extends Node> extends AbstractList<T> implement
     boolean replaceFirst(Node node, Node other) {
         for (int i = 0; i < size; i++) {
             if (nodes[i] == node) {
+                self.recordForRollback();
                 nodes[i] = other;
                 return true;
             }
@@ -358,6 +370,7 @@ public abstract class NodeList<T extends Node> extends AbstractList<T> implement
     }
 
     protected void replace(T node, T other) {
+        self.recordForRollback();
         incModCount();
         for (int i = 0; i < size(); i++) {
             if (nodes[i] == node) {
@@ -94,6 +94,21 @@ public class NodeMap<T> extends NodeIdAccessor {
         values[getNodeId(node)] = value;
     }
 
+    /**
+     * Gets the value associated with the node whose identifier is {@code id}. This is useful in
+     * conjunction with a {@link CompactGraph} which exposes nodes by their identifiers.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int id) {
+        assert verifyIdsAreStable();
+        return (T) values[id];
+    }
+
+    public void set(int id, T value) {
+        assert verifyIdsAreStable();
+        values[id] = value;
+    }
+
     public void setAndGrow(Node node, T value) {
         checkAndGrow(node);
         values[getNodeId(node)] = value;
@@ -39,6 +39,7 @@ import com.oracle.graal.asm.amd64.AMD64Assembler.AMD64RMOp;
 import com.oracle.graal.asm.amd64.AMD64Assembler.OperandSize;
 import com.oracle.graal.asm.amd64.AMD64MacroAssembler;
 import com.oracle.graal.lir.LIRFrameState;
+import com.oracle.graal.lir.LIRInstruction;
 import com.oracle.graal.lir.LIRInstructionClass;
 import com.oracle.graal.lir.Opcode;
 import com.oracle.graal.lir.StandardOp.ImplicitNullCheck;
@@ -127,6 +128,37 @@ public class AMD64BinaryConsumer {
         }
     }
 
+    /**
+     * Determines whether two register or stack slot comparisons set the condition flags in the same
+     * way. Besides instructions with identical opcode and operands, {@code TEST x, x} and
+     * {@code CMP x, 0} are considered equivalent since they produce the same flags for every
+     * condition code.
+     */
+    public static boolean setsSameFlags(LIRInstruction a, LIRInstruction b) {
+        if (a.getClass() == Op.class && b.getClass() == Op.class) {
+            Op opA = (Op) a;
+            Op opB = (Op) b;
+            return opA.opcode == opB.opcode && opA.size == opB.size && opA.x.equals(opB.x) && opA.y.equals(opB.y);
+        }
+        if (a.getClass() == ConstOp.class && b.getClass() == ConstOp.class) {
+            ConstOp opA = (ConstOp) a;
+            ConstOp opB = (ConstOp) b;
+            return opA.opcode == opB.opcode && opA.size == opB.size && opA.x.equals(opB.x) && opA.y == opB.y;
+        }
+        if (a.getClass() == Op.class && b.getClass() == ConstOp.class) {
+            return isTestWithZero((Op) a, (ConstOp) b);
+        }
+        if (a.getClass() == ConstOp.class && b.getClass() == Op.class) {
+            return isTestWithZero((Op) b, (ConstOp) a);
+        }
+        return false;
+    }
+
+    private static boolean isTestWithZero(Op test, ConstOp cmp) {
+        return test.opcode == (test.size == OperandSize.BYTE ? AMD64RMOp.TESTB : AMD64RMOp.TEST) && test.x.equals(test.y) && cmp.opcode == AMD64BinaryArithmetic.CMP.getMIOpcode(cmp.size, true) &&
+                        cmp.y == 0 && test.size == cmp.size && test.x.equals(cmp.x);
+    }
+
     /**
      * Instruction that has one {@link AllocatableValue} operand and one 32-bit immediate operand
      * that needs to be patched at runtime.
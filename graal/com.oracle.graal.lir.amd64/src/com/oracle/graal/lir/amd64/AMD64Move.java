@@ -73,6 +73,10 @@ public class AMD64Move {
             this.moveKind = moveKind;
         }
 
+        public AMD64Kind getMoveKind() {
+            return moveKind;
+        }
+
         @Override
         public void emitCode(CompilationResultBuilder crb, AMD64MacroAssembler masm) {
             move(moveKind, crb, masm, getResult(), getInput());
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.amd64;
+
+import static com.oracle.graal.lir.LIRInstruction.OperandFlag.REG;
+import static jdk.vm.ci.code.ValueUtil.asRegister;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+
+import com.oracle.graal.asm.Label;
+import com.oracle.graal.asm.amd64.AMD64Address;
+import com.oracle.graal.asm.amd64.AMD64Address.Scale;
+import com.oracle.graal.asm.amd64.AMD64Assembler.ConditionFlag;
+import com.oracle.graal.asm.amd64.AMD64Assembler.OperandSize;
+import com.oracle.graal.asm.amd64.AMD64Assembler.SSEOp;
+import com.oracle.graal.asm.amd64.AMD64MacroAssembler;
+import com.oracle.graal.compiler.common.LIRKind;
+import com.oracle.graal.compiler.common.calc.VectorOperation;
+import com.oracle.graal.debug.GraalError;
+import com.oracle.graal.lir.LIRInstructionClass;
+import com.oracle.graal.lir.Opcode;
+import com.oracle.graal.lir.asm.CompilationResultBuilder;
+import com.oracle.graal.lir.gen.LIRGeneratorTool;
+
+import jdk.vm.ci.amd64.AMD64Kind;
+import jdk.vm.ci.code.Register;
+import jdk.vm.ci.meta.JavaKind;
+import jdk.vm.ci.meta.Value;
+import sun.misc.Unsafe;
+
+/**
+ * Emits a loop that computes {@code result[i] = x[i] op y[i]} for all {@code i} in
+ * {@code [start, start + count)} using 128-bit SSE2 instructions. If {@code y} is not an array, its
+ * value is broadcast to all vector lanes instead. The caller has to guarantee that the range is
+ * within the bounds of all arrays and that {@code count} is a multiple of the number of elements
+ * per vector (see {@link #VECTOR_SIZE}).
+ */
+@Opcode("VECTORIZED_ARRAY_OP")
+public final class AMD64VectorizedArrayOp extends AMD64LIRInstruction {
+    public static final LIRInstructionClass<AMD64VectorizedArrayOp> TYPE = LIRInstructionClass.create(AMD64VectorizedArrayOp.class);
+
+    /**
+     * Size of the vectors in bytes.
+     */
+    public static final int VECTOR_SIZE = 16;
+
+    private final VectorOperation operation;
+    private final JavaKind kind;
+    private final boolean yIsArray;
+    private final int arrayBaseOffset;
+    private final Scale scale;
+
+    @Alive({REG}) protected Value resultValue;
+    @Alive({REG}) protected Value xValue;
+    @Alive({REG}) protected Value yValue;
+    @Alive({REG}) protected Value startValue;
+    @Alive({REG}) protected Value countValue;
+    @Temp({REG}) protected Value indexTemp;
+    @Temp({REG}) protected Value endTemp;
+    @Temp({REG}) protected Value vectorTemp1;
+    @Temp({REG}) protected Value vectorTemp2;
+
+    public AMD64VectorizedArrayOp(LIRGeneratorTool tool, VectorOperation operation, JavaKind kind, Value result, Value x, Value y, boolean yIsArray, Value start, Value count) {
+        super(TYPE);
+        assert isSupported(operation, kind) : operation + " " + kind;
+        this.operation = operation;
+        this.kind = kind;
+        this.yIsArray = yIsArray;
+
+        Class<?> arrayClass = Array.newInstance(kind.toJavaClass(), 0).getClass();
+        this.arrayBaseOffset = UNSAFE.arrayBaseOffset(arrayClass);
+        this.scale = Scale.fromInt(UNSAFE.arrayIndexScale(arrayClass));
+
+        this.resultValue = result;
+        this.xValue = x;
+        this.yValue = y;
+        this.startValue = start;
+        this.countValue = count;
+
+        this.indexTemp = tool.newVariable(LIRKind.value(AMD64Kind.QWORD));
+        this.endTemp = tool.newVariable(LIRKind.value(AMD64Kind.QWORD));
+        this.vectorTemp1 = tool.newVariable(LIRKind.value(AMD64Kind.DOUBLE));
+        this.vectorTemp2 = tool.newVariable(LIRKind.value(AMD64Kind.DOUBLE));
+    }
+
+    /**
+     * Determines whether {@code operation} can be applied to arrays of {@code kind} with SSE2
+     * instructions.
+     */
+    public static boolean isSupported(VectorOperation operation, JavaKind kind) {
+        switch (kind) {
+            case Int:
+            case Long:
+                // Packed integer multiplication needs SSE4.1 (int) or AVX-512 (long), and there is
+                // no packed integer division.
+                return operation != VectorOperation.MUL && operation != VectorOperation.DIV;
+            case Float:
+            case Double:
+                return operation == VectorOperation.ADD || operation == VectorOperation.SUB || operation == VectorOperation.MUL || operation == VectorOperation.DIV;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void emitCode(CompilationResultBuilder crb, AMD64MacroAssembler masm) {
+        Register result = asRegister(resultValue);
+        Register x = asRegister(xValue);
+        Register index = asRegister(indexTemp);
+        Register end = asRegister(endTemp);
+        Register vector1 = asRegister(vectorTemp1, AMD64Kind.DOUBLE);
+        Register vector2 = asRegister(vectorTemp2, AMD64Kind.DOUBLE);
+
+        Label loop = new Label();
+        Label done = new Label();
+
+        // Both values are non-negative, so the 32-bit moves yield proper 64-bit indices.
+        masm.movl(index, asRegister(startValue));
+        masm.movl(end, asRegister(countValue));
+        masm.addq(end, index);
+        masm.cmpq(index, end);
+        masm.jcc(ConditionFlag.GreaterEqual, done);
+
+        if (!yIsArray) {
+            emitBroadcast(masm, vector2, asRegister(yValue));
+        }
+
+        masm.align(crb.target.wordSize * 2);
+        masm.bind(loop);
+        masm.movdqu(vector1, elementAddress(x, index));
+        if (yIsArray) {
+            masm.movdqu(vector2, elementAddress(asRegister(yValue), index));
+        }
+        emitOperation(masm, vector1, vector2);
+        masm.movdqu(elementAddress(result, index), vector1);
+        masm.addq(index, VECTOR_SIZE / kind.getByteCount());
+        masm.cmpq(index, end);
+        masm.jcc(ConditionFlag.Less, loop);
+
+        masm.bind(done);
+    }
+
+    private AMD64Address elementAddress(Register array, Register index) {
+        return new AMD64Address(array, index, scale, arrayBaseOffset);
+    }
+
+    /**
+     * Copies the scalar {@code value} into all lanes of {@code vector}.
+     */
+    private void emitBroadcast(AMD64MacroAssembler masm, Register vector, Register value) {
+        switch (kind) {
+            case Int:
+                masm.movdl(vector, value);
+                masm.pshufd(vector, vector, 0x00);
+                break;
+            case Long:
+                masm.movdq(vector, value);
+                masm.pshufd(vector, vector, 0x44);
+                break;
+            case Float:
+                masm.pshufd(vector, value, 0x00);
+                break;
+            case Double:
+                masm.pshufd(vector, value, 0x44);
+                break;
+            default:
+                throw GraalError.shouldNotReachHere();
+        }
+    }
+
+    private void emitOperation(AMD64MacroAssembler masm, Register dst, Register src) {
+        if (kind == JavaKind.Float || kind == JavaKind.Double) {
+            OperandSize size = kind == JavaKind.Float ? OperandSize.PS : OperandSize.PD;
+            switch (operation) {
+                case ADD:
+                    SSEOp.ADD.emit(masm, size, dst, src);
+                    break;
+                case SUB:
+                    SSEOp.SUB.emit(masm, size, dst, src);
+                    break;
+                case MUL:
+                    SSEOp.MUL.emit(masm, size, dst, src);
+                    break;
+                case DIV:
+                    SSEOp.DIV.emit(masm, size, dst, src);
+                    break;
+                default:
+                    throw GraalError.shouldNotReachHere();
+            }
+            return;
+        }
+        boolean isLong = kind == JavaKind.Long;
+        switch (operation) {
+            case ADD:
+                if (isLong) {
+                    masm.paddq(dst, src);
+                } else {
+                    masm.paddd(dst, src);
+                }
+                break;
+            case SUB:
+                if (isLong) {
+                    masm.psubq(dst, src);
+                } else {
+                    masm.psubd(dst, src);
+                }
+                break;
+            case AND:
+                masm.pand(dst, src);
+                break;
+            case OR:
+                masm.por(dst, src);
+                break;
+            case XOR:
+                masm.pxor(dst, src);
+                break;
+            default:
+                throw GraalError.shouldNotReachHere();
+        }
+    }
+
+    private static final Unsafe UNSAFE = initUnsafe();
+
+    private static Unsafe initUnsafe() {
+        try {
+            return Unsafe.getUnsafe();
+        } catch (SecurityException se) {
+            try {
+                Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                return (Unsafe) theUnsafe.get(Unsafe.class);
+            } catch (Exception e) {
+                throw new RuntimeException("exception while trying to get Unsafe", e);
+            }
+        }
+    }
+}
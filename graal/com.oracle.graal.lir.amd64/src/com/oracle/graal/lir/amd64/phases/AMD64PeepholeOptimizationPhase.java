@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.amd64.phases;
+
+import static com.oracle.graal.lir.phases.LIRPhase.Options.LIROptimization;
+import static jdk.vm.ci.code.ValueUtil.asRegister;
+import static jdk.vm.ci.code.ValueUtil.asStackSlot;
+import static jdk.vm.ci.code.ValueUtil.isRegister;
+import static jdk.vm.ci.code.ValueUtil.isStackSlot;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugCounter;
+import com.oracle.graal.lir.LIR;
+import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.StandardOp.LabelOp;
+import com.oracle.graal.lir.StandardOp.ValueMoveOp;
+import com.oracle.graal.lir.amd64.AMD64BinaryConsumer;
+import com.oracle.graal.lir.amd64.AMD64ControlFlow.BranchOp;
+import com.oracle.graal.lir.amd64.AMD64Move.MoveFromConstOp;
+import com.oracle.graal.lir.amd64.AMD64Move.MoveFromRegOp;
+import com.oracle.graal.lir.amd64.AMD64Move.MoveToRegOp;
+import com.oracle.graal.lir.gen.LIRGenerationResult;
+import com.oracle.graal.lir.phases.PostAllocationOptimizationPhase;
+import com.oracle.graal.options.NestedBooleanOptionValue;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+
+import jdk.vm.ci.amd64.AMD64Kind;
+import jdk.vm.ci.code.StackSlot;
+import jdk.vm.ci.code.TargetDescription;
+import jdk.vm.ci.meta.AllocatableValue;
+import jdk.vm.ci.meta.Value;
+
+/**
+ * Peephole optimizations on the allocated AMD64 LIR. The following patterns are rewritten:
+ *
+ * <ul>
+ * <li>moves whose source and destination are the same location are removed,</li>
+ * <li>{@code mov a, b; mov b, a} drops the second move, which in particular covers a reload from a
+ * stack slot directly after the value was spilled to it,</li>
+ * <li>{@code mov [slot], a; mov c, [slot]} turns the reload into the register move
+ * {@code mov c, a},</li>
+ * <li>a comparison that sets the condition flags exactly like the preceding comparison is removed
+ * if only flag-preserving moves that do not write its operands are in between. This also covers
+ * the first comparison of a block whose single predecessor ends with the same comparison followed
+ * by a conditional branch.</li>
+ * </ul>
+ *
+ * Note: this phase should run after {@link com.oracle.graal.lir.RedundantMoveElimination} so that
+ * it sees the final set of moves.
+ */
+public class AMD64PeepholeOptimizationPhase extends PostAllocationOptimizationPhase {
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Enable peephole optimizations on the allocated AMD64 LIR.", type = OptionType.Debug)
+        public static final NestedBooleanOptionValue LIROptAMD64Peephole = new NestedBooleanOptionValue(LIROptimization, true);
+        // @formatter:on
+    }
+
+    private static final DebugCounter selfMoves = Debug.counter("AMD64Peephole[SelfMove]");
+    private static final DebugCounter reverseMoves = Debug.counter("AMD64Peephole[ReverseMove]");
+    private static final DebugCounter reloadsToRegisterMoves = Debug.counter("AMD64Peephole[ReloadToRegisterMove]");
+    private static final DebugCounter duplicateCompares = Debug.counter("AMD64Peephole[DuplicateCompare]");
+    private static final DebugCounter duplicateComparesAcrossBranch = Debug.counter("AMD64Peephole[DuplicateCompareAcrossBranch]");
+
+    @Override
+    protected void run(TargetDescription target, LIRGenerationResult lirGenRes, PostAllocationOptimizationContext context) {
+        LIR lir = lirGenRes.getLIR();
+        for (AbstractBlockBase<?> block : lir.codeEmittingOrder()) {
+            if (block != null) {
+                optimizeMoves(lir.getLIRforBlock(block));
+            }
+        }
+        for (AbstractBlockBase<?> block : lir.codeEmittingOrder()) {
+            if (block != null) {
+                optimizeCompares(lir, block);
+            }
+        }
+    }
+
+    private static void optimizeMoves(List<LIRInstruction> instructions) {
+        boolean removed = false;
+        LIRInstruction prev = null;
+        for (int i = 0; i < instructions.size(); i++) {
+            LIRInstruction inst = instructions.get(i);
+            AMD64Kind kind = moveKind(inst);
+            if (kind == null) {
+                prev = inst;
+                continue;
+            }
+            ValueMoveOp move = (ValueMoveOp) inst;
+            if (sameLocation(move.getResult(), move.getInput())) {
+                instructions.set(i, null);
+                removed = true;
+                selfMoves.increment();
+                continue;
+            }
+            if (prev != null && kind == moveKind(prev)) {
+                ValueMoveOp prevMove = (ValueMoveOp) prev;
+                AllocatableValue prevInput = prevMove.getInput();
+                if (sameLocation(prevMove.getResult(), move.getInput()) && isRegister(prevInput) && (isRegister(move.getInput()) || isWholeSlotKind(kind))) {
+                    if (sameLocation(move.getResult(), prevInput)) {
+                        /* The destination already holds the value: mov a, b; mov b, a. */
+                        instructions.set(i, null);
+                        removed = true;
+                        reverseMoves.increment();
+                        continue;
+                    }
+                    if (isStackSlot(move.getInput()) && isRegister(move.getResult())) {
+                        /* Reload of a value that is still available in a register. */
+                        MoveToRegOp regMove = new MoveToRegOp(kind, move.getResult(), prevInput);
+                        regMove.setId(inst.id());
+                        instructions.set(i, regMove);
+                        reloadsToRegisterMoves.increment();
+                        inst = regMove;
+                    }
+                }
+            }
+            prev = inst;
+        }
+        if (removed) {
+            instructions.removeAll(Collections.singleton(null));
+        }
+    }
+
+    private static void optimizeCompares(LIR lir, AbstractBlockBase<?> block) {
+        List<LIRInstruction> instructions = lir.getLIRforBlock(block);
+        boolean removed = false;
+        LIRInstruction compare = incomingCompare(lir, block);
+        boolean acrossBranch = compare != null;
+        for (int i = 1; i < instructions.size(); i++) {
+            LIRInstruction inst = instructions.get(i);
+            if (isCompare(inst)) {
+                if (compare != null && AMD64BinaryConsumer.setsSameFlags(compare, inst)) {
+                    instructions.set(i, null);
+                    removed = true;
+                    if (acrossBranch) {
+                        duplicateComparesAcrossBranch.increment();
+                    } else {
+                        duplicateCompares.increment();
+                    }
+                } else {
+                    compare = inst;
+                    acrossBranch = false;
+                }
+            } else if (compare != null && !preservesCompare(inst, compare)) {
+                compare = null;
+            }
+        }
+        if (removed) {
+            instructions.removeAll(Collections.singleton(null));
+        }
+    }
+
+    /**
+     * Returns the comparison whose flags are still live on entry of {@code block}, or {@code null}
+     * if the flags are unknown. This is only the case if the single predecessor ends with a
+     * comparison, optionally followed by flag-preserving moves, and a conditional branch.
+     */
+    private static LIRInstruction incomingCompare(LIR lir, AbstractBlockBase<?> block) {
+        if (block.getPredecessorCount() != 1 || block.isExceptionEntry()) {
+            return null;
+        }
+        List<LIRInstruction> predInstructions = lir.getLIRforBlock(block.getPredecessors()[0]);
+        if (predInstructions == null || !(predInstructions.get(predInstructions.size() - 1) instanceof BranchOp)) {
+            return null;
+        }
+        for (int i = predInstructions.size() - 2; i > 0; i--) {
+            LIRInstruction inst = predInstructions.get(i);
+            if (isCompare(inst)) {
+                for (int j = i + 1; j < predInstructions.size() - 1; j++) {
+                    if (!preservesCompare(predInstructions.get(j), inst)) {
+                        return null;
+                    }
+                }
+                return inst;
+            }
+            if (moveKind(inst) == null && !(inst instanceof MoveFromConstOp)) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isCompare(LIRInstruction inst) {
+        return inst.getClass() == AMD64BinaryConsumer.Op.class || inst.getClass() == AMD64BinaryConsumer.ConstOp.class;
+    }
+
+    /**
+     * Determines whether {@code inst} leaves both the condition flags and the operands of
+     * {@code compare} unchanged. Only moves qualify since they never write the flags.
+     */
+    private static boolean preservesCompare(LIRInstruction inst, LIRInstruction compare) {
+        Value result;
+        if (moveKind(inst) != null) {
+            result = ((ValueMoveOp) inst).getResult();
+        } else if (inst instanceof MoveFromConstOp) {
+            result = ((MoveFromConstOp) inst).getResult();
+        } else {
+            return inst instanceof LabelOp;
+        }
+        boolean[] overwritten = {false};
+        compare.visitEachInput((value, mode, flags) -> {
+            if (sameLocation(value, result)) {
+                overwritten[0] = true;
+            }
+        });
+        return !overwritten[0];
+    }
+
+    /**
+     * Returns the kind of a plain register or stack slot move, or {@code null} if {@code inst} is
+     * not such a move.
+     */
+    private static AMD64Kind moveKind(LIRInstruction inst) {
+        if (inst instanceof MoveToRegOp) {
+            return ((MoveToRegOp) inst).getMoveKind();
+        }
+        if (inst instanceof MoveFromRegOp) {
+            return ((MoveFromRegOp) inst).getMoveKind();
+        }
+        return null;
+    }
+
+    /**
+     * Byte and word loads from the stack sign extend while the corresponding register moves do not,
+     * so reloads of these kinds must be kept.
+     */
+    private static boolean isWholeSlotKind(AMD64Kind kind) {
+        return kind != AMD64Kind.BYTE && kind != AMD64Kind.WORD;
+    }
+
+    private static boolean sameLocation(Value a, Value b) {
+        if (isRegister(a)) {
+            return isRegister(b) && asRegister(a).equals(asRegister(b));
+        }
+        if (isStackSlot(a) && isStackSlot(b)) {
+            StackSlot slotA = asStackSlot(a);
+            StackSlot slotB = asStackSlot(b);
+            return slotA.getRawOffset() == slotB.getRawOffset() && slotA.getRawAddFrameSize() == slotB.getRawAddFrameSize();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.jtt;
+
+import static com.oracle.graal.lir.LIRInstruction.OperandFlag.STACK;
+import static jdk.vm.ci.code.ValueUtil.asStackSlot;
+import static jdk.vm.ci.code.ValueUtil.isStackSlot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.lir.ConstantValue;
+import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.LIRInstructionClass;
+import com.oracle.graal.lir.VirtualStackSlot;
+import com.oracle.graal.lir.asm.CompilationResultBuilder;
+import com.oracle.graal.lir.framemap.FrameMap;
+import com.oracle.graal.lir.framemap.FrameMapBuilder;
+import com.oracle.graal.lir.gen.LIRGeneratorTool;
+import com.oracle.graal.lir.stackslotalloc.LSStackSlotAllocator;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+import jdk.vm.ci.code.StackSlot;
+import jdk.vm.ci.meta.JavaConstant;
+import jdk.vm.ci.meta.Value;
+
+/**
+ * Checks the frame layout computed by {@link LSStackSlotAllocator} for stack slots of different
+ * sizes that are live at the same time.
+ */
+public class LSStackSlotAllocatorTest extends LIRTest {
+
+    /**
+     * Records the locations of its stack slot operands when the code is emitted.
+     */
+    private static final class RecordSlotsOp extends LIRInstruction {
+        private static final LIRInstructionClass<RecordSlotsOp> TYPE = LIRInstructionClass.create(RecordSlotsOp.class);
+
+        @Use({STACK}) protected Value[] slots;
+        private final List<SlotLayout> layouts;
+
+        RecordSlotsOp(Value[] slots, List<SlotLayout> layouts) {
+            super(TYPE);
+            this.slots = slots;
+            this.layouts = layouts;
+        }
+
+        @Override
+        public void emitCode(CompilationResultBuilder crb) {
+            StackSlot[] locations = new StackSlot[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                Assert.assertTrue(slots[i].toString(), isStackSlot(slots[i]));
+                locations[i] = asStackSlot(slots[i]);
+            }
+            layouts.add(new SlotLayout(crb.frameMap, locations));
+        }
+    }
+
+    private static final class SlotLayout {
+        private final FrameMap frameMap;
+        private final StackSlot[] slots;
+
+        SlotLayout(FrameMap frameMap, StackSlot[] slots) {
+            this.frameMap = frameMap;
+            this.slots = slots;
+        }
+
+        void verify() {
+            for (int i = 0; i < slots.length; i++) {
+                int size = frameMap.spillSlotSize(slots[i].getValueKind());
+                int offset = slots[i].getRawOffset();
+                Assert.assertEquals(slots[i] + " is not aligned", 0, offset % size);
+                for (int j = 0; j < i; j++) {
+                    int otherSize = frameMap.spillSlotSize(slots[j].getValueKind());
+                    int otherOffset = slots[j].getRawOffset();
+                    boolean disjoint = offset + size <= otherOffset || otherOffset + otherSize <= offset;
+                    Assert.assertTrue(slots[i] + " overlaps " + slots[j], disjoint);
+                }
+            }
+        }
+    }
+
+    /**
+     * Interleaves int and long stack slots that are all live at the {@link RecordSlotsOp}.
+     */
+    private static final class OverlappingSlotsSpec extends LIRTestSpecification {
+        private final List<SlotLayout> layouts = new ArrayList<>();
+
+        @Override
+        public void generate(LIRGeneratorTool gen, Value a, Value b) {
+            FrameMapBuilder frameMapBuilder = gen.getResult().getFrameMapBuilder();
+            VirtualStackSlot s1 = frameMapBuilder.allocateSpillSlot(a.getValueKind());
+            VirtualStackSlot s2 = frameMapBuilder.allocateSpillSlot(b.getValueKind());
+            VirtualStackSlot s3 = frameMapBuilder.allocateSpillSlot(a.getValueKind());
+            VirtualStackSlot s4 = frameMapBuilder.allocateSpillSlot(b.getValueKind());
+            VirtualStackSlot s5 = frameMapBuilder.allocateSpillSlot(a.getValueKind());
+
+            gen.emitMove(s1, a);
+            gen.emitMove(s2, b);
+            gen.emitMove(s3, new ConstantValue(a.getValueKind(), JavaConstant.forInt(17)));
+            gen.emitMove(s4, new ConstantValue(b.getValueKind(), JavaConstant.forLong(1L << 40)));
+            gen.emitMove(s5, new ConstantValue(a.getValueKind(), JavaConstant.forInt(-3)));
+            gen.append(new RecordSlotsOp(new Value[]{s1, s2, s3, s4, s5}, layouts));
+
+            setResult(gen.emitMove(s1));
+            setOutput("s2", s2);
+            setOutput("s3", s3);
+            setOutput("s4", s4);
+            setOutput("s5", s5);
+        }
+
+        void verify() {
+            Assert.assertFalse("no code emitted", layouts.isEmpty());
+            for (SlotLayout layout : layouts) {
+                layout.verify();
+            }
+            layouts.clear();
+        }
+    }
+
+    private static final OverlappingSlotsSpec overlappingSlots = new OverlappingSlotsSpec();
+
+    @SuppressWarnings("unused")
+    @LIRIntrinsic
+    public static int overlapping(OverlappingSlotsSpec spec, int a, long b) {
+        return a;
+    }
+
+    public long[] testOverlapping(int a, long b, long[] out) {
+        out[0] = overlapping(overlappingSlots, a, b);
+        out[1] = getOutput(overlappingSlots, "s2", b);
+        out[2] = getOutput(overlappingSlots, "s3", 17);
+        out[3] = getOutput(overlappingSlots, "s4", 1L << 40);
+        out[4] = getOutput(overlappingSlots, "s5", -3);
+        return out;
+    }
+
+    @SuppressWarnings("try")
+    private void runOverlapping(boolean packing) throws Throwable {
+        try (OverrideScope s = OptionValue.override(LSStackSlotAllocator.Options.LIROptLSStackSlotPacking, packing)) {
+            runTest("testOverlapping", 42, Long.MIN_VALUE, supply(() -> new long[5]));
+            runTest("testOverlapping", -1, 7L, supply(() -> new long[5]));
+        }
+        overlappingSlots.verify();
+    }
+
+    @Test
+    public void runOverlappingPacked() throws Throwable {
+        runOverlapping(true);
+    }
+
+    @Test
+    public void runOverlappingUnpacked() throws Throwable {
+        runOverlapping(false);
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.alloc.lsra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.oracle.graal.compiler.common.LIRKind;
+import com.oracle.graal.lir.LIRInstruction.OperandMode;
+import com.oracle.graal.lir.Variable;
+import com.oracle.graal.lir.alloc.lsra.Interval.RegisterPriority;
+
+import jdk.vm.ci.meta.PlatformKind;
+
+/**
+ * Checks the range and use position handling of {@link Interval}, which stores its ranges in a
+ * packed array in descending order.
+ */
+public class IntervalTest {
+
+    private enum DummyPlatformKind implements PlatformKind {
+        Long;
+
+        private EnumKey<DummyPlatformKind> key = new EnumKey<>(this);
+
+        @Override
+        public Key getKey() {
+            return key;
+        }
+
+        @Override
+        public int getSizeInBytes() {
+            return 8;
+        }
+
+        @Override
+        public int getVectorLength() {
+            return 1;
+        }
+
+        @Override
+        public char getTypeChar() {
+            return 'l';
+        }
+    }
+
+    private static final LIRKind kind = LIRKind.value(DummyPlatformKind.Long);
+
+    private int nextOperandNumber;
+
+    private Interval newInterval() {
+        int operandNumber = nextOperandNumber++;
+        Interval interval = new Interval(new Variable(kind, operandNumber), operandNumber);
+        interval.setKind(kind);
+        return interval;
+    }
+
+    /**
+     * Creates an interval with the given {@code (from, to)} pairs, which are added in descending
+     * order like the interval builder does.
+     */
+    private Interval newInterval(int... fromTo) {
+        Interval interval = newInterval();
+        for (int i = fromTo.length - 2; i >= 0; i -= 2) {
+            interval.addRange(fromTo[i], fromTo[i + 1]);
+        }
+        return interval;
+    }
+
+    private static void assertRanges(Interval interval, int... fromTo) {
+        assertEquals(interval.toString(), fromTo.length / 2, interval.numRanges());
+        for (int i = 0; i < interval.numRanges(); i++) {
+            assertEquals(interval.toString(), fromTo[2 * i], interval.rangeFrom(i));
+            assertEquals(interval.toString(), fromTo[2 * i + 1], interval.rangeTo(i));
+        }
+        assertEquals(fromTo[0], interval.from());
+        assertEquals(fromTo[fromTo.length - 1], interval.to());
+    }
+
+    @Test
+    public void testAddRange() {
+        Interval interval = newInterval();
+        interval.addRange(20, 24);
+        interval.addRange(10, 14);
+        assertRanges(interval, 10, 14, 20, 24);
+        // an adjacent range is joined with the first range
+        interval.addRange(6, 10);
+        assertRanges(interval, 6, 14, 20, 24);
+        // an overlapping range extends the first range in both directions
+        interval.addRange(4, 16);
+        assertRanges(interval, 4, 16, 20, 24);
+        // growing beyond the initial capacity
+        interval.addRange(0, 2);
+        assertRanges(interval, 0, 2, 4, 16, 20, 24);
+    }
+
+    @Test
+    public void testCovers() {
+        Interval interval = newInterval(4, 8, 12, 16);
+        assertFalse(interval.covers(3, OperandMode.USE));
+        assertTrue(interval.covers(4, OperandMode.DEF));
+        assertTrue(interval.covers(7, OperandMode.DEF));
+        // the end of a range is covered by uses but not by definitions
+        assertFalse(interval.covers(8, OperandMode.DEF));
+        assertTrue(interval.covers(8, OperandMode.USE));
+        assertFalse(interval.covers(10, OperandMode.USE));
+        assertTrue(interval.covers(12, OperandMode.DEF));
+        assertTrue(interval.covers(16, OperandMode.USE));
+        assertFalse(interval.covers(16, OperandMode.DEF));
+        assertFalse(interval.covers(17, OperandMode.USE));
+    }
+
+    @Test
+    public void testHasHoleBetween() {
+        Interval interval = newInterval(4, 8, 12, 16);
+        assertFalse(interval.hasHoleBetween(4, 8));
+        assertFalse(interval.hasHoleBetween(5, 7));
+        assertFalse(interval.hasHoleBetween(12, 16));
+        assertTrue(interval.hasHoleBetween(6, 10));
+        assertTrue(interval.hasHoleBetween(8, 12));
+        assertTrue(interval.hasHoleBetween(10, 14));
+        assertTrue(interval.hasHoleBetween(4, 16));
+    }
+
+    @Test
+    public void testIntersectsAt() {
+        Interval interval = newInterval(4, 8, 12, 16);
+        // adjacent ranges do not intersect
+        assertEquals(-1, interval.intersectsAt(newInterval(0, 4, 8, 12, 16, 20)));
+        assertEquals(-1, newInterval(8, 12).intersectsAt(interval));
+        assertEquals(7, interval.intersectsAt(newInterval(7, 9)));
+        assertEquals(7, newInterval(7, 9).intersectsAt(interval));
+        assertEquals(14, interval.intersectsAt(newInterval(0, 2, 9, 11, 14, 20)));
+        assertEquals(4, interval.intersectsAt(newInterval(4, 5)));
+        assertTrue(interval.intersects(newInterval(15, 30)));
+        assertFalse(interval.intersects(newInterval(16, 30)));
+    }
+
+    @Test
+    public void testIntersectsAtEmpty() {
+        Interval interval = newInterval(4, 8, 12, 16);
+        Interval empty = newInterval();
+        assertEquals(-1, interval.intersectsAt(empty));
+        assertEquals(-1, empty.intersectsAt(interval));
+        assertEquals(-1, empty.intersectsAt(newInterval()));
+    }
+
+    @Test
+    public void testCurrentIntersectsAt() {
+        Interval interval = newInterval(4, 8, 12, 16);
+        Interval other = newInterval(6, 14);
+        assertEquals(6, interval.currentIntersectsAt(other));
+        interval.nextRange();
+        assertEquals(12, interval.currentIntersectsAt(other));
+        interval.nextRange();
+        assertTrue(interval.currentAtEnd());
+        assertEquals(-1, interval.currentIntersectsAt(other));
+        assertEquals(-1, other.currentIntersectsAt(interval));
+    }
+
+    private Interval newIntervalWithUses() {
+        Interval interval = newInterval(2, 8, 12, 20);
+        // use positions are added in descending order like the interval builder does
+        interval.addUsePos(18, RegisterPriority.MustHaveRegister);
+        interval.addUsePos(12, RegisterPriority.ShouldHaveRegister);
+        interval.addUsePos(4, RegisterPriority.ShouldHaveRegister);
+        return interval;
+    }
+
+    @Test
+    public void testNextUsage() {
+        Interval interval = newIntervalWithUses();
+        assertEquals(3, interval.numUsePositions());
+        assertEquals(4, interval.nextUsage(RegisterPriority.ShouldHaveRegister, 0));
+        assertEquals(4, interval.nextUsage(RegisterPriority.ShouldHaveRegister, 4));
+        assertEquals(12, interval.nextUsage(RegisterPriority.ShouldHaveRegister, 5));
+        assertEquals(18, interval.nextUsage(RegisterPriority.ShouldHaveRegister, 13));
+        assertEquals(18, interval.nextUsage(RegisterPriority.MustHaveRegister, 0));
+        assertEquals(Integer.MAX_VALUE, interval.nextUsage(RegisterPriority.ShouldHaveRegister, 19));
+        assertEquals(Integer.MAX_VALUE, newInterval(0, 4).nextUsage(RegisterPriority.None, 0));
+    }
+
+    @Test
+    public void testSplitInsideRange() {
+        Interval interval = newIntervalWithUses();
+        Interval child = interval.split(14, newInterval());
+        assertRanges(interval, 2, 8, 12, 14);
+        assertRanges(child, 14, 20);
+        assertSame(interval, child.splitParent());
+        assertEquals(2, interval.numUsePositions());
+        assertEquals(12, interval.nextUsage(RegisterPriority.ShouldHaveRegister, 5));
+        assertEquals(1, child.numUsePositions());
+        assertEquals(18, child.nextUsage(RegisterPriority.ShouldHaveRegister, 0));
+    }
+
+    /**
+     * Splitting at the end of a range, inside a hole or at the start of a range all hand the
+     * complete following range over to the child.
+     */
+    @Test
+    public void testSplitOnRangeBoundary() {
+        for (int splitPos : new int[]{8, 10, 12}) {
+            Interval interval = newIntervalWithUses();
+            Interval child = interval.split(splitPos, newInterval());
+            assertRanges(interval, 2, 8);
+            assertRanges(child, 12, 20);
+            assertEquals(1, interval.numUsePositions());
+            assertEquals(2, child.numUsePositions());
+            assertEquals(12, child.nextUsage(RegisterPriority.ShouldHaveRegister, 0));
+        }
+    }
+
+    @Test
+    public void testSplitTwice() {
+        Interval interval = newInterval(2, 8, 12, 20, 24, 30);
+        Interval child1 = interval.split(6, newInterval());
+        Interval child2 = child1.split(16, newInterval());
+        assertRanges(interval, 2, 6);
+        assertRanges(child1, 6, 8, 12, 16);
+        assertRanges(child2, 16, 20, 24, 30);
+        // all split children are direct children of the split parent
+        assertSame(interval, child1.splitParent());
+        assertSame(interval, child2.splitParent());
+        assertSame(child1, interval.getSplitChildAtOpId(14, OperandMode.DEF, null));
+        assertSame(child2, interval.getSplitChildAtOpId(24, OperandMode.DEF, null));
+    }
+
+    @Test
+    public void testSplitFromStart() {
+        Interval interval = newInterval(2, 8, 12, 20);
+        Interval head = interval.splitFromStart(5, newInterval());
+        assertRanges(head, 2, 5);
+        assertRanges(interval, 5, 8, 12, 20);
+        assertSame(interval, head.splitParent());
+    }
+
+    @Test
+    public void testSplitFromStartAtRangeEnd() {
+        Interval interval = newInterval(2, 8, 12, 20);
+        Interval head = interval.splitFromStart(8, newInterval());
+        assertRanges(head, 2, 8);
+        assertRanges(interval, 12, 20);
+        assertFalse(interval.covers(8, OperandMode.USE));
+    }
+}
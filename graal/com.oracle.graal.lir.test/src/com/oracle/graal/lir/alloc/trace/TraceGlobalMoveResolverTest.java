@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.alloc.trace;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oracle.graal.compiler.common.LIRKind;
+import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.LIRInstructionClass;
+import com.oracle.graal.lir.VirtualStackSlot;
+import com.oracle.graal.lir.asm.CompilationResultBuilder;
+import com.oracle.graal.lir.framemap.FrameMap;
+import com.oracle.graal.lir.framemap.FrameMapBuilder;
+import com.oracle.graal.lir.framemap.SimpleVirtualStackSlot;
+import com.oracle.graal.lir.gen.LIRGenerationResult;
+import com.oracle.graal.lir.gen.LIRGeneratorTool.MoveFactory;
+
+import jdk.vm.ci.code.CallingConvention;
+import jdk.vm.ci.code.CodeCacheProvider;
+import jdk.vm.ci.code.Register;
+import jdk.vm.ci.code.Register.RegisterCategory;
+import jdk.vm.ci.code.RegisterConfig;
+import jdk.vm.ci.code.RegisterValue;
+import jdk.vm.ci.code.StackSlot;
+import jdk.vm.ci.meta.AllocatableValue;
+import jdk.vm.ci.meta.Constant;
+import jdk.vm.ci.meta.JavaConstant;
+import jdk.vm.ci.meta.PlatformKind;
+import jdk.vm.ci.meta.Value;
+import jdk.vm.ci.meta.ValueKind;
+
+/**
+ * Checks the sequence of moves emitted by {@link TraceGlobalMoveResolver} for stack to stack moves
+ * and move cycles.
+ */
+public class TraceGlobalMoveResolverTest {
+
+    private static final class TestMoveOp extends LIRInstruction {
+        private static final LIRInstructionClass<TestMoveOp> TYPE = LIRInstructionClass.create(TestMoveOp.class);
+
+        @Def protected AllocatableValue result;
+        @Use protected Value input;
+
+        TestMoveOp(AllocatableValue result, Value input) {
+            super(TYPE);
+            this.result = result;
+            this.input = input;
+        }
+
+        @Override
+        public void emitCode(CompilationResultBuilder crb) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString() {
+            return result + " <- " + input;
+        }
+    }
+
+    private static final class TestMoveFactory implements MoveFactory {
+
+        @Override
+        public boolean canInlineConstant(JavaConstant c) {
+            return false;
+        }
+
+        @Override
+        public boolean allowConstantToStackMove(Constant constant) {
+            return false;
+        }
+
+        @Override
+        public LIRInstruction createMove(AllocatableValue result, Value input) {
+            return new TestMoveOp(result, input);
+        }
+
+        @Override
+        public LIRInstruction createStackMove(AllocatableValue result, AllocatableValue input) {
+            return new TestMoveOp(result, input);
+        }
+
+        @Override
+        public LIRInstruction createLoad(AllocatableValue result, Constant input) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Only supports the allocation of spill slots, which are used to break move cycles.
+     */
+    private static final class TestFrameMapBuilder extends FrameMapBuilder {
+        private final List<VirtualStackSlot> spillSlots = new ArrayList<>();
+
+        @Override
+        public VirtualStackSlot allocateSpillSlot(ValueKind<?> valueKind) {
+            VirtualStackSlot slot = new SimpleVirtualStackSlot(spillSlots.size(), valueKind);
+            spillSlots.add(slot);
+            return slot;
+        }
+
+        @Override
+        public VirtualStackSlot allocateStackSlots(int slots, BitSet objects, List<VirtualStackSlot> outObjectStackSlots) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public RegisterConfig getRegisterConfig() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CodeCacheProvider getCodeCache() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void callsMethod(CallingConvention cc) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FrameMap buildFrameMap(LIRGenerationResult result) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private enum DummyPlatformKind implements PlatformKind {
+        Long;
+
+        private EnumKey<DummyPlatformKind> key = new EnumKey<>(this);
+
+        @Override
+        public Key getKey() {
+            return key;
+        }
+
+        @Override
+        public int getSizeInBytes() {
+            return 8;
+        }
+
+        @Override
+        public int getVectorLength() {
+            return 1;
+        }
+
+        @Override
+        public char getTypeChar() {
+            return 'l';
+        }
+    }
+
+    private static final LIRKind kind = LIRKind.value(DummyPlatformKind.Long);
+
+    private static final RegisterCategory CPU = new RegisterCategory("CPU");
+
+    private static final Register r0 = new Register(0, 0, "r0", CPU);
+    private static final Register r1 = new Register(1, 1, "r1", CPU);
+    private static final Register r2 = new Register(2, 2, "r2", CPU);
+
+    /**
+     * Stack slots of the fixed frame have offsets below this index.
+     */
+    private static final int FIRST_VIRTUAL_STACK_INDEX = 64;
+
+    private TestFrameMapBuilder frameMapBuilder;
+    private TraceGlobalMoveResolver resolver;
+    private List<LIRInstruction> instructions;
+
+    @Before
+    public void setUp() {
+        frameMapBuilder = new TestFrameMapBuilder();
+        resolver = new TraceGlobalMoveResolver(frameMapBuilder, new TestMoveFactory(), 3, 0, FIRST_VIRTUAL_STACK_INDEX);
+        instructions = new ArrayList<>();
+        resolver.setInsertPosition(instructions, 0);
+    }
+
+    /** Create RegisterValue. */
+    private static RegisterValue v(Register r) {
+        return r.asValue(kind);
+    }
+
+    /** Create StackSlot. */
+    private static StackSlot s(int offset) {
+        return StackSlot.get(kind, -offset, true);
+    }
+
+    private void resolve(String... expected) {
+        resolver.resolveAndAppendMoves();
+        List<String> moves = new ArrayList<>();
+        for (LIRInstruction op : instructions) {
+            moves.add(op.toString());
+        }
+        List<String> expectedMoves = new ArrayList<>();
+        for (String move : expected) {
+            expectedMoves.add(move);
+        }
+        assertEquals(expectedMoves, moves);
+    }
+
+    private static String move(Value to, Value from) {
+        return to + " <- " + from;
+    }
+
+    /**
+     * The load is sequentialized before the stack to stack move, which then stores the loaded
+     * register instead.
+     */
+    @Test
+    public void testForwardAfterLoad() {
+        resolver.addMapping(s(8), s(16), null);
+        resolver.addMapping(s(8), v(r0), null);
+        resolve(move(v(r0), s(8)), move(s(16), v(r0)));
+    }
+
+    /**
+     * The stack to stack move is sequentialized before the load, so it is moved behind it.
+     */
+    @Test
+    public void testForwardBeforeLoad() {
+        resolver.addMapping(s(8), v(r0), null);
+        resolver.addMapping(s(8), s(16), null);
+        resolve(move(v(r0), s(8)), move(s(16), v(r0)));
+    }
+
+    /**
+     * The source slot of the stack to stack move is overwritten after it has been read.
+     */
+    @Test
+    public void testForwardBeforeOverwrite() {
+        resolver.addMapping(s(8), v(r0), null);
+        resolver.addMapping(s(8), s(16), null);
+        resolver.addMapping(v(r1), s(8), null);
+        resolve(move(v(r0), s(8)), move(s(16), v(r0)), move(s(8), v(r1)));
+    }
+
+    /**
+     * The load has to wait until the old value of its destination register is moved away, so the
+     * stack to stack move is moved behind both.
+     */
+    @Test
+    public void testForwardBehindRegisterMove() {
+        resolver.addMapping(s(8), v(r1), null);
+        resolver.addMapping(v(r1), v(r2), null);
+        resolver.addMapping(s(8), s(16), null);
+        resolve(move(v(r2), v(r1)), move(v(r1), s(8)), move(s(16), v(r1)));
+    }
+
+    /**
+     * Without a stack copy, a new spill slot is needed to break the cycle.
+     */
+    @Test
+    public void testCycle() {
+        resolver.addMapping(v(r0), v(r1), null);
+        resolver.addMapping(v(r1), v(r0), null);
+        VirtualStackSlot spillSlot = new SimpleVirtualStackSlot(0, kind);
+        resolve(move(spillSlot, v(r0)), move(v(r0), v(r1)), move(v(r1), spillSlot));
+        assertEquals(1, frameMapBuilder.spillSlots.size());
+    }
+
+    /**
+     * The value that already has a stack copy is used to break the cycle even though it is not the
+     * last spill candidate found, so no additional store is needed.
+     */
+    @Test
+    public void testCycleReusesStackCopy() {
+        resolver.addMapping(v(r0), v(r1), null);
+        resolver.addMapping(v(r1), v(r0), s(8));
+        resolve(move(v(r1), v(r0)), move(v(r0), s(8)));
+        assertEquals(0, frameMapBuilder.spillSlots.size());
+    }
+
+    /**
+     * Same as {@link #testCycleReusesStackCopy()} with the stack copy on the other value.
+     */
+    @Test
+    public void testCycleReusesLastStackCopy() {
+        resolver.addMapping(v(r0), v(r1), s(8));
+        resolver.addMapping(v(r1), v(r0), null);
+        resolve(move(v(r0), v(r1)), move(v(r1), s(8)));
+        assertEquals(0, frameMapBuilder.spillSlots.size());
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.test;
+
+import java.util.Arrays;
+
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.compiler.common.cfg.Loop;
+
+/**
+ * A block of a synthetic control flow graph for tests that run LIR analyses and phases without
+ * compiling a method.
+ */
+public class TestBlock extends AbstractBlockBase<TestBlock> {
+
+    /**
+     * A loop of a synthetic control flow graph with a single back edge.
+     */
+    public static final class TestLoop extends Loop<TestBlock> {
+
+        public TestLoop(TestBlock header) {
+            super(null, 0, header);
+        }
+
+        @Override
+        public long numBackedges() {
+            return 1;
+        }
+    }
+
+    private final double probability;
+    private TestLoop loop;
+    private int loopDepth;
+    private boolean loopEnd;
+    private boolean exceptionEntry;
+
+    public TestBlock(int id) {
+        this(id, 1D);
+    }
+
+    public TestBlock(int id, double probability) {
+        this.probability = probability;
+        setId(id);
+        setPredecessors(new TestBlock[0]);
+        setSuccessors(new TestBlock[0]);
+    }
+
+    /**
+     * Creates blocks with ids starting at 0 and the given probabilities.
+     */
+    public static TestBlock[] createBlocks(double... probabilities) {
+        TestBlock[] blocks = new TestBlock[probabilities.length];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = new TestBlock(i, probabilities[i]);
+        }
+        return blocks;
+    }
+
+    /**
+     * Adds an edge from this block to {@code successor} unless there already is one.
+     */
+    public void addSuccessor(TestBlock successor) {
+        for (TestBlock s : getSuccessors()) {
+            if (s == successor) {
+                return;
+            }
+        }
+        setSuccessors(append(getSuccessors(), successor));
+        successor.setPredecessors(append(successor.getPredecessors(), this));
+    }
+
+    private static TestBlock[] append(TestBlock[] array, TestBlock block) {
+        TestBlock[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = block;
+        return result;
+    }
+
+    public void setLoop(TestLoop loop) {
+        this.loop = loop;
+    }
+
+    /**
+     * Sets the loop depth of a block that does not belong to a {@link TestLoop}.
+     */
+    public void setLoopDepth(int loopDepth) {
+        this.loopDepth = loopDepth;
+    }
+
+    public void setLoopEnd(boolean loopEnd) {
+        this.loopEnd = loopEnd;
+    }
+
+    public void setExceptionEntry(boolean exceptionEntry) {
+        this.exceptionEntry = exceptionEntry;
+    }
+
+    @Override
+    public boolean isExceptionEntry() {
+        return exceptionEntry;
+    }
+
+    @Override
+    public Loop<TestBlock> getLoop() {
+        return loop;
+    }
+
+    @Override
+    public int getLoopDepth() {
+        return loop == null ? loopDepth : loop.getDepth();
+    }
+
+    @Override
+    public void delete() {
+    }
+
+    @Override
+    public boolean isLoopEnd() {
+        return loopEnd;
+    }
+
+    @Override
+    public boolean isLoopHeader() {
+        return loop != null && loop.getHeader() == this;
+    }
+
+    @Override
+    public TestBlock getPostdominator() {
+        return null;
+    }
+
+    @Override
+    public double probability() {
+        return probability;
+    }
+
+    @Override
+    public TestBlock getDominator(int distance) {
+        TestBlock result = this;
+        for (int i = 0; i < distance; i++) {
+            result = result.getDominator();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.oracle.graal.compiler.common.cfg.AbstractControlFlowGraph;
+import com.oracle.graal.compiler.common.cfg.Loop;
+
+/**
+ * A control flow graph of {@link TestBlock}s. The first block is the start block.
+ */
+public class TestControlFlowGraph implements AbstractControlFlowGraph<TestBlock> {
+
+    private final TestBlock[] blocks;
+
+    public TestControlFlowGraph(TestBlock... blocks) {
+        this.blocks = blocks;
+    }
+
+    @Override
+    public TestBlock[] getBlocks() {
+        return blocks;
+    }
+
+    @Override
+    public Collection<Loop<TestBlock>> getLoops() {
+        List<Loop<TestBlock>> loops = new ArrayList<>();
+        for (TestBlock block : blocks) {
+            if (block.isLoopHeader()) {
+                loops.add(block.getLoop());
+            }
+        }
+        return loops;
+    }
+
+    @Override
+    public TestBlock getStartBlock() {
+        return blocks[0];
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.test.alloc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.oracle.graal.compiler.common.alloc.ComputeBlockOrder;
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.lir.test.TestBlock;
+import com.oracle.graal.lir.test.TestBlock.TestLoop;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+/**
+ * Checks the code emission order computed by {@link ComputeBlockOrder} on synthetic control flow
+ * graphs.
+ */
+public class ComputeBlockOrderTest {
+
+    @SuppressWarnings("unchecked")
+    private static List<TestBlock> computeOrder(TestBlock[] blocks) {
+        AbstractBlockBase<?>[] order = ComputeBlockOrder.computeCodeEmittingOrder(blocks.length, blocks[0]);
+        assertIsPermutation(blocks, order);
+        assertSame("start block must come first", blocks[0], order[0]);
+        return (List<TestBlock>) (List<?>) Arrays.asList(order);
+    }
+
+    private static void assertIsPermutation(TestBlock[] blocks, AbstractBlockBase<?>[] order) {
+        assertEquals(Arrays.toString(order), blocks.length, order.length);
+        boolean[] seen = new boolean[blocks.length];
+        for (AbstractBlockBase<?> block : order) {
+            assertSame(blocks[block.getId()], block);
+            assertTrue("block placed twice: " + block, !seen[block.getId()]);
+            seen[block.getId()] = true;
+        }
+    }
+
+    private static void assertFallsThrough(List<TestBlock> order, TestBlock source, TestBlock target) {
+        int index = order.indexOf(source);
+        assertTrue(order.toString(), index + 1 < order.size());
+        assertSame(order.toString(), target, order.get(index + 1));
+    }
+
+    /**
+     * <pre>
+     *     B0
+     *    /  \
+     *   B1   B2 (rare)
+     *    \  /
+     *     B3
+     * </pre>
+     */
+    @Test
+    public void testRareBranch() {
+        TestBlock[] b = TestBlock.createBlocks(1, 0.9999, 0.0001, 1);
+        b[0].addSuccessor(b[2]);
+        b[0].addSuccessor(b[1]);
+        b[1].addSuccessor(b[3]);
+        b[2].addSuccessor(b[3]);
+
+        List<TestBlock> order = computeOrder(b);
+        assertFallsThrough(order, b[0], b[1]);
+        assertFallsThrough(order, b[1], b[3]);
+        assertSame("cold block must come last", b[2], order.get(order.size() - 1));
+    }
+
+    /**
+     * <pre>
+     *   B0 -> B1 (loop header) -> B3 (exit)
+     *          |   ^
+     *          v   |
+     *          B2 (loop end) -> B4 (exception handler) -> B5
+     * </pre>
+     */
+    @Test
+    public void testLoop() {
+        TestBlock[] b = TestBlock.createBlocks(1, 10, 10, 1, 0.5, 0.5);
+        TestLoop loop = new TestLoop(b[1]);
+        b[1].setLoop(loop);
+        b[2].setLoop(loop);
+        b[2].setLoopEnd(true);
+        b[4].setExceptionEntry(true);
+        b[0].addSuccessor(b[1]);
+        b[1].addSuccessor(b[2]);
+        b[1].addSuccessor(b[3]);
+        b[2].addSuccessor(b[1]);
+        b[2].addSuccessor(b[4]);
+        b[4].addSuccessor(b[5]);
+
+        List<TestBlock> order = computeOrder(b);
+        // the loop is rotated: the back edge falls through and the body is the jump target
+        assertFallsThrough(order, b[2], b[1]);
+        assertFallsThrough(order, b[1], b[3]);
+        assertTrue(b[2].isAligned());
+        assertTrue(!b[1].isAligned());
+        // the exception handler and the code only reachable from it are placed last
+        assertEquals(order.toString(), Arrays.asList(b[4], b[5]), order.subList(order.size() - 2, order.size()));
+    }
+
+    /**
+     * The hot successor of a branch falls through even if it is the second successor, and the
+     * cold successor is moved out of the hot path.
+     */
+    @Test
+    public void testHotChain() {
+        TestBlock[] b = TestBlock.createBlocks(1, 0.0005, 0.9995, 0.9995, 0.0005, 1);
+        b[0].addSuccessor(b[1]);
+        b[0].addSuccessor(b[2]);
+        b[2].addSuccessor(b[3]);
+        b[2].addSuccessor(b[4]);
+        b[3].addSuccessor(b[5]);
+        b[1].addSuccessor(b[5]);
+        b[4].addSuccessor(b[5]);
+
+        List<TestBlock> order = computeOrder(b);
+        assertFallsThrough(order, b[0], b[2]);
+        assertFallsThrough(order, b[2], b[3]);
+        assertFallsThrough(order, b[3], b[5]);
+        assertEquals(order.toString(), b[1], order.get(order.size() - 2));
+        assertEquals(order.toString(), b[4], order.get(order.size() - 1));
+    }
+
+    private static TestBlock[] randomGraph(long seed, int numBlocks) {
+        Random random = new Random(seed);
+        double[] probabilities = new double[numBlocks];
+        probabilities[0] = 1;
+        for (int i = 1; i < numBlocks; i++) {
+            probabilities[i] = random.nextInt(4) == 0 ? 0.0001 : random.nextDouble() * 2;
+        }
+        TestBlock[] blocks = TestBlock.createBlocks(probabilities);
+        for (int i = 0; i < numBlocks - 1; i++) {
+            if (i + 2 < numBlocks && random.nextBoolean()) {
+                blocks[i].addSuccessor(blocks[i + 2 + random.nextInt(numBlocks - i - 2)]);
+            }
+            blocks[i].addSuccessor(blocks[i + 1]);
+            if (random.nextInt(8) == 0) {
+                blocks[i + 1].setExceptionEntry(true);
+            }
+        }
+        return blocks;
+    }
+
+    private static boolean isCold(TestBlock block) {
+        return block.getId() != 0 && (block.isExceptionEntry() || block.probability() < 1.0E-3);
+    }
+
+    /**
+     * Checks random control flow graphs with both block ordering strategies. For the chain merging
+     * order, every block reachable from the start block without passing through cold code must be
+     * placed before all cold blocks.
+     */
+    @Test
+    @SuppressWarnings("try")
+    public void testRandom() {
+        for (int seed = 0; seed < 50; seed++) {
+            TestBlock[] blocks = randomGraph(seed, 40);
+            List<TestBlock> order = computeOrder(blocks);
+
+            boolean[] hotReachable = new boolean[blocks.length];
+            ArrayDeque<TestBlock> worklist = new ArrayDeque<>();
+            hotReachable[0] = true;
+            worklist.add(blocks[0]);
+            while (!worklist.isEmpty()) {
+                for (TestBlock successor : worklist.poll().getSuccessors()) {
+                    if (!hotReachable[successor.getId()] && !isCold(successor)) {
+                        hotReachable[successor.getId()] = true;
+                        worklist.add(successor);
+                    }
+                }
+            }
+            int firstCold = order.size();
+            int lastHot = -1;
+            for (int i = 0; i < order.size(); i++) {
+                if (isCold(order.get(i))) {
+                    firstCold = Math.min(firstCold, i);
+                } else if (hotReachable[order.get(i).getId()]) {
+                    lastHot = i;
+                }
+            }
+            assertTrue("seed " + seed + ": " + order, lastHot < firstCold);
+
+            try (OverrideScope s = OptionValue.override(ComputeBlockOrder.Options.ChainMergingBlockOrder, false)) {
+                AbstractBlockBase<?>[] greedyOrder = ComputeBlockOrder.computeCodeEmittingOrder(blocks.length, blocks[0]);
+                assertIsPermutation(blocks, greedyOrder);
+                assertSame(blocks[0], greedyOrder[0]);
+            }
+        }
+    }
+}
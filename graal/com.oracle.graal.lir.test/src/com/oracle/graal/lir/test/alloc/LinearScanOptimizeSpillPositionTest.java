@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.test.alloc;
+
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.lir.alloc.lsra.LinearScanOptimizeSpillPositionPhase;
+import com.oracle.graal.lir.test.TestBlock;
+
+/**
+ * Checks the choice of the spill block on synthetic dominator chains.
+ */
+public class LinearScanOptimizeSpillPositionTest {
+
+    /**
+     * Creates a dominator chain where block 0 is the definition block and the last block is the
+     * spill block candidate.
+     */
+    private static TestBlock[] createChain(double[] probabilities, int[] loopDepths) {
+        TestBlock[] blocks = new TestBlock[probabilities.length];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = new TestBlock(i, probabilities[i]);
+            blocks[i].setLoopDepth(loopDepths[i]);
+            if (i > 0) {
+                blocks[i].setDominator(blocks[i - 1]);
+            }
+        }
+        return blocks;
+    }
+
+    private static AbstractBlockBase<?> spillBlock(TestBlock[] blocks, int... rejected) {
+        return LinearScanOptimizeSpillPositionPhase.leastFrequentSpillBlock(blocks[0], blocks[blocks.length - 1], block -> {
+            for (int id : rejected) {
+                if (block.getId() == id) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    @Test
+    public void testLeastFrequentDominator() {
+        // definition, loop body, cold block after the loop, merge, spill block candidate
+        TestBlock[] blocks = createChain(new double[]{1, 10, 0.1, 0.5, 0.8}, new int[]{0, 1, 0, 0, 0});
+        assertSame(blocks[2], spillBlock(blocks));
+    }
+
+    @Test
+    public void testRejectedDominator() {
+        TestBlock[] blocks = createChain(new double[]{1, 10, 0.1, 0.5, 0.8}, new int[]{0, 1, 0, 0, 0});
+        assertSame(blocks[3], spillBlock(blocks, 2));
+        assertSame(blocks[4], spillBlock(blocks, 2, 3));
+    }
+
+    @Test
+    public void testShallowerLoopOnTie() {
+        TestBlock[] blocks = createChain(new double[]{1, 0.5, 0.5, 0.5}, new int[]{0, 0, 1, 2});
+        assertSame(blocks[1], spillBlock(blocks));
+    }
+
+    @Test
+    public void testClosestToUsesOnTie() {
+        TestBlock[] blocks = createChain(new double[]{1, 0.5, 0.5, 0.5}, new int[]{0, 0, 0, 0});
+        assertSame(blocks[3], spillBlock(blocks));
+    }
+
+    @Test
+    public void testFallbackToDefinition() {
+        // no block between the definition and the uses is executed less often than the definition
+        TestBlock[] blocks = createChain(new double[]{0.2, 5, 0.2, 0.3}, new int[]{0, 1, 0, 0});
+        assertSame(blocks[0], spillBlock(blocks));
+    }
+
+    @Test
+    public void testFallbackToDefinitionIfAllRejected() {
+        TestBlock[] blocks = createChain(new double[]{0.5, 0.1, 0.5}, new int[]{0, 0, 0});
+        assertSame(blocks[0], spillBlock(blocks, 1));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.test.alloc;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.oracle.graal.lir.alloc.RematerializationCost;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+/**
+ * Checks which constants {@link RematerializationCost} rematerializes instead of spilling them.
+ */
+public class RematerializationCostTest {
+
+    @Test
+    public void testRegisterUsagesOnly() {
+        RematerializationCost cost = new RematerializationCost();
+        cost.addMustHaveRegisterUsage(1000);
+        assertTrue(cost.shouldRematerialize(1));
+    }
+
+    @Test
+    public void testHotRegisterUsage() {
+        RematerializationCost cost = new RematerializationCost();
+        cost.addMustHaveRegisterUsage(10);
+        cost.addShouldHaveRegisterUsage(1);
+        assertTrue(cost.shouldRematerialize(1));
+    }
+
+    @Test
+    public void testHotStackUsage() {
+        // a constant hoisted out of a loop that is only used as a memory operand in the loop
+        RematerializationCost cost = new RematerializationCost();
+        cost.addShouldHaveRegisterUsage(10);
+        assertFalse(cost.shouldRematerialize(1));
+    }
+
+    @Test
+    public void testColdStackUsage() {
+        RematerializationCost cost = new RematerializationCost();
+        cost.addShouldHaveRegisterUsage(1);
+        assertTrue(cost.shouldRematerialize(10));
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void testDisabled() {
+        try (OverrideScope s = OptionValue.override(RematerializationCost.Options.LIROptSpillCostAwareRematerialization, false)) {
+            RematerializationCost cost = new RematerializationCost();
+            cost.addShouldHaveRegisterUsage(1);
+            assertFalse(cost.shouldRematerialize(10));
+
+            cost = new RematerializationCost();
+            cost.addMustHaveRegisterUsage(1);
+            assertTrue(cost.shouldRematerialize(10));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.test.dfa;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.oracle.graal.lir.dfa.LiveSetSolver;
+import com.oracle.graal.lir.test.TestBlock;
+
+/**
+ * Compares the {@link LiveSetSolver} with a straightforward round-robin fixed point iteration on
+ * random control flow graphs.
+ */
+public class LiveSetSolverTest {
+
+    private static BitSet randomSet(Random random, int size, int bits) {
+        BitSet set = new BitSet(size);
+        for (int i = 0; i < bits; i++) {
+            set.set(random.nextInt(size));
+        }
+        return set;
+    }
+
+    private static void check(long seed, int numBlocks, int liveSetSize, int bitsPerBlock) {
+        Random random = new Random(seed);
+        TestBlock[] blocks = new TestBlock[numBlocks];
+        for (int i = 0; i < numBlocks; i++) {
+            blocks[i] = new TestBlock(i);
+        }
+        for (int i = 0; i < numBlocks - 1; i++) {
+            blocks[i].addSuccessor(blocks[i + 1 + random.nextInt(Math.min(3, numBlocks - i - 1))]);
+            if (random.nextInt(4) == 0) {
+                // backward edge
+                blocks[i].addSuccessor(blocks[random.nextInt(i + 1)]);
+            }
+        }
+
+        List<BitSet> gen = new ArrayList<>();
+        List<BitSet> kill = new ArrayList<>();
+        LiveSetSolver solver = new LiveSetSolver(blocks, liveSetSize);
+        for (TestBlock block : blocks) {
+            BitSet blockKill = randomSet(random, liveSetSize, bitsPerBlock);
+            BitSet blockGen = randomSet(random, liveSetSize, bitsPerBlock);
+            gen.add(blockGen);
+            kill.add(blockKill);
+            solver.setLocalSets(block, blockGen, blockKill);
+        }
+        solver.solve();
+
+        BitSet[] liveIn = new BitSet[numBlocks];
+        BitSet[] liveOut = new BitSet[numBlocks];
+        for (int i = 0; i < numBlocks; i++) {
+            liveIn[i] = new BitSet();
+            liveOut[i] = new BitSet();
+        }
+        boolean changed;
+        do {
+            changed = false;
+            for (int i = numBlocks - 1; i >= 0; i--) {
+                BitSet out = new BitSet();
+                for (TestBlock successor : blocks[i].getSuccessors()) {
+                    out.or(liveIn[successor.getId()]);
+                }
+                BitSet in = (BitSet) out.clone();
+                in.andNot(kill.get(i));
+                in.or(gen.get(i));
+                if (!in.equals(liveIn[i]) || !out.equals(liveOut[i])) {
+                    liveIn[i] = in;
+                    liveOut[i] = out;
+                    changed = true;
+                }
+            }
+        } while (changed);
+
+        for (TestBlock block : blocks) {
+            assertEquals(liveIn[block.getId()], solver.getLiveIn(block));
+            assertEquals(liveOut[block.getId()], solver.getLiveOut(block));
+        }
+    }
+
+    @Test
+    public void testDense() {
+        for (int seed = 0; seed < 20; seed++) {
+            check(seed, 50, 100, 20);
+        }
+    }
+
+    @Test
+    public void testSparse() {
+        for (int seed = 0; seed < 20; seed++) {
+            check(seed, 50, 1000, 2);
+        }
+    }
+
+    @Test
+    public void testLarge() {
+        check(42, 2000, 5000, 8);
+    }
+
+    @Test
+    public void testEmpty() {
+        check(0, 10, 0, 0);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.alloc;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugCounter;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
+
+/**
+ * Decides whether a value defined by a constant load is rematerialized at its reload points
+ * instead of being spilled. The decision only matters for the parts of the value's lifetime that
+ * are not in a register.
+ *
+ * A spilled value is stored once at its definition and read from memory at each usage, either by a
+ * reload for usages that require a register or by a memory operand for usages that accept a stack
+ * slot. A rematerialized value has no stack slot, so every usage gets a constant load, which does
+ * not access memory. A usage that accepts a stack slot then also needs a register, which is scarce
+ * where values are spilled. The costs of both alternatives are weighted by the frequencies of the
+ * blocks that contain the definition and the usages.
+ */
+public final class RematerializationCost {
+
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Rematerialize constants with usages that accept a stack slot if this is cheaper than spilling them.", type = OptionType.Debug)
+        public static final OptionValue<Boolean> LIROptSpillCostAwareRematerialization = new OptionValue<>(true);
+        // @formatter:on
+    }
+
+    private static final int CONSTANT_LOAD_COST = 1;
+    private static final int MEMORY_ACCESS_COST = 2;
+
+    /**
+     * The cost of taking a register away from other values, i.e., of spilling and reloading
+     * another value.
+     */
+    private static final int REGISTER_PRESSURE_COST = 2 * MEMORY_ACCESS_COST;
+
+    private static final DebugCounter rematerialized = Debug.counter("RA[rematerializedConstants]");
+    private static final DebugCounter spilled = Debug.counter("RA[spilledConstants]");
+
+    private double mustHaveRegisterFrequency;
+    private double shouldHaveRegisterFrequency;
+    private boolean hasShouldHaveRegisterUsage;
+
+    public void addMustHaveRegisterUsage(double frequency) {
+        mustHaveRegisterFrequency += frequency;
+    }
+
+    public void addShouldHaveRegisterUsage(double frequency) {
+        shouldHaveRegisterFrequency += frequency;
+        hasShouldHaveRegisterUsage = true;
+    }
+
+    /**
+     * Determines if rematerializing the value is at most as expensive as storing it at its
+     * definition and reloading it.
+     *
+     * @param definitionFrequency the frequency of the block that defines the value
+     */
+    public boolean shouldRematerialize(double definitionFrequency) {
+        boolean result;
+        if (!hasShouldHaveRegisterUsage) {
+            result = true;
+        } else if (!Options.LIROptSpillCostAwareRematerialization.getValue()) {
+            result = false;
+        } else {
+            double spillCost = (definitionFrequency + mustHaveRegisterFrequency + shouldHaveRegisterFrequency) * MEMORY_ACCESS_COST;
+            double rematerializationCost = (mustHaveRegisterFrequency + shouldHaveRegisterFrequency) * CONSTANT_LOAD_COST + shouldHaveRegisterFrequency * REGISTER_PRESSURE_COST;
+            result = rematerializationCost <= spillCost;
+        }
+        if (result) {
+            rematerialized.increment();
+        } else {
+            spilled.increment();
+        }
+        return result;
+    }
+}
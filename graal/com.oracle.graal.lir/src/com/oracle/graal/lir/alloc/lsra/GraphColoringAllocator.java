@@ -0,0 +1,641 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.alloc.lsra;
+
+import static jdk.vm.ci.code.ValueUtil.asRegister;
+import static jdk.vm.ci.code.ValueUtil.isRegister;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugCounter;
+import com.oracle.graal.debug.GraalError;
+import com.oracle.graal.debug.Indent;
+import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.LIRInstruction.OperandMode;
+import com.oracle.graal.lir.alloc.lsra.Interval.RegisterPriority;
+
+import jdk.vm.ci.code.Register;
+
+/**
+ * Assigns registers to the variable {@link Interval intervals} of a {@link LinearScan} by coloring
+ * their interference graph with the optimistic simplify/select scheme of Briggs et al. Two
+ * intervals interfere if their ranges intersect. Registers blocked by a fixed interval (e.g., by a
+ * call) are excluded from the colors of an intersecting interval. Intervals that are connected by
+ * a {@linkplain Interval#locationHint(boolean) location hint} are biased towards the same register
+ * so that the move between them is removed by {@link LinearScanAssignLocationsPhase}.
+ *
+ * An interval that needs a register but is live across a call, which blocks all its registers, is
+ * split into parts: it is kept in memory from the call up to its next usage that requires a
+ * register, where it is reloaded. Likewise, a method parameter that starts in memory is loaded
+ * before its first usage that requires a register. Each part is a node of the interference graph.
+ * The intervals are only split once the coloring succeeded. If no register is left for a part that
+ * requires one, the coloring fails, nothing is modified and the {@link LinearScanWalker} allocates
+ * the compilation.
+ */
+final class GraphColoringAllocator {
+
+    private static final DebugCounter coloredCompilations = Debug.counter("LSRA[GraphColoring]");
+    private static final DebugCounter failedCompilations = Debug.counter("LSRA[GraphColoringFailed]");
+    private static final DebugCounter registerIntervals = Debug.counter("LSRA[GraphColoringRegisters]");
+    private static final DebugCounter memoryIntervals = Debug.counter("LSRA[GraphColoringMemory]");
+    private static final DebugCounter splitIntervals = Debug.counter("LSRA[GraphColoringSplits]");
+    private static final DebugCounter coalescedHints = Debug.counter("LSRA[GraphColoringCoalesced]");
+
+    /**
+     * A part of an interval that is colored as one node of the interference graph.
+     */
+    private static final class Part {
+        final Interval interval;
+        final int from;
+        final int to;
+
+        Part(Interval interval, int from, int to) {
+            this.interval = interval;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private final LinearScan allocator;
+
+    /**
+     * The intervals of the nodes of the interference graph. The node of a part that does not start
+     * at the beginning of its interval refers to the interval until the interval is split.
+     */
+    private Interval[] nodes;
+
+    /**
+     * The start (inclusive) of the part of each node.
+     */
+    private int[] nodeFrom;
+
+    /**
+     * The end (exclusive) of the part of each node.
+     */
+    private int[] nodeTo;
+
+    /**
+     * Maps {@linkplain Interval#operandNumber operand numbers} to the node of the first part of an
+     * interval.
+     */
+    private int[] nodeIndex;
+
+    /**
+     * The nodes that have a usage requiring a register.
+     */
+    private boolean[] mustHaveRegister;
+
+    /**
+     * The register numbers a node can be colored with.
+     */
+    private BitSet[] allowed;
+
+    /**
+     * The allocatable registers of a node in the order they are preferred.
+     */
+    private Register[][] registers;
+
+    private int[][] neighbours;
+    private int[] neighbourCount;
+
+    /**
+     * The nodes whose location hint is a given node.
+     */
+    private int[][] hintedBy;
+    private int[] hintedByCount;
+
+    private Register[] registerByNumber;
+
+    /**
+     * The positions of the instructions that destroy the caller saved registers, in ascending
+     * order, or {@code null} if they have not been computed yet.
+     */
+    private int[] callPositions;
+
+    /**
+     * Register number assigned to a node or -1.
+     */
+    private int[] color;
+
+    /**
+     * The moves between the parts of split intervals: the position and the source and destination
+     * interval of each move, in ascending order of the positions.
+     */
+    private final ArrayList<Integer> movePositions = new ArrayList<>();
+    private final ArrayList<Interval> moveSources = new ArrayList<>();
+    private final ArrayList<Interval> moveDestinations = new ArrayList<>();
+
+    GraphColoringAllocator(LinearScan allocator) {
+        this.allocator = allocator;
+    }
+
+    /**
+     * Colors the intervals and assigns their locations if successful.
+     *
+     * @return {@code false} if the intervals could not be colored, in which case no interval has
+     *         been modified
+     */
+    @SuppressWarnings("try")
+    boolean allocate() {
+        try (Indent indent = Debug.logAndIndent("graph coloring")) {
+            if (!buildNodes()) {
+                return false;
+            }
+            buildInterferenceGraph();
+            int[] order = simplify();
+            boolean[] inMemory = new boolean[nodes.length];
+            if (!select(order, inMemory)) {
+                return false;
+            }
+            splitIntervals();
+            for (int i = 0; i < nodes.length; i++) {
+                Interval interval = nodes[i];
+                if (inMemory[i]) {
+                    allocator.assignSpillSlot(interval);
+                    allocator.changeSpillState(interval, nodeFrom[i]);
+                    memoryIntervals.increment();
+                } else {
+                    interval.assignLocation(registerByNumber[color[i]].asValue(interval.kind()));
+                    registerIntervals.increment();
+                }
+                if (Debug.isLogEnabled()) {
+                    Debug.log("%s -> %s", interval, interval.location());
+                }
+            }
+            insertMoves();
+            coloredCompilations.increment();
+            return true;
+        }
+    }
+
+    private static boolean failed(String reason, Interval interval) {
+        failedCompilations.increment();
+        if (GraphColoringPhase.Options.LIRGraphColoringFailureIsFatal.getValue()) {
+            throw new GraalError("graph coloring failed: " + reason + ": %s", interval);
+        }
+        Debug.log("%s: %s", reason, interval);
+        return false;
+    }
+
+    private static boolean needsRegister(Interval interval, int from, int to) {
+        return interval.nextUsage(RegisterPriority.MustHaveRegister, from) < to;
+    }
+
+    private boolean buildNodes() {
+        Interval[] intervals = allocator.intervals();
+        registerByNumber = new Register[allocator.maxRegisterNumber() + 1];
+        for (Register reg : allocator.getRegisters()) {
+            if (reg.number < registerByNumber.length) {
+                registerByNumber[reg.number] = reg;
+            }
+        }
+        ArrayList<Part> parts = new ArrayList<>();
+        for (Interval interval : intervals) {
+            if (interval != null && !isRegister(interval.operand)) {
+                if (interval.location() == null) {
+                    addParts(parts, interval, interval.from());
+                } else {
+                    // method parameter that starts in memory
+                    int usePos = interval.firstUsage(RegisterPriority.MustHaveRegister);
+                    if (usePos != Integer.MAX_VALUE) {
+                        // load it before the usage (odd position)
+                        int loadPos = usePos - 1;
+                        if (loadPos <= interval.from()) {
+                            return failed("interval starting in memory needs a register at its start", interval);
+                        }
+                        addParts(parts, interval, loadPos);
+                    }
+                }
+            }
+        }
+        parts.sort((a, b) -> a.from - b.from);
+
+        int n = parts.size();
+        nodes = new Interval[n];
+        nodeFrom = new int[n];
+        nodeTo = new int[n];
+        mustHaveRegister = new boolean[n];
+        allowed = new BitSet[n];
+        registers = new Register[n][];
+        hintedBy = new int[n][];
+        hintedByCount = new int[n];
+        nodeIndex = new int[intervals.length];
+        Arrays.fill(nodeIndex, -1);
+        for (int i = 0; i < n; i++) {
+            Part part = parts.get(i);
+            nodes[i] = part.interval;
+            nodeFrom[i] = part.from;
+            nodeTo[i] = part.to;
+            if (nodeIndex[part.interval.operandNumber] == -1) {
+                nodeIndex[part.interval.operandNumber] = i;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            Interval interval = nodes[i];
+            Interval hint = isFirstPart(i) ? interval.locationHint(false) : null;
+            if (hint != null && !isRegister(hint.operand) && nodeIndex[hint.operandNumber] != -1) {
+                append(hintedBy, hintedByCount, nodeIndex[hint.operandNumber], i);
+            }
+            registers[i] = allocatableRegisters(interval);
+            allowed[i] = allowedRegisters(interval, nodeFrom[i], nodeTo[i]);
+            mustHaveRegister[i] = needsRegister(interval, nodeFrom[i], nodeTo[i]);
+        }
+        return true;
+    }
+
+    private boolean isFirstPart(int node) {
+        return nodeIndex[nodes[node].operandNumber] == node;
+    }
+
+    /**
+     * Adds the parts of an interval from a given position on. If the interval needs a register but
+     * no register is free of fixed intervals, it is split around the calls it is live across: it
+     * is kept in memory from the call on up to its next usage that requires a register.
+     */
+    private void addParts(List<Part> parts, Interval interval, int from) {
+        int to = interval.to();
+        if (!needsRegister(interval, from, to) || !allowedRegisters(interval, from, to).isEmpty()) {
+            parts.add(new Part(interval, from, to));
+            return;
+        }
+        int start = from;
+        for (int call : callPositions()) {
+            if (call >= to) {
+                break;
+            }
+            // spill before the call (odd position) if the interval is live after it
+            int spillPos = call - 1;
+            if (spillPos <= start || !interval.covers(call, OperandMode.DEF)) {
+                continue;
+            }
+            int reloadPos = interval.nextUsage(RegisterPriority.MustHaveRegister, call) - 1;
+            if (reloadPos < call) {
+                // the call itself requires the value in a register
+                continue;
+            }
+            parts.add(new Part(interval, start, spillPos));
+            start = spillPos;
+            if (reloadPos >= to) {
+                break;
+            }
+            parts.add(new Part(interval, start, reloadPos));
+            start = reloadPos;
+        }
+        parts.add(new Part(interval, start, to));
+    }
+
+    private int[] callPositions() {
+        if (callPositions == null) {
+            int[] positions = new int[8];
+            int count = 0;
+            for (int i = 0; i < allocator.blockCount(); i++) {
+                for (LIRInstruction op : allocator.getLIR().getLIRforBlock(allocator.blockAt(i))) {
+                    if (op.destroysCallerSavedRegisters()) {
+                        if (count == positions.length) {
+                            positions = Arrays.copyOf(positions, count * 2);
+                        }
+                        positions[count++] = op.id();
+                    }
+                }
+            }
+            callPositions = Arrays.copyOf(positions, count);
+        }
+        return callPositions;
+    }
+
+    private Register[] allocatableRegisters(Interval interval) {
+        return allocator.getRegisterAllocationConfig().getAllocatableRegisters(interval.kind().getPlatformKind()).allocatableRegisters;
+    }
+
+    /**
+     * Gets the numbers of the allocatable registers of an interval that are not blocked by a fixed
+     * interval between {@code from} and {@code to}.
+     */
+    private BitSet allowedRegisters(Interval interval, int from, int to) {
+        BitSet colors = new BitSet();
+        for (Register reg : allocatableRegisters(interval)) {
+            if (reg.number >= registerByNumber.length) {
+                continue;
+            }
+            Interval fixed = allocator.intervalFor(reg.number);
+            if (fixed == null || !intersects(fixed, interval, from, to)) {
+                colors.set(reg.number);
+            }
+        }
+        return colors;
+    }
+
+    /**
+     * Determines if the ranges of two intervals intersect between {@code from} (inclusive) and
+     * {@code to} (exclusive).
+     */
+    private static boolean intersects(Interval i1, Interval i2, int from, int to) {
+        int index1 = 0;
+        int index2 = 0;
+        while (index1 < i1.numRanges() && index2 < i2.numRanges()) {
+            int start = Math.max(from, Math.max(i1.rangeFrom(index1), i2.rangeFrom(index2)));
+            if (start >= to) {
+                return false;
+            }
+            if (start < Math.min(to, Math.min(i1.rangeTo(index1), i2.rangeTo(index2)))) {
+                return true;
+            }
+            if (i1.rangeTo(index1) < i2.rangeTo(index2)) {
+                index1++;
+            } else {
+                index2++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds an edge for every pair of intersecting parts that compete for the same registers. The
+     * nodes are sorted by start position so only parts that are live at the start of a node need
+     * to be tested.
+     */
+    private void buildInterferenceGraph() {
+        int n = nodes.length;
+        neighbours = new int[n][];
+        neighbourCount = new int[n];
+        int[] live = new int[n];
+        int liveCount = 0;
+        for (int i = 0; i < n; i++) {
+            int from = nodeFrom[i];
+            int newLiveCount = 0;
+            for (int j = 0; j < liveCount; j++) {
+                int other = live[j];
+                if (nodeTo[other] > from) {
+                    live[newLiveCount++] = other;
+                    if (allowed[i].intersects(allowed[other]) && intersects(nodes[i], nodes[other], from, Math.min(nodeTo[i], nodeTo[other]))) {
+                        append(neighbours, neighbourCount, i, other);
+                        append(neighbours, neighbourCount, other, i);
+                    }
+                }
+            }
+            live[newLiveCount++] = i;
+            liveCount = newLiveCount;
+        }
+    }
+
+    private static void append(int[][] lists, int[] counts, int from, int to) {
+        int[] list = lists[from];
+        int count = counts[from];
+        if (list == null) {
+            list = new int[4];
+            lists[from] = list;
+        } else if (count == list.length) {
+            list = Arrays.copyOf(list, count * 2);
+            lists[from] = list;
+        }
+        list[count] = to;
+        counts[from] = count + 1;
+    }
+
+    /**
+     * A node that may be removed optimistically, ordered by its spill cost per neighbour at the
+     * time it was queued.
+     */
+    private static final class SpillCandidate implements Comparable<SpillCandidate> {
+        final int node;
+        final double priority;
+
+        SpillCandidate(int node, double priority) {
+            this.node = node;
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo(SpillCandidate other) {
+            return Double.compare(priority, other.priority);
+        }
+    }
+
+    /**
+     * Removes nodes with fewer neighbours than colors from the graph. If there are none, the node
+     * that is cheapest to keep in memory per neighbour is removed optimistically. The degree of a
+     * node only decreases, so the priority of a queued candidate is a lower bound of its current
+     * priority. An outdated candidate is queued again with its current priority when it is polled.
+     *
+     * @return the nodes in the order in which they were removed
+     */
+    private int[] simplify() {
+        int n = nodes.length;
+        int[] degree = Arrays.copyOf(neighbourCount, n);
+        int[] colors = new int[n];
+        double[] spillCost = new double[n];
+        boolean[] removed = new boolean[n];
+        boolean[] queued = new boolean[n];
+        ArrayDeque<Integer> worklist = new ArrayDeque<>();
+        PriorityQueue<SpillCandidate> spillCandidates = new PriorityQueue<>();
+        for (int i = 0; i < n; i++) {
+            colors[i] = allowed[i].cardinality();
+            spillCost[i] = spillCost(i);
+            if (degree[i] < colors[i]) {
+                worklist.add(i);
+                queued[i] = true;
+            } else {
+                spillCandidates.add(new SpillCandidate(i, spillCost[i] / (degree[i] + 1)));
+            }
+        }
+        int[] order = new int[n];
+        for (int removedCount = 0; removedCount < n; removedCount++) {
+            int node;
+            if (!worklist.isEmpty()) {
+                node = worklist.poll();
+            } else {
+                node = -1;
+                while (node == -1) {
+                    SpillCandidate candidate = spillCandidates.poll();
+                    int i = candidate.node;
+                    if (!removed[i]) {
+                        double priority = spillCost[i] / (degree[i] + 1);
+                        if (priority > candidate.priority) {
+                            spillCandidates.add(new SpillCandidate(i, priority));
+                        } else {
+                            node = i;
+                        }
+                    }
+                }
+                queued[node] = true;
+            }
+            removed[node] = true;
+            order[removedCount] = node;
+            for (int j = 0; j < neighbourCount[node]; j++) {
+                int neighbour = neighbours[node][j];
+                if (!removed[neighbour]) {
+                    degree[neighbour]--;
+                    if (!queued[neighbour] && degree[neighbour] < colors[neighbour]) {
+                        worklist.add(neighbour);
+                        queued[neighbour] = true;
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Estimates the cost of keeping a part in memory by the frequencies of its usages. Parts that
+     * must have a register cannot be kept in memory and are removed last.
+     */
+    private double spillCost(int node) {
+        if (mustHaveRegister[node]) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double cost = 0;
+        Interval.UsePosList usePosList = nodes[node].usePosList();
+        for (int i = 0; i < usePosList.size(); i++) {
+            int usePos = usePosList.usePos(i);
+            if (usePos >= nodeFrom[node] && usePos < nodeTo[node]) {
+                cost += allocator.blockForId(usePos).probability();
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Colors the nodes in the reverse order of their removal.
+     */
+    private boolean select(int[] order, boolean[] inMemory) {
+        int n = nodes.length;
+        color = new int[n];
+        Arrays.fill(color, -1);
+        BitSet free = new BitSet();
+        for (int k = n - 1; k >= 0; k--) {
+            int node = order[k];
+            free.clear();
+            free.or(allowed[node]);
+            for (int j = 0; j < neighbourCount[node]; j++) {
+                int neighbourColor = color[neighbours[node][j]];
+                if (neighbourColor != -1) {
+                    free.clear(neighbourColor);
+                }
+            }
+            int reg = hintedColor(node, free);
+            if (reg != -1) {
+                coalescedHints.increment();
+            } else {
+                for (Register candidate : registers[node]) {
+                    if (free.get(candidate.number)) {
+                        reg = candidate.number;
+                        break;
+                    }
+                }
+            }
+            if (reg != -1) {
+                color[node] = reg;
+            } else if (!mustHaveRegister[node]) {
+                inMemory[node] = true;
+            } else {
+                return failed("no register left", nodes[node]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets a free register of an interval connected to a node by a location hint, in either
+     * direction, or -1.
+     */
+    private int hintedColor(int node, BitSet free) {
+        Interval hint = isFirstPart(node) ? nodes[node].locationHint(false) : null;
+        if (hint != null) {
+            int reg;
+            if (isRegister(hint.operand)) {
+                reg = asRegister(hint.operand).number;
+            } else {
+                int hintNode = nodeIndex[hint.operandNumber];
+                reg = hintNode == -1 ? -1 : color[hintNode];
+            }
+            if (reg != -1 && free.get(reg)) {
+                return reg;
+            }
+        }
+        for (int j = 0; j < hintedByCount[node]; j++) {
+            int reg = color[hintedBy[node][j]];
+            if (reg != -1 && free.get(reg)) {
+                return reg;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Splits the intervals at the start of their parts and records the moves between the parts.
+     * The nodes are sorted by start position, so the parts of an interval are split off in order.
+     */
+    private void splitIntervals() {
+        Interval[] lastPart = new Interval[nodeIndex.length];
+        for (int i = 0; i < nodes.length; i++) {
+            Interval interval = nodes[i];
+            int splitPos = nodeFrom[i];
+            if (splitPos > interval.from()) {
+                Interval current = lastPart[interval.operandNumber] == null ? interval : lastPart[interval.operandNumber];
+                boolean moveNecessary = !current.hasHoleBetween(splitPos - 1, splitPos);
+                Interval part = current.split(splitPos, allocator);
+                lastPart[interval.operandNumber] = part;
+                nodes[i] = part;
+                if (moveNecessary) {
+                    movePositions.add(splitPos);
+                    moveSources.add(current);
+                    moveDestinations.add(part);
+                }
+                splitIntervals.increment();
+            }
+        }
+    }
+
+    /**
+     * Inserts the moves between the parts of split intervals. The moves between blocks are inserted
+     * by the {@link LinearScanResolveDataFlowPhase}.
+     */
+    private void insertMoves() {
+        if (movePositions.isEmpty()) {
+            return;
+        }
+        MoveResolver moveResolver = allocator.createMoveResolver();
+        for (int i = 0; i < movePositions.size(); i++) {
+            int opId = (movePositions.get(i) + 1) & ~1;
+            AbstractBlockBase<?> opBlock = allocator.blockForId(opId);
+            assert opId > 0 && allocator.blockForId(opId - 2) == opBlock : "cannot insert move at block boundary";
+
+            List<LIRInstruction> instructions = allocator.getLIR().getLIRforBlock(opBlock);
+            int index = (opId - instructions.get(0).id()) >> 1;
+            while (instructions.get(index).id() != opId) {
+                index++;
+                assert 0 <= index && index < instructions.size() : "index out of bounds";
+            }
+            moveResolver.moveInsertPosition(instructions, index);
+            moveResolver.addMapping(moveSources.get(i), moveDestinations.get(i));
+        }
+        moveResolver.resolveAndAppendMoves();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.alloc.lsra;
+
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.lir.LIR;
+import com.oracle.graal.lir.alloc.lsra.ssa.SSALinearScan;
+import com.oracle.graal.lir.gen.LIRGenerationResult;
+import com.oracle.graal.lir.phases.AllocationPhase;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
+
+import jdk.vm.ci.code.TargetDescription;
+
+/**
+ * Register allocation for compilations with hot loops, where allocation quality matters more than
+ * compile time. The {@link Interval lifetime intervals} of such compilations are allocated by
+ * {@link GraphColoringAllocator coloring their interference graph}. All other compilations, and
+ * those that cannot be colored, are allocated by the {@link LinearScanWalker}.
+ */
+public final class GraphColoringPhase extends AllocationPhase {
+
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Use the graph coloring register allocator for compilations with hot loops.", type = OptionType.Expert)
+        public static final OptionValue<Boolean> LIRGraphColoringRA = new OptionValue<>(false);
+        @Option(help = "Minimum frequency of a block, relative to the method entry, for using the graph coloring register allocator.", type = OptionType.Expert)
+        public static final OptionValue<Double> LIRGraphColoringMinFrequency = new OptionValue<>(1000D);
+        @Option(help = "Throw an exception instead of falling back to linear scan if the graph coloring register allocator fails.", type = OptionType.Debug)
+        public static final OptionValue<Boolean> LIRGraphColoringFailureIsFatal = new OptionValue<>(false);
+        // @formatter:on
+    }
+
+    private final double minFrequency;
+
+    public GraphColoringPhase() {
+        this.minFrequency = Options.LIRGraphColoringMinFrequency.getValue();
+    }
+
+    @Override
+    protected void run(TargetDescription target, LIRGenerationResult lirGenRes, AllocationContext context) {
+        LIR lir = lirGenRes.getLIR();
+        LinearScan allocator = new SSALinearScan(target, lirGenRes, context.spillMoveFactory, context.registerAllocationConfig, lir.linearScanOrder(), false);
+        if (isHot(lir)) {
+            allocator.enableGraphColoring();
+        }
+        allocator.allocate(target, lirGenRes, context.spillMoveFactory, context.registerAllocationConfig);
+    }
+
+    private boolean isHot(LIR lir) {
+        for (AbstractBlockBase<?> block : lir.linearScanOrder()) {
+            if (block.probability() >= minFrequency) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
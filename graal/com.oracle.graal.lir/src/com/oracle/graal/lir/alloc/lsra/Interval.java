@@ -32,12 +32,12 @@ import static jdk.vm.ci.code.ValueUtil.isRegister;
 import static jdk.vm.ci.code.ValueUtil.isStackSlot;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 
 import com.oracle.graal.compiler.common.LIRKind;
-import com.oracle.graal.compiler.common.util.IntList;
 import com.oracle.graal.compiler.common.util.Util;
 import com.oracle.graal.debug.GraalError;
 import com.oracle.graal.debug.TTY;
@@ -359,7 +359,15 @@ public final class Interval {
      */
     public static final class UsePosList {
 
-        private IntList list;
+        /**
+         * The entries of this list, packed as {@code (usePos, registerPriority.ordinal())} pairs.
+         */
+        private int[] list;
+
+        /**
+         * The number of ints used in {@link #list}, i.e., twice the number of entries.
+         */
+        private int listSize;
 
         /**
          * Creates a use list.
@@ -367,11 +375,12 @@ public final class Interval {
          * @param initialCapacity the initial capacity of the list in terms of entries
          */
         public UsePosList(int initialCapacity) {
-            list = new IntList(initialCapacity * 2);
+            list = new int[initialCapacity * 2];
         }
 
-        private UsePosList(IntList list) {
+        private UsePosList(int[] list, int listSize) {
             this.list = list;
+            this.listSize = listSize;
         }
 
         /**
@@ -384,18 +393,30 @@ public final class Interval {
          *         position greater or equal than {@code splitPos}
          */
         public UsePosList splitAt(int splitPos) {
-            int i = size() - 1;
-            int len = 0;
-            while (i >= 0 && usePos(i) < splitPos) {
-                --i;
-                len += 2;
+            int listSplitIndex = numUsePosFrom(splitPos) << 1;
+            int[] childList = list;
+            list = Arrays.copyOfRange(childList, listSplitIndex, listSize);
+            listSize = listSize - listSplitIndex;
+            return new UsePosList(childList, listSplitIndex);
+        }
+
+        /**
+         * Gets the number of entries with a use position greater or equal than {@code pos}. As the
+         * entries are sorted descending, this is also the index of the highest entry below
+         * {@code pos}.
+         */
+        public int numUsePosFrom(int pos) {
+            int low = 0;
+            int high = size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (usePos(mid) >= pos) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
             }
-            int listSplitIndex = (i + 1) * 2;
-            IntList childList = list;
-            list = IntList.copy(this.list, listSplitIndex, len);
-            childList.setSize(listSplitIndex);
-            UsePosList child = new UsePosList(childList);
-            return child;
+            return low;
         }
 
         /**
@@ -405,7 +426,8 @@ public final class Interval {
          * @return the use position of entry {@code index} in this list
          */
         public int usePos(int index) {
-            return list.get(index << 1);
+            assert index < size();
+            return list[index << 1];
         }
 
         /**
@@ -415,25 +437,31 @@ public final class Interval {
          * @return the register priority of entry {@code index} in this list
          */
         public RegisterPriority registerPriority(int index) {
-            return RegisterPriority.VALUES[list.get((index << 1) + 1)];
+            assert index < size();
+            return RegisterPriority.VALUES[list[(index << 1) + 1]];
         }
 
         public void add(int usePos, RegisterPriority registerPriority) {
-            assert list.size() == 0 || usePos(size() - 1) > usePos;
-            list.add(usePos);
-            list.add(registerPriority.ordinal());
+            assert listSize == 0 || usePos(size() - 1) > usePos;
+            if (listSize == list.length) {
+                list = Arrays.copyOf(list, Math.max(4, listSize * 2));
+            }
+            list[listSize++] = usePos;
+            list[listSize++] = registerPriority.ordinal();
         }
 
         public int size() {
-            return list.size() >> 1;
+            return listSize >> 1;
         }
 
         public void removeLowestUsePos() {
-            list.setSize(list.size() - 2);
+            assert listSize >= 2;
+            listSize -= 2;
         }
 
         public void setRegisterPriority(int index, RegisterPriority registerPriority) {
-            list.set((index << 1) + 1, registerPriority.ordinal());
+            assert index < size();
+            list[(index << 1) + 1] = registerPriority.ordinal();
         }
 
         @Override
@@ -479,10 +507,19 @@ public final class Interval {
     private ValueKind<?> kind;
 
     /**
-     * The head of the list of ranges describing this interval. This list is sorted by
-     * {@linkplain LIRInstruction#id instruction ids}.
+     * The ranges describing this interval, packed as {@code (from, to)} pairs of
+     * {@linkplain LIRInstruction#id instruction ids}. A range includes {@code from} and excludes
+     * {@code to}. The pairs are stored in descending order because {@link #addRange} is called
+     * while walking the instructions backwards, so the first range of the interval is the last
+     * pair in the array. Methods taking a range index use ascending order, i.e., index 0 is the
+     * first range.
+     */
+    private int[] ranges;
+
+    /**
+     * The number of ranges stored in {@link #ranges}.
      */
-    private Range first;
+    private int numRanges;
 
     /**
      * List of (use-positions, register-priorities) pairs, sorted by use-positions.
@@ -490,9 +527,10 @@ public final class Interval {
     private UsePosList usePosList;
 
     /**
-     * Iterator used to traverse the ranges of an interval.
+     * Index of the current range used to traverse the ranges of an interval. Equal to
+     * {@link #numRanges} if the iteration is at the end.
      */
-    private Range current;
+    private int current;
 
     /**
      * Link to next interval in a sorted list of intervals that ends with {@link #EndMarker}.
@@ -504,8 +542,6 @@ public final class Interval {
      */
     State state;
 
-    private int cachedTo; // cached value: to of last range (-1: not cached)
-
     /**
      * The interval from which this one is derived. If this is a {@linkplain #isSplitParent() split
      * parent}, it points to itself.
@@ -591,20 +627,66 @@ public final class Interval {
         this.kind = kind;
     }
 
-    public Range first() {
-        return first;
+    /**
+     * Gets the number of ranges of this interval.
+     */
+    public int numRanges() {
+        return numRanges;
+    }
+
+    /**
+     * Gets the start (inclusive) of the range at {@code index}, where index 0 is the first range.
+     */
+    public int rangeFrom(int index) {
+        assert index >= 0 && index < numRanges : "range index out of bounds";
+        return ranges[(numRanges - 1 - index) << 1];
+    }
+
+    /**
+     * Gets the end (exclusive) of the range at {@code index}, where index 0 is the first range.
+     */
+    public int rangeTo(int index) {
+        assert index >= 0 && index < numRanges : "range index out of bounds";
+        return ranges[((numRanges - 1 - index) << 1) + 1];
+    }
+
+    /**
+     * Gets the index of the first range that ends after {@code pos}, or {@link #numRanges()} if
+     * there is no such range.
+     */
+    private int findRangeEndingAfter(int pos) {
+        int low = 0;
+        int high = numRanges;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (rangeTo(mid) <= pos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
 
     public int from() {
-        return first.from;
+        if (numRanges == 0) {
+            return Integer.MAX_VALUE;
+        }
+        return ranges[(numRanges - 1) << 1];
+    }
+
+    /**
+     * Moves the start of the first range of this interval to {@code from}.
+     */
+    void setFrom(int from) {
+        assert numRanges > 0 : "interval has no range";
+        assert from < ranges[((numRanges - 1) << 1) + 1] : "invalid range";
+        ranges[(numRanges - 1) << 1] = from;
     }
 
     int to() {
-        if (cachedTo == -1) {
-            cachedTo = calcTo();
-        }
-        assert cachedTo == calcTo() : "invalid cached value";
-        return cachedTo;
+        assert numRanges > 0 : "interval has no range";
+        return ranges[1];
     }
 
     int numUsePositions() {
@@ -690,43 +772,97 @@ public final class Interval {
 
     // test intersection
     boolean intersects(Interval i) {
-        return first.intersects(i.first);
+        return intersectsAt(i) != -1;
     }
 
     int intersectsAt(Interval i) {
-        return first.intersectsAt(i.first);
+        return intersectsAt(this, 0, i, 0);
+    }
+
+    /**
+     * Gets the first position at which the ranges of {@code i1} starting at index {@code index1}
+     * and the ranges of {@code i2} starting at index {@code index2} intersect, or -1 if they do
+     * not intersect. An interval without ranges at or after the start index intersects nothing.
+     */
+    private static int intersectsAt(Interval i1, int index1, Interval i2, int index2) {
+        if (index1 >= i1.numRanges || index2 >= i2.numRanges) {
+            return -1;
+        }
+        int[] r1 = i1.ranges;
+        int[] r2 = i2.ranges;
+        int p1 = (i1.numRanges - 1 - index1) << 1;
+        int p2 = (i2.numRanges - 1 - index2) << 1;
+
+        do {
+            int from1 = r1[p1];
+            int from2 = r2[p2];
+            if (from1 < from2) {
+                if (r1[p1 + 1] <= from2) {
+                    p1 -= 2;
+                    if (p1 < 0) {
+                        return -1;
+                    }
+                } else {
+                    return from2;
+                }
+            } else if (from2 < from1) {
+                if (r2[p2 + 1] <= from1) {
+                    p2 -= 2;
+                    if (p2 < 0) {
+                        return -1;
+                    }
+                } else {
+                    return from1;
+                }
+            } else if (from1 == r1[p1 + 1]) {
+                p1 -= 2;
+                if (p1 < 0) {
+                    return -1;
+                }
+            } else if (from2 == r2[p2 + 1]) {
+                p2 -= 2;
+                if (p2 < 0) {
+                    return -1;
+                }
+            } else {
+                return from1;
+            }
+        } while (true);
     }
 
     // range iteration
     void rewindRange() {
-        current = first;
+        current = 0;
     }
 
     void nextRange() {
         assert this != EndMarker : "not allowed on sentinel";
-        current = current.next;
+        assert current < numRanges : "already at end";
+        current++;
     }
 
     int currentFrom() {
-        return current.from;
+        return current < numRanges ? rangeFrom(current) : Integer.MAX_VALUE;
     }
 
     int currentTo() {
-        return current.to;
+        return current < numRanges ? rangeTo(current) : Integer.MAX_VALUE;
     }
 
     boolean currentAtEnd() {
-        return current == Range.EndMarker;
+        return current >= numRanges;
     }
 
     boolean currentIntersects(Interval it) {
-        return current.intersects(it.current);
+        return currentIntersectsAt(it) != -1;
     }
 
     int currentIntersectsAt(Interval it) {
-        return current.intersectsAt(it.current);
+        return intersectsAt(this, current, it, it.current);
     }
 
+    private static final int[] NO_RANGES = new int[0];
+
     /**
      * Sentinel interval to denote the end of an interval list.
      */
@@ -742,11 +878,9 @@ public final class Interval {
             assert isIllegal(operand) || isVariable(operand);
         }
         this.kind = LIRKind.Illegal;
-        this.first = Range.EndMarker;
+        this.ranges = NO_RANGES;
         this.usePosList = new UsePosList(4);
-        this.current = Range.EndMarker;
         this.next = EndMarker;
-        this.cachedTo = -1;
         this.spillState = SpillState.NoDefinitionFound;
         this.spillDefinitionPos = -1;
         splitParent = this;
@@ -781,16 +915,6 @@ public final class Interval {
         return splitParent().materializedValue;
     }
 
-    int calcTo() {
-        assert first != Range.EndMarker : "interval has no range";
-
-        Range r = first;
-        while (r.next != Range.EndMarker) {
-            r = r.next;
-        }
-        return r.to;
-    }
-
     // consistency check of split-children
     boolean checkSplitChildren() {
         if (!splitChildren.isEmpty()) {
@@ -1006,9 +1130,9 @@ public final class Interval {
     int nextUsage(RegisterPriority minRegisterPriority, int from) {
         assert isVariable(operand) : "cannot access use positions for fixed intervals";
 
-        for (int i = usePosList.size() - 1; i >= 0; --i) {
+        for (int i = usePosList.numUsePosFrom(from) - 1; i >= 0; --i) {
             int usePos = usePosList.usePos(i);
-            if (usePos >= from && adaptPriority(usePosList.registerPriority(i)).greaterEqual(minRegisterPriority)) {
+            if (adaptPriority(usePosList.registerPriority(i)).greaterEqual(minRegisterPriority)) {
                 return usePos;
             }
         }
@@ -1018,9 +1142,9 @@ public final class Interval {
     int nextUsageExact(RegisterPriority exactRegisterPriority, int from) {
         assert isVariable(operand) : "cannot access use positions for fixed intervals";
 
-        for (int i = usePosList.size() - 1; i >= 0; --i) {
+        for (int i = usePosList.numUsePosFrom(from) - 1; i >= 0; --i) {
             int usePos = usePosList.usePos(i);
-            if (usePos >= from && adaptPriority(usePosList.registerPriority(i)) == exactRegisterPriority) {
+            if (adaptPriority(usePosList.registerPriority(i)) == exactRegisterPriority) {
                 return usePos;
             }
         }
@@ -1071,24 +1195,31 @@ public final class Interval {
 
     public void addRange(int from, int to) {
         assert from < to : "invalid range";
-        assert first() == Range.EndMarker || to < first().next.from : "not inserting at begin of interval";
-        assert from <= first().to : "not inserting at begin of interval";
+        assert numRanges < 2 || to < rangeFrom(1) : "not inserting at begin of interval";
+        assert numRanges == 0 || from <= rangeTo(0) : "not inserting at begin of interval";
 
-        if (first.from <= to) {
-            assert first != Range.EndMarker;
+        int pos = numRanges << 1;
+        if (numRanges > 0 && ranges[pos - 2] <= to) {
             // join intersecting ranges
-            first.from = Math.min(from, first().from);
-            first.to = Math.max(to, first().to);
+            ranges[pos - 2] = Math.min(from, ranges[pos - 2]);
+            ranges[pos - 1] = Math.max(to, ranges[pos - 1]);
         } else {
             // insert new range
-            first = new Range(from, to, first());
+            if (pos == ranges.length) {
+                ranges = Arrays.copyOf(ranges, Math.max(4, pos * 2));
+            }
+            ranges[pos] = from;
+            ranges[pos + 1] = to;
+            numRanges++;
         }
     }
 
-    Interval newSplitChild(LinearScan allocator) {
-        // allocate new interval
+    /**
+     * Turns {@code result}, a new interval {@linkplain LinearScan#createDerivedInterval derived}
+     * from the split parent, into a split child of the split parent.
+     */
+    private Interval newSplitChild(Interval result) {
         Interval parent = splitParent();
-        Interval result = allocator.createDerivedInterval(parent);
         result.setKind(kind());
 
         result.splitParent = parent;
@@ -1122,32 +1253,38 @@ public final class Interval {
      * @return the child interval split off from this interval
      */
     Interval split(int splitPos, LinearScan allocator) {
-        assert isVariable(operand) : "cannot split fixed intervals";
-
-        // allocate new interval
-        Interval result = newSplitChild(allocator);
-
-        // split the ranges
-        Range prev = null;
-        Range cur = first;
-        while (cur != Range.EndMarker && cur.to <= splitPos) {
-            prev = cur;
-            cur = cur.next;
-        }
-        assert cur != Range.EndMarker : "split interval after end of last range";
+        return split(splitPos, allocator.createDerivedInterval(splitParent()));
+    }
 
-        if (cur.from < splitPos) {
-            result.first = new Range(splitPos, cur.to, cur.next);
-            cur.to = splitPos;
-            cur.next = Range.EndMarker;
+    /**
+     * Same as {@link #split(int, LinearScan)} but uses the already allocated interval
+     * {@code derived} for the child interval.
+     */
+    Interval split(int splitPos, Interval derived) {
+        assert isVariable(operand) : "cannot split fixed intervals";
 
+        Interval result = newSplitChild(derived);
+
+        // split the ranges: the ranges after the split position are at the start of the array
+        // and are handed over to the child, the remaining ones are copied
+        int index = findRangeEndingAfter(splitPos);
+        assert index < numRanges : "split interval after end of last range";
+        int pos = (numRanges - 1 - index) << 1;
+        int[] childRanges = ranges;
+        if (childRanges[pos] < splitPos) {
+            ranges = Arrays.copyOfRange(childRanges, pos, numRanges << 1);
+            ranges[1] = splitPos;
+            numRanges = index + 1;
+            childRanges[pos] = splitPos;
         } else {
-            assert prev != null : "split before start of first range";
-            result.first = cur;
-            prev.next = Range.EndMarker;
+            assert index > 0 : "split before start of first range";
+            ranges = Arrays.copyOfRange(childRanges, pos + 2, numRanges << 1);
+            numRanges = index;
         }
-        result.current = result.first;
-        cachedTo = -1; // clear cached value
+        result.ranges = childRanges;
+        result.numRanges = (pos >> 1) + 1;
+        result.current = 0;
+        current = Math.min(current, numRanges);
 
         // split list of use positions
         result.usePosList = usePosList.splitAt(splitPos);
@@ -1171,23 +1308,34 @@ public final class Interval {
      * positions
      */
     Interval splitFromStart(int splitPos, LinearScan allocator) {
+        return splitFromStart(splitPos, allocator.createDerivedInterval(splitParent()));
+    }
+
+    /**
+     * Same as {@link #splitFromStart(int, LinearScan)} but uses the already allocated interval
+     * {@code derived} for the new head interval.
+     */
+    Interval splitFromStart(int splitPos, Interval derived) {
         assert isVariable(operand) : "cannot split fixed intervals";
         assert splitPos > from() && splitPos < to() : "can only split inside interval";
-        assert splitPos > first.from && splitPos <= first.to : "can only split inside first range";
+        assert splitPos > rangeFrom(0) && splitPos <= rangeTo(0) : "can only split inside first range";
         assert firstUsage(RegisterPriority.None) > splitPos : "can not split when use positions are present";
 
-        // allocate new interval
-        Interval result = newSplitChild(allocator);
+        Interval result = newSplitChild(derived);
 
         // the new interval has only one range (checked by assertion above,
         // so the splitting of the ranges is very simple
-        result.addRange(first.from, splitPos);
-
-        if (splitPos == first.to) {
-            assert first.next != Range.EndMarker : "must not be at end";
-            first = first.next;
+        int pos = (numRanges - 1) << 1;
+        result.addRange(ranges[pos], splitPos);
+
+        if (splitPos == ranges[pos + 1]) {
+            assert numRanges > 1 : "must not be at end";
+            numRanges--;
+            if (current > 0) {
+                current--;
+            }
         } else {
-            first.from = splitPos;
+            ranges[pos] = splitPos;
         }
 
         return result;
@@ -1195,18 +1343,16 @@ public final class Interval {
 
     // returns true if the opId is inside the interval
     boolean covers(int opId, LIRInstruction.OperandMode mode) {
-        Range cur = first;
-
-        while (cur != Range.EndMarker && cur.to < opId) {
-            cur = cur.next;
-        }
-        if (cur != Range.EndMarker) {
-            assert cur.to != cur.next.from : "ranges not separated";
+        int index = findRangeEndingAfter(opId - 1);
+        if (index < numRanges) {
+            assert index + 1 == numRanges || rangeTo(index) != rangeFrom(index + 1) : "ranges not separated";
 
+            int from = rangeFrom(index);
+            int to = rangeTo(index);
             if (mode == LIRInstruction.OperandMode.DEF) {
-                return cur.from <= opId && opId < cur.to;
+                return from <= opId && opId < to;
             } else {
-                return cur.from <= opId && opId <= cur.to;
+                return from <= opId && opId <= to;
             }
         }
         return false;
@@ -1218,28 +1364,17 @@ public final class Interval {
         assert holeFrom < holeTo : "check";
         assert from() <= holeFrom && holeTo <= to() : "index out of interval";
 
-        Range cur = first;
-        while (cur != Range.EndMarker) {
-            assert cur.to < cur.next.from : "no space between ranges";
+        // ranges ending before holeFrom cannot contain or overlap the hole-range
+        int index = findRangeEndingAfter(holeFrom - 1);
+        if (index < numRanges) {
+            assert index + 1 == numRanges || rangeTo(index) < rangeFrom(index + 1) : "no space between ranges";
 
             // hole-range starts before this range . hole
-            if (holeFrom < cur.from) {
+            if (holeFrom < rangeFrom(index)) {
                 return true;
-
-                // hole-range completely inside this range . no hole
-            } else {
-                if (holeTo <= cur.to) {
-                    return false;
-
-                    // overlapping of hole-range with this range . hole
-                } else {
-                    if (holeFrom <= cur.to) {
-                        return true;
-                    }
-                }
             }
-
-            cur = cur.next;
+            // hole-range completely inside this range . no hole, otherwise it overlaps . hole
+            return holeTo > rangeTo(index);
         }
 
         return false;
@@ -1249,11 +1384,9 @@ public final class Interval {
     public String toString() {
         String from = "?";
         String to = "?";
-        if (first != null && first != Range.EndMarker) {
+        if (numRanges > 0) {
             from = String.valueOf(from());
-            // to() may cache a computed value, modifying the current object, which is a bad idea
-            // for a printing function. Compute it directly instead.
-            to = String.valueOf(calcTo());
+            to = String.valueOf(to());
         }
         String locationString = this.location == null ? "" : "@" + this.location;
         return operandNumber + ":" + operand + (isRegister(operand) ? "" : locationString) + "[" + from + "," + to + "]";
@@ -1288,14 +1421,11 @@ public final class Interval {
         buf.append("} ranges{");
 
         // print ranges
-        Range cur = first;
-        while (cur != Range.EndMarker) {
-            if (cur != first) {
+        for (int i = 0; i < numRanges; i++) {
+            if (i != 0) {
                 buf.append(", ");
             }
-            buf.append(cur);
-            cur = cur.next;
-            assert cur != null : "range list not closed with range sentinel";
+            buf.append('[').append(rangeFrom(i)).append(", ").append(rangeTo(i)).append(']');
         }
         buf.append("} uses{");
 
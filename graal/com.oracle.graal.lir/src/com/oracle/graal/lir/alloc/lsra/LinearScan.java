@@ -52,6 +52,7 @@ import com.oracle.graal.lir.ValueConsumer;
 import com.oracle.graal.lir.Variable;
 import com.oracle.graal.lir.VirtualStackSlot;
 import com.oracle.graal.lir.alloc.lsra.Interval.RegisterBinding;
+import com.oracle.graal.lir.alloc.lsra.Interval.SpillState;
 import com.oracle.graal.lir.framemap.FrameMapBuilder;
 import com.oracle.graal.lir.gen.LIRGenerationResult;
 import com.oracle.graal.lir.gen.LIRGeneratorTool.MoveFactory;
@@ -178,6 +179,11 @@ public class LinearScan {
     private int numVariables;
     private final boolean neverSpillConstants;
 
+    /**
+     * Specifies if the {@link GraphColoringAllocator} is tried before the {@link LinearScanWalker}.
+     */
+    private boolean graphColoring;
+
     protected LinearScan(TargetDescription target, LIRGenerationResult res, MoveFactory spillMoveFactory, RegisterAllocationConfig regAllocConfig, AbstractBlockBase<?>[] sortedBlocks,
                     boolean neverSpillConstants) {
         this.ir = res.getLIR();
@@ -194,6 +200,14 @@ public class LinearScan {
         this.neverSpillConstants = neverSpillConstants;
     }
 
+    void enableGraphColoring() {
+        graphColoring = true;
+    }
+
+    boolean isGraphColoring() {
+        return graphColoring;
+    }
+
     public int getFirstLirInstructionId(AbstractBlockBase<?> block) {
         int result = ir.getLIRforBlock(block).get(0).id();
         assert result >= 0;
@@ -306,6 +320,62 @@ public class LinearScan {
         }
     }
 
+    /**
+     * Updates the {@linkplain Interval#spillState() spill state} of an interval that is kept in
+     * memory from {@code spillPos} on. Called during register allocation.
+     */
+    void changeSpillState(Interval interval, int spillPos) {
+        switch (interval.spillState()) {
+            case NoSpillStore: {
+                int defLoopDepth = blockForId(interval.spillDefinitionPos()).getLoopDepth();
+                int spillLoopDepth = blockForId(spillPos).getLoopDepth();
+
+                if (defLoopDepth < spillLoopDepth) {
+                    /*
+                     * The loop depth of the spilling position is higher then the loop depth at the
+                     * definition of the interval. Move write to memory out of loop.
+                     */
+                    if (Options.LIROptLSRAOptimizeSpillPosition.getValue()) {
+                        // find best spill position in dominator the tree
+                        interval.setSpillState(SpillState.SpillInDominator);
+                    } else {
+                        // store at definition of the interval
+                        interval.setSpillState(SpillState.StoreAtDefinition);
+                    }
+                } else {
+                    /*
+                     * The interval is currently spilled only once, so for now there is no reason to
+                     * store the interval at the definition.
+                     */
+                    interval.setSpillState(SpillState.OneSpillStore);
+                }
+                break;
+            }
+
+            case OneSpillStore: {
+                if (Options.LIROptLSRAOptimizeSpillPosition.getValue()) {
+                    // the interval is spilled more then once
+                    interval.setSpillState(SpillState.SpillInDominator);
+                } else {
+                    // It is better to store it to memory at the definition.
+                    interval.setSpillState(SpillState.StoreAtDefinition);
+                }
+                break;
+            }
+
+            case SpillInDominator:
+            case StoreAtDefinition:
+            case StartInMemory:
+            case NoOptimization:
+            case NoDefinitionFound:
+                // nothing to do
+                break;
+
+            default:
+                throw new BailoutException("other states not allowed at this time");
+        }
+    }
+
     /**
      * Map from {@linkplain #operandNumber(Value) operand numbers} to intervals.
      */
@@ -791,14 +861,14 @@ public class LinearScan {
                     throw new GraalError("");
                 }
 
-                if (i1.first() == Range.EndMarker) {
+                if (i1.numRanges() == 0) {
                     Debug.log("Interval %d has no Range", i1.operandNumber);
                     Debug.log(i1.logString(this));
                     throw new GraalError("");
                 }
 
-                for (Range r = i1.first(); r != Range.EndMarker; r = r.next) {
-                    if (r.from >= r.to) {
+                for (int r = 0; r < i1.numRanges(); r++) {
+                    if (i1.rangeFrom(r) >= i1.rangeTo(r)) {
                         Debug.log("Interval %d has zero length range", i1.operandNumber);
                         Debug.log(i1.logString(this));
                         throw new GraalError("");
@@ -53,9 +53,11 @@ import com.oracle.graal.lir.LIRInstruction.OperandMode;
 import com.oracle.graal.lir.StandardOp.LoadConstantOp;
 import com.oracle.graal.lir.StandardOp.ValueMoveOp;
 import com.oracle.graal.lir.ValueConsumer;
+import com.oracle.graal.lir.alloc.RematerializationCost;
 import com.oracle.graal.lir.alloc.lsra.Interval.RegisterPriority;
 import com.oracle.graal.lir.alloc.lsra.Interval.SpillState;
 import com.oracle.graal.lir.alloc.lsra.LinearScan.BlockData;
+import com.oracle.graal.lir.dfa.LiveSetSolver;
 import com.oracle.graal.lir.gen.LIRGenerationResult;
 import com.oracle.graal.lir.phases.AllocationPhase;
 
@@ -239,8 +241,6 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
                 BlockData blockSets = allocator.getBlockData(block);
                 blockSets.liveGen = liveGen;
                 blockSets.liveKill = liveKill;
-                blockSets.liveIn = new BitSet(liveSize);
-                blockSets.liveOut = new BitSet(liveSize);
 
                 if (Debug.isLogEnabled()) {
                     Debug.log("liveGen  B%d %s", block.getId(), blockSets.liveGen);
@@ -283,81 +283,23 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
     @SuppressWarnings("try")
     protected void computeGlobalLiveSets() {
         try (Indent indent = Debug.logAndIndent("compute global live sets")) {
-            int numBlocks = allocator.blockCount();
-            boolean changeOccurred;
-            boolean changeOccurredInBlock;
-            int iterationCount = 0;
-            BitSet liveOut = new BitSet(allocator.liveSetSize()); // scratch set for calculations
-
             /*
              * Perform a backward dataflow analysis to compute liveOut and liveIn for each block.
-             * The loop is executed until a fixpoint is reached (no changes in an iteration).
              */
-            do {
-                changeOccurred = false;
-
-                try (Indent indent2 = Debug.logAndIndent("new iteration %d", iterationCount)) {
-
-                    // iterate all blocks in reverse order
-                    for (int i = numBlocks - 1; i >= 0; i--) {
-                        AbstractBlockBase<?> block = allocator.blockAt(i);
-                        BlockData blockSets = allocator.getBlockData(block);
-
-                        changeOccurredInBlock = false;
-
-                        /*
-                         * liveOut(block) is the union of liveIn(sux), for successors sux of block.
-                         */
-                        int n = block.getSuccessorCount();
-                        if (n > 0) {
-                            liveOut.clear();
-                            // block has successors
-                            if (n > 0) {
-                                for (AbstractBlockBase<?> successor : block.getSuccessors()) {
-                                    liveOut.or(allocator.getBlockData(successor).liveIn);
-                                }
-                            }
-
-                            if (!blockSets.liveOut.equals(liveOut)) {
-                                /*
-                                 * A change occurred. Swap the old and new live out sets to avoid
-                                 * copying.
-                                 */
-                                BitSet temp = blockSets.liveOut;
-                                blockSets.liveOut = liveOut;
-                                liveOut = temp;
-
-                                changeOccurred = true;
-                                changeOccurredInBlock = true;
-                            }
-                        }
-
-                        if (iterationCount == 0 || changeOccurredInBlock) {
-                            /*
-                             * liveIn(block) is the union of liveGen(block) with (liveOut(block) &
-                             * !liveKill(block)).
-                             *
-                             * Note: liveIn has to be computed only in first iteration or if liveOut
-                             * has changed!
-                             */
-                            BitSet liveIn = blockSets.liveIn;
-                            liveIn.clear();
-                            liveIn.or(blockSets.liveOut);
-                            liveIn.andNot(blockSets.liveKill);
-                            liveIn.or(blockSets.liveGen);
-
-                            if (Debug.isLogEnabled()) {
-                                Debug.log("block %d: livein = %s,  liveout = %s", block.getId(), liveIn, blockSets.liveOut);
-                            }
-                        }
-                    }
-                    iterationCount++;
-
-                    if (changeOccurred && iterationCount > 50) {
-                        throw new BailoutException("too many iterations in computeGlobalLiveSets");
-                    }
+            LiveSetSolver solver = new LiveSetSolver(allocator.sortedBlocks(), allocator.liveSetSize());
+            for (AbstractBlockBase<?> block : allocator.sortedBlocks()) {
+                BlockData blockSets = allocator.getBlockData(block);
+                solver.setLocalSets(block, blockSets.liveGen, blockSets.liveKill);
+            }
+            solver.solve();
+            for (AbstractBlockBase<?> block : allocator.sortedBlocks()) {
+                BlockData blockSets = allocator.getBlockData(block);
+                blockSets.liveIn = solver.getLiveIn(block);
+                blockSets.liveOut = solver.getLiveOut(block);
+                if (Debug.isLogEnabled()) {
+                    Debug.log("block %d: livein = %s,  liveout = %s", block.getId(), blockSets.liveIn, blockSets.liveOut);
                 }
-            } while (changeOccurred);
+            }
 
             if (DetailedAsserts.getValue()) {
                 verifyLiveness();
@@ -367,7 +309,7 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
             AbstractBlockBase<?> startBlock = allocator.getLIR().getControlFlowGraph().getStartBlock();
             if (allocator.getBlockData(startBlock).liveIn.cardinality() != 0) {
                 if (DetailedAsserts.getValue()) {
-                    reportFailure(numBlocks);
+                    reportFailure(allocator.blockCount());
                 }
                 // bailout if this occurs in product mode.
                 throw new GraalError("liveIn set of first block must be empty: " + allocator.getBlockData(startBlock).liveIn);
@@ -524,13 +466,12 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
             interval.setKind(kind);
         }
 
-        Range r = interval.first();
-        if (r.from <= defPos) {
+        if (interval.from() <= defPos) {
             /*
              * Update the starting point (when a range is first created for a use, its start is the
              * beginning of the current block until a def is encountered).
              */
-            r.from = defPos;
+            interval.setFrom(defPos);
             interval.addUsePos(defPos, registerPriority);
 
         } else {
@@ -834,19 +775,25 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
 
             if (!allocator.neverSpillConstants()) {
                 /*
-                 * Check if the interval has any uses which would accept an stack location (priority
-                 * == ShouldHaveRegister). Rematerialization of such intervals can result in a
-                 * degradation, because rematerialization always inserts a constant load, even if
-                 * the value is not needed in a register.
+                 * Uses which would accept a stack location (priority == ShouldHaveRegister) get a
+                 * constant load if the interval is rematerialized, even if the value is not needed
+                 * in a register. Only rematerialize if this is not more expensive than spilling.
                  */
+                RematerializationCost cost = new RematerializationCost();
                 Interval.UsePosList usePosList = interval.usePosList();
                 int numUsePos = usePosList.size();
                 for (int useIdx = 0; useIdx < numUsePos; useIdx++) {
                     Interval.RegisterPriority priority = usePosList.registerPriority(useIdx);
+                    double frequency = allocator.blockForId(usePosList.usePos(useIdx)).probability();
                     if (priority == Interval.RegisterPriority.ShouldHaveRegister) {
-                        return null;
+                        cost.addShouldHaveRegisterUsage(frequency);
+                    } else if (priority == Interval.RegisterPriority.MustHaveRegister) {
+                        cost.addMustHaveRegisterUsage(frequency);
                     }
                 }
+                if (!cost.shouldRematerialize(allocator.blockForId(op.id()).probability())) {
+                    return null;
+                }
             }
             return move.getConstant();
         }
@@ -25,8 +25,12 @@ package com.oracle.graal.lir.alloc.lsra;
 import static com.oracle.graal.compiler.common.cfg.AbstractControlFlowGraph.commonDominator;
 import static com.oracle.graal.compiler.common.cfg.AbstractControlFlowGraph.dominates;
 import static com.oracle.graal.lir.LIRValueUtil.isStackSlotValue;
+import static com.oracle.graal.lir.phases.LIRPhase.Options.LIROptimization;
+import static jdk.vm.ci.code.ValueUtil.isRegister;
 
 import java.util.Iterator;
+import java.util.function.Predicate;
+
 import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
 import com.oracle.graal.debug.Debug;
 import com.oracle.graal.debug.DebugCounter;
@@ -37,14 +41,26 @@ import com.oracle.graal.lir.LIRInstruction.OperandMode;
 import com.oracle.graal.lir.alloc.lsra.Interval.SpillState;
 import com.oracle.graal.lir.gen.LIRGenerationResult;
 import com.oracle.graal.lir.phases.AllocationPhase;
+import com.oracle.graal.options.NestedBooleanOptionValue;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
 
 import jdk.vm.ci.code.TargetDescription;
 import jdk.vm.ci.meta.AllocatableValue;
 
 public final class LinearScanOptimizeSpillPositionPhase extends AllocationPhase {
 
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Move spill stores to the least frequently executed block between the definition and the spilled uses.", type = OptionType.Debug)
+        public static final OptionValue<Boolean> LIROptLSRAFrequencyAwareSpillPosition = new NestedBooleanOptionValue(LIROptimization, true);
+        // @formatter:on
+    }
+
     private static final DebugCounter betterSpillPos = Debug.counter("BetterSpillPosition");
     private static final DebugCounter betterSpillPosWithLowerProbability = Debug.counter("BetterSpillPositionWithLowerProbability");
+    private static final DebugCounter betterSpillPosInDominator = Debug.counter("BetterSpillPositionInDominator");
 
     private final LinearScan allocator;
 
@@ -133,6 +149,10 @@ public final class LinearScanOptimizeSpillPositionPhase extends AllocationPhase
                 }
                 spillBlock = dom;
             }
+            if (Options.LIROptLSRAFrequencyAwareSpillPosition.getValue() && !defBlock.equals(spillBlock)) {
+                spillBlock = leastFrequentSpillBlock(interval, defBlock, spillBlock, firstSpillChild);
+                Debug.log(Debug.VERBOSE_LOG_LEVEL, "Spill block candidate (after frequency optimization): %s", spillBlock);
+            }
             if (defBlock.equals(spillBlock)) {
                 Debug.log(Debug.VERBOSE_LOG_LEVEL, "Definition is the best choice: %s", defBlock);
                 // definition is the best choice
@@ -181,12 +201,14 @@ public final class LinearScanOptimizeSpillPositionPhase extends AllocationPhase
      */
     private class IntervalBlockIterator implements Iterator<AbstractBlockBase<?>> {
 
-        Range range;
+        final Interval interval;
+        int range;
         AbstractBlockBase<?> block;
 
         IntervalBlockIterator(Interval interval) {
-            range = interval.first();
-            block = allocator.blockForId(range.from);
+            this.interval = interval;
+            range = 0;
+            block = allocator.blockForId(interval.rangeFrom(range));
         }
 
         @Override
@@ -195,12 +217,12 @@ public final class LinearScanOptimizeSpillPositionPhase extends AllocationPhase
             int nextBlockIndex = block.getLinearScanNumber() + 1;
             if (nextBlockIndex < allocator.sortedBlocks().length) {
                 block = allocator.sortedBlocks()[nextBlockIndex];
-                if (range.to <= allocator.getFirstLirInstructionId(block)) {
-                    range = range.next;
-                    if (range == Range.EndMarker) {
+                if (interval.rangeTo(range) <= allocator.getFirstLirInstructionId(block)) {
+                    range++;
+                    if (range == interval.numRanges()) {
                         block = null;
                     } else {
-                        block = allocator.blockForId(range.from);
+                        block = allocator.blockForId(interval.rangeFrom(range));
                     }
                 }
             } else {
@@ -224,6 +246,50 @@ public final class LinearScanOptimizeSpillPositionPhase extends AllocationPhase
         };
     }
 
+    private AbstractBlockBase<?> leastFrequentSpillBlock(Interval interval, AbstractBlockBase<?> defBlock, AbstractBlockBase<?> spillBlock, Interval firstSpillChild) {
+        AbstractBlockBase<?> firstSpillChildBlock = allocator.blockForId(firstSpillChild.from());
+        AbstractBlockBase<?> best = leastFrequentSpillBlock(defBlock, spillBlock, block -> {
+            if (block.equals(firstSpillChildBlock)) {
+                return false;
+            }
+            int opId = allocator.getFirstLirInstructionId(block);
+            return isRegister(interval.getSplitChildAtOpId(opId, OperandMode.DEF, allocator).location());
+        });
+        if (!best.equals(spillBlock) && !best.equals(defBlock)) {
+            betterSpillPosInDominator.increment();
+        }
+        return best;
+    }
+
+    /**
+     * Searches the dominators of {@code spillBlock} up to (excluding) the definition block for the
+     * block with the lowest {@linkplain AbstractBlockBase#probability() probability}. Among blocks
+     * with the same probability, the one in the shallower loop is preferred and otherwise the one
+     * closest to the uses. A dominator is only considered if {@code isSpillPosition} accepts it,
+     * e.g., because the interval is in a register at its beginning. If the best block is not less
+     * frequent than {@code defBlock}, the definition block is returned.
+     */
+    public static AbstractBlockBase<?> leastFrequentSpillBlock(AbstractBlockBase<?> defBlock, AbstractBlockBase<?> spillBlock, Predicate<AbstractBlockBase<?>> isSpillPosition) {
+        AbstractBlockBase<?> best = spillBlock;
+        for (AbstractBlockBase<?> block = spillBlock.getDominator(); !defBlock.equals(block); block = block.getDominator()) {
+            assert block != null : "spill block not dominated by definition block?";
+            if (isLessFrequent(block, best) && isSpillPosition.test(block)) {
+                best = block;
+            }
+        }
+        if (defBlock.probability() <= best.probability()) {
+            return defBlock;
+        }
+        return best;
+    }
+
+    private static boolean isLessFrequent(AbstractBlockBase<?> block, AbstractBlockBase<?> other) {
+        if (block.probability() != other.probability()) {
+            return block.probability() < other.probability();
+        }
+        return block.getLoopDepth() < other.getLoopDepth();
+    }
+
     private static AbstractBlockBase<?> moveSpillOutOfLoop(AbstractBlockBase<?> defBlock, AbstractBlockBase<?> spillBlock) {
         int defLoopDepth = defBlock.getLoopDepth();
         for (AbstractBlockBase<?> block = spillBlock.getDominator(); !defBlock.equals(block); block = block.getDominator()) {
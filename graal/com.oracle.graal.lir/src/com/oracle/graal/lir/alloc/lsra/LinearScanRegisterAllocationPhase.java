@@ -47,6 +47,10 @@ public final class LinearScanRegisterAllocationPhase extends AllocationPhase {
     @SuppressWarnings("try")
     void allocateRegisters() {
         try (Indent indent = Debug.logAndIndent("allocate registers")) {
+            if (allocator.isGraphColoring() && new GraphColoringAllocator(allocator).allocate()) {
+                return;
+            }
+
             Interval precoloredIntervals;
             Interval notPrecoloredIntervals;
 
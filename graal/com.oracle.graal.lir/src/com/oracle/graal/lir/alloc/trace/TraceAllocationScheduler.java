@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.alloc.trace;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.oracle.graal.compiler.common.alloc.Trace;
+import com.oracle.graal.compiler.common.alloc.TraceBuilderResult;
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.Debug.Scope;
+import com.oracle.graal.debug.DebugConfig;
+import com.oracle.graal.debug.GraalError;
+import com.oracle.graal.debug.internal.DebugScope;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+/**
+ * Orders the allocation of {@link Trace traces} such that allocating them on multiple threads
+ * produces the same result as allocating them sequentially in {@linkplain Trace#getId() id} order.
+ *
+ * A trace only observes the allocation result of traces it is connected to by a control-flow edge
+ * (for hints, spill information and the locations of trivial traces). Before a trace is allocated,
+ * all such neighbours with a lower id must be {@linkplain #awaitNeighbours done}. The frame map
+ * and the stack slot cache are shared by all traces, however, and the ids of spill slots depend on
+ * the order in which they are requested. An allocator therefore {@linkplain #awaitTurn waits} for
+ * all traces with a lower id before it touches this shared state. For the linear scan allocator
+ * this is after the lifetime analysis, which is where the traces overlap.
+ */
+public final class TraceAllocationScheduler {
+
+    private final TraceBuilderResult resultTraces;
+    private final boolean[] allocated;
+
+    /**
+     * Number of traces in the prefix of the trace list that are completely allocated.
+     */
+    private int allocatedPrefix;
+
+    /**
+     * The first exception thrown while allocating a trace. Waiting threads give up once it is set.
+     */
+    private Throwable failure;
+
+    public TraceAllocationScheduler(TraceBuilderResult resultTraces) {
+        this.resultTraces = resultTraces;
+        this.allocated = new boolean[resultTraces.getTraces().size()];
+    }
+
+    /**
+     * Waits until all traces with an id lower than the id of {@code trace} are allocated. Must be
+     * called before allocating spill slots or accessing the frame map.
+     */
+    public synchronized void awaitTurn(Trace trace) {
+        while (allocatedPrefix < trace.getId()) {
+            await();
+        }
+    }
+
+    /**
+     * Waits until all traces with a lower id that are connected to {@code trace} by a
+     * control-flow edge are allocated.
+     */
+    void awaitNeighbours(Trace trace) {
+        int id = trace.getId();
+        for (AbstractBlockBase<?> block : trace.getBlocks()) {
+            for (AbstractBlockBase<?> pred : block.getPredecessors()) {
+                awaitAllocated(resultTraces.getTraceForBlock(pred).getId(), id);
+            }
+            for (AbstractBlockBase<?> sux : block.getSuccessors()) {
+                awaitAllocated(resultTraces.getTraceForBlock(sux).getId(), id);
+            }
+        }
+    }
+
+    private synchronized void awaitAllocated(int neighbourId, int id) {
+        if (neighbourId < id) {
+            while (!allocated[neighbourId]) {
+                await();
+            }
+        }
+    }
+
+    private void await() {
+        if (failure != null) {
+            throw new GraalError("Allocation of a preceding trace failed");
+        }
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            throw new GraalError(e);
+        }
+    }
+
+    synchronized void allocated(Trace trace) {
+        allocated[trace.getId()] = true;
+        while (allocatedPrefix < allocated.length && allocated[allocatedPrefix]) {
+            allocatedPrefix++;
+        }
+        notifyAll();
+    }
+
+    private synchronized void failed(Throwable e) {
+        if (failure == null) {
+            failure = e;
+        }
+        notifyAll();
+    }
+
+    private static ExecutorService executor;
+
+    private static synchronized ExecutorService getExecutor(int threads) {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "TraceRA-Worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Allocates all traces using the calling thread and up to {@code threads - 1} threads of a
+     * shared worker pool. Traces are claimed in id order, so the trace with the lowest id that is
+     * not yet allocated is always being worked on and waiting never deadlocks.
+     *
+     * Option overrides and the debug configuration are thread local. The worker threads therefore
+     * install the overrides and the configuration of the calling thread before allocating traces.
+     */
+    @SuppressWarnings("try")
+    void allocateParallel(int threads, Consumer<Trace> allocateTrace) {
+        ArrayList<Trace> traces = resultTraces.getTraces();
+        AtomicInteger nextTrace = new AtomicInteger();
+        Runnable worker = () -> {
+            try {
+                for (int i = nextTrace.getAndIncrement(); i < traces.size(); i = nextTrace.getAndIncrement()) {
+                    Trace trace = traces.get(i);
+                    awaitNeighbours(trace);
+                    allocateTrace.accept(trace);
+                    allocated(trace);
+                }
+            } catch (Throwable e) {
+                failed(e);
+            }
+        };
+        Map<OptionValue<?>, Object> overrides = OptionValue.getOverrides();
+        DebugConfig config = DebugScope.getConfig();
+        Runnable helper = () -> {
+            try (OverrideScope o = OptionValue.override(overrides); Scope s = Debug.sandbox("TraceAllocationWorker", config, resultTraces)) {
+                worker.run();
+            } catch (Throwable e) {
+                failed(e);
+            }
+        };
+        int helpers = Math.min(threads, traces.size()) - 1;
+        ArrayList<Future<?>> futures = new ArrayList<>(Math.max(helpers, 0));
+        for (int i = 0; i < helpers; i++) {
+            futures.add(getExecutor(threads - 1).submit(helper));
+        }
+        worker.run();
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new GraalError(e);
+            }
+        }
+        rethrowFailure();
+    }
+
+    private synchronized void rethrowFailure() {
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new GraalError(failure);
+        }
+    }
+}
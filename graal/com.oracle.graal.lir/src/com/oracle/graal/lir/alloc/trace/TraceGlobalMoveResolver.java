@@ -54,7 +54,6 @@ import com.oracle.graal.lir.gen.LIRGenerationResult;
 import com.oracle.graal.lir.gen.LIRGeneratorTool.MoveFactory;
 
 import jdk.vm.ci.code.Architecture;
-import jdk.vm.ci.code.RegisterArray;
 import jdk.vm.ci.code.StackSlot;
 import jdk.vm.ci.meta.AllocatableValue;
 import jdk.vm.ci.meta.Value;
@@ -65,6 +64,8 @@ public final class TraceGlobalMoveResolver extends TraceGlobalMoveResolutionPhas
 
     private static final DebugCounter cycleBreakingSlotsAllocated = Debug.counter("TraceRA[cycleBreakingSlotsAllocated(global)]");
     private static final DebugCounter cycleBreakingSlotsReused = Debug.counter("TraceRA[cycleBreakingSlotsReused(global)]");
+    private static final DebugCounter movesInserted = Debug.counter("TraceRA[movesInserted(global)]");
+    private static final DebugCounter stackMovesForwarded = Debug.counter("TraceRA[stackToStackMovesForwarded(global)]");
 
     private int insertIdx;
     private LIRInsertionBuffer insertionBuffer; // buffer where moves are inserted
@@ -72,6 +73,9 @@ public final class TraceGlobalMoveResolver extends TraceGlobalMoveResolutionPhas
     private final List<Value> mappingFrom;
     private final List<Value> mappingFromStack;
     private final List<AllocatableValue> mappingTo;
+    /** Moves of the current mapping in emission order, see {@link #forwardStackToStackMoves()}. */
+    private final List<Value> movesFrom;
+    private final List<AllocatableValue> movesTo;
     private final int[] registerBlocked;
     private static final int STACK_SLOT_IN_CALLER_FRAME_IDX = -1;
     private int[] stackBlocked;
@@ -131,27 +135,34 @@ public final class TraceGlobalMoveResolver extends TraceGlobalMoveResolutionPhas
         return spillMoveFactory;
     }
 
-    private RegisterArray getRegisters() {
-        return frameMapBuilder.getRegisterConfig().getAllocatableRegisters();
-    }
-
     public TraceGlobalMoveResolver(LIRGenerationResult res, MoveFactory spillMoveFactory, Architecture arch) {
+        this(res.getFrameMapBuilder(), spillMoveFactory, arch.getRegisters().size(), ((FrameMapBuilderTool) res.getFrameMapBuilder()).getNumberOfStackSlots(),
+                        firstVirtualStackIndex(((FrameMapBuilderTool) res.getFrameMapBuilder()).getFrameMap()));
+    }
 
+    /**
+     * Creates a move resolver for {@code numRegisters} registers. Stack slots are numbered by their
+     * offset, and {@link VirtualStackSlot}s are numbered starting at
+     * {@code firstVirtualStackIndex}.
+     */
+    TraceGlobalMoveResolver(FrameMapBuilder frameMapBuilder, MoveFactory spillMoveFactory, int numRegisters, int numStackSlots, int firstVirtualStackIndex) {
         this.mappingFrom = new ArrayList<>(8);
         this.mappingFromStack = new ArrayList<>(8);
         this.mappingTo = new ArrayList<>(8);
+        this.movesFrom = new ArrayList<>(8);
+        this.movesTo = new ArrayList<>(8);
         this.insertIdx = -1;
         this.insertionBuffer = new LIRInsertionBuffer();
 
-        this.frameMapBuilder = res.getFrameMapBuilder();
+        this.frameMapBuilder = frameMapBuilder;
         this.spillMoveFactory = spillMoveFactory;
-        this.registerBlocked = new int[arch.getRegisters().size()];
-
-        FrameMapBuilderTool frameMapBuilderTool = (FrameMapBuilderTool) frameMapBuilder;
-        this.stackBlocked = new int[frameMapBuilderTool.getNumberOfStackSlots()];
+        this.registerBlocked = new int[numRegisters];
+        this.stackBlocked = new int[numStackSlots];
+        this.firstVirtualStackIndex = firstVirtualStackIndex;
+    }
 
-        FrameMap frameMap = frameMapBuilderTool.getFrameMap();
-        this.firstVirtualStackIndex = !frameMap.frameNeedsAllocating() ? 0 : frameMap.currentFrameSize() + 1;
+    private static int firstVirtualStackIndex(FrameMap frameMap) {
+        return !frameMap.frameNeedsAllocating() ? 0 : frameMap.currentFrameSize() + 1;
     }
 
     private boolean checkEmpty() {
@@ -159,7 +170,7 @@ public final class TraceGlobalMoveResolver extends TraceGlobalMoveResolutionPhas
             assert stackBlocked[i] == 0 : "stack map must be empty before and after processing";
         }
         assert mappingFrom.size() == 0 && mappingTo.size() == 0 && mappingFromStack.size() == 0 : "list must be empty before and after processing";
-        for (int i = 0; i < getRegisters().size(); i++) {
+        for (int i = 0; i < registerBlocked.length; i++) {
             assert registerBlocked[i] == 0 : "register map must be empty before and after processing";
         }
         return true;
@@ -315,11 +326,94 @@ public final class TraceGlobalMoveResolver extends TraceGlobalMoveResolutionPhas
         assert LIRKind.verifyMoveKinds(fromOperand.getValueKind(), fromOperand.getValueKind()) : "move between different types";
         assert insertIdx != -1 : "must setup insert position first";
 
-        insertionBuffer.append(insertIdx, createMove(fromOperand, toOperand));
+        movesFrom.add(fromOperand);
+        movesTo.add(toOperand);
+    }
 
-        if (Debug.isLogEnabled()) {
-            Debug.log("insert move from %s to %s at %d", fromOperand, toOperand, insertIdx);
+    private void appendMoves() {
+        if (TraceRegisterAllocationPhase.Options.TraceRAforwardStackToStackMoves.getValue()) {
+            forwardStackToStackMoves();
         }
+        for (int i = 0; i < movesFrom.size(); i++) {
+            Value fromOperand = movesFrom.get(i);
+            AllocatableValue toOperand = movesTo.get(i);
+            insertionBuffer.append(insertIdx, createMove(fromOperand, toOperand));
+            if (Debug.isLogEnabled()) {
+                Debug.log("insert move from %s to %s at %d", fromOperand, toOperand, insertIdx);
+            }
+        }
+        movesInserted.add(movesFrom.size());
+        movesFrom.clear();
+        movesTo.clear();
+    }
+
+    /**
+     * Replaces a stack to stack move with a register to stack move if another move of the same
+     * mapping loads the source stack slot into a register. Stack to stack moves need a scratch
+     * register (and potentially a backup of it) on most architectures, so storing the freshly
+     * loaded register is cheaper.
+     *
+     * The moves are sequentialized at this point. If the load comes after the stack to stack
+     * move, the latter is moved behind the load, which is only done if none of the moves in
+     * between accesses its destination or overwrites its source.
+     */
+    private void forwardStackToStackMoves() {
+        for (int k = 0; k < movesFrom.size(); k++) {
+            Value stackFrom = movesFrom.get(k);
+            AllocatableValue stackTo = movesTo.get(k);
+            if (!isStackSlotValue(stackFrom) || !isStackSlotValue(stackTo)) {
+                continue;
+            }
+            for (int j = 0; j < movesFrom.size(); j++) {
+                AllocatableValue register = movesTo.get(j);
+                if (j == k || !isRegister(register) || !sameLocation(movesFrom.get(j), stackFrom) || !LIRKind.verifyMoveKinds(stackTo.getValueKind(), register.getValueKind())) {
+                    continue;
+                }
+                if (j < k && !isWrittenBetween(register, j + 1, k) && !isWrittenBetween(stackFrom, j + 1, k)) {
+                    movesFrom.set(k, register);
+                    stackMovesForwarded.increment();
+                    break;
+                }
+                if (j > k && !isWrittenBetween(stackFrom, k + 1, j) && !isWrittenBetween(stackTo, k + 1, j + 1) && !isReadBetween(stackTo, k + 1, j + 1)) {
+                    movesFrom.remove(k);
+                    movesTo.remove(k);
+                    movesFrom.add(j, register);
+                    movesTo.add(j, stackTo);
+                    stackMovesForwarded.increment();
+                    /* The move at index k changed, so look at it again. */
+                    k--;
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean isWrittenBetween(Value location, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (sameLocation(movesTo.get(i), location)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isReadBetween(Value location, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (sameLocation(movesFrom.get(i), location)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean sameLocation(Value a, Value b) {
+        if (isRegister(a)) {
+            return isRegister(b) && asRegister(a).equals(asRegister(b));
+        }
+        if (isStackSlot(a)) {
+            return isStackSlot(b) && asStackSlot(a).getRawOffset() == asStackSlot(b).getRawOffset() && asStackSlot(a).getRawAddFrameSize() == asStackSlot(b).getRawAddFrameSize();
+        }
+        return a.equals(b);
     }
 
     /**
@@ -354,6 +448,7 @@ public final class TraceGlobalMoveResolver extends TraceGlobalMoveResolutionPhas
                 boolean processedInterval = false;
 
                 int spillCandidate = -1;
+                boolean spillCandidateHasStackCopy = false;
                 for (int i = mappingFrom.size() - 1; i >= 0; i--) {
                     Value fromLocation = mappingFrom.get(i);
                     AllocatableValue toLocation = mappingTo.get(i);
@@ -375,8 +470,14 @@ public final class TraceGlobalMoveResolver extends TraceGlobalMoveResolutionPhas
                     } else if (fromLocation != null) {
                         if (isRegister(fromLocation) && (busySpillSlots == null || !busySpillSlots.contains(mappingFromStack.get(i)))) {
                             // this interval cannot be processed now because target is not free
-                            // it starts in a register, so it is a possible candidate for spilling
-                            spillCandidate = i;
+                            // it starts in a register, so it is a possible candidate for spilling.
+                            // Prefer values that already have a stack copy since breaking the
+                            // cycle with them does not need an additional store.
+                            boolean hasStackCopy = mappingFromStack.get(i) != null;
+                            if (!spillCandidateHasStackCopy || hasStackCopy) {
+                                spillCandidate = i;
+                                spillCandidateHasStackCopy = hasStackCopy;
+                            }
                         } else if (isStackSlotValue(fromLocation) && spillCandidate == -1) {
                             // fall back to spill a stack slot in case no other candidate is found
                             spillCandidate = i;
@@ -460,6 +561,7 @@ public final class TraceGlobalMoveResolver extends TraceGlobalMoveResolutionPhas
     public void resolveAndAppendMoves() {
         if (hasMappings()) {
             resolveMappings();
+            appendMoves();
         }
         appendInsertionBuffer();
     }
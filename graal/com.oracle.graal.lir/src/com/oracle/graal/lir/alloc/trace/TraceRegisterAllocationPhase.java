@@ -22,6 +22,8 @@
  */
 package com.oracle.graal.lir.alloc.trace;
 
+import java.util.ArrayList;
+
 import com.oracle.graal.compiler.common.alloc.RegisterAllocationConfig;
 import com.oracle.graal.compiler.common.alloc.Trace;
 import com.oracle.graal.compiler.common.alloc.TraceBuilderResult;
@@ -40,6 +42,7 @@ import com.oracle.graal.lir.ssi.SSIUtil;
 import com.oracle.graal.lir.ssi.SSIVerifier;
 import com.oracle.graal.options.Option;
 import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
 import com.oracle.graal.options.StableOptionValue;
 
 import jdk.vm.ci.code.TargetDescription;
@@ -60,14 +63,23 @@ public final class TraceRegisterAllocationPhase extends AllocationPhase {
         public static final StableOptionValue<Boolean> TraceRAshareSpillInformation = new StableOptionValue<>(true);
         @Option(help = "Reuse spill slots for global move resolution cycle breaking.", type = OptionType.Debug)
         public static final StableOptionValue<Boolean> TraceRAreuseStackSlotsForMoveResolutionCycleBreaking = new StableOptionValue<>(true);
+        @Option(help = "Replace stack to stack moves in global move resolution with stores of a register that was loaded from the same slot.", type = OptionType.Debug)
+        public static final StableOptionValue<Boolean> TraceRAforwardStackToStackMoves = new StableOptionValue<>(true);
         @Option(help = "Cache stack slots globally (i.e. a variable always gets the same slot in every trace).", type = OptionType.Debug)
         public static final StableOptionValue<Boolean> TraceRACacheStackSlots = new StableOptionValue<>(true);
+        @Option(help = "Allocate traces on multiple threads. Only used if dumping and logging are disabled.", type = OptionType.Expert)
+        public static final OptionValue<Boolean> TraceRAParallel = new OptionValue<>(false);
+        @Option(help = "Maximum number of threads (including the compiler thread) used to allocate the traces of a compilation.", type = OptionType.Expert)
+        public static final OptionValue<Integer> TraceRAParallelThreads = new OptionValue<>(Math.min(4, Runtime.getRuntime().availableProcessors()));
+        @Option(help = "Minimum number of traces for allocating them on multiple threads.", type = OptionType.Expert)
+        public static final OptionValue<Integer> TraceRAParallelMinTraces = new OptionValue<>(8);
         // @formatter:on
     }
 
     private static final TraceGlobalMoveResolutionPhase TRACE_GLOBAL_MOVE_RESOLUTION_PHASE = new TraceGlobalMoveResolutionPhase();
 
     private static final DebugCounter tracesCounter = Debug.counter("TraceRA[traces]");
+    private static final DebugCounter parallelTraces = Debug.counter("TraceRA[parallelCompilations]");
 
     public static final DebugCounter globalStackSlots = Debug.counter("TraceRA[GlobalStackSlots]");
     public static final DebugCounter allocatedStackSlots = Debug.counter("TraceRA[AllocatedStackSlots]");
@@ -81,7 +93,8 @@ public final class TraceRegisterAllocationPhase extends AllocationPhase {
         assert SSIVerifier.verify(lir) : "LIR not in SSI form.";
         TraceBuilderResult resultTraces = context.contextLookup(TraceBuilderResult.class);
 
-        TraceAllocationContext traceContext = new TraceAllocationContext(spillMoveFactory, registerAllocationConfig, resultTraces);
+        TraceAllocationScheduler scheduler = new TraceAllocationScheduler(resultTraces);
+        TraceAllocationContext traceContext = new TraceAllocationContext(spillMoveFactory, registerAllocationConfig, resultTraces, scheduler);
         AllocatableValue[] cachedStackSlots = Options.TraceRACacheStackSlots.getValue() ? new AllocatableValue[lir.numVariables()] : null;
 
         // currently this is not supported
@@ -92,11 +105,30 @@ public final class TraceRegisterAllocationPhase extends AllocationPhase {
 
         Debug.dump(Debug.INFO_LOG_LEVEL, lir, "Before TraceRegisterAllocation");
         try (Scope s0 = Debug.scope("AllocateTraces", resultTraces)) {
-            for (Trace trace : resultTraces.getTraces()) {
-                tracesCounter.increment();
-                TraceAllocationPhase<TraceAllocationContext> allocator = plan.selectStrategy(trace);
-                try (Indent i = Debug.logAndIndent("Allocating Trace%d: %s (%s)", trace.getId(), trace, allocator); Scope s = Debug.scope("AllocateTrace", trace)) {
-                    allocator.apply(target, lirGenRes, trace, traceContext);
+            if (useParallelAllocation(resultTraces)) {
+                parallelTraces.increment();
+                // select the strategies on the compiler thread, the policy is not thread safe
+                ArrayList<TraceAllocationPhase<TraceAllocationContext>> allocators = new ArrayList<>(resultTraces.getTraces().size());
+                for (Trace trace : resultTraces.getTraces()) {
+                    allocators.add(plan.selectStrategy(trace));
+                }
+                scheduler.allocateParallel(Options.TraceRAParallelThreads.getValue(), trace -> {
+                    tracesCounter.increment();
+                    TraceAllocationPhase<TraceAllocationContext> allocator = allocators.get(trace.getId());
+                    try (Indent i = Debug.logAndIndent("Allocating Trace%d: %s (%s)", trace.getId(), trace, allocator); Scope s = Debug.scope("AllocateTrace", trace)) {
+                        allocator.apply(target, lirGenRes, trace, traceContext);
+                    } catch (Throwable e) {
+                        throw Debug.handle(e);
+                    }
+                });
+            } else {
+                for (Trace trace : resultTraces.getTraces()) {
+                    tracesCounter.increment();
+                    TraceAllocationPhase<TraceAllocationContext> allocator = plan.selectStrategy(trace);
+                    try (Indent i = Debug.logAndIndent("Allocating Trace%d: %s (%s)", trace.getId(), trace, allocator); Scope s = Debug.scope("AllocateTrace", trace)) {
+                        allocator.apply(target, lirGenRes, trace, traceContext);
+                    }
+                    scheduler.allocated(trace);
                 }
             }
         } catch (Throwable e) {
@@ -111,6 +143,15 @@ public final class TraceRegisterAllocationPhase extends AllocationPhase {
         deconstructSSIForm(lir);
     }
 
+    /**
+     * Traces are not allocated in parallel if dumping or logging is enabled. A dump reads the whole
+     * LIR while other threads modify it, and the log output of different traces would interleave.
+     */
+    private static boolean useParallelAllocation(TraceBuilderResult resultTraces) {
+        return Options.TraceRAParallel.getValue() && Options.TraceRAParallelThreads.getValue() > 1 && resultTraces.getTraces().size() >= Options.TraceRAParallelMinTraces.getValue() &&
+                        !Debug.isDumpEnabledForMethod() && !Debug.isLogEnabledForMethod();
+    }
+
     /**
      * Remove Phi/Sigma In/Out.
      *
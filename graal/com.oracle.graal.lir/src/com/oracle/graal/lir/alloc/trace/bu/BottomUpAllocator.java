@@ -180,6 +180,8 @@ public final class BottomUpAllocator extends TraceAllocationPhase<TraceAllocatio
 
     @Override
     protected void run(@SuppressWarnings("hiding") TargetDescription target, @SuppressWarnings("hiding") LIRGenerationResult lirGenRes, Trace trace, TraceAllocationContext context) {
+        // the allocator state and the spill slots are shared with the other traces
+        context.scheduler.awaitTurn(trace);
         allocate(trace);
     }
 
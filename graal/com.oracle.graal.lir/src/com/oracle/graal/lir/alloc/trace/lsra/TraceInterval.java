@@ -810,9 +810,9 @@ final class TraceInterval extends IntervalHint {
     int nextUsage(RegisterPriority minRegisterPriority, int from) {
         assert isVariable(operand) : "cannot access use positions for fixed intervals";
 
-        for (int i = numUsePos() - 1; i >= 0; --i) {
+        for (int i = numUsePosFrom(from) - 1; i >= 0; --i) {
             int usePos = getUsePos(i);
-            if (usePos >= from && adaptPriority(getUsePosRegisterPriority(i)).greaterEqual(minRegisterPriority)) {
+            if (adaptPriority(getUsePosRegisterPriority(i)).greaterEqual(minRegisterPriority)) {
                 return usePos;
             }
         }
@@ -822,9 +822,9 @@ final class TraceInterval extends IntervalHint {
     int nextUsageExact(RegisterPriority exactRegisterPriority, int from) {
         assert isVariable(operand) : "cannot access use positions for fixed intervals";
 
-        for (int i = numUsePos() - 1; i >= 0; --i) {
+        for (int i = numUsePosFrom(from) - 1; i >= 0; --i) {
             int usePos = getUsePos(i);
-            if (usePos >= from && adaptPriority(getUsePosRegisterPriority(i)) == exactRegisterPriority) {
+            if (adaptPriority(getUsePosRegisterPriority(i)) == exactRegisterPriority) {
                 return usePos;
             }
         }
@@ -1113,14 +1113,27 @@ final class TraceInterval extends IntervalHint {
         intListAdd(registerPriority.ordinal());
     }
 
-    private void splitUsePosAt(TraceInterval result, int splitPos) {
-        int i = numUsePos() - 1;
-        int len = 0;
-        while (i >= 0 && getUsePos(i) < splitPos) {
-            --i;
-            len += 2;
+    /**
+     * Gets the number of use positions greater or equal than {@code pos}. As the use positions are
+     * sorted descending, this is also the index of the highest use position below {@code pos}.
+     */
+    private int numUsePosFrom(int pos) {
+        int low = 0;
+        int high = numUsePos();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getUsePos(mid) >= pos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
         }
-        int listSplitIndex = (i + 1) * 2;
+        return low;
+    }
+
+    private void splitUsePosAt(TraceInterval result, int splitPos) {
+        int listSplitIndex = numUsePosFrom(splitPos) << 1;
+        int len = usePosListSize - listSplitIndex;
         int[] array = new int[len];
         System.arraycopy(usePosListArray, listSplitIndex, array, 0, len);
         if (listSplitIndex < usePosListSize) {
@@ -25,6 +25,7 @@ package com.oracle.graal.lir.alloc.trace.lsra;
 import com.oracle.graal.compiler.common.alloc.RegisterAllocationConfig;
 import com.oracle.graal.compiler.common.alloc.TraceBuilderResult;
 import com.oracle.graal.lir.alloc.trace.TraceAllocationPhase;
+import com.oracle.graal.lir.alloc.trace.TraceAllocationScheduler;
 import com.oracle.graal.lir.alloc.trace.lsra.TraceLinearScanPhase.TraceLinearScan;
 import com.oracle.graal.lir.gen.LIRGeneratorTool.MoveFactory;
 
@@ -33,8 +34,9 @@ abstract class TraceLinearScanAllocationPhase extends TraceAllocationPhase<Trace
     static final class TraceLinearScanAllocationContext extends TraceAllocationPhase.TraceAllocationContext {
         public final TraceLinearScan allocator;
 
-        TraceLinearScanAllocationContext(MoveFactory spillMoveFactory, RegisterAllocationConfig registerAllocationConfig, TraceBuilderResult traceBuilderResult, TraceLinearScan allocator) {
-            super(spillMoveFactory, registerAllocationConfig, traceBuilderResult);
+        TraceLinearScanAllocationContext(MoveFactory spillMoveFactory, RegisterAllocationConfig registerAllocationConfig, TraceBuilderResult traceBuilderResult, TraceAllocationScheduler scheduler,
+                        TraceLinearScan allocator) {
+            super(spillMoveFactory, registerAllocationConfig, traceBuilderResult, scheduler);
             this.allocator = allocator;
         }
     }
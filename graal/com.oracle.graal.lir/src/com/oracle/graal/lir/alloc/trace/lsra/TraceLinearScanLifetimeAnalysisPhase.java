@@ -59,6 +59,7 @@ import com.oracle.graal.lir.StandardOp.LoadConstantOp;
 import com.oracle.graal.lir.StandardOp.ValueMoveOp;
 import com.oracle.graal.lir.ValueProcedure;
 import com.oracle.graal.lir.Variable;
+import com.oracle.graal.lir.alloc.RematerializationCost;
 import com.oracle.graal.lir.alloc.trace.ShadowedRegisterValue;
 import com.oracle.graal.lir.alloc.trace.lsra.TraceInterval.RegisterPriority;
 import com.oracle.graal.lir.alloc.trace.lsra.TraceInterval.SpillState;
@@ -294,7 +295,7 @@ public final class TraceLinearScanLifetimeAnalysisPhase extends TraceLinearScanA
                 // detection of method-parameters and roundfp-results
                 interval.setSpillState(SpillState.StartInMemory);
             }
-            interval.addMaterializationValue(getMaterializedValue(op, operand, interval, allocator.neverSpillConstants(), allocator.getSpillMoveFactory()));
+            interval.addMaterializationValue(getMaterializedValue(op, operand, interval, allocator, allocator.neverSpillConstants(), allocator.getSpillMoveFactory()));
 
             if (Debug.isLogEnabled()) {
                 Debug.log("add def: %s defPos %d (%s)", interval, defPos, registerPriority.name());
@@ -659,7 +660,7 @@ public final class TraceLinearScanLifetimeAnalysisPhase extends TraceLinearScanA
      *         reload-locations in case the interval of this instruction is spilled. Currently this
      *         can only be a {@link JavaConstant}.
      */
-    private static JavaConstant getMaterializedValue(LIRInstruction op, Value operand, TraceInterval interval, boolean neverSpillConstants, MoveFactory spillMoveFactory) {
+    private static JavaConstant getMaterializedValue(LIRInstruction op, Value operand, TraceInterval interval, TraceLinearScan allocator, boolean neverSpillConstants, MoveFactory spillMoveFactory) {
         if (op instanceof LoadConstantOp) {
             LoadConstantOp move = (LoadConstantOp) op;
             if (move.getConstant() instanceof JavaConstant) {
@@ -668,18 +669,25 @@ public final class TraceLinearScanLifetimeAnalysisPhase extends TraceLinearScanA
                         return null;
                     }
                     /*
-                     * Check if the interval has any uses which would accept an stack location
-                     * (priority == ShouldHaveRegister). Rematerialization of such intervals can
-                     * result in a degradation, because rematerialization always inserts a constant
-                     * load, even if the value is not needed in a register.
+                     * Uses which would accept a stack location (priority == ShouldHaveRegister) get
+                     * a constant load if the interval is rematerialized, even if the value is not
+                     * needed in a register. Only rematerialize if this is not more expensive than
+                     * spilling.
                      */
+                    RematerializationCost cost = new RematerializationCost();
                     int numUsePos = interval.numUsePos();
                     for (int useIdx = 0; useIdx < numUsePos; useIdx++) {
                         TraceInterval.RegisterPriority priority = interval.getUsePosRegisterPriority(useIdx);
+                        double frequency = allocator.blockForId(interval.getUsePos(useIdx)).probability();
                         if (priority == TraceInterval.RegisterPriority.ShouldHaveRegister) {
-                            return null;
+                            cost.addShouldHaveRegisterUsage(frequency);
+                        } else if (priority == TraceInterval.RegisterPriority.MustHaveRegister) {
+                            cost.addMustHaveRegisterUsage(frequency);
                         }
                     }
+                    if (!cost.shouldRematerialize(allocator.blockForId(op.id()).probability())) {
+                        return null;
+                    }
                 }
                 return (JavaConstant) move.getConstant();
             }
@@ -580,7 +580,8 @@ public final class TraceLinearScanPhase extends TraceAllocationPhase<TraceAlloca
              * This is the point to enable debug logging for the whole register allocation.
              */
             try (Indent indent = Debug.logAndIndent("LinearScan allocate")) {
-                TraceLinearScanAllocationContext context = new TraceLinearScanAllocationContext(traceContext.spillMoveFactory, traceContext.registerAllocationConfig, traceBuilderResult, this);
+                TraceLinearScanAllocationContext context = new TraceLinearScanAllocationContext(traceContext.spillMoveFactory, traceContext.registerAllocationConfig, traceBuilderResult,
+                                traceContext.scheduler, this);
 
                 TRACE_LINEAR_SCAN_LIFETIME_ANALYSIS_PHASE.apply(target, lirGenRes, trace, context, false);
 
@@ -592,6 +593,9 @@ public final class TraceLinearScanPhase extends TraceAllocationPhase<TraceAlloca
                     sortIntervalsBeforeAllocation();
                     sortFixedIntervalsBeforeAllocation();
 
+                    // spill slots are shared with the other traces
+                    traceContext.scheduler.awaitTurn(trace);
+
                     TRACE_LINEAR_SCAN_REGISTER_ALLOCATION_PHASE.apply(target, lirGenRes, trace, context, false);
                     printIntervals("After register allocation");
 
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.dfa;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugCounter;
+
+/**
+ * Solves the global liveness equations
+ *
+ * <pre>
+ * liveOut(b) = union of liveIn(s) for all successors s of b
+ * liveIn(b) = liveGen(b) | (liveOut(b) & ~liveKill(b))
+ * </pre>
+ *
+ * for a set of blocks, given the local {@code liveGen} and {@code liveKill} sets of each block.
+ * <p>
+ * The live sets are kept as {@code long} words so that the union and the transfer function are
+ * computed a word at a time. Blocks are processed from a {@link PostOrderWorkList} and a block is
+ * only revisited if the live-in set of one of its successors has grown. Since the live sets only
+ * ever grow, the live-out set is updated in place and change detection is folded into the union.
+ * The local sets of blocks that define and use only few operands are stored as sparse lists of
+ * operand numbers, which makes the transfer function independent of the number of operands for
+ * small blocks.
+ */
+public final class LiveSetSolver {
+
+    private static final DebugCounter BLOCK_VISITS = Debug.counter("LiveSetSolver[blockVisits]");
+
+    private final AbstractBlockBase<?>[] blocks;
+    private final PostOrderWorkList worklist;
+    private final int words;
+
+    private final long[][] liveIn;
+    private final long[][] liveOut;
+
+    /**
+     * Dense {@code liveGen} and {@code liveKill} words, or {@code null} if the block uses the
+     * sparse representation.
+     */
+    private final long[][] denseGen;
+    private final long[][] denseKill;
+
+    /**
+     * Sparse {@code liveGen} and {@code liveKill} operand numbers, or {@code null} if the block
+     * uses the dense representation.
+     */
+    private final int[][] sparseGen;
+    private final int[][] sparseKill;
+
+    /**
+     * Creates a solver for {@code blocks}, which should be in reverse postorder and must contain
+     * all successors of its blocks.
+     *
+     * @param liveSetSize the number of operands tracked in the live sets
+     */
+    public LiveSetSolver(AbstractBlockBase<?>[] blocks, int liveSetSize) {
+        this.blocks = blocks;
+        this.worklist = new PostOrderWorkList(blocks);
+        this.words = (liveSetSize + Long.SIZE - 1) / Long.SIZE;
+        int n = blocks.length;
+        this.liveIn = new long[n][];
+        this.liveOut = new long[n][];
+        this.denseGen = new long[n][];
+        this.denseKill = new long[n][];
+        this.sparseGen = new int[n][];
+        this.sparseKill = new int[n][];
+    }
+
+    private int position(AbstractBlockBase<?> block) {
+        int position = worklist.positionOf(block);
+        assert position >= 0 : "unknown block " + block;
+        return position;
+    }
+
+    /**
+     * Sets the local live sets of {@code block}. Must be called for every block before
+     * {@link #solve()}.
+     */
+    public void setLocalSets(AbstractBlockBase<?> block, BitSet liveGen, BitSet liveKill) {
+        int position = position(block);
+        int bits = liveGen.cardinality() + liveKill.cardinality();
+        if (bits < words) {
+            sparseGen[position] = liveGen.stream().toArray();
+            sparseKill[position] = liveKill.stream().toArray();
+        } else {
+            denseGen[position] = toWords(liveGen);
+            denseKill[position] = toWords(liveKill);
+        }
+        liveIn[position] = new long[words];
+        liveOut[position] = new long[words];
+    }
+
+    private long[] toWords(BitSet set) {
+        long[] array = set.toLongArray();
+        return array.length == words ? array : Arrays.copyOf(array, words);
+    }
+
+    /**
+     * Computes the live-in and live-out sets of all blocks.
+     */
+    public void solve() {
+        long[] scratch = new long[words];
+        boolean[] visited = new boolean[blocks.length];
+        for (AbstractBlockBase<?> block = worklist.poll(); block != null; block = worklist.poll()) {
+            BLOCK_VISITS.increment();
+            int position = position(block);
+            assert liveIn[position] != null : "local sets not set for " + block;
+            boolean changed = !visited[position];
+            visited[position] = true;
+
+            long[] out = liveOut[position];
+            for (AbstractBlockBase<?> successor : block.getSuccessors()) {
+                long[] successorIn = liveIn[position(successor)];
+                for (int w = 0; w < words; w++) {
+                    long union = out[w] | successorIn[w];
+                    if (union != out[w]) {
+                        out[w] = union;
+                        changed = true;
+                    }
+                }
+            }
+
+            if (changed && updateLiveIn(position, scratch)) {
+                for (AbstractBlockBase<?> predecessor : block.getPredecessors()) {
+                    worklist.add(predecessor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes the live-in set of the block at {@code position}.
+     *
+     * @return whether the live-in set has changed
+     */
+    private boolean updateLiveIn(int position, long[] scratch) {
+        long[] in = liveIn[position];
+        long[] out = liveOut[position];
+        boolean changed = false;
+        long[] gen = denseGen[position];
+        if (gen != null) {
+            long[] kill = denseKill[position];
+            for (int w = 0; w < words; w++) {
+                long value = gen[w] | (out[w] & ~kill[w]);
+                if (value != in[w]) {
+                    in[w] = value;
+                    changed = true;
+                }
+            }
+        } else {
+            System.arraycopy(out, 0, scratch, 0, words);
+            for (int operand : sparseKill[position]) {
+                scratch[operand >>> 6] &= ~(1L << operand);
+            }
+            for (int operand : sparseGen[position]) {
+                scratch[operand >>> 6] |= 1L << operand;
+            }
+            for (int w = 0; w < words; w++) {
+                if (scratch[w] != in[w]) {
+                    in[w] = scratch[w];
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Gets a copy of the live-in set of {@code block}.
+     */
+    public BitSet getLiveIn(AbstractBlockBase<?> block) {
+        return BitSet.valueOf(liveIn[position(block)]);
+    }
+
+    /**
+     * Gets a copy of the live-out set of {@code block}.
+     */
+    public BitSet getLiveOut(AbstractBlockBase<?> block) {
+        return BitSet.valueOf(liveOut[position(block)]);
+    }
+}
@@ -69,11 +69,8 @@ public abstract class LocationMarker<S extends ValueSet<S>> {
 
     void build() {
         AbstractBlockBase<?>[] blocks = lir.getControlFlowGraph().getBlocks();
-        UniqueWorkList worklist = new UniqueWorkList(blocks.length);
-        for (int i = blocks.length - 1; i >= 0; i--) {
-            worklist.add(blocks[i]);
-        }
-        for (AbstractBlockBase<?> block : lir.getControlFlowGraph().getBlocks()) {
+        PostOrderWorkList worklist = new PostOrderWorkList(blocks);
+        for (AbstractBlockBase<?> block : blocks) {
             liveInMap.put(block, newLiveValueSet());
         }
         while (!worklist.isEmpty()) {
@@ -100,7 +97,7 @@ public abstract class LocationMarker<S extends ValueSet<S>> {
     }
 
     @SuppressWarnings("try")
-    private void processBlock(AbstractBlockBase<?> block, UniqueWorkList worklist) {
+    private void processBlock(AbstractBlockBase<?> block, PostOrderWorkList worklist) {
         if (updateOutBlock(block)) {
             try (Indent indent = Debug.logAndIndent("handle block %s", block)) {
                 currentSet = liveOutMap.get(block).copy();
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.dfa;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+
+/**
+ * A work list for backward dataflow problems. Blocks are identified by their position in the block
+ * array passed to the constructor, which is expected to be in reverse postorder. {@link #poll()}
+ * sweeps the pending blocks from the highest to the lowest position, i.e., in postorder, and only
+ * wraps around once the sweep reached the first block. Successors are therefore usually processed
+ * before their predecessors, which minimizes the number of times a block is revisited. A block is
+ * contained at most once.
+ */
+final class PostOrderWorkList {
+
+    private final AbstractBlockBase<?>[] blocks;
+
+    /**
+     * Maps a {@linkplain AbstractBlockBase#getId() block id} to the position of the block in
+     * {@link #blocks} or -1 if the block is not part of the work list.
+     */
+    private final int[] positions;
+
+    private final BitSet pending;
+
+    private int cursor;
+
+    /**
+     * Creates a work list containing all {@code blocks}.
+     */
+    PostOrderWorkList(AbstractBlockBase<?>[] blocks) {
+        this.blocks = blocks;
+        int maxId = -1;
+        for (AbstractBlockBase<?> block : blocks) {
+            maxId = Math.max(maxId, block.getId());
+        }
+        this.positions = new int[maxId + 1];
+        Arrays.fill(positions, -1);
+        for (int i = 0; i < blocks.length; i++) {
+            positions[blocks[i].getId()] = i;
+        }
+        this.pending = new BitSet(blocks.length);
+        pending.set(0, blocks.length);
+        this.cursor = blocks.length - 1;
+    }
+
+    /**
+     * Gets the position of {@code block} in the block array or -1 if it is not part of this work
+     * list.
+     */
+    int positionOf(AbstractBlockBase<?> block) {
+        int id = block.getId();
+        return id < positions.length ? positions[id] : -1;
+    }
+
+    boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Removes and returns the next pending block or {@code null} if there is none.
+     */
+    AbstractBlockBase<?> poll() {
+        int index = pending.previousSetBit(cursor);
+        if (index < 0) {
+            index = pending.previousSetBit(blocks.length - 1);
+            if (index < 0) {
+                return null;
+            }
+        }
+        pending.clear(index);
+        cursor = index - 1;
+        return blocks[index];
+    }
+
+    /**
+     * Adds {@code block} to the work list if it is not already pending.
+     */
+    void add(AbstractBlockBase<?> block) {
+        int position = positionOf(block);
+        if (position >= 0) {
+            pending.set(position);
+        }
+    }
+}
@@ -24,6 +24,7 @@ package com.oracle.graal.lir.gen;
 
 import com.oracle.graal.compiler.common.LIRKind;
 import com.oracle.graal.compiler.common.calc.Condition;
+import com.oracle.graal.compiler.common.calc.VectorOperation;
 import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
 import com.oracle.graal.compiler.common.spi.CodeGenProviders;
 import com.oracle.graal.compiler.common.spi.ForeignCallLinkage;
@@ -246,6 +247,12 @@ public interface LIRGeneratorTool extends DiagnosticLIRGeneratorTool, ValueKindF
 
     Variable emitArrayEquals(JavaKind kind, Value array1, Value array2, Value length);
 
+    /**
+     * Emits {@code result[i] = x[i] op y[i]} (or {@code x[i] op y} if {@code yIsArray} is false)
+     * for all {@code i} in {@code [start, start + count)} using vector instructions.
+     */
+    void emitVectorizedArrayOp(VectorOperation op, JavaKind kind, Value result, Value x, Value y, boolean yIsArray, Value start, Value count);
+
     void emitBlackhole(Value operand);
 
     LIRKind getLIRKind(Stamp stamp);
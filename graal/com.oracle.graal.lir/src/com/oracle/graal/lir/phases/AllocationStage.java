@@ -26,6 +26,7 @@ import static com.oracle.graal.compiler.common.GraalOptions.TraceRA;
 
 import com.oracle.graal.compiler.common.GraalOptions;
 import com.oracle.graal.lir.alloc.AllocationStageVerifier;
+import com.oracle.graal.lir.alloc.lsra.GraphColoringPhase;
 import com.oracle.graal.lir.alloc.lsra.LinearScanPhase;
 import com.oracle.graal.lir.alloc.trace.TraceBuilderPhase;
 import com.oracle.graal.lir.alloc.trace.TraceRegisterAllocationPhase;
@@ -44,6 +45,8 @@ public class AllocationStage extends LIRPhaseSuite<AllocationContext> {
             appendPhase(new TraceBuilderPhase());
             appendPhase(new SSIConstructionPhase());
             appendPhase(new TraceRegisterAllocationPhase());
+        } else if (GraphColoringPhase.Options.LIRGraphColoringRA.getValue()) {
+            appendPhase(new GraphColoringPhase());
         } else {
             appendPhase(new LinearScanPhase());
         }
@@ -28,6 +28,8 @@ import java.util.List;
 import com.oracle.graal.compiler.common.LIRKind;
 import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
 import com.oracle.graal.compiler.common.cfg.BlockMap;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugCounter;
 import com.oracle.graal.lir.ConstantValue;
 import com.oracle.graal.lir.LIR;
 import com.oracle.graal.lir.LIRInsertionBuffer;
@@ -47,7 +49,8 @@ import jdk.vm.ci.meta.Value;
 
 /**
  * Inserts counters into the {@link LIR} code to the number of move instruction dynamically
- * executed.
+ * executed. The number of move instructions in the code is also reported by a debug counter per
+ * {@link MoveType}.
  */
 public class MoveProfilingPhase extends PostAllocationOptimizationPhase {
 
@@ -60,6 +63,14 @@ public class MoveProfilingPhase extends PostAllocationOptimizationPhase {
 
     private static final String MOVE_OPERATIONS = "MoveOperations";
 
+    private static final DebugCounter[] staticMoves = new DebugCounter[MoveType.values().length];
+
+    static {
+        for (MoveType type : MoveType.values()) {
+            staticMoves[type.ordinal()] = Debug.counter("MoveOperations[%s]", type);
+        }
+    }
+
     @Override
     protected void run(TargetDescription target, LIRGenerationResult lirGenRes, PostAllocationOptimizationContext context) {
         new Analyzer(target, lirGenRes, context.diagnosticLirGenTool).run();
@@ -105,6 +116,7 @@ public class MoveProfilingPhase extends PostAllocationOptimizationPhase {
                 String name = type.toString();
                 // current run
                 addEntry(name, getGroupName(), moveStatistics.get(type));
+                staticMoves[type.ordinal()].add(moveStatistics.get(type));
             }
             insertBenchmarkCounter(block);
         }
@@ -40,8 +40,8 @@ import com.oracle.graal.lir.LIR;
 import com.oracle.graal.lir.LIRInstruction;
 import com.oracle.graal.lir.LIRInstruction.OperandFlag;
 import com.oracle.graal.lir.LIRInstruction.OperandMode;
+import com.oracle.graal.lir.dfa.LiveSetSolver;
 
-import jdk.vm.ci.code.BailoutException;
 import jdk.vm.ci.meta.Value;
 
 public final class SSIBuilder extends SSIBuilderBase {
@@ -198,8 +198,6 @@ public final class SSIBuilder extends SSIBuilderBase {
                 SSIBuilder.BlockData blockSets = getBlockData(block);
                 blockSets.liveGen = liveGen;
                 blockSets.liveKill = liveKill;
-                blockSets.liveIn = new BitSet(liveSize);
-                blockSets.liveOut = new BitSet(liveSize);
 
                 if (Debug.isLogEnabled()) {
                     Debug.log(LOG_LEVEL, "liveGen  B%d %s", block.getId(), blockSets.liveGen);
@@ -241,80 +239,24 @@ public final class SSIBuilder extends SSIBuilderBase {
     @SuppressWarnings("try")
     private void computeGlobalLiveSets() {
         try (Indent indent = Debug.logAndIndent(LOG_LEVEL, "compute global live sets")) {
-            boolean changeOccurred;
-            boolean changeOccurredInBlock;
-            int iterationCount = 0;
-            BitSet liveOut = new BitSet(liveSetSize()); // scratch set for
-                                                        // calculations
-
             /*
              * Perform a backward dataflow analysis to compute liveOut and liveIn for each block.
-             * The loop is executed until a fixpoint is reached (no changes in an iteration).
              */
-            do {
-                changeOccurred = false;
-
-                try (Indent indent2 = Debug.logAndIndent(LOG_LEVEL, "new iteration %d", iterationCount)) {
-
-                    // iterate all blocks in reverse order
-                    AbstractBlockBase<?>[] blocks = getBlocks();
-                    for (int i = blocks.length - 1; i >= 0; i--) {
-                        final AbstractBlockBase<?> block = blocks[i];
-                        SSIBuilder.BlockData blockSets = getBlockData(block);
-
-                        changeOccurredInBlock = false;
-
-                        /*
-                         * liveOut(block) is the union of liveIn(sux), for successors sux of block.
-                         */
-                        int n = block.getSuccessorCount();
-                        if (n > 0) {
-                            // block has successors
-                            liveOut.clear();
-                            for (AbstractBlockBase<?> successor : block.getSuccessors()) {
-                                liveOut.or(getBlockData(successor).liveIn);
-                            }
-
-                            if (!blockSets.liveOut.equals(liveOut)) {
-                                /*
-                                 * A change occurred. Swap the old and new live out sets to avoid
-                                 * copying.
-                                 */
-                                BitSet temp = blockSets.liveOut;
-                                blockSets.liveOut = liveOut;
-                                liveOut = temp;
-
-                                changeOccurred = true;
-                                changeOccurredInBlock = true;
-                            }
-                        }
-
-                        if (iterationCount == 0 || changeOccurredInBlock) {
-                            /*
-                             * liveIn(block) is the union of liveGen(block) with (liveOut(block) &
-                             * !liveKill(block)).
-                             *
-                             * Note: liveIn has to be computed only in first iteration or if liveOut
-                             * has changed!
-                             */
-                            BitSet liveIn = blockSets.liveIn;
-                            liveIn.clear();
-                            liveIn.or(blockSets.liveOut);
-                            liveIn.andNot(blockSets.liveKill);
-                            liveIn.or(blockSets.liveGen);
-
-                            if (Debug.isLogEnabled()) {
-                                Debug.log(LOG_LEVEL, "block %d: livein = %s,  liveout = %s", block.getId(), liveIn, blockSets.liveOut);
-                            }
-                        }
-                    }
-                    iterationCount++;
-
-                    if (changeOccurred && iterationCount > 50) {
-                        throw new BailoutException("too many iterations in computeGlobalLiveSets");
-                    }
+            AbstractBlockBase<?>[] blocks = getBlocks();
+            LiveSetSolver solver = new LiveSetSolver(blocks, liveSetSize());
+            for (AbstractBlockBase<?> block : blocks) {
+                SSIBuilder.BlockData blockSets = getBlockData(block);
+                solver.setLocalSets(block, blockSets.liveGen, blockSets.liveKill);
+            }
+            solver.solve();
+            for (AbstractBlockBase<?> block : blocks) {
+                SSIBuilder.BlockData blockSets = getBlockData(block);
+                blockSets.liveIn = solver.getLiveIn(block);
+                blockSets.liveOut = solver.getLiveOut(block);
+                if (Debug.isLogEnabled()) {
+                    Debug.log(LOG_LEVEL, "block %d: livein = %s,  liveout = %s", block.getId(), blockSets.liveIn, blockSets.liveOut);
                 }
-            } while (changeOccurred);
+            }
         }
     }
 
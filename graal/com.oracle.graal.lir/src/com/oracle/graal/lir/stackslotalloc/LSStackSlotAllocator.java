@@ -26,7 +26,9 @@ import static com.oracle.graal.lir.LIRValueUtil.asVirtualStackSlot;
 import static com.oracle.graal.lir.LIRValueUtil.isVirtualStackSlot;
 import static com.oracle.graal.lir.phases.LIRPhase.Options.LIROptimization;
 
+import java.nio.ByteOrder;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Deque;
 import java.util.EnumMap;
@@ -39,12 +41,14 @@ import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
 import com.oracle.graal.debug.Debug;
 import com.oracle.graal.debug.Debug.Scope;
 import com.oracle.graal.debug.DebugCloseable;
+import com.oracle.graal.debug.DebugCounter;
 import com.oracle.graal.debug.DebugTimer;
 import com.oracle.graal.debug.Indent;
 import com.oracle.graal.lir.LIR;
 import com.oracle.graal.lir.LIRInstruction;
 import com.oracle.graal.lir.LIRInstruction.OperandFlag;
 import com.oracle.graal.lir.LIRInstruction.OperandMode;
+import com.oracle.graal.lir.ValueConsumer;
 import com.oracle.graal.lir.ValueProcedure;
 import com.oracle.graal.lir.VirtualStackSlot;
 import com.oracle.graal.lir.framemap.FrameMapBuilderTool;
@@ -77,6 +81,9 @@ public final class LSStackSlotAllocator extends AllocationPhase {
         // @formatter:off
         @Option(help = "Use linear scan stack slot allocation.", type = OptionType.Debug)
         public static final NestedBooleanOptionValue LIROptLSStackSlotAllocator = new NestedBooleanOptionValue(LIROptimization, true);
+
+        @Option(help = "Place frequently accessed stack slots closest to the stack pointer and reuse hinted and larger free stack slots.", type = OptionType.Debug)
+        public static final NestedBooleanOptionValue LIROptLSStackSlotPacking = new NestedBooleanOptionValue(LIROptimization, true);
         // @formatter:on
     }
 
@@ -86,6 +93,7 @@ public final class LSStackSlotAllocator extends AllocationPhase {
     private static final DebugTimer VerifyIntervalsTimer = Debug.timer("LSStackSlotAllocator[VerifyIntervals]");
     private static final DebugTimer AllocateSlotsTimer = Debug.timer("LSStackSlotAllocator[AllocateSlots]");
     private static final DebugTimer AssignSlotsTimer = Debug.timer("LSStackSlotAllocator[AssignSlots]");
+    private static final DebugCounter HintedSlots = Debug.counter("LSStackSlotAllocator[hintedSlots]");
 
     @Override
     protected void run(TargetDescription target, LIRGenerationResult lirGenRes, AllocationContext context) {
@@ -106,6 +114,14 @@ public final class LSStackSlotAllocator extends AllocationPhase {
         private final LIR lir;
         private final FrameMapBuilderTool frameMapBuilder;
         private final StackInterval[] stackSlotMap;
+        /**
+         * The {@link SlotColor} assigned to each stack interval, indexed by the id of its virtual
+         * stack slot.
+         */
+        private final SlotColor[] slotColors;
+        private final List<SlotColor> colors;
+        private final boolean packSlots;
+        private final boolean reuseLargerSlots;
         private final PriorityQueue<StackInterval> unhandled;
         private final PriorityQueue<StackInterval> active;
         private final AbstractBlockBase<?>[] sortedBlocks;
@@ -116,7 +132,15 @@ public final class LSStackSlotAllocator extends AllocationPhase {
             this.lir = lir;
             this.frameMapBuilder = frameMapBuilder;
             this.stackSlotMap = new StackInterval[frameMapBuilder.getNumberOfStackSlots()];
+            this.slotColors = new SlotColor[stackSlotMap.length];
+            this.colors = new ArrayList<>();
             this.sortedBlocks = lir.getControlFlowGraph().getBlocks();
+            this.packSlots = Options.LIROptLSStackSlotPacking.getValue();
+            /*
+             * A smaller value in a larger slot is stored at the lowest address of the slot, which
+             * is only where the value lives for little endian targets.
+             */
+            this.reuseLargerSlots = packSlots && frameMapBuilder.getFrameMap().getTarget().arch.getByteOrder() == ByteOrder.LITTLE_ENDIAN;
 
             // insert by from
             this.unhandled = new PriorityQueue<>((a, b) -> a.from() - b.from());
@@ -150,7 +174,11 @@ public final class LSStackSlotAllocator extends AllocationPhase {
             }
             // step 4: allocate stack slots
             try (DebugCloseable t = AllocateSlotsTimer.start()) {
+                if (packSlots) {
+                    computeWeights(usePos);
+                }
                 allocateStackSlots();
+                layoutStackSlots();
             }
             if (Debug.isDumpEnabled(Debug.INFO_LOG_LEVEL)) {
                 dumpIntervals("After stack slot allocation");
@@ -164,6 +192,15 @@ public final class LSStackSlotAllocator extends AllocationPhase {
             if (StackSlotAllocatorUtil.allocatedFramesize.isEnabled()) {
                 StackSlotAllocatorUtil.allocatedFramesize.add(frameMapBuilder.getFrameMap().currentFrameSize() - currentFrameSize);
             }
+            if (Debug.isLogEnabled(Debug.BASIC_LOG_LEVEL)) {
+                int numIntervals = 0;
+                for (StackInterval interval : stackSlotMap) {
+                    if (interval != null) {
+                        numIntervals++;
+                    }
+                }
+                Debug.log(Debug.BASIC_LOG_LEVEL, "Allocated %d stack slots for %d virtual stack slots, frame size %d", colors.size(), numIntervals, frameMapBuilder.getFrameMap().currentFrameSize());
+            }
         }
 
         // ====================
@@ -220,6 +257,30 @@ public final class LSStackSlotAllocator extends AllocationPhase {
         // step 4: allocate stack slots
         // ====================
 
+        /**
+         * Computes the {@linkplain StackInterval#weight() weight} of all intervals from the
+         * probabilities of the blocks containing the instructions that access them.
+         */
+        private void computeWeights(Set<LIRInstruction> usePos) {
+            for (AbstractBlockBase<?> block : sortedBlocks) {
+                double probability = block.probability();
+                ValueConsumer addWeight = (value, mode, flags) -> {
+                    if (isVirtualStackSlot(value)) {
+                        get(asVirtualStackSlot(value)).addWeight(probability);
+                    }
+                };
+                for (LIRInstruction op : lir.getLIRforBlock(block)) {
+                    if (usePos.contains(op)) {
+                        op.visitEachInput(addWeight);
+                        op.visitEachAlive(addWeight);
+                        op.visitEachState(addWeight);
+                        op.visitEachTemp(addWeight);
+                        op.visitEachOutput(addWeight);
+                    }
+                }
+            }
+        }
+
         @SuppressWarnings("try")
         private void allocateStackSlots() {
             // create unhandled lists
@@ -239,34 +300,91 @@ public final class LSStackSlotAllocator extends AllocationPhase {
 
         private void allocateSlot(StackInterval current) {
             VirtualStackSlot virtualSlot = current.getOperand();
-            final StackSlot location;
             if (virtualSlot instanceof VirtualStackSlotRange) {
                 // No reuse of ranges (yet).
                 VirtualStackSlotRange slotRange = (VirtualStackSlotRange) virtualSlot;
-                location = frameMapBuilder.getFrameMap().allocateStackSlots(slotRange.getSlots(), slotRange.getObjects());
+                StackSlot location = frameMapBuilder.getFrameMap().allocateStackSlots(slotRange.getSlots(), slotRange.getObjects());
                 StackSlotAllocatorUtil.virtualFramesize.add(frameMapBuilder.getFrameMap().spillSlotRangeSize(slotRange.getSlots()));
                 StackSlotAllocatorUtil.allocatedSlots.increment();
+                Debug.log("Allocate location %s for interval %s", location, current);
+                current.setLocation(location);
             } else {
                 assert virtualSlot instanceof SimpleVirtualStackSlot : "Unexpected VirtualStackSlot type: " + virtualSlot;
-                StackSlot slot = findFreeSlot((SimpleVirtualStackSlot) virtualSlot);
-                if (slot != null) {
-                    /*
-                     * Free stack slot available. Note that we create a new one because the kind
-                     * might not match.
-                     */
-                    location = StackSlot.get(current.kind(), slot.getRawOffset(), slot.getRawAddFrameSize());
+                SlotColor color = findFreeSlot(current);
+                if (color != null) {
                     StackSlotAllocatorUtil.reusedSlots.increment();
-                    Debug.log(Debug.BASIC_LOG_LEVEL, "Reuse stack slot %s (reallocated from %s) for virtual stack slot %s", location, slot, virtualSlot);
+                    Debug.log(Debug.BASIC_LOG_LEVEL, "Reuse stack slot %s for virtual stack slot %s", color, virtualSlot);
                 } else {
-                    // Allocate new stack slot.
-                    location = frameMapBuilder.getFrameMap().allocateSpillSlot(virtualSlot.getValueKind());
-                    StackSlotAllocatorUtil.virtualFramesize.add(frameMapBuilder.getFrameMap().spillSlotSize(virtualSlot.getValueKind()));
+                    // Create new stack slot.
+                    color = new SlotColor(colors.size(), virtualSlot.getValueKind(), forKind(virtualSlot.getValueKind()), null);
+                    colors.add(color);
+                    Debug.log(Debug.BASIC_LOG_LEVEL, "New stack slot %s for virtual stack slot %s", color, virtualSlot);
+                }
+                color.add(current);
+                slotColors[virtualSlot.getId()] = color;
+            }
+        }
+
+        /**
+         * Allocates the frame slots for all {@link SlotColor colors} and assigns the locations of
+         * their intervals. If {@linkplain Options#LIROptLSStackSlotPacking packing} is enabled, the
+         * slots are allocated in the order of increasing weight, so that the most frequently
+         * accessed slots are allocated last and thus end up closest to the stack pointer, where
+         * they can be addressed with short displacements and share cache lines.
+         */
+        private void layoutStackSlots() {
+            SlotColor[] sorted = colors.toArray(new SlotColor[colors.size()]);
+            if (packSlots) {
+                // the sort is stable, so slots with the same weight keep their order
+                Arrays.sort(sorted, (a, b) -> Double.compare(a.weight, b.weight));
+            }
+            for (SlotColor color : sorted) {
+                StackSlot slot = color.slot;
+                if (slot == null) {
+                    slot = frameMapBuilder.getFrameMap().allocateSpillSlot(color.kind);
+                    StackSlotAllocatorUtil.virtualFramesize.add(frameMapBuilder.getFrameMap().spillSlotSize(color.kind));
                     StackSlotAllocatorUtil.allocatedSlots.increment();
-                    Debug.log(Debug.BASIC_LOG_LEVEL, "New stack slot %s for virtual stack slot %s", location, virtualSlot);
+                }
+                for (StackInterval interval : color.intervals) {
+                    /*
+                     * Note that we create a new stack slot because the kind might not match.
+                     */
+                    StackSlot location = StackSlot.get(interval.kind(), slot.getRawOffset(), slot.getRawAddFrameSize());
+                    Debug.log("Allocate location %s for interval %s", location, interval);
+                    interval.setLocation(location);
                 }
             }
-            Debug.log("Allocate location %s for interval %s", location, current);
-            current.setLocation(location);
+        }
+
+        /**
+         * A stack slot shared by non-overlapping intervals. The frame slot is only allocated after
+         * all intervals have been processed, see {@link Allocator#layoutStackSlots()}, unless the
+         * color reuses the first slot of a finished {@link VirtualStackSlotRange}.
+         */
+        private static final class SlotColor {
+            private final int id;
+            private final ValueKind<?> kind;
+            private final SlotSize size;
+            private final List<StackInterval> intervals = new ArrayList<>(2);
+            private final StackSlot slot;
+            private double weight;
+
+            SlotColor(int id, ValueKind<?> kind, SlotSize size, StackSlot slot) {
+                this.id = id;
+                this.kind = kind;
+                this.size = size;
+                this.slot = slot;
+            }
+
+            void add(StackInterval interval) {
+                intervals.add(interval);
+                weight += interval.weight();
+            }
+
+            @Override
+            public String toString() {
+                return String.format("slot%d(%s, weight %f)", id, kind, weight);
+            }
         }
 
         private enum SlotSize {
@@ -292,12 +410,12 @@ public final class LSStackSlotAllocator extends AllocationPhase {
             }
         }
 
-        private EnumMap<SlotSize, Deque<StackSlot>> freeSlots;
+        private EnumMap<SlotSize, Deque<SlotColor>> freeSlots;
 
         /**
          * @return The list of free stack slots for {@code size} or {@code null} if there is none.
          */
-        private Deque<StackSlot> getOrNullFreeSlots(SlotSize size) {
+        private Deque<SlotColor> getOrNullFreeSlots(SlotSize size) {
             if (freeSlots == null) {
                 return null;
             }
@@ -308,9 +426,9 @@ public final class LSStackSlotAllocator extends AllocationPhase {
          * @return the list of free stack slots for {@code size}. If there is none a list is
          *         created.
          */
-        private Deque<StackSlot> getOrInitFreeSlots(SlotSize size) {
+        private Deque<SlotColor> getOrInitFreeSlots(SlotSize size) {
             assert size != SlotSize.Illegal;
-            Deque<StackSlot> freeList;
+            Deque<SlotColor> freeList;
             if (freeSlots != null) {
                 freeList = freeSlots.get(size);
             } else {
@@ -326,30 +444,44 @@ public final class LSStackSlotAllocator extends AllocationPhase {
         }
 
         /**
-         * Gets a free stack slot for {@code slot} or {@code null} if there is none.
+         * Gets a free stack slot for {@code interval} or {@code null} if there is none. If packing
+         * is enabled, the slot of the {@linkplain StackInterval#locationHint() location hint} is
+         * preferred since this turns the move between the two into a no-op, and a larger slot is
+         * used if there is no free slot of the right size.
          */
-        private StackSlot findFreeSlot(SimpleVirtualStackSlot slot) {
-            assert slot != null;
-            SlotSize size = forKind(slot.getValueKind());
+        private SlotColor findFreeSlot(StackInterval interval) {
+            SlotSize size = forKind(interval.kind());
             if (size == SlotSize.Illegal) {
                 return null;
             }
-            Deque<StackSlot> freeList = getOrNullFreeSlots(size);
-            if (freeList == null) {
-                return null;
+            if (packSlots && interval.locationHint() != null) {
+                SlotColor hintColor = slotColors[interval.locationHint().getOperand().getId()];
+                if (hintColor != null && (hintColor.size == size || reuseLargerSlots && hintColor.size != SlotSize.Illegal && hintColor.size.ordinal() > size.ordinal())) {
+                    Deque<SlotColor> freeList = getOrNullFreeSlots(hintColor.size);
+                    if (freeList != null && freeList.removeLastOccurrence(hintColor)) {
+                        HintedSlots.increment();
+                        return hintColor;
+                    }
+                }
+            }
+            SlotSize maxSize = reuseLargerSlots ? SlotSize.Size8 : size;
+            for (int i = size.ordinal(); i <= maxSize.ordinal(); i++) {
+                Deque<SlotColor> freeList = getOrNullFreeSlots(SlotSize.values()[i]);
+                if (freeList != null && !freeList.isEmpty()) {
+                    return freeList.pollLast();
+                }
             }
-            return freeList.pollLast();
+            return null;
         }
 
         /**
          * Adds a stack slot to the list of free slots.
          */
-        private void freeSlot(StackSlot slot) {
-            SlotSize size = forKind(slot.getValueKind());
-            if (size == SlotSize.Illegal) {
+        private void freeSlot(SlotColor color) {
+            if (color.size == SlotSize.Illegal) {
                 return;
             }
-            getOrInitFreeSlots(size).addLast(slot);
+            getOrInitFreeSlots(color.size).addLast(color);
         }
 
         /**
@@ -385,9 +517,16 @@ public final class LSStackSlotAllocator extends AllocationPhase {
          * Finishes {@code interval} by adding its location to the list of free stack slots.
          */
         private void finished(StackInterval interval) {
-            StackSlot location = interval.location();
-            Debug.log("finished %s (freeing %s)", interval, location);
-            freeSlot(location);
+            SlotColor color = slotColors[interval.getOperand().getId()];
+            if (color == null) {
+                // the first slot of a stack slot range can be reused
+                StackSlot location = interval.location();
+                color = new SlotColor(colors.size(), location.getValueKind(), forKind(location.getValueKind()), location);
+                colors.add(color);
+                slotColors[interval.getOperand().getId()] = color;
+            }
+            Debug.log("finished %s (freeing %s)", interval, color);
+            freeSlot(color);
         }
 
         // ====================
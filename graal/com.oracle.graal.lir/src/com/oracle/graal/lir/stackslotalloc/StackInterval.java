@@ -37,6 +37,7 @@ public final class StackInterval {
     private int from = INVALID_START;
     private int to = INVALID_END;
     private StackSlot location;
+    private double weight;
 
     public StackInterval(VirtualStackSlot operand, ValueKind<?> kind) {
         this.operand = operand;
@@ -81,6 +82,18 @@ public final class StackInterval {
         this.location = location;
     }
 
+    /**
+     * Gets the access frequency of this interval, i.e., the sum of the probabilities of the blocks
+     * of all instructions accessing the stack slot.
+     */
+    public double weight() {
+        return weight;
+    }
+
+    public void addWeight(double probability) {
+        weight += probability;
+    }
+
     public int from() {
         return from;
     }
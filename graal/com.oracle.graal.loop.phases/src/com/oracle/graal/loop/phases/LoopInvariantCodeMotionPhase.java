@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.loop.phases;
+
+import java.util.List;
+
+import com.oracle.graal.compiler.common.cfg.AbstractControlFlowGraph;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugCounter;
+import com.oracle.graal.loop.LoopEx;
+import com.oracle.graal.loop.LoopsData;
+import com.oracle.graal.nodes.AbstractBeginNode;
+import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.GuardNode;
+import com.oracle.graal.nodes.LoopExitNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.cfg.Block;
+import com.oracle.graal.nodes.cfg.ControlFlowGraph;
+import com.oracle.graal.nodes.util.GraphUtil;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.tiers.MidTierContext;
+
+import jdk.vm.ci.meta.DeoptimizationAction;
+import jdk.vm.ci.meta.DeoptimizationReason;
+import jdk.vm.ci.meta.JavaConstant;
+
+/**
+ * Moves guards with a loop invariant condition that are executed on every iteration of a loop to
+ * the loop pre-header. After {@code FloatingReadPhase}, invariant reads, array lengths and type
+ * checks are floating nodes that the schedule can place outside of the loop, but they stay in the
+ * loop as long as the null checks and type checks guarding them are anchored in the loop body.
+ *
+ * If the guard is reached in the first iteration before the loop can be left, it is moved as it is.
+ * Otherwise, hoisting it is speculative because the loop might have been left before the check. It
+ * is then replaced by a guard that deoptimizes with {@link DeoptimizationReason#LoopLimitCheck},
+ * which disables the speculation once the method is recompiled.
+ */
+public class LoopInvariantCodeMotionPhase extends BasePhase<MidTierContext> {
+
+    private static final DebugCounter HOISTED_GUARDS = Debug.counter("LICMHoistedGuards");
+    private static final DebugCounter SPECULATIVELY_HOISTED_GUARDS = Debug.counter("LICMSpeculativelyHoistedGuards");
+
+    @Override
+    protected void run(StructuredGraph graph, MidTierContext context) {
+        if (!graph.hasLoops() || !graph.getGuardsStage().allowsFloatingGuards()) {
+            return;
+        }
+        boolean speculate = context.getOptimisticOptimizations().useLoopLimitChecks();
+        LoopsData loops = new LoopsData(graph);
+        ControlFlowGraph cfg = loops.getCFG();
+        // guards moved out of an inner loop can be moved further out of the enclosing loop
+        for (LoopEx loop : loops.innerFirst()) {
+            List<GuardNode> guards = loop.alwaysExecutedGuards(null);
+            boolean progress;
+            do {
+                // hoisting a guard can make the inputs of other guards invariant
+                progress = false;
+                for (int i = 0; i < guards.size(); i++) {
+                    GuardNode guard = guards.get(i);
+                    if (guard != null && guard.isAlive() && loop.isLoopInvariant(guard.getCondition())) {
+                        if (hoist(cfg, loop, guard, speculate)) {
+                            guards.set(i, null);
+                            progress = true;
+                        }
+                    }
+                }
+            } while (progress);
+        }
+        loops.deleteUnusedNodes();
+    }
+
+    private static boolean dominatesAll(ControlFlowGraph cfg, Block block, Iterable<? extends FixedNode> nodes) {
+        for (FixedNode node : nodes) {
+            if (!AbstractControlFlowGraph.dominates(block, cfg.blockFor(node))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hoist(ControlFlowGraph cfg, LoopEx loop, GuardNode guard, boolean speculate) {
+        StructuredGraph graph = guard.graph();
+        AbstractBeginNode preHeader = AbstractBeginNode.prevBegin(loop.entryPoint());
+        Iterable<LoopExitNode> exits = loop.loopBegin().loopExits();
+        if (dominatesAll(cfg, cfg.blockFor(guard.getAnchor().asNode()), exits)) {
+            // the guard is executed in the first iteration anyway
+            Debug.log("Moving %s out of %s", guard, loop);
+            guard.setAnchor(preHeader);
+            HOISTED_GUARDS.increment();
+            return true;
+        } else if (speculate) {
+            GuardNode hoisted = graph.unique(new GuardNode(guard.getCondition(), preHeader, DeoptimizationReason.LoopLimitCheck, DeoptimizationAction.InvalidateRecompile, guard.isNegated(),
+                            JavaConstant.NULL_POINTER));
+            Debug.log("Replacing %s in %s by %s", guard, loop, hoisted);
+            guard.replaceAtUsages(hoisted);
+            GraphUtil.killWithUnusedFloatingInputs(guard);
+            SPECULATIVELY_HOISTED_GUARDS.increment();
+            return true;
+        }
+        return false;
+    }
+}
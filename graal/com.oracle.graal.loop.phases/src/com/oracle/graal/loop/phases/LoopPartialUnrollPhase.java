@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.loop.phases;
+
+import java.util.Set;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugCounter;
+import com.oracle.graal.graph.Graph.Mark;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.loop.LoopEx;
+import com.oracle.graal.loop.LoopPolicies;
+import com.oracle.graal.loop.LoopsData;
+import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.phases.common.CanonicalizerPhase;
+import com.oracle.graal.phases.tiers.PhaseContext;
+
+public class LoopPartialUnrollPhase extends LoopPhase<LoopPolicies> {
+
+    private static final DebugCounter PARTIALLY_UNROLLED_LOOPS = Debug.counter("PartialUnrolls");
+    private final CanonicalizerPhase canonicalizer;
+
+    public LoopPartialUnrollPhase(CanonicalizerPhase canonicalizer, LoopPolicies policies) {
+        super(policies);
+        this.canonicalizer = canonicalizer;
+    }
+
+    @Override
+    @SuppressWarnings("try")
+    protected void run(StructuredGraph graph, PhaseContext context) {
+        int unrollFactor = LoopPolicies.partialUnrollFactor();
+        if (graph.hasLoops() && unrollFactor > 1) {
+            // neither unrolled nor remainder loops are unrolled again
+            Set<LoopBeginNode> done = Node.newSet();
+            boolean unrolled;
+            do {
+                unrolled = false;
+                Mark mark = graph.getMark();
+                LoopsData dataCounted = new LoopsData(graph);
+                dataCounted.detectedCountedLoops();
+                try (Debug.Scope s = Debug.scope("partialUnroll", dataCounted.getCFG())) {
+                    for (LoopEx loop : dataCounted.countedLoops()) {
+                        LoopBeginNode loopBegin = loop.loopBegin();
+                        if (!done.contains(loopBegin) && getPolicies().shouldPartialUnroll(loop) && LoopTransformations.isUnrollableLoop(loop, unrollFactor)) {
+                            Debug.log("PartialUnroll %s by %d", loop, unrollFactor);
+                            done.add(loopBegin);
+                            done.add(LoopTransformations.partialUnroll(loop, unrollFactor));
+                            PARTIALLY_UNROLLED_LOOPS.increment();
+                            Debug.dump(Debug.INFO_LOG_LEVEL, graph, "PartialUnroll %s", loop);
+                            unrolled = true;
+                            break;
+                        }
+                    }
+                    dataCounted.deleteUnusedNodes();
+                } catch (Throwable t) {
+                    throw Debug.handle(t);
+                }
+                if (unrolled) {
+                    canonicalizer.applyIncremental(graph, context, mark);
+                }
+            } while (unrolled);
+        }
+    }
+
+    @Override
+    public float codeSizeIncrease() {
+        return 2.0f * LoopPolicies.partialUnrollFactor();
+    }
+}
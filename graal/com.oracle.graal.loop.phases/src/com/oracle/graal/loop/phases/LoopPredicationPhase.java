@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.loop.phases;
+
+import com.oracle.graal.compiler.common.type.IntegerStamp;
+import com.oracle.graal.compiler.common.type.Stamp;
+import com.oracle.graal.compiler.common.type.StampFactory;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugCounter;
+import com.oracle.graal.loop.BasicInductionVariable;
+import com.oracle.graal.loop.CountedLoopInfo;
+import com.oracle.graal.loop.DerivedOffsetInductionVariable;
+import com.oracle.graal.loop.InductionVariable;
+import com.oracle.graal.loop.InductionVariable.Direction;
+import com.oracle.graal.loop.LoopEx;
+import com.oracle.graal.loop.LoopsData;
+import com.oracle.graal.loop.MathUtil;
+import com.oracle.graal.nodes.AbstractBeginNode;
+import com.oracle.graal.nodes.ConstantNode;
+import com.oracle.graal.nodes.GuardNode;
+import com.oracle.graal.nodes.LogicNode;
+import com.oracle.graal.nodes.ShortCircuitOrNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.calc.AddNode;
+import com.oracle.graal.nodes.calc.BinaryNode;
+import com.oracle.graal.nodes.calc.IntegerBelowNode;
+import com.oracle.graal.nodes.calc.IntegerConvertNode;
+import com.oracle.graal.nodes.calc.IntegerLessThanNode;
+import com.oracle.graal.nodes.cfg.ControlFlowGraph;
+import com.oracle.graal.nodes.extended.BranchProbabilityNode;
+import com.oracle.graal.nodes.util.GraphUtil;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.tiers.MidTierContext;
+
+import jdk.vm.ci.meta.DeoptimizationAction;
+import jdk.vm.ci.meta.DeoptimizationReason;
+import jdk.vm.ci.meta.JavaConstant;
+import jdk.vm.ci.meta.JavaKind;
+
+/**
+ * Replaces guards that are executed on every iteration of an innermost counted loop by predicates
+ * that are evaluated once before the loop. Guards with a loop invariant condition (e.g., the null
+ * check of an array that is not modified in the loop) are moved out of the loop as they are. Since
+ * the values they guard may then be scheduled before the loop, they are checked even if the loop
+ * is not entered. Range checks of the form {@code |index| < length} where {@code index} is the
+ * counter of the loop (or the counter plus an invariant offset) and {@code length} is loop
+ * invariant are replaced by a check of the first and the last value the index takes in the loop,
+ * which only applies if the loop is entered.
+ *
+ * If one of the predicates fails, the code deoptimizes to the state before the loop with
+ * {@link DeoptimizationReason#LoopLimitCheck}, which disables the transformation once the method
+ * is recompiled.
+ */
+public class LoopPredicationPhase extends BasePhase<MidTierContext> {
+
+    private static final DebugCounter HOISTED_INVARIANT_GUARDS = Debug.counter("LoopPredicationInvariantGuards");
+    private static final DebugCounter ELIMINATED_RANGE_CHECKS = Debug.counter("LoopPredicationRangeChecks");
+
+    @Override
+    protected void run(StructuredGraph graph, MidTierContext context) {
+        if (graph.hasLoops() && context.getOptimisticOptimizations().useLoopLimitChecks() && graph.getGuardsStage().allowsFloatingGuards()) {
+            LoopsData loops = new LoopsData(graph);
+            loops.detectedCountedLoops();
+            for (LoopEx loop : loops.countedLoops()) {
+                if (loop.loop().getChildren().isEmpty() && loop.counted().getStamp().getBits() <= 32 && loop.counted().getCounter() instanceof BasicInductionVariable) {
+                    predicateLoop(loops.getCFG(), loop);
+                }
+            }
+            loops.deleteUnusedNodes();
+        }
+    }
+
+    private static void predicateLoop(ControlFlowGraph cfg, LoopEx loop) {
+        // hoisting a guard can make the inputs of other guards invariant
+        boolean progress;
+        do {
+            progress = false;
+            for (GuardNode guard : loop.alwaysExecutedGuards(null)) {
+                if (loop.isLoopInvariant(guard.getCondition())) {
+                    replaceGuard(loop, guard, guard.getCondition(), guard.isNegated(), false);
+                    HOISTED_INVARIANT_GUARDS.increment();
+                    progress = true;
+                }
+            }
+            loop.invalidateFragments();
+        } while (progress);
+
+        // range checks are only replaced if they are executed after the loop limit test succeeded
+        for (GuardNode guard : loop.alwaysExecutedGuards(cfg.blockFor(loop.counted().getBody()))) {
+            LogicNode predicate = rangeCheckPredicate(loop, guard);
+            if (predicate != null) {
+                replaceGuard(loop, guard, predicate, true, true);
+                ELIMINATED_RANGE_CHECKS.increment();
+            }
+        }
+        loop.invalidateFragments();
+    }
+
+    /**
+     * Builds a condition that is true if the range check {@code guard} fails for the first or the
+     * last iteration of the loop. Returns null if the guard is not a range check on a counter based
+     * induction variable.
+     */
+    private static LogicNode rangeCheckPredicate(LoopEx loop, GuardNode guard) {
+        if (guard.isNegated() || !(guard.getCondition() instanceof IntegerBelowNode)) {
+            return null;
+        }
+        IntegerBelowNode rangeCheck = (IntegerBelowNode) guard.getCondition();
+        ValueNode length = rangeCheck.getY();
+        if (!(length.stamp() instanceof IntegerStamp) || ((IntegerStamp) length.stamp()).lowerBound() < 0 || ((IntegerStamp) length.stamp()).getBits() > 32 ||
+                        !loop.isLoopInvariant(length)) {
+            return null;
+        }
+        CountedLoopInfo counted = loop.counted();
+        InductionVariable index = loop.getInductionVariables().get(rangeCheck.getX());
+        if (index == null || ((IntegerStamp) index.valueNode().stamp()).getBits() > 32 || !isDerivedFrom(index, counted.getCounter())) {
+            return null;
+        }
+        StructuredGraph graph = guard.graph();
+        InductionVariable counter = counted.getCounter();
+        if (counted.isLimitIncluded() || !counter.isConstantStride() || Math.abs(counter.constantStride()) != 1) {
+            // the values of the counter are only monotonic if it can not overflow
+            counted.createOverFlowGuard();
+        }
+
+        /*
+         * The computations are done with 64 bits so that they can not overflow: if the first and
+         * the last value of the index are within the bounds, so is every value in between and none
+         * of them has overflowed in the original 32 bit computation.
+         */
+        Stamp longStamp = StampFactory.forKind(JavaKind.Long);
+        ValueNode first = IntegerConvertNode.convert(counter.initNode(), longStamp, graph);
+        ValueNode last = IntegerConvertNode.convert(counted.getLimit(), longStamp, graph);
+        if (!counted.isLimitIncluded()) {
+            long direction = counted.getDirection() == Direction.Up ? -1 : 1;
+            last = MathUtil.add(graph, last, ConstantNode.forLong(direction, graph));
+        }
+        ValueNode longLength = IntegerConvertNode.convert(length, longStamp, graph);
+        LogicNode firstInBounds = graph.unique(new IntegerBelowNode(valueOf(index, counter, first, longStamp), longLength));
+        LogicNode lastInBounds = graph.unique(new IntegerBelowNode(valueOf(index, counter, last, longStamp), longLength));
+        return graph.unique(new ShortCircuitOrNode(firstInBounds, true, lastInBounds, true, BranchProbabilityNode.NOT_FREQUENT_PROBABILITY));
+    }
+
+    private static boolean isDerivedFrom(InductionVariable iv, InductionVariable counter) {
+        if (iv.valueNode() == counter.valueNode()) {
+            return true;
+        }
+        if (iv instanceof DerivedOffsetInductionVariable) {
+            return isDerivedFrom(((DerivedOffsetInductionVariable) iv).getBase(), counter);
+        }
+        return false;
+    }
+
+    /**
+     * Computes the value of {@code iv} for the given value of the loop counter.
+     */
+    private static ValueNode valueOf(InductionVariable iv, InductionVariable counter, ValueNode counterValue, Stamp stamp) {
+        if (iv.valueNode() == counter.valueNode()) {
+            return counterValue;
+        }
+        DerivedOffsetInductionVariable offsetIv = (DerivedOffsetInductionVariable) iv;
+        StructuredGraph graph = counterValue.graph();
+        ValueNode base = valueOf(offsetIv.getBase(), counter, counterValue, stamp);
+        ValueNode offset = IntegerConvertNode.convert(offsetIv.getOffset(), stamp, graph);
+        if (offsetIv.valueNode() instanceof AddNode) {
+            return MathUtil.add(graph, base, offset);
+        } else if (((BinaryNode) offsetIv.valueNode()).getX() == offsetIv.getBase().valueNode()) {
+            return MathUtil.sub(graph, base, offset);
+        } else {
+            return MathUtil.sub(graph, offset, base);
+        }
+    }
+
+    /**
+     * Replaces {@code guard} by a guard before the loop that checks {@code predicate} (or its
+     * negation if {@code negated} is true). If {@code onlyIfEntered} is true, the predicate is only
+     * checked if the loop is entered. This is only correct if all values guarded by {@code guard}
+     * depend on the loop counter and can therefore not be scheduled before the loop: a loop
+     * invariant read guarded by the new guard would be executed even if the loop is not entered.
+     */
+    private static void replaceGuard(LoopEx loop, GuardNode guard, LogicNode predicate, boolean negated, boolean onlyIfEntered) {
+        StructuredGraph graph = guard.graph();
+        LogicNode condition = predicate;
+        boolean conditionNegated = negated;
+        if (onlyIfEntered) {
+            CountedLoopInfo counted = loop.counted();
+            ValueNode start = counted.getStart();
+            ValueNode limit = counted.getLimit();
+            // the loop is not entered if the limit test fails for the initial value of the counter
+            LogicNode notEntered;
+            if (counted.getDirection() == Direction.Up ^ counted.isLimitIncluded()) {
+                notEntered = graph.unique(new IntegerLessThanNode(start, limit));
+            } else {
+                notEntered = graph.unique(new IntegerLessThanNode(limit, start));
+            }
+            condition = graph.unique(new ShortCircuitOrNode(notEntered, !counted.isLimitIncluded(), predicate, negated, BranchProbabilityNode.NOT_FREQUENT_PROBABILITY));
+            conditionNegated = false;
+        }
+        GuardNode predicateGuard = graph.unique(new GuardNode(condition, AbstractBeginNode.prevBegin(loop.entryPoint()), DeoptimizationReason.LoopLimitCheck,
+                        DeoptimizationAction.InvalidateRecompile, conditionNegated, JavaConstant.NULL_POINTER));
+        Debug.log("Replacing %s in %s by %s", guard, loop, predicateGuard);
+        guard.replaceAtUsages(predicateGuard);
+        GraphUtil.killWithUnusedFloatingInputs(guard);
+    }
+}
@@ -22,6 +22,15 @@
  */
 package com.oracle.graal.loop.phases;
 
+import static com.oracle.graal.compiler.common.GraalOptions.LoopStripMining;
+import static com.oracle.graal.compiler.common.GraalOptions.LoopStripMiningIterations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.oracle.graal.compiler.common.GraalOptions;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugCounter;
 import com.oracle.graal.loop.LoopEx;
 import com.oracle.graal.loop.LoopsData;
 import com.oracle.graal.nodes.FixedNode;
@@ -35,9 +44,12 @@ import com.oracle.graal.phases.tiers.MidTierContext;
 
 public class LoopSafepointEliminationPhase extends BasePhase<MidTierContext> {
 
+    private static final DebugCounter STRIP_MINED_LOOPS = Debug.counter("StripMinedLoops");
+
     @Override
     protected void run(StructuredGraph graph, MidTierContext context) {
         LoopsData loops = new LoopsData(graph);
+        List<LoopEx> stripMiningCandidates = new ArrayList<>();
         if (context.getOptimisticOptimizations().useLoopLimitChecks() && graph.getGuardsStage().allowsFloatingGuards()) {
             loops.detectedCountedLoops();
             for (LoopEx loop : loops.countedLoops()) {
@@ -47,8 +59,13 @@ public class LoopSafepointEliminationPhase extends BasePhase<MidTierContext> {
                         hasSafepoint |= loopEnd.canSafepoint();
                     }
                     if (hasSafepoint) {
-                        loop.counted().createOverFlowGuard();
-                        loop.loopBegin().disableSafepoint();
+                        if (shouldStripMine(loop)) {
+                            // transformed below, once the loop structure is no longer needed
+                            stripMiningCandidates.add(loop);
+                        } else {
+                            loop.counted().createOverFlowGuard();
+                            loop.loopBegin().disableSafepoint();
+                        }
                     }
                 }
             }
@@ -68,6 +85,32 @@ public class LoopSafepointEliminationPhase extends BasePhase<MidTierContext> {
                 }
             }
         }
+        for (LoopEx loop : stripMiningCandidates) {
+            boolean hasSafepoint = false;
+            for (LoopEndNode loopEnd : loop.loopBegin().loopEnds()) {
+                hasSafepoint |= loopEnd.canSafepoint();
+            }
+            if (hasSafepoint) {
+                loop.counted().createOverFlowGuard();
+                LoopTransformations.stripMine(loop, LoopStripMiningIterations.getValue());
+                STRIP_MINED_LOOPS.increment();
+            }
+        }
         loops.deleteUnusedNodes();
     }
+
+    /**
+     * Loops that may run for more than {@link GraalOptions#LoopStripMiningIterations} iterations
+     * keep a safepoint poll in an outer loop so that they do not delay safepoints for too long.
+     */
+    private static boolean shouldStripMine(LoopEx loop) {
+        int iterations = LoopStripMiningIterations.getValue();
+        if (!LoopStripMining.getValue() || iterations <= 0) {
+            return false;
+        }
+        if (loop.counted().isConstantMaxTripCount() && loop.counted().constantMaxTripCount() <= iterations) {
+            return false;
+        }
+        return LoopTransformations.isStripMinableLoop(loop, iterations);
+    }
 }
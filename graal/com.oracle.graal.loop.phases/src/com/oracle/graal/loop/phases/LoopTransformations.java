@@ -27,24 +27,55 @@ import static com.oracle.graal.compiler.common.GraalOptions.MaximumDesiredSize;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
+import com.oracle.graal.compiler.common.type.IntegerStamp;
+import com.oracle.graal.compiler.common.type.Stamp;
+import com.oracle.graal.compiler.common.type.StampFactory;
 import com.oracle.graal.graph.Graph.Mark;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeBitMap;
 import com.oracle.graal.graph.Position;
+import com.oracle.graal.loop.BasicInductionVariable;
+import com.oracle.graal.loop.CountedLoopInfo;
 import com.oracle.graal.loop.LoopEx;
+import com.oracle.graal.loop.LoopFragmentInside;
 import com.oracle.graal.loop.LoopFragmentWhole;
+import com.oracle.graal.loop.LoopsData;
+import com.oracle.graal.loop.MathUtil;
 import com.oracle.graal.nodeinfo.InputType;
 import com.oracle.graal.nodes.AbstractBeginNode;
+import com.oracle.graal.nodes.AbstractEndNode;
 import com.oracle.graal.nodes.BeginNode;
+import com.oracle.graal.nodes.ConstantNode;
 import com.oracle.graal.nodes.ControlSplitNode;
+import com.oracle.graal.nodes.EndNode;
+import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.FrameState;
 import com.oracle.graal.nodes.IfNode;
+import com.oracle.graal.nodes.LogicNode;
 import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.LoopEndNode;
+import com.oracle.graal.nodes.LoopExitNode;
+import com.oracle.graal.nodes.PhiNode;
 import com.oracle.graal.nodes.StructuredGraph;
 import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.ValuePhiNode;
+import com.oracle.graal.nodes.VirtualState.NodeClosure;
+import com.oracle.graal.nodes.calc.CompareNode;
+import com.oracle.graal.nodes.calc.ConditionalNode;
+import com.oracle.graal.nodes.calc.IntegerConvertNode;
+import com.oracle.graal.nodes.calc.IntegerLessThanNode;
+import com.oracle.graal.nodes.calc.SubNode;
 import com.oracle.graal.nodes.extended.SwitchNode;
+import com.oracle.graal.nodes.memory.MemoryPhiNode;
+import com.oracle.graal.nodes.util.GraphUtil;
 import com.oracle.graal.phases.common.CanonicalizerPhase;
 import com.oracle.graal.phases.tiers.PhaseContext;
 
 import jdk.vm.ci.code.BailoutException;
+import jdk.vm.ci.code.CodeUtil;
+import jdk.vm.ci.meta.JavaKind;
 
 public abstract class LoopTransformations {
 
@@ -73,6 +104,285 @@ public abstract class LoopTransformations {
         }
     }
 
+    /**
+     * Determines whether {@link #partialUnroll} can be applied to {@code loop} with the given
+     * unroll factor.
+     */
+    public static boolean isUnrollableLoop(LoopEx loop, int unrollFactor) {
+        if (!loop.isCounted() || !loop.loop().getChildren().isEmpty()) {
+            return false;
+        }
+        LoopBeginNode loopBegin = loop.loopBegin();
+        StructuredGraph graph = loopBegin.graph();
+        if (graph.hasValueProxies() || loopBegin.stateAfter() == null || loopBegin.loopEnds().count() != 1 || loopBegin.loopExits().count() != 1) {
+            return false;
+        }
+        for (PhiNode phi : loopBegin.phis()) {
+            if (!(phi instanceof ValuePhiNode)) {
+                return false;
+            }
+        }
+        CountedLoopInfo counted = loop.counted();
+        if (!counted.getCounter().isConstantStride()) {
+            return false;
+        }
+        IfNode limitTest = (IfNode) counted.getBody().predecessor();
+        if (!(limitTest.condition() instanceof IntegerLessThanNode)) {
+            return false;
+        }
+        long stride = counted.getCounter().constantStride();
+        if (Math.abs(stride) > Integer.MAX_VALUE / unrollFactor) {
+            return false;
+        }
+        if (counted.isLimitIncluded()) {
+            // the adjusted limit cannot be clamped without changing the semantics of <=
+            return !needsLimitClamp(counted, stride * (unrollFactor - 1));
+        }
+        return true;
+    }
+
+    private static boolean needsLimitClamp(CountedLoopInfo counted, long delta) {
+        IntegerStamp limitStamp = (IntegerStamp) counted.getLimit().stamp();
+        int bits = counted.getStamp().getBits();
+        if (delta > 0) {
+            return limitStamp.lowerBound() < CodeUtil.minValue(bits) + delta;
+        } else {
+            return limitStamp.upperBound() > CodeUtil.maxValue(bits) + delta;
+        }
+    }
+
+    /**
+     * Unrolls a counted loop by {@code unrollFactor}, which must be a power of two. A copy of the
+     * original loop is inserted after it to execute the remaining iterations. The limit of the
+     * unrolled loop is adjusted so that it only executes iterations for which all copies of the
+     * body are within the original limit, which allows removing the limit tests from the copies.
+     *
+     * @return the loop begin of the remainder loop
+     */
+    public static LoopBeginNode partialUnroll(LoopEx loop, int unrollFactor) {
+        assert isUnrollableLoop(loop, unrollFactor) && Integer.bitCount(unrollFactor) == 1 && unrollFactor > 1;
+        LoopBeginNode loopBegin = loop.loopBegin();
+        StructuredGraph graph = loopBegin.graph();
+        CountedLoopInfo counted = loop.counted();
+        IfNode limitTest = (IfNode) counted.getBody().predecessor();
+        AbstractBeginNode body = counted.getBody();
+
+        LoopBeginNode remainderBegin = insertRemainderLoop(loop);
+
+        // run the unrolled loop only while all copies of the body are within the limit
+        ValueNode limit = counted.getLimit();
+        long delta = counted.getCounter().constantStride() * (unrollFactor - 1);
+        ValueNode newLimit = graph.unique(new SubNode(limit, ConstantNode.forIntegerStamp(limit.stamp(), delta, graph)));
+        if (needsLimitClamp(counted, delta)) {
+            int bits = counted.getStamp().getBits();
+            ConstantNode extremum;
+            LogicNode overflows;
+            if (delta > 0) {
+                extremum = ConstantNode.forIntegerStamp(limit.stamp(), CodeUtil.minValue(bits), graph);
+                overflows = graph.unique(new IntegerLessThanNode(limit, ConstantNode.forIntegerStamp(limit.stamp(), CodeUtil.minValue(bits) + delta, graph)));
+            } else {
+                extremum = ConstantNode.forIntegerStamp(limit.stamp(), CodeUtil.maxValue(bits), graph);
+                overflows = graph.unique(new IntegerLessThanNode(ConstantNode.forIntegerStamp(limit.stamp(), CodeUtil.maxValue(bits) + delta, graph), limit));
+            }
+            newLimit = graph.unique(new ConditionalNode(overflows, extremum, newLimit));
+        }
+        IntegerLessThanNode test = (IntegerLessThanNode) limitTest.condition();
+        ValueNode x = test.getX() == limit ? newLimit : test.getX();
+        ValueNode y = test.getY() == limit ? newLimit : test.getY();
+        limitTest.setCondition(graph.unique(new IntegerLessThanNode(x, y)));
+        GraphUtil.tryKillUnused(test);
+
+        for (int unrolled = 1; unrolled < unrollFactor; unrolled *= 2) {
+            LoopEx unrolledLoop = new LoopsData(graph).loop(loopBegin);
+            LoopFragmentInside duplicate = unrolledLoop.inside().duplicate();
+            duplicate.insertWithinAfter(unrolledLoop);
+            // the adjusted limit guarantees that the copies do not exit
+            IfNode duplicatedTest = duplicate.getDuplicatedNode(limitTest);
+            LogicNode condition = duplicatedTest.condition();
+            graph.removeSplitPropagate(duplicatedTest, duplicate.getDuplicatedNode(body));
+            GraphUtil.tryKillUnused(condition);
+        }
+
+        double frequency = loopBegin.loopFrequency();
+        loopBegin.setLoopFrequency(Math.max(1.0, frequency / unrollFactor));
+        remainderBegin.setLoopFrequency(Math.min(frequency, unrollFactor));
+        return remainderBegin;
+    }
+
+    /**
+     * Inserts a copy of {@code loop} after its single exit that continues with the values the loop
+     * phis have when the original loop exits.
+     */
+    private static LoopBeginNode insertRemainderLoop(LoopEx loop) {
+        LoopBeginNode loopBegin = loop.loopBegin();
+        StructuredGraph graph = loopBegin.graph();
+        LoopExitNode exit = loopBegin.loopExits().first();
+        FixedNode next = exit.next();
+        NodeBitMap loopNodes = loop.whole().nodes();
+        LoopFragmentWhole remainder = loop.whole().duplicateUnconnected();
+        LoopBeginNode remainderBegin = remainder.getDuplicatedNode(loopBegin);
+
+        // everything after the loop now uses the values computed by the remainder loop
+        for (Node node : loopNodes) {
+            Node duplicate = remainder.getDuplicatedNode(node);
+            if (duplicate != null && node.isAlive()) {
+                node.replaceAtMatchingUsages(duplicate, usage -> !loopNodes.isMarkedAndGrow(usage));
+            }
+        }
+
+        exit.setNext(null);
+        LoopExitNode remainderExit = remainder.getDuplicatedNode(exit);
+        remainderExit.setNext(next);
+        exit.setNext(remainder.entryPoint());
+
+        for (PhiNode phi : loopBegin.phis()) {
+            PhiNode remainderPhi = remainder.getDuplicatedNode(phi);
+            remainderPhi.setValueAt(remainderBegin.forwardEnd(), phi);
+        }
+
+        // a deoptimization at the exit of the unrolled loop has to resume in the remainder loop
+        FrameState exitState = exit.stateAfter();
+        exit.setStateAfter(loopBegin.stateAfter().duplicateWithVirtualState());
+        if (exitState != null && exitState.isAlive() && exitState.hasNoUsages()) {
+            GraphUtil.killWithUnusedFloatingInputs(exitState);
+        }
+        return remainderBegin;
+    }
+
+    /**
+     * Determines whether {@link #stripMine} can be applied to {@code loop} with the given number of
+     * iterations per strip.
+     */
+    public static boolean isStripMinableLoop(LoopEx loop, int iterations) {
+        if (!loop.isCounted() || !loop.loop().getChildren().isEmpty() || !(loop.counted().getCounter() instanceof BasicInductionVariable)) {
+            return false;
+        }
+        LoopBeginNode loopBegin = loop.loopBegin();
+        if (loopBegin.graph().hasValueProxies() || loopBegin.stateAfter() == null || loopBegin.loopExits().count() != 1) {
+            return false;
+        }
+        for (PhiNode phi : loopBegin.phis()) {
+            if (!(phi instanceof ValuePhiNode) && !(phi instanceof MemoryPhiNode)) {
+                return false;
+            }
+        }
+        CountedLoopInfo counted = loop.counted();
+        if (counted.getStamp().getBits() > 32 || !counted.getCounter().isConstantStride()) {
+            return false;
+        }
+        if (Math.abs(counted.getCounter().constantStride()) > Integer.MAX_VALUE / 2 / iterations) {
+            return false;
+        }
+        IfNode limitTest = (IfNode) counted.getBody().predecessor();
+        AbstractBeginNode exitBranch = limitTest.trueSuccessor() == counted.getBody() ? limitTest.falseSuccessor() : limitTest.trueSuccessor();
+        return limitTest.condition() instanceof CompareNode && exitBranch == loopBegin.loopExits().first();
+    }
+
+    /**
+     * Splits a counted loop into an inner loop that executes at most about {@code iterations}
+     * iterations without safepoint polls and an outer loop that polls between the strips. The
+     * inner loop runs until the smaller one of the original limit and the value the counter has
+     * after {@code iterations} iterations, the outer loop re-enters it until the original limit is
+     * reached.
+     *
+     * @return the loop begin of the outer loop
+     */
+    public static LoopBeginNode stripMine(LoopEx loop, int iterations) {
+        assert isStripMinableLoop(loop, iterations);
+        LoopBeginNode innerBegin = loop.loopBegin();
+        StructuredGraph graph = innerBegin.graph();
+        CountedLoopInfo counted = loop.counted();
+        IfNode limitTest = (IfNode) counted.getBody().predecessor();
+        CompareNode test = (CompareNode) limitTest.condition();
+        LoopExitNode innerExit = innerBegin.loopExits().first();
+        AbstractEndNode innerEntry = innerBegin.forwardEnd();
+
+        // the outer loop begins right before the inner one
+        LoopBeginNode outerBegin = graph.add(new LoopBeginNode());
+        EndNode outerEntry = graph.add(new EndNode());
+        innerEntry.replaceAtPredecessor(outerEntry);
+        outerBegin.addForwardEnd(outerEntry);
+        outerBegin.setNext(innerEntry);
+
+        // after the inner loop, the original limit test decides whether to start another strip
+        FixedNode next = innerExit.next();
+        innerExit.setNext(null);
+        LoopExitNode outerExit = graph.add(new LoopExitNode(outerBegin));
+        outerExit.setNext(next);
+        /*
+         * Guards and anchored nodes for the code after the loop must only be executed once the
+         * whole loop is done, not at the end of every strip.
+         */
+        for (Node anchored : innerExit.anchored().snapshot()) {
+            anchored.replaceFirstInput(innerExit, outerExit);
+        }
+        BeginNode continueBegin = graph.add(new BeginNode());
+        LoopEndNode outerEnd = graph.add(new LoopEndNode(outerBegin));
+        continueBegin.setNext(outerEnd);
+        double frequency = innerBegin.loopFrequency();
+        double outerFrequency = Math.max(1.0, frequency / iterations);
+        double continueProbability = 1.0 - 1.0 / outerFrequency;
+        if (limitTest.trueSuccessor() == counted.getBody()) {
+            innerExit.setNext(graph.add(new IfNode(test, continueBegin, outerExit, continueProbability)));
+        } else {
+            innerExit.setNext(graph.add(new IfNode(test, outerExit, continueBegin, 1.0 - continueProbability)));
+        }
+
+        Map<PhiNode, PhiNode> outerPhis = Node.newMap();
+        for (PhiNode phi : innerBegin.phis().snapshot()) {
+            ValueNode[] values = {phi.valueAt(innerEntry), phi};
+            PhiNode outerPhi;
+            if (phi instanceof MemoryPhiNode) {
+                outerPhi = graph.addWithoutUnique(new MemoryPhiNode(outerBegin, ((MemoryPhiNode) phi).getLocationIdentity(), values));
+            } else {
+                outerPhi = graph.addWithoutUnique(new ValuePhiNode(phi.stamp(), outerBegin, values));
+            }
+            phi.setValueAt(innerEntry, outerPhi);
+            outerPhis.put(phi, outerPhi);
+        }
+        FrameState outerState = innerBegin.stateAfter().duplicateWithVirtualState();
+        outerState.applyToNonVirtual(new NodeClosure<ValueNode>() {
+
+            @Override
+            public void apply(Node from, ValueNode node) {
+                PhiNode outerPhi = outerPhis.get(node);
+                if (outerPhi != null) {
+                    from.replaceFirstInput(node, outerPhi);
+                }
+            }
+        });
+        outerBegin.setStateAfter(outerState);
+        FrameState exitState = innerExit.stateAfter();
+        if (exitState != null) {
+            innerExit.setStateAfter(null);
+            outerExit.setStateAfter(exitState);
+        }
+
+        /*
+         * The inner loop ends after the given number of iterations if the original limit is further
+         * away than that. The distance is computed with 64 bits so that it can not overflow.
+         */
+        ValueNode limit = counted.getLimit();
+        ValueNode start = outerPhis.get(counted.getCounter().valueNode());
+        long stride = counted.getCounter().constantStride();
+        long chunk = Math.abs(stride) * iterations;
+        Stamp longStamp = StampFactory.forKind(JavaKind.Long);
+        ValueNode longStart = IntegerConvertNode.convert(start, longStamp, graph);
+        ValueNode longLimit = IntegerConvertNode.convert(limit, longStamp, graph);
+        ValueNode distance = stride > 0 ? MathUtil.sub(graph, longLimit, longStart) : MathUtil.sub(graph, longStart, longLimit);
+        LogicNode isFar = graph.unique(new IntegerLessThanNode(ConstantNode.forLong(chunk, graph), distance));
+        ValueNode stripEnd = MathUtil.add(graph, start, ConstantNode.forIntegerStamp(start.stamp(), stride > 0 ? chunk : -chunk, graph));
+        ValueNode stripLimit = graph.unique(new ConditionalNode(isFar, stripEnd, limit));
+        CompareNode stripTest = (CompareNode) test.copyWithInputs();
+        stripTest.replaceFirstInput(limit, stripLimit);
+        limitTest.setCondition(stripTest);
+
+        innerBegin.disableSafepoint();
+        innerBegin.setLoopFrequency(Math.min(frequency, iterations));
+        outerBegin.setLoopFrequency(outerFrequency);
+        return outerBegin;
+    }
+
     public static void unswitch(LoopEx loop, List<ControlSplitNode> controlSplitNodeSet) {
         ControlSplitNode firstNode = controlSplitNodeSet.iterator().next();
         LoopFragmentWhole originalLoop = loop.whole();
@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.loop.phases;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+import com.oracle.graal.compiler.common.calc.VectorOperation;
+import com.oracle.graal.compiler.common.type.StampFactory;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugCounter;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.loop.BasicInductionVariable;
+import com.oracle.graal.loop.CountedLoopInfo;
+import com.oracle.graal.loop.InductionVariable;
+import com.oracle.graal.loop.InductionVariable.Direction;
+import com.oracle.graal.loop.LoopEx;
+import com.oracle.graal.loop.LoopsData;
+import com.oracle.graal.nodes.AbstractBeginNode;
+import com.oracle.graal.nodes.AbstractEndNode;
+import com.oracle.graal.nodes.BeginNode;
+import com.oracle.graal.nodes.ConstantNode;
+import com.oracle.graal.nodes.EndNode;
+import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.FixedWithNextNode;
+import com.oracle.graal.nodes.FrameState;
+import com.oracle.graal.nodes.IfNode;
+import com.oracle.graal.nodes.LogicNode;
+import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.LoopEndNode;
+import com.oracle.graal.nodes.MergeNode;
+import com.oracle.graal.nodes.PiNode;
+import com.oracle.graal.nodes.ShortCircuitOrNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.ValuePhiNode;
+import com.oracle.graal.nodes.VirtualState.NodeClosure;
+import com.oracle.graal.nodes.calc.AddNode;
+import com.oracle.graal.nodes.calc.AndNode;
+import com.oracle.graal.nodes.calc.BinaryArithmeticNode;
+import com.oracle.graal.nodes.calc.ConditionalNode;
+import com.oracle.graal.nodes.calc.DivNode;
+import com.oracle.graal.nodes.calc.IntegerBelowNode;
+import com.oracle.graal.nodes.calc.IntegerLessThanNode;
+import com.oracle.graal.nodes.calc.IsNullNode;
+import com.oracle.graal.nodes.calc.MulNode;
+import com.oracle.graal.nodes.calc.OrNode;
+import com.oracle.graal.nodes.calc.SubNode;
+import com.oracle.graal.nodes.calc.XorNode;
+import com.oracle.graal.nodes.extended.BranchProbabilityNode;
+import com.oracle.graal.nodes.java.ArrayLengthNode;
+import com.oracle.graal.nodes.java.LoadIndexedNode;
+import com.oracle.graal.nodes.java.StoreIndexedNode;
+import com.oracle.graal.nodes.java.VectorizedArrayOpNode;
+import com.oracle.graal.nodes.type.StampTool;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.tiers.PhaseContext;
+
+import jdk.vm.ci.meta.JavaKind;
+
+/**
+ * Vectorizes counted loops of the form
+ *
+ * <pre>
+ * for (int i = start; i &lt; limit; i++) {
+ *     result[i] = x[i] op y[i]; // or x[i] op invariant
+ * }
+ * </pre>
+ *
+ * The loop itself is left untouched. Instead, a {@link VectorizedArrayOpNode} that processes as
+ * many iterations as fit into whole vectors and are within the bounds of all arrays is inserted in
+ * front of it, and the start value of the induction variable is advanced past them. The original
+ * loop then executes the remaining iterations and throws any exceptions at the same point as
+ * before.
+ * <p>
+ * Unlike the original loop, the vectorized part does not poll for safepoints. This delays a
+ * safepoint by at most the time needed to process the vectorized iterations, which is bounded by
+ * the length of the shortest array. The same delay is accepted for array intrinsics such as
+ * {@code AMD64ArrayEqualsOp}, and it is small since several elements are processed per instruction
+ * and there are no calls or allocations.
+ */
+public class LoopVectorizationPhase extends BasePhase<PhaseContext> {
+
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Vectorize counted loops that combine arrays element-wise.", type = OptionType.Debug)
+        public static final OptionValue<Boolean> LoopVectorization = new OptionValue<>(true);
+        // @formatter:on
+    }
+
+    private static final DebugCounter VECTORIZED_LOOPS = Debug.counter("VectorizedLoops");
+    private static final DebugCounter VECTORIZATION_CANDIDATES = Debug.counter("VectorizationCandidates");
+
+    private final int vectorSize;
+    private final BiPredicate<VectorOperation, JavaKind> isSupported;
+
+    /**
+     * @param vectorSize the size of the vectors in bytes
+     * @param isSupported determines whether the backend can emit a {@link VectorizedArrayOpNode}
+     *            for an operation and element kind
+     */
+    public LoopVectorizationPhase(int vectorSize, BiPredicate<VectorOperation, JavaKind> isSupported) {
+        this.vectorSize = vectorSize;
+        this.isSupported = isSupported;
+    }
+
+    private static final class Candidate {
+        final LoopEx loop;
+        final BasicInductionVariable iv;
+        final VectorOperation operation;
+        final JavaKind kind;
+        final ValueNode result;
+        final ValueNode x;
+        final ValueNode y;
+        final boolean yIsArray;
+
+        Candidate(LoopEx loop, BasicInductionVariable iv, VectorOperation operation, JavaKind kind, ValueNode result, ValueNode x, ValueNode y, boolean yIsArray) {
+            this.loop = loop;
+            this.iv = iv;
+            this.operation = operation;
+            this.kind = kind;
+            this.result = result;
+            this.x = x;
+            this.y = y;
+            this.yIsArray = yIsArray;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("try")
+    protected void run(StructuredGraph graph, PhaseContext context) {
+        if (graph.hasLoops()) {
+            LoopsData data = new LoopsData(graph);
+            try (Debug.Scope s = Debug.scope("vectorization", data.getCFG())) {
+                data.detectedCountedLoops();
+                /*
+                 * Match all loops before transforming any of them since the transformation
+                 * invalidates the loop data.
+                 */
+                List<Candidate> candidates = new ArrayList<>();
+                for (LoopEx loop : data.countedLoops()) {
+                    Candidate candidate = match(loop);
+                    if (candidate != null) {
+                        candidates.add(candidate);
+                    }
+                }
+                for (Candidate candidate : candidates) {
+                    VECTORIZED_LOOPS.increment();
+                    Debug.log("Vectorizing %s", candidate.loop);
+                    vectorize(graph, candidate);
+                    Debug.dump(Debug.INFO_LOG_LEVEL, graph, "Vectorized %s", candidate.loop);
+                }
+                data.deleteUnusedNodes();
+            } catch (Throwable t) {
+                throw Debug.handle(t);
+            }
+        }
+    }
+
+    private Candidate match(LoopEx loop) {
+        LoopBeginNode loopBegin = loop.loopBegin();
+        CountedLoopInfo counted = loop.counted();
+        InductionVariable counter = counted.getCounter();
+        if (!(counter instanceof BasicInductionVariable) || loopBegin.stateAfter() == null) {
+            return null;
+        }
+        if (loopBegin.phis().count() != 1 || loopBegin.loopEnds().count() != 1 || loopBegin.loopExits().count() != 1) {
+            return null;
+        }
+        BasicInductionVariable iv = (BasicInductionVariable) counter;
+        if (iv.valueNode().getStackKind() != JavaKind.Int || !iv.isConstantStride() || iv.constantStride() != 1 || counted.getDirection() != Direction.Up || counted.isLimitIncluded()) {
+            return null;
+        }
+        AbstractBeginNode body = counted.getBody();
+        if (body.predecessor() == null || body.predecessor().predecessor() != loopBegin) {
+            return null;
+        }
+
+        // The body must consist of array loads followed by a single array store.
+        List<LoadIndexedNode> loads = new ArrayList<>(2);
+        FixedNode current = body.next();
+        while (current instanceof LoadIndexedNode) {
+            loads.add((LoadIndexedNode) current);
+            current = ((LoadIndexedNode) current).next();
+        }
+        if (!(current instanceof StoreIndexedNode) || !(((StoreIndexedNode) current).next() instanceof LoopEndNode)) {
+            return null;
+        }
+        StoreIndexedNode store = (StoreIndexedNode) current;
+        JavaKind kind = store.elementKind();
+        if (kind != JavaKind.Int && kind != JavaKind.Long && kind != JavaKind.Float && kind != JavaKind.Double) {
+            return null;
+        }
+        if (!isElementAccess(loop, iv, store.array(), store.index())) {
+            return null;
+        }
+        for (LoadIndexedNode load : loads) {
+            if (load.elementKind() != kind || !isElementAccess(loop, iv, load.array(), load.index())) {
+                return null;
+            }
+        }
+        VECTORIZATION_CANDIDATES.increment();
+
+        VectorOperation operation = operationFor(store.value());
+        if (operation == null || !isSupported.test(operation, kind)) {
+            return null;
+        }
+        if (counted.isConstantMaxTripCount() && counted.constantMaxTripCount() < 2 * lanes(kind)) {
+            return null;
+        }
+        BinaryArithmeticNode<?> op = (BinaryArithmeticNode<?>) store.value();
+        ValueNode a = op.getX();
+        ValueNode b = op.getY();
+        if (!(a instanceof LoadIndexedNode) && operation.isCommutative()) {
+            a = op.getY();
+            b = op.getX();
+        }
+        if (!loads.contains(a)) {
+            return null;
+        }
+        /*
+         * Every load must be an operand: the vectorized part only checks the arrays it accesses, so
+         * an exception thrown by any other load would no longer be precise.
+         */
+        for (LoadIndexedNode load : loads) {
+            if (load != a && load != b) {
+                return null;
+            }
+        }
+        if (loads.contains(b)) {
+            return new Candidate(loop, iv, operation, kind, store.array(), ((LoadIndexedNode) a).array(), ((LoadIndexedNode) b).array(), true);
+        } else if (loop.isOutsideLoop(b)) {
+            return new Candidate(loop, iv, operation, kind, store.array(), ((LoadIndexedNode) a).array(), b, false);
+        }
+        return null;
+    }
+
+    private static boolean isElementAccess(LoopEx loop, BasicInductionVariable iv, ValueNode array, ValueNode index) {
+        return index == iv.valueNode() && loop.isOutsideLoop(array);
+    }
+
+    private static VectorOperation operationFor(ValueNode value) {
+        /*
+         * Compare the exact classes since subclasses such as the exact arithmetic nodes have
+         * additional semantics.
+         */
+        Class<?> c = value.getClass();
+        if (c == AddNode.class) {
+            return VectorOperation.ADD;
+        } else if (c == SubNode.class) {
+            return VectorOperation.SUB;
+        } else if (c == MulNode.class) {
+            return VectorOperation.MUL;
+        } else if (c == DivNode.class) {
+            return VectorOperation.DIV;
+        } else if (c == AndNode.class) {
+            return VectorOperation.AND;
+        } else if (c == OrNode.class) {
+            return VectorOperation.OR;
+        } else if (c == XorNode.class) {
+            return VectorOperation.XOR;
+        }
+        return null;
+    }
+
+    private int lanes(JavaKind kind) {
+        return vectorSize / kind.getByteCount();
+    }
+
+    private void vectorize(StructuredGraph graph, Candidate candidate) {
+        LoopBeginNode loopBegin = candidate.loop.loopBegin();
+        ValuePhiNode phi = candidate.iv.valueNode();
+        AbstractEndNode forwardEnd = loopBegin.forwardEnd();
+        FixedWithNextNode insertionPoint = (FixedWithNextNode) forwardEnd.predecessor();
+        ValueNode start = phi.valueAt(forwardEnd);
+
+        List<ValueNode> arrays = new ArrayList<>(3);
+        for (ValueNode array : new ValueNode[]{candidate.result, candidate.x, candidate.yIsArray ? candidate.y : null}) {
+            if (array != null && !arrays.contains(array)) {
+                arrays.add(array);
+            }
+        }
+        LogicNode anyNull = null;
+        for (ValueNode array : arrays) {
+            if (!StampTool.isPointerNonNull(array)) {
+                LogicNode isNull = graph.unique(new IsNullNode(array));
+                anyNull = anyNull == null ? isNull : graph.unique(new ShortCircuitOrNode(anyNull, false, isNull, false, BranchProbabilityNode.VERY_SLOW_PATH_PROBABILITY));
+            }
+        }
+
+        AbstractBeginNode vectorBegin = null;
+        MergeNode merge = null;
+        FixedNode continuation = forwardEnd;
+        if (anyNull != null) {
+            vectorBegin = graph.add(new BeginNode());
+            AbstractBeginNode scalarBegin = graph.add(new BeginNode());
+            IfNode nullCheck = graph.add(new IfNode(anyNull, scalarBegin, vectorBegin, BranchProbabilityNode.VERY_SLOW_PATH_PROBABILITY));
+            insertionPoint.setNext(nullCheck);
+            EndNode scalarEnd = graph.add(new EndNode());
+            scalarBegin.setNext(scalarEnd);
+            EndNode vectorEnd = graph.add(new EndNode());
+            merge = graph.add(new MergeNode());
+            merge.addForwardEnd(vectorEnd);
+            merge.addForwardEnd(scalarEnd);
+            merge.setNext(forwardEnd);
+            insertionPoint = vectorBegin;
+            continuation = vectorEnd;
+        } else {
+            insertionPoint.setNext(null);
+        }
+
+        /*
+         * Limit the vectorized part to the iterations that are within the bounds of all arrays.
+         */
+        Map<ValueNode, ValueNode> nonNullArrays = new LinkedHashMap<>();
+        ValueNode end = candidate.loop.counted().getLimit();
+        for (ValueNode array : arrays) {
+            ValueNode nonNull = array;
+            if (!StampTool.isPointerNonNull(array)) {
+                nonNull = graph.unique(new PiNode(array, array.stamp().join(StampFactory.objectNonNull()), vectorBegin));
+            }
+            nonNullArrays.put(array, nonNull);
+            ArrayLengthNode length = graph.add(new ArrayLengthNode(nonNull));
+            insertionPoint.setNext(length);
+            insertionPoint = length;
+            end = graph.unique(new ConditionalNode(graph.unique(new IntegerLessThanNode(length, end)), length, end));
+        }
+        ConstantNode zero = ConstantNode.forInt(0, graph);
+        end = graph.unique(new ConditionalNode(graph.unique(new IntegerLessThanNode(end, zero)), zero, end));
+        // With end >= 0, start |<| end is equivalent to 0 <= start < end.
+        ValueNode available = graph.unique(new SubNode(end, start));
+        ValueNode rounded = graph.unique(new AndNode(available, ConstantNode.forInt(-lanes(candidate.kind), graph)));
+        ValueNode count = graph.unique(new ConditionalNode(graph.unique(new IntegerBelowNode(start, end)), rounded, zero));
+        ValueNode newStart = graph.unique(new AddNode(start, count));
+
+        ValueNode y = candidate.yIsArray ? nonNullArrays.get(candidate.y) : candidate.y;
+        VectorizedArrayOpNode vectorOp = graph.add(new VectorizedArrayOpNode(candidate.operation, candidate.kind, nonNullArrays.get(candidate.result), nonNullArrays.get(candidate.x), y,
+                        candidate.yIsArray, start, count));
+        vectorOp.setStateAfter(loopHeaderState(loopBegin, phi, newStart));
+        insertionPoint.setNext(vectorOp);
+        vectorOp.setNext(continuation);
+
+        if (merge != null) {
+            ValuePhiNode startPhi = graph.addWithoutUnique(new ValuePhiNode(phi.stamp().unrestricted(), merge, new ValueNode[]{newStart, start}));
+            merge.setStateAfter(loopHeaderState(loopBegin, phi, startPhi));
+            phi.setValueAt(forwardEnd, startPhi);
+        } else {
+            phi.setValueAt(forwardEnd, newStart);
+        }
+    }
+
+    /**
+     * Creates a copy of the state at the loop header in which the induction variable has the value
+     * {@code value}.
+     */
+    private static FrameState loopHeaderState(LoopBeginNode loopBegin, ValuePhiNode phi, ValueNode value) {
+        FrameState state = loopBegin.stateAfter().duplicateWithVirtualState();
+        state.applyToNonVirtual(new NodeClosure<ValueNode>() {
+
+            @Override
+            public void apply(Node from, ValueNode node) {
+                if (node == phi) {
+                    from.replaceFirstInput(phi, value);
+                }
+            }
+        });
+        return state;
+    }
+}
@@ -62,6 +62,9 @@ public class DefaultLoopPolicies implements LoopPolicies {
     @Option(help = "", type = OptionType.Expert) public static final OptionValue<Integer> FullUnrollMaxIterations = new OptionValue<>(600);
     @Option(help = "", type = OptionType.Expert) public static final OptionValue<Integer> ExactFullUnrollMaxNodes = new OptionValue<>(1200);
 
+    @Option(help = "", type = OptionType.Expert) public static final OptionValue<Integer> PartialUnrollMaxNodes = new OptionValue<>(200);
+    @Option(help = "", type = OptionType.Expert) public static final OptionValue<Double> PartialUnrollMinFrequency = new OptionValue<>(10.0);
+
     @Override
     public boolean shouldPeel(LoopEx loop, ControlFlowGraph cfg, MetaAccessProvider metaAccess) {
         LoopBeginNode loopBegin = loop.loopBegin();
@@ -114,6 +117,40 @@ public class DefaultLoopPolicies implements LoopPolicies {
         }
     }
 
+    @Override
+    public boolean shouldPartialUnroll(LoopEx loop) {
+        if (!loop.isCounted() || !loop.loop().getChildren().isEmpty()) {
+            return false;
+        }
+        LoopBeginNode loopBegin = loop.loopBegin();
+        if (loopBegin.loopFrequency() < PartialUnrollMinFrequency.getValue()) {
+            return false;
+        }
+        int factor = LoopPolicies.partialUnrollFactor();
+        CountedLoopInfo counted = loop.counted();
+        if (counted.isConstantMaxTripCount() && counted.constantMaxTripCount() < 2L * factor) {
+            return false;
+        }
+        int maxNodes = Math.min(PartialUnrollMaxNodes.getValue(), Math.max(0, MaximumDesiredSize.getValue() - loopBegin.graph().getNodeCount()));
+        int size = Math.max(1, loop.size() - 1 - loopBegin.phis().count());
+        // the factor - 1 additional copies of the body plus the remainder loop
+        if (size * factor > maxNodes) {
+            return false;
+        }
+        for (Node node : loop.inside().nodes()) {
+            if (node instanceof ControlFlowAnchorNode) {
+                return false;
+            }
+            if (node instanceof FrameState) {
+                FrameState frameState = (FrameState) node;
+                if (frameState.bci == BytecodeFrame.AFTER_EXCEPTION_BCI || frameState.bci == BytecodeFrame.UNWIND_BCI) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     @Override
     public boolean shouldTryUnswitch(LoopEx loop) {
         LoopBeginNode loopBegin = loop.loopBegin();
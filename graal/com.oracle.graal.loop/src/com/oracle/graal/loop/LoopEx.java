@@ -24,13 +24,16 @@ package com.oracle.graal.loop;
 
 import static com.oracle.graal.graph.Node.newIdentityMap;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 
 import com.oracle.graal.compiler.common.calc.Condition;
+import com.oracle.graal.compiler.common.cfg.AbstractControlFlowGraph;
 import com.oracle.graal.compiler.common.cfg.Loop;
 import com.oracle.graal.compiler.common.type.IntegerStamp;
 import com.oracle.graal.debug.Debug;
@@ -46,9 +49,11 @@ import com.oracle.graal.nodes.FixedGuardNode;
 import com.oracle.graal.nodes.FixedNode;
 import com.oracle.graal.nodes.FixedWithNextNode;
 import com.oracle.graal.nodes.FullInfopointNode;
+import com.oracle.graal.nodes.GuardNode;
 import com.oracle.graal.nodes.IfNode;
 import com.oracle.graal.nodes.LogicNode;
 import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.LoopEndNode;
 import com.oracle.graal.nodes.LoopExitNode;
 import com.oracle.graal.nodes.PhiNode;
 import com.oracle.graal.nodes.PiNode;
@@ -125,6 +130,32 @@ public class LoopEx {
         return !whole().contains(n);
     }
 
+    /**
+     * Determines whether {@code n} has the same value in all iterations of this loop. Fixed nodes
+     * and phis are invariant if they are outside of the loop, floating nodes if all their inputs
+     * are. For example, a floating read is invariant if its address, its guard and the memory state
+     * it reads from are.
+     */
+    public boolean isLoopInvariant(Node n) {
+        return isLoopInvariant(n, loopBegin().graph().createNodeBitMap());
+    }
+
+    private boolean isLoopInvariant(Node n, NodeBitMap visited) {
+        if (n instanceof FixedNode || n instanceof PhiNode) {
+            return isOutsideLoop(n);
+        }
+        if (visited.isMarked(n)) {
+            return true;
+        }
+        visited.mark(n);
+        for (Node input : n.inputs()) {
+            if (!isLoopInvariant(input, visited)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public LoopBeginNode loopBegin() {
         return (LoopBeginNode) loop().getHeader().getBeginNode();
     }
@@ -316,6 +347,37 @@ public class LoopEx {
         LoopFragment.computeNodes(branchNodes, branch.graph(), blocks, exits);
     }
 
+    /**
+     * Collects the guards that are anchored directly in this loop, not in a nested loop, at a point
+     * that dominates all loop ends, i.e., the guards that are executed in every iteration that
+     * continues the loop.
+     *
+     * @param dominator if not null, only guards anchored in blocks dominated by this block are
+     *            collected
+     */
+    public List<GuardNode> alwaysExecutedGuards(Block dominator) {
+        ControlFlowGraph cfg = loopsData().getCFG();
+        List<GuardNode> guards = new ArrayList<>();
+        for (GuardNode guard : loopBegin().graph().getNodes().filter(GuardNode.class)) {
+            Node anchor = guard.getAnchor() == null ? null : guard.getAnchor().asNode();
+            if (!(anchor instanceof FixedNode)) {
+                continue;
+            }
+            Block anchorBlock = cfg.blockFor(anchor);
+            if (anchorBlock == null || anchorBlock.getLoop() != loop || (dominator != null && !AbstractControlFlowGraph.dominates(dominator, anchorBlock))) {
+                continue;
+            }
+            boolean dominatesEnds = true;
+            for (LoopEndNode loopEnd : loopBegin().loopEnds()) {
+                dominatesEnds &= AbstractControlFlowGraph.dominates(anchorBlock, cfg.blockFor(loopEnd));
+            }
+            if (dominatesEnds) {
+                guards.add(guard);
+            }
+        }
+        return guards;
+    }
+
     public Map<Node, InductionVariable> getInductionVariables() {
         if (ivs == null) {
             ivs = findInductionVariables(this);
@@ -63,6 +63,12 @@ public class LoopFragmentInside extends LoopFragment {
      * of the duplicated inside fragment
      */
     private Map<ValuePhiNode, ValueNode> mergedInitializers;
+    /**
+     * Whether this duplicate is inserted after the original body within the loop (unrolling) as
+     * opposed to before the loop (peeling). This determines which value of a loop phi the
+     * duplicate sees.
+     */
+    private boolean insertedWithin;
     private final DuplicationReplacement dataFixBefore = new DuplicationReplacement() {
 
         @Override
@@ -121,6 +127,40 @@ public class LoopFragmentInside extends LoopFragment {
         end.setNext(loop.entryPoint());
     }
 
+    /**
+     * Inserts this duplicate of the loop body after the original body within the loop, i.e., the
+     * loop is unrolled once and executes two iterations of the original loop before reaching the
+     * back edge. The duplicated loop exits are merged with the original ones. The loop must have a
+     * single back edge.
+     */
+    public void insertWithinAfter(LoopEx loop) {
+        assert this.isDuplicate() && this.original().loop() == loop;
+        LoopBeginNode loopBegin = loop.loopBegin();
+        assert loopBegin.loopEnds().count() == 1;
+        LoopEndNode loopEnd = loopBegin.loopEnds().first();
+
+        insertedWithin = true;
+        patchNodes(dataFixBefore);
+
+        AbstractBeginNode end = mergeEnds();
+
+        mergeEarlyExits();
+
+        // the duplicate computes the new back edge values
+        List<PhiNode> phis = loopBegin.phis().snapshot();
+        ValueNode[] backValues = new ValueNode[phis.size()];
+        for (int i = 0; i < backValues.length; i++) {
+            backValues[i] = prim(phis.get(i).valueAt(loopEnd));
+        }
+        for (int i = 0; i < backValues.length; i++) {
+            phis.get(i).setValueAt(loopEnd, backValues[i]);
+        }
+
+        AbstractBeginNode entry = getDuplicatedNode(loopBegin);
+        loopEnd.replaceAtPredecessor(entry);
+        end.setNext(loopEnd);
+    }
+
     @Override
     public NodeBitMap nodes() {
         if (nodes == null) {
@@ -325,6 +365,9 @@ public class LoopFragmentInside extends LoopFragment {
         LoopBeginNode loopBegin = original().loop().loopBegin();
         if (loopBegin.isPhiAtMerge(b)) {
             PhiNode phi = (PhiNode) b;
+            if (insertedWithin) {
+                return phi.valueAt(loopBegin.loopEnds().first());
+            }
             return phi.valueAt(loopBegin.forwardEnd());
         } else if (nodesReady) {
             ValueNode v = getDuplicatedNode(b);
@@ -53,6 +53,16 @@ public class LoopFragmentWhole extends LoopFragment {
         return loopFragmentWhole;
     }
 
+    /**
+     * Duplicates this loop without connecting the loop exits of the duplicate to anything. The
+     * caller is responsible for wiring up the duplicate's entry and exits.
+     */
+    public LoopFragmentWhole duplicateUnconnected() {
+        LoopFragmentWhole loopFragmentWhole = new LoopFragmentWhole(this);
+        loopFragmentWhole.patchNodes(null);
+        return loopFragmentWhole;
+    }
+
     private void reify() {
         assert this.isDuplicate();
 
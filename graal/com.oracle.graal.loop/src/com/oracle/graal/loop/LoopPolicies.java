@@ -22,6 +22,8 @@
  */
 package com.oracle.graal.loop;
 
+import static com.oracle.graal.compiler.common.GraalOptions.PartialUnrollFactor;
+
 import java.util.List;
 
 import com.oracle.graal.nodes.ControlSplitNode;
@@ -33,6 +35,16 @@ public interface LoopPolicies {
 
     boolean shouldFullUnroll(LoopEx loop);
 
+    boolean shouldPartialUnroll(LoopEx loop);
+
+    /**
+     * Gets the factor by which loops are partially unrolled, which is {@code PartialUnrollFactor}
+     * rounded down to a power of two.
+     */
+    static int partialUnrollFactor() {
+        return Integer.highestOneBit(Math.max(1, PartialUnrollFactor.getValue()));
+    }
+
     boolean shouldTryUnswitch(LoopEx loop);
 
     boolean shouldUnswitch(LoopEx loop, List<ControlSplitNode> controlSplits);
@@ -25,6 +25,7 @@ package com.oracle.graal.microbenchmarks.graal;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Warmup;
 
+import com.oracle.graal.graph.CompactGraph;
 import com.oracle.graal.graph.Graph;
 import com.oracle.graal.microbenchmarks.graal.util.GraalState;
 import com.oracle.graal.microbenchmarks.graal.util.GraphState;
@@ -32,7 +33,8 @@ import com.oracle.graal.microbenchmarks.graal.util.MethodSpec;
 import com.oracle.graal.nodes.StructuredGraph;
 
 /**
- * Benchmarks the performance of {@link Graph#copy()}.
+ * Benchmarks the performance of {@link Graph#copy()} and of creating a {@link CompactGraph}
+ * snapshot of the same graph.
  */
 public class GraphCopyBenchmark extends GraalBenchmark {
 
@@ -79,6 +81,12 @@ public class GraphCopyBenchmark extends GraalBenchmark {
         return (StructuredGraph) s.graph.copy();
     }
 
+    @Benchmark
+    @Warmup(iterations = 20)
+    public CompactGraph nullnessCompact(Nullness s, @SuppressWarnings("unused") GraalState g) {
+        return s.graph.createCompactGraph();
+    }
+
     @MethodSpec(declaringClass = GraphCopyBenchmark.class, name = "searchSnippet")
     public static class Search extends GraphState {
     }
@@ -130,4 +138,10 @@ public class GraphCopyBenchmark extends GraalBenchmark {
     public StructuredGraph search(Search s, @SuppressWarnings("unused") GraalState g) {
         return (StructuredGraph) s.graph.copy();
     }
+
+    @Benchmark
+    @Warmup(iterations = 20)
+    public CompactGraph searchCompact(Search s, @SuppressWarnings("unused") GraalState g) {
+        return s.graph.createCompactGraph();
+    }
 }
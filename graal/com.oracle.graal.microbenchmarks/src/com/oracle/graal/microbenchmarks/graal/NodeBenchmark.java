@@ -28,13 +28,17 @@ import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.infra.Blackhole;
 
+import com.oracle.graal.graph.CompactGraph;
 import com.oracle.graal.graph.Node;
 import com.oracle.graal.graph.NodeBitMap;
 import com.oracle.graal.microbenchmarks.graal.util.GraalState;
+import com.oracle.graal.microbenchmarks.graal.util.GraphState;
 import com.oracle.graal.microbenchmarks.graal.util.MethodSpec;
 import com.oracle.graal.microbenchmarks.graal.util.NodesState;
 import com.oracle.graal.microbenchmarks.graal.util.NodesState.NodePair;
+import com.oracle.graal.nodeinfo.InputType;
 import com.oracle.graal.nodes.ConstantNode;
+import com.oracle.graal.nodes.StructuredGraph;
 import com.oracle.graal.nodes.calc.AddNode;
 import com.oracle.graal.nodes.util.GraphUtil;
 
@@ -84,6 +88,17 @@ public class NodeBenchmark extends GraalBenchmark {
         }
     }
 
+    @Benchmark
+    public void inputsCompact(StringEquals s, Blackhole bh) {
+        CompactGraph compactGraph = s.compactGraph;
+        for (int id = compactGraph.nextLiveId(0); id < compactGraph.getNodeIdCount(); id = compactGraph.nextLiveId(id + 1)) {
+            int inputCount = compactGraph.getInputCount(id);
+            for (int i = 0; i < inputCount; i++) {
+                bh.consume(compactGraph.getInput(id, i));
+            }
+        }
+    }
+
     @Benchmark
     public void acceptInputs(StringEquals s, Blackhole bh) {
         Node.EdgeVisitor consumer = new Node.EdgeVisitor() {
@@ -123,6 +138,49 @@ public class NodeBenchmark extends GraalBenchmark {
         }
     }
 
+    @Benchmark
+    public void usagesCompact(StringEquals s, Blackhole bh) {
+        CompactGraph compactGraph = s.compactGraph;
+        for (int id = compactGraph.nextLiveId(0); id < compactGraph.getNodeIdCount(); id = compactGraph.nextLiveId(id + 1)) {
+            int usageCount = compactGraph.getUsageCount(id);
+            for (int i = 0; i < usageCount; i++) {
+                bh.consume(compactGraph.getUsage(id, i));
+            }
+        }
+    }
+
+    /**
+     * Traverses usages by index instead of through {@link Node#usages()}. Running this and
+     * {@link #usages} with the JMH {@code gc} profiler shows the difference in allocation rate.
+     */
+    @Benchmark
+    public void usagesIndexed(StringEquals s, Blackhole bh) {
+        for (Node n : s.nodes) {
+            for (int i = 0; i < n.getUsageCount(); i++) {
+                bh.consume(n.getUsageAt(i));
+            }
+        }
+    }
+
+    @MethodSpec(declaringClass = String.class, name = "equals")
+    public static class StringEqualsGraph extends GraphState {
+    }
+
+    /**
+     * Moves the value usages of every constant to a fresh copy of the constant with
+     * {@link Node#replaceAtUsages(InputType, Node)}, which is how the canonicalizer replaces a node
+     * by a constant with the same stamp.
+     */
+    @Benchmark
+    public void replaceAtValueUsages(StringEqualsGraph s, Blackhole bh) {
+        StructuredGraph graph = s.graph;
+        for (ConstantNode constant : ConstantNode.getConstantNodes(graph).snapshot()) {
+            ConstantNode copy = graph.addWithoutUnique(new ConstantNode(constant.getValue(), constant.stamp()));
+            constant.replaceAtUsages(InputType.Value, copy);
+            bh.consume(copy);
+        }
+    }
+
     @Benchmark
     @Warmup(iterations = 20)
     public void nodeBitmap(StringEquals s, @SuppressWarnings("unused") GraalState g) {
@@ -139,6 +197,23 @@ public class NodeBenchmark extends GraalBenchmark {
         }
     }
 
+    @Benchmark
+    @Warmup(iterations = 20)
+    public void nodeBitmapCompact(StringEquals s, @SuppressWarnings("unused") GraalState g) {
+        CompactGraph compactGraph = s.compactGraph;
+        NodeBitMap bitMap = s.graph.createNodeBitMap();
+        for (int id = compactGraph.nextLiveId(0); id < compactGraph.getNodeIdCount(); id = compactGraph.nextLiveId(id + 1)) {
+            if (!bitMap.isMarked(id)) {
+                bitMap.mark(id);
+            }
+        }
+        for (int id = compactGraph.nextLiveId(0); id < compactGraph.getNodeIdCount(); id = compactGraph.nextLiveId(id + 1)) {
+            if (bitMap.isMarked(id)) {
+                bitMap.clear(id);
+            }
+        }
+    }
+
     @MethodSpec(declaringClass = HashMap.class, name = "computeIfAbsent")
     public static class HashMapComputeIfAbsent extends NodesState {
     }
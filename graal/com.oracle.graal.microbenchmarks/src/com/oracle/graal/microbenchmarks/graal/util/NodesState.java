@@ -33,6 +33,7 @@ import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
 
+import com.oracle.graal.graph.CompactGraph;
 import com.oracle.graal.graph.Node;
 import com.oracle.graal.graph.NodeClass;
 import com.oracle.graal.nodes.StructuredGraph;
@@ -48,6 +49,7 @@ public abstract class NodesState {
         this.graph = getGraphFromMethodSpec(getClass());
         this.nodes = getNodes(graph);
         this.originalNodes = nodes.clone();
+        this.compactGraph = graph.createCompactGraph();
         List<Node> vnln = new ArrayList<>(nodes.length);
         List<NodePair> list2 = new ArrayList<>(nodes.length);
         for (int i = 0; i < nodes.length; i++) {
@@ -78,6 +80,11 @@ public abstract class NodesState {
      */
     public final StructuredGraph graph;
     public final Node[] nodes;
+
+    /**
+     * A {@link CompactGraph} snapshot of {@link #graph}.
+     */
+    public final CompactGraph compactGraph;
     public final Node[] valueNumberableLeafNodes;
     public final NodePair[] valueEqualsNodePairs;
 
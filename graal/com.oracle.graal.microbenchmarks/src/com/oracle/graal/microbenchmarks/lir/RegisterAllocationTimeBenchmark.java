@@ -27,6 +27,7 @@ import java.util.HashMap;
 import org.openjdk.jmh.annotations.Benchmark;
 
 import com.oracle.graal.compiler.common.GraalOptions;
+import com.oracle.graal.java.BytecodeParser;
 import com.oracle.graal.lir.gen.LIRGenerationResult;
 import com.oracle.graal.lir.phases.LIRSuites;
 import com.oracle.graal.microbenchmarks.graal.GraalBenchmark;
@@ -55,6 +56,14 @@ public class RegisterAllocationTimeBenchmark extends GraalBenchmark {
     public static class LSRA_HashMapComputeIfAbsent extends LSRA_Allocation {
     }
 
+    /**
+     * A method with a large number of blocks and variables, which stresses the global liveness
+     * analysis.
+     */
+    @MethodSpec(declaringClass = BytecodeParser.class, name = "processBytecode")
+    public static class LSRA_BytecodeParserProcessBytecode extends LSRA_Allocation {
+    }
+
     @Benchmark
     public LIRGenerationResult lsra_STRING_equals(LSRA_StringEquals s) {
         return s.compile();
@@ -65,6 +74,11 @@ public class RegisterAllocationTimeBenchmark extends GraalBenchmark {
         return s.compile();
     }
 
+    @Benchmark
+    public LIRGenerationResult lsra_BYTECODEPARSER_processBytecode(LSRA_BytecodeParserProcessBytecode s) {
+        return s.compile();
+    }
+
     public static class TraceRA_Allocation extends GraalCompilerState.AllocationStage {
         @SuppressWarnings("try")
         @Override
@@ -83,6 +97,10 @@ public class RegisterAllocationTimeBenchmark extends GraalBenchmark {
     public static class TraceRA_HashMapComputeIfAbsent extends TraceRA_Allocation {
     }
 
+    @MethodSpec(declaringClass = BytecodeParser.class, name = "processBytecode")
+    public static class TraceRA_BytecodeParserProcessBytecode extends TraceRA_Allocation {
+    }
+
     @Benchmark
     public LIRGenerationResult tracera_STRING_equals(TraceRA_StringEquals s) {
         return s.compile();
@@ -92,5 +110,10 @@ public class RegisterAllocationTimeBenchmark extends GraalBenchmark {
     public LIRGenerationResult tracera_HASHMAP_computeIfAbsent(TraceRA_HashMapComputeIfAbsent s) {
         return s.compile();
     }
+
+    @Benchmark
+    public LIRGenerationResult tracera_BYTECODEPARSER_processBytecode(TraceRA_BytecodeParserProcessBytecode s) {
+        return s.compile();
+    }
     // Checkstyle: resume method name check
 }
@@ -43,12 +43,6 @@ public class EncodedGraph {
     private final Assumptions assumptions;
     private final List<ResolvedJavaMethod> inlinedMethods;
 
-    /**
-     * The "table of contents" of the encoded graph, i.e., the mapping from orderId numbers to the
-     * offset in the encoded byte[] array. Used as a cache during decoding.
-     */
-    protected long[] nodeStartOffsets;
-
     public EncodedGraph(byte[] encoding, long startOffset, Object[] objects, NodeClass<?>[] types, Assumptions assumptions, List<ResolvedJavaMethod> inlinedMethods) {
         this.encoding = encoding;
         this.startOffset = startOffset;
@@ -95,6 +95,12 @@ public class GraphDecoder {
         public final EncodedGraph encodedGraph;
         /** Access to the encoded graph. */
         public final TypeReader reader;
+        /** The number of nodes in the encoded graph, including the {@code null} orderId. */
+        public final int nodeCount;
+        /** The byte index of the first entry in the table of contents of the encoded graph. */
+        protected final long nodeStartOffsetsIndex;
+        /** The size in bytes of each entry in the table of contents of the encoded graph. */
+        protected final int nodeStartOffsetSize;
         /** The kind of loop explosion to be performed during decoding. */
         public final LoopExplosionKind loopExplosion;
         /** A list of tasks to run before the method scope is closed. */
@@ -125,16 +131,22 @@ public class GraphDecoder {
 
             if (encodedGraph != null) {
                 reader = UnsafeArrayTypeReader.create(encodedGraph.getEncoding(), encodedGraph.getStartOffset(), architecture.supportsUnalignedMemoryAccess());
-                if (encodedGraph.nodeStartOffsets == null) {
-                    int nodeCount = reader.getUVInt();
-                    long[] nodeStartOffsets = new long[nodeCount];
-                    for (int i = 0; i < nodeCount; i++) {
-                        nodeStartOffsets[i] = encodedGraph.getStartOffset() - reader.getUV();
-                    }
-                    encodedGraph.nodeStartOffsets = nodeStartOffsets;
+                int formatVersion = reader.getUVInt();
+                if (formatVersion != GraphEncoder.FORMAT_VERSION) {
+                    throw new GraalError("Unsupported graph encoding format version %d, expected %d", formatVersion, GraphEncoder.FORMAT_VERSION);
                 }
+                /*
+                 * The table of contents is not decoded here, the start offset of a node is only
+                 * looked up when the node is reached, see readNodeStartOffset.
+                 */
+                nodeCount = reader.getUVInt();
+                nodeStartOffsetSize = reader.getU1();
+                nodeStartOffsetsIndex = reader.getByteIndex();
             } else {
                 reader = null;
+                nodeCount = 0;
+                nodeStartOffsetSize = 0;
+                nodeStartOffsetsIndex = 0;
             }
 
             if (loopExplosion != LoopExplosionKind.NONE) {
@@ -186,7 +198,7 @@ public class GraphDecoder {
             this.iterationStates = null;
             this.loopBeginOrderId = -1;
 
-            int nodeCount = methodScope.encodedGraph.nodeStartOffsets.length;
+            int nodeCount = methodScope.nodeCount;
             this.nodesToProcess = new BitSet(nodeCount);
             this.initialCreatedNodes = new Node[nodeCount];
             this.createdNodes = new Node[nodeCount];
@@ -491,7 +503,7 @@ public class GraphDecoder {
             updatePredecessors = methodScope.loopExplosion == LoopExplosionKind.NONE;
         }
 
-        methodScope.reader.setByteIndex(methodScope.encodedGraph.nodeStartOffsets[nodeOrderId]);
+        methodScope.reader.setByteIndex(readNodeStartOffset(methodScope, nodeOrderId));
         int typeId = methodScope.reader.getUVInt();
         assert node.getNodeClass() == methodScope.encodedGraph.getNodeClasses()[typeId];
         readProperties(methodScope, node);
@@ -949,8 +961,33 @@ public class GraphDecoder {
         return false;
     }
 
+    /**
+     * Looks up the start offset of a node in the table of contents of the encoded graph. This does
+     * not change the position of the {@link MethodScope#reader}.
+     */
+    protected long readNodeStartOffset(MethodScope methodScope, int nodeOrderId) {
+        assert nodeOrderId >= 0 && nodeOrderId < methodScope.nodeCount;
+        byte[] encoding = methodScope.encodedGraph.getEncoding();
+        long entryIndex = methodScope.nodeStartOffsetsIndex + (long) nodeOrderId * methodScope.nodeStartOffsetSize;
+        long distance;
+        switch (methodScope.nodeStartOffsetSize) {
+            case Byte.BYTES:
+                distance = UnsafeArrayTypeReader.getU1(encoding, entryIndex);
+                break;
+            case Short.BYTES:
+                distance = UnsafeArrayTypeReader.getU2(encoding, entryIndex, architecture.supportsUnalignedMemoryAccess());
+                break;
+            case Integer.BYTES:
+                distance = UnsafeArrayTypeReader.getU4(encoding, entryIndex, architecture.supportsUnalignedMemoryAccess());
+                break;
+            default:
+                throw shouldNotReachHere("invalid table of contents entry size " + methodScope.nodeStartOffsetSize);
+        }
+        return methodScope.encodedGraph.getStartOffset() - distance;
+    }
+
     protected Node instantiateNode(MethodScope methodScope, int nodeOrderId) {
-        methodScope.reader.setByteIndex(methodScope.encodedGraph.nodeStartOffsets[nodeOrderId]);
+        methodScope.reader.setByteIndex(readNodeStartOffset(methodScope, nodeOrderId));
         NodeClass<?> nodeClass = methodScope.encodedGraph.getNodeClasses()[methodScope.reader.getUVInt()];
         return nodeClass.allocateInstance();
     }
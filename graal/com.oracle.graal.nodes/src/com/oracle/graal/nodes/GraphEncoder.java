@@ -70,14 +70,32 @@ import jdk.vm.ci.code.Architecture;
  * contents" that lists the start offset for every node.
  *
  * The beginning of that table of contents is the return value of {@link #encode} and stored in
- * {@link EncodedGraph#getStartOffset()}. The order of nodes in the table of contents is the
- * {@link NodeOrder#orderIds orderId} of a node. Note that the orderId is not the regular node id
- * that every Graal graph node gets assigned. The orderId is computed and used just for encoding and
- * decoding. The orderId of fixed nodes is assigned in reverse postorder. The decoder processes
- * nodes using that order, which ensures that all predecessors of a node (including all
- * {@link EndNode predecessors} of a {@link AbstractBeginNode block}) are decoded before the node.
- * The order id of floating node does not matter during decoding, so floating nodes get order ids
- * after all fixed nodes. The order id is used to encode edges between nodes
+ * {@link EncodedGraph#getStartOffset()}. The table of contents starts with a header and is followed
+ * by one fixed-size entry per node. The entries are not decoded eagerly: the decoder only looks up
+ * the entries of nodes it actually reaches, so regions of the graph that are never reached (e.g.,
+ * because the partial evaluator folds a branch) are skipped without any decoding work.
+ *
+ * <pre>
+ * struct TableOfContents {
+ *   unsigned formatVersion
+ *   unsigned nodeCount
+ *   u1 entrySize
+ *   u{entrySize}[nodeCount] nodeStartOffsets
+ * }
+ * </pre>
+ *
+ * An entry stores the distance from the start of the node to the start of the table of contents,
+ * using 1, 2 or 4 bytes depending on the size of the encoded graph. The format version is checked
+ * by the decoder.
+ *
+ * The order of nodes in the table of contents is the {@link NodeOrder#orderIds orderId} of a node.
+ * Note that the orderId is not the regular node id that every Graal graph node gets assigned. The
+ * orderId is computed and used just for encoding and decoding. The orderId of fixed nodes is
+ * assigned in reverse postorder. The decoder processes nodes using that order, which ensures that
+ * all predecessors of a node (including all {@link EndNode predecessors} of a
+ * {@link AbstractBeginNode block}) are decoded before the node. The order id of floating node does
+ * not matter during decoding, so floating nodes get order ids after all fixed nodes. The order id
+ * is used to encode edges between nodes
  *
  * Structure of an encoded node:
  *
@@ -108,6 +126,12 @@ import jdk.vm.ci.code.Architecture;
  */
 public class GraphEncoder {
 
+    /**
+     * The version of the encoding format, written at the start of the table of contents. Must be
+     * incremented on every incompatible change of the format.
+     */
+    public static final int FORMAT_VERSION = 1;
+
     /** The orderId that always represents {@code null}. */
     public static final int NULL_ORDER_ID = 0;
     /** The orderId of the {@link StructuredGraph#start() start node} of the encoded graph. */
@@ -276,10 +300,24 @@ public class GraphEncoder {
 
         /* Write out the table of contents with the start offset for all nodes. */
         long nodeTableStart = writer.getBytesWritten();
+        writer.putUV(FORMAT_VERSION);
         writer.putUV(nodeCount);
+        int entrySize = nodeStartOffsetEntrySize(nodeTableStart);
+        writer.putU1(entrySize);
         for (int i = 0; i < nodeCount; i++) {
             assert i == NULL_ORDER_ID || i == START_NODE_ORDER_ID || nodeStartOffsets[i] > 0;
-            writer.putUV(nodeTableStart - nodeStartOffsets[i]);
+            long distance = nodeTableStart - nodeStartOffsets[i];
+            switch (entrySize) {
+                case Byte.BYTES:
+                    writer.putU1(distance);
+                    break;
+                case Short.BYTES:
+                    writer.putU2(distance);
+                    break;
+                default:
+                    writer.putU4(distance);
+                    break;
+            }
         }
 
         /* Check that the decoding of the encode graph is the same as the input. */
@@ -288,6 +326,21 @@ public class GraphEncoder {
         return nodeTableStart;
     }
 
+    /**
+     * Returns the smallest entry size of the table of contents that can represent the distance from
+     * any node to the start of the table of contents.
+     */
+    private static int nodeStartOffsetEntrySize(long nodeTableStart) {
+        if (TypeConversion.isU1(nodeTableStart)) {
+            return Byte.BYTES;
+        } else if (TypeConversion.isU2(nodeTableStart)) {
+            return Short.BYTES;
+        } else {
+            assert TypeConversion.isU4(nodeTableStart);
+            return Integer.BYTES;
+        }
+    }
+
     public byte[] getEncoding() {
         return writer.toArray(new byte[TypeConversion.asS4(writer.getBytesWritten())]);
     }
@@ -253,8 +253,8 @@ public class StructuredGraph extends Graph implements JavaMethodContext {
     }
 
     @Override
-    public boolean maybeCompress() {
-        if (super.maybeCompress()) {
+    public boolean compress() {
+        if (super.compress()) {
             /*
              * The schedule contains a NodeMap which is unusable after compression.
              */
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.nodes.java;
+
+import static com.oracle.graal.nodeinfo.InputType.Memory;
+import static com.oracle.graal.nodeinfo.NodeCycles.CYCLES_100;
+import static com.oracle.graal.nodeinfo.NodeSize.SIZE_50;
+
+import com.oracle.graal.compiler.common.LocationIdentity;
+import com.oracle.graal.compiler.common.calc.VectorOperation;
+import com.oracle.graal.compiler.common.type.StampFactory;
+import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.nodeinfo.NodeInfo;
+import com.oracle.graal.nodes.AbstractStateSplit;
+import com.oracle.graal.nodes.NamedLocationIdentity;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.memory.MemoryCheckpoint;
+import com.oracle.graal.nodes.spi.LIRLowerable;
+import com.oracle.graal.nodes.spi.NodeLIRBuilderTool;
+
+import jdk.vm.ci.meta.JavaKind;
+
+/**
+ * Computes {@code result[i] = x[i] op y[i]} (or {@code x[i] op y} if {@code y} is not an array)
+ * for all {@code i} in {@code [start, start + count)} with vector instructions. The arrays must be
+ * non-null, the range must be within the bounds of all arrays and {@code count} must be a multiple
+ * of the vector length of the target.
+ */
+@NodeInfo(allowedUsageTypes = Memory, cycles = CYCLES_100, size = SIZE_50)
+public final class VectorizedArrayOpNode extends AbstractStateSplit implements LIRLowerable, MemoryCheckpoint.Single {
+
+    public static final NodeClass<VectorizedArrayOpNode> TYPE = NodeClass.create(VectorizedArrayOpNode.class);
+
+    protected final VectorOperation operation;
+    /** {@link JavaKind} of the array elements. */
+    protected final JavaKind elementKind;
+    protected final boolean yIsArray;
+
+    @Input ValueNode result;
+    @Input ValueNode x;
+    @Input ValueNode y;
+    @Input ValueNode start;
+    @Input ValueNode count;
+
+    public VectorizedArrayOpNode(VectorOperation operation, JavaKind elementKind, ValueNode result, ValueNode x, ValueNode y, boolean yIsArray, ValueNode start, ValueNode count) {
+        super(TYPE, StampFactory.forVoid());
+        this.operation = operation;
+        this.elementKind = elementKind;
+        this.yIsArray = yIsArray;
+        this.result = result;
+        this.x = x;
+        this.y = y;
+        this.start = start;
+        this.count = count;
+    }
+
+    public VectorOperation getOperation() {
+        return operation;
+    }
+
+    public JavaKind getElementKind() {
+        return elementKind;
+    }
+
+    @Override
+    public LocationIdentity getLocationIdentity() {
+        return NamedLocationIdentity.getArrayLocation(elementKind);
+    }
+
+    @Override
+    public void generate(NodeLIRBuilderTool gen) {
+        gen.getLIRGeneratorTool().emitVectorizedArrayOp(operation, elementKind, gen.operand(result), gen.operand(x), gen.operand(y), yIsArray, gen.operand(start), gen.operand(count));
+    }
+}
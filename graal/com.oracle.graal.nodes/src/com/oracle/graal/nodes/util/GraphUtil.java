@@ -230,8 +230,8 @@ public class GraphUtil {
                     if (in.hasNoUsages()) {
                         killWithUnusedFloatingInputs(in);
                     } else if (in instanceof PhiNode) {
-                        for (Node use : in.usages()) {
-                            if (use != in) {
+                        for (int i = 0; i < in.getUsageCount(); i++) {
+                            if (in.getUsageAt(i) != in) {
                                 continue outer;
                             }
                         }
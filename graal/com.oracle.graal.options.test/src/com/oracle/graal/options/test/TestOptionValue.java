@@ -36,6 +36,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.Arrays;
+import java.util.Map;
 
 import org.junit.Test;
 
@@ -137,4 +138,34 @@ public class TestOptionValue {
             }
         }
     }
+
+    @Test
+    public void getOverridesTest() {
+        assertTrue(OptionValue.getOverrides().isEmpty());
+        try (OverrideScope s1 = OptionValue.override(Mutable, "override1")) {
+            try (OverrideScope s2 = OptionValue.override(SecondMutable, "secondOverride1")) {
+                Map<OptionValue<?>, Object> overrides = OptionValue.getOverrides();
+                assertEquals(2, overrides.size());
+                assertEquals("override1", overrides.get(Mutable));
+                assertEquals("secondOverride1", overrides.get(SecondMutable));
+
+                String[] values = new String[2];
+                Thread thread = new Thread(() -> {
+                    try (OverrideScope s3 = OptionValue.override(overrides)) {
+                        values[0] = Mutable.getValue();
+                        values[1] = SecondMutable.getValue();
+                    }
+                });
+                thread.start();
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                assertEquals("override1", values[0]);
+                assertEquals("secondOverride1", values[1]);
+            }
+        }
+        assertTrue(OptionValue.getOverrides().isEmpty());
+    }
 }
@@ -131,6 +131,23 @@ public class OptionValue<T> {
         return new MultipleOverridesScope(current, map);
     }
 
+    /**
+     * Gets the overrides that are active on the current thread. Since overrides are thread local,
+     * this can be used to install the same overrides on another thread via
+     * {@link #override(Map)}.
+     *
+     * @return a map from each overridden option to its override value
+     */
+    public static Map<OptionValue<?>, Object> getOverrides() {
+        OverrideScope current = getOverrideScope();
+        if (current == null) {
+            return Collections.emptyMap();
+        }
+        Map<OptionValue<?>, Object> overrides = new HashMap<>();
+        current.addToInherited(overrides);
+        return overrides;
+    }
+
     private static final ThreadLocal<OverrideScope> overrideScopeTL = new ThreadLocal<>();
 
     protected static OverrideScope getOverrideScope() {
@@ -203,9 +203,7 @@ public class CanonicalizerPhase extends BasePhase<PhaseContext> {
                 public void inputChanged(Node node) {
                     workList.add(node);
                     if (node instanceof IndirectCanonicalization) {
-                        for (Node usage : node.usages()) {
-                            workList.add(usage);
-                        }
+                        addUsagesToWorkList(node);
                     }
                 }
 
@@ -225,6 +223,15 @@ public class CanonicalizerPhase extends BasePhase<PhaseContext> {
             }
         }
 
+        /**
+         * Adds the usages of {@code node} to the work list without allocating a usage iterator.
+         */
+        private void addUsagesToWorkList(Node node) {
+            for (int i = 0; i < node.getUsageCount(); i++) {
+                workList.add(node.getUsageAt(i));
+            }
+        }
+
         /**
          * @return true if the graph was changed.
          */
@@ -265,7 +272,7 @@ public class CanonicalizerPhase extends BasePhase<PhaseContext> {
                     if (tryCanonicalize(valueNode, nodeClass)) {
                         return true;
                     }
-                    valueNode.usages().forEach(workList::add);
+                    addUsagesToWorkList(valueNode);
                 }
             }
             return false;
@@ -426,9 +433,7 @@ public class CanonicalizerPhase extends BasePhase<PhaseContext> {
                 COUNTER_INFER_STAMP_CALLED.increment();
                 if (node.inferStamp()) {
                     COUNTER_STAMP_CHANGED.increment();
-                    for (Node usage : node.usages()) {
-                        workList.add(usage);
-                    }
+                    addUsagesToWorkList(node);
                     return true;
                 }
             }
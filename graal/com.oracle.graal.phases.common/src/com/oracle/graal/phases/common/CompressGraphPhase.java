@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.phases.common;
+
+import com.oracle.graal.graph.Graph;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.phases.Phase;
+
+/**
+ * {@linkplain Graph#compress() Compresses} the graph such that live nodes are numbered densely.
+ * Placing this phase after phases that delete many nodes (e.g., inlining, loop transformations and
+ * canonicalization) reduces the size of the {@link com.oracle.graal.graph.NodeMap}s and
+ * {@link com.oracle.graal.graph.NodeBitMap}s allocated by subsequent phases such as scheduling and
+ * escape analysis.
+ */
+public class CompressGraphPhase extends Phase {
+
+    private final boolean unconditional;
+
+    /**
+     * Creates a phase that only compresses the graph if the
+     * {@linkplain Graph#COMPRESSION_THRESHOLD compression threshold} is met.
+     */
+    public CompressGraphPhase() {
+        this(false);
+    }
+
+    /**
+     * @param unconditional if true, the graph is compressed whenever nodes have been deleted since
+     *            the last compression, otherwise only if the
+     *            {@linkplain Graph#COMPRESSION_THRESHOLD compression threshold} is met
+     */
+    public CompressGraphPhase(boolean unconditional) {
+        this.unconditional = unconditional;
+    }
+
+    @Override
+    protected void run(StructuredGraph graph) {
+        if (unconditional) {
+            graph.compress();
+        } else {
+            graph.maybeCompress();
+        }
+    }
+}
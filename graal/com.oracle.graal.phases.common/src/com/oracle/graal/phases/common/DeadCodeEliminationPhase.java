@@ -25,6 +25,7 @@ package com.oracle.graal.phases.common;
 import com.oracle.graal.debug.Debug;
 import com.oracle.graal.debug.DebugCounter;
 import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeBitMap;
 import com.oracle.graal.graph.NodeFlood;
 import com.oracle.graal.nodes.AbstractEndNode;
 import com.oracle.graal.nodes.StructuredGraph;
@@ -121,8 +122,10 @@ public class DeadCodeEliminationPhase extends Phase {
             }
         };
 
-        for (Node node : graph.getNodes()) {
-            if (!flood.isMarked(node)) {
+        NodeBitMap live = flood.getVisited();
+        for (int id = live.nextUnmarkedNodeId(0); id >= 0; id = live.nextUnmarkedNodeId(id + 1)) {
+            Node node = graph.getNode(id);
+            if (node != null) {
                 node.markDeleted();
                 node.applyInputs(consumer);
                 counterNodesRemoved.increment();
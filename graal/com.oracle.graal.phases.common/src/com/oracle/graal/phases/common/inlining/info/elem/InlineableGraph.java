@@ -30,6 +30,8 @@ import java.util.List;
 
 import com.oracle.graal.compiler.common.type.Stamp;
 import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugCounter;
+import com.oracle.graal.graph.CachedGraph;
 import com.oracle.graal.graph.Node;
 import com.oracle.graal.graph.NodeInputList;
 import com.oracle.graal.nodes.ConstantNode;
@@ -38,6 +40,7 @@ import com.oracle.graal.nodes.ParameterNode;
 import com.oracle.graal.nodes.StructuredGraph;
 import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
 import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.java.MethodCallTargetNode;
 import com.oracle.graal.phases.common.CanonicalizerPhase;
 import com.oracle.graal.phases.common.DeadCodeEliminationPhase;
 import com.oracle.graal.phases.common.inlining.InliningUtil;
@@ -50,8 +53,10 @@ import jdk.vm.ci.meta.ResolvedJavaMethod;
 
 /**
  * <p>
- * Represents a feasible concrete target for inlining, whose graph has been copied already and thus
- * can be modified without affecting the original (usually cached) version.
+ * Represents a feasible concrete target for inlining. If the graph of the target comes from a cache
+ * (e.g., a method substitution), it is copied lazily, i.e., only once it is about to be modified.
+ * The graph {@linkplain #getGraph() exposed} by this class may thus be shared and must only be
+ * modified through the {@link #getMutableGraph() mutable copy}.
  * </p>
  *
  * <p>
@@ -64,28 +69,49 @@ import jdk.vm.ci.meta.ResolvedJavaMethod;
  */
 public class InlineableGraph implements Inlineable {
 
-    private final StructuredGraph graph;
+    private static final DebugCounter InlineableGraphCopies = Debug.counter("InlineableGraphCopies");
+    private static final DebugCounter InlineableGraphsShared = Debug.counter("InlineableGraphsShared");
+
+    private final CachedGraph<StructuredGraph> graph;
 
     private FixedNodeProbabilityCache probabilites = new FixedNodeProbabilityCache();
 
     public InlineableGraph(final ResolvedJavaMethod method, final Invoke invoke, final HighTierContext context, CanonicalizerPhase canonicalizer) {
-        StructuredGraph original = getOriginalGraph(method, context, canonicalizer, invoke.asNode().graph(), invoke.bci());
-        // TODO copying the graph is only necessary if it is modified or if it contains any invokes
-        this.graph = (StructuredGraph) original.copy();
+        this.graph = getOriginalGraph(method, context, canonicalizer, invoke.asNode().graph(), invoke.bci());
+        if (graph.getReadonlyCopy().hasNode(MethodCallTargetNode.TYPE)) {
+            // the inlining walker may inline into the callsites of this graph
+            getMutableGraph();
+        }
         specializeGraphToArguments(invoke, context, canonicalizer);
+        if (!graph.hasMutableCopy()) {
+            InlineableGraphsShared.increment();
+        }
     }
 
     /**
      * This method looks up in a cache the graph for the argument, if not found bytecode is parsed.
-     * The graph thus obtained is returned, ie the caller is responsible for cloning before
-     * modification.
+     * A cached graph is returned as read-only, i.e. it is copied on the first
+     * {@linkplain #getMutableGraph() modification}, whereas a freshly parsed graph is owned by
+     * this instance and can be modified directly.
      */
-    private static StructuredGraph getOriginalGraph(final ResolvedJavaMethod method, final HighTierContext context, CanonicalizerPhase canonicalizer, StructuredGraph caller, int callerBci) {
+    private static CachedGraph<StructuredGraph> getOriginalGraph(final ResolvedJavaMethod method, final HighTierContext context, CanonicalizerPhase canonicalizer, StructuredGraph caller,
+                    int callerBci) {
         StructuredGraph result = InliningUtil.getIntrinsicGraph(context.getReplacements(), method, callerBci);
         if (result != null) {
-            return result;
+            return CachedGraph.fromReadonlyCopy(result);
         }
-        return parseBytecodes(method, context, canonicalizer, caller);
+        return CachedGraph.fromMutableCopy(parseBytecodes(method, context, canonicalizer, caller));
+    }
+
+    /**
+     * Gets a graph of this inlining target that can be modified without affecting the original
+     * (usually cached) version, copying the original graph if this has not happened yet.
+     */
+    private StructuredGraph getMutableGraph() {
+        if (!graph.hasMutableCopy()) {
+            InlineableGraphCopies.increment();
+        }
+        return graph.getMutableCopy(null);
     }
 
     /**
@@ -94,12 +120,12 @@ public class InlineableGraph implements Inlineable {
      */
     @SuppressWarnings("try")
     private boolean specializeGraphToArguments(final Invoke invoke, final HighTierContext context, CanonicalizerPhase canonicalizer) {
-        try (Debug.Scope s = Debug.scope("InlineGraph", graph)) {
+        try (Debug.Scope s = Debug.scope("InlineGraph", getGraph())) {
 
             ArrayList<Node> parameterUsages = replaceParamsWithMoreInformativeArguments(invoke, context);
             if (parameterUsages != null) {
                 assert !parameterUsages.isEmpty() : "The caller didn't have more information about arguments after all";
-                canonicalizer.applyIncremental(graph, context, parameterUsages);
+                canonicalizer.applyIncremental(getGraph(), context, parameterUsages);
                 return true;
             } else {
                 // TODO (chaeubl): if args are not more concrete, inlining should be avoided
@@ -147,8 +173,13 @@ public class InlineableGraph implements Inlineable {
      */
     private ArrayList<Node> replaceParamsWithMoreInformativeArguments(final Invoke invoke, final HighTierContext context) {
         NodeInputList<ValueNode> args = invoke.callTarget().arguments();
+        if (!hasMoreInformativeArguments(args)) {
+            // avoid copying a shared graph if the parameters can't be specialized
+            return null;
+        }
+        StructuredGraph mutableGraph = getMutableGraph();
         ArrayList<Node> parameterUsages = null;
-        List<ParameterNode> params = graph.getNodes(ParameterNode.TYPE).snapshot();
+        List<ParameterNode> params = mutableGraph.getNodes(ParameterNode.TYPE).snapshot();
         assert params.size() <= args.size();
         /*
          * param-nodes that aren't used (eg, as a result of canonicalization) don't occur in
@@ -163,7 +194,7 @@ public class InlineableGraph implements Inlineable {
                     Constant constant = arg.asConstant();
                     parameterUsages = trackParameterUsages(param, parameterUsages);
                     // collect param usages before replacing the param
-                    param.replaceAtUsagesAndDelete(graph.unique(
+                    param.replaceAtUsagesAndDelete(mutableGraph.unique(
                                     ConstantNode.forConstant(arg.stamp(), constant, ((ConstantNode) arg).getStableDimension(), ((ConstantNode) arg).isDefaultStable(), context.getMetaAccess())));
                     // param-node gone, leaving a gap in the sequence given by param.index()
                 } else {
@@ -181,6 +212,15 @@ public class InlineableGraph implements Inlineable {
         return parameterUsages;
     }
 
+    private boolean hasMoreInformativeArguments(NodeInputList<ValueNode> args) {
+        for (ParameterNode param : getGraph().getNodes(ParameterNode.TYPE)) {
+            if (param.usages().isNotEmpty() && isArgMoreInformativeThanParam(args.get(param.index()), param)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static ArrayList<Node> trackParameterUsages(ParameterNode param, ArrayList<Node> parameterUsages) {
         ArrayList<Node> result = (parameterUsages == null) ? new ArrayList<>() : parameterUsages;
         param.usages().snapshotTo(result);
@@ -220,12 +260,12 @@ public class InlineableGraph implements Inlineable {
 
     @Override
     public int getNodeCount() {
-        return InliningUtil.getNodeCount(graph);
+        return InliningUtil.getNodeCount(getGraph());
     }
 
     @Override
     public Iterable<Invoke> getInvokes() {
-        return graph.getInvokes();
+        return getGraph().getInvokes();
     }
 
     @Override
@@ -233,7 +273,11 @@ public class InlineableGraph implements Inlineable {
         return probabilites.applyAsDouble(invoke.asNode());
     }
 
+    /**
+     * Gets the graph of this inlining target. The graph is only guaranteed to be private to this
+     * instance if it contains invokes.
+     */
     public StructuredGraph getGraph() {
-        return graph;
+        return graph.getReadonlyCopy();
     }
 }
@@ -946,6 +946,7 @@ suite = {
       "sourceDirs" : ["src"],
       "dependencies" : [
         "com.oracle.graal.lir.jtt",
+        "com.oracle.graal.lir.test",
         "com.oracle.graal.lir.amd64",
         "JVMCI_HOTSPOT"
       ],